@@ -0,0 +1,78 @@
+package com.huawei.browsergateway.common.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 按键互斥锁
+ * 同一个key（如userId）的操作互斥执行，不同key各自使用独立的锁，互不竞争
+ * 
+ * 锁按引用计数创建和回收，没有持有者和等待者时从表中移除，不随用户数增长
+ */
+public class KeyedLock {
+    
+    // key -> 锁，引用计数为0时移除
+    private final ConcurrentMap<String, LockEntry> locks = new ConcurrentHashMap<>();
+    
+    /**
+     * 获取key对应的锁，可重入
+     * 
+     * @param key 互斥的键
+     */
+    public void lock(String key) {
+        LockEntry entry = locks.compute(key, (k, existing) -> {
+            LockEntry e = existing != null ? existing : new LockEntry();
+            e.references++;
+            return e;
+        });
+        entry.lock.lock();
+    }
+    
+    /**
+     * 释放key对应的锁
+     * 
+     * @param key 互斥的键
+     * @throws IllegalMonitorStateException 当前线程未持有该锁
+     */
+    public void unlock(String key) {
+        LockEntry entry = locks.get(key);
+        if (entry == null) {
+            throw new IllegalMonitorStateException("锁未被持有: " + key);
+        }
+        entry.lock.unlock();
+        locks.computeIfPresent(key, (k, e) -> --e.references == 0 ? null : e);
+    }
+    
+    /**
+     * 持有key对应的锁执行操作
+     * 
+     * @param key 互斥的键
+     * @param action 操作
+     * @return 操作结果
+     */
+    public <T> T withLock(String key, Supplier<T> action) {
+        lock(key);
+        try {
+            return action.get();
+        } finally {
+            unlock(key);
+        }
+    }
+    
+    /**
+     * 当前被持有或等待的key数量
+     */
+    public int activeKeys() {
+        return locks.size();
+    }
+    
+    /**
+     * 单个key的锁，references只在locks的compute中访问
+     */
+    private static final class LockEntry {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int references;
+    }
+}
@@ -0,0 +1,120 @@
+package com.huawei.browsergateway.common.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 按键串行执行器
+ * 同一个key（如userId）的任务按提交顺序依次执行，不同key的任务在底层线程池中并发执行
+ * 
+ * 每个key最多占用底层线程池的一个线程，某个用户的慢任务不会阻塞其他用户
+ */
+public class KeyedSerialExecutor {
+    private static final Logger log = LoggerFactory.getLogger(KeyedSerialExecutor.class);
+    
+    private final ExecutorService delegate;
+    
+    // key -> 待执行任务队列，队列为空时移除
+    private final ConcurrentMap<String, SerialQueue> queues = new ConcurrentHashMap<>();
+    
+    public KeyedSerialExecutor(ExecutorService delegate) {
+        this.delegate = delegate;
+    }
+    
+    /**
+     * 提交任务
+     * 
+     * @param key 串行化的键
+     * @param task 任务
+     * @throws RejectedExecutionException 底层线程池已满或已关闭
+     */
+    public void execute(String key, Runnable task) {
+        boolean[] start = new boolean[1];
+        SerialQueue queue = queues.compute(key, (k, existing) -> {
+            SerialQueue q = existing != null ? existing : new SerialQueue(k);
+            q.tasks.add(task);
+            if (!q.running) {
+                q.running = true;
+                start[0] = true;
+            }
+            return q;
+        });
+        
+        if (!start[0]) {
+            return;
+        }
+        try {
+            delegate.execute(queue);
+        } catch (RejectedExecutionException e) {
+            // 撤销本次提交，其余已排队任务等待该key的下一次提交时继续执行
+            queues.computeIfPresent(key, (k, q) -> {
+                q.tasks.remove(task);
+                q.running = false;
+                return q.tasks.isEmpty() ? null : q;
+            });
+            throw e;
+        }
+    }
+    
+    /**
+     * 当前有待执行任务的key数量
+     */
+    public int pendingKeys() {
+        return queues.size();
+    }
+    
+    /**
+     * 关闭底层线程池
+     */
+    public void shutdown() {
+        delegate.shutdown();
+    }
+    
+    /**
+     * 单个key的任务队列，任务队列只在queues的compute中访问
+     */
+    private final class SerialQueue implements Runnable {
+        private final String key;
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean running;
+        
+        private SerialQueue(String key) {
+            this.key = key;
+        }
+        
+        @Override
+        public void run() {
+            Runnable task;
+            while ((task = next()) != null) {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    log.error("串行任务执行异常: key={}", key, e);
+                }
+            }
+        }
+        
+        private Runnable next() {
+            Runnable[] next = new Runnable[1];
+            queues.computeIfPresent(key, (k, q) -> {
+                if (q != this) {
+                    return q;
+                }
+                next[0] = q.tasks.poll();
+                if (next[0] == null) {
+                    q.running = false;
+                    return null;
+                }
+                return q;
+            });
+            return next[0];
+        }
+    }
+}
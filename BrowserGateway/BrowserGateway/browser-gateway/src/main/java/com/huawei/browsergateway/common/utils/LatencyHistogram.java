@@ -0,0 +1,126 @@
+package com.huawei.browsergateway.common.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延迟直方图
+ * 以微秒为单位按2的幂分桶（1us ~ 约17分钟），多线程无锁记录，定期取快照并清零
+ * 
+ * 分位数取所在桶的上界，精度为2倍以内，用于监控日志足够
+ */
+public class LatencyHistogram {
+    
+    // 桶数量：第i个桶记录 (2^(i-1), 2^i] 微秒，最后一个桶记录溢出值
+    private static final int BUCKETS = 31;
+    
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    
+    private final LongAdder sumMicros = new LongAdder();
+    
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+    
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+    
+    /**
+     * 记录一次耗时
+     * 
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        buckets[bucketOf(micros)].increment();
+        sumMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+    
+    /**
+     * 取快照并清零
+     * 与并发记录之间不做强一致，个别样本可能计入下一周期
+     */
+    public Snapshot snapshotAndReset() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sumThenReset();
+            total += counts[i];
+        }
+        long sum = sumMicros.sumThenReset();
+        long max = maxMicros.getThenReset();
+        return new Snapshot(total, total == 0 ? 0 : sum / total,
+                percentile(counts, total, 0.50), percentile(counts, total, 0.99), max);
+    }
+    
+    private static int bucketOf(long micros) {
+        if (micros <= 1) {
+            return 0;
+        }
+        int bucket = 64 - Long.numberOfLeadingZeros(micros - 1);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+    
+    private static long percentile(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= threshold) {
+                return 1L << i;
+            }
+        }
+        return 1L << (counts.length - 1);
+    }
+    
+    /**
+     * 直方图快照（单位：微秒）
+     */
+    public static class Snapshot {
+        private final long count;
+        private final long mean;
+        private final long p50;
+        private final long p99;
+        private final long max;
+        
+        Snapshot(long count, long mean, long p50, long p99, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public long getMean() {
+            return mean;
+        }
+        
+        public long getP50() {
+            return p50;
+        }
+        
+        public long getP99() {
+            return p99;
+        }
+        
+        public long getMax() {
+            return max;
+        }
+        
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + mean + "us, p50<=" + p50 + "us, p99<=" + p99
+                    + "us, max=" + max + "us";
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.huawei.browsergateway.config;
+
+import com.huawei.browsergateway.common.utils.KeyedSerialExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 业务线程池配置类
+ * 将会话建立/销毁等阻塞操作（S3下载、解压、插件加载、浏览器创建）从Netty IO线程中剥离
+ */
+@Configuration
+public class ExecutorConfig {
+    
+    @Value("${browsergw.executor.session-threads:16}")
+    private int sessionThreads;
+    
+    @Value("${browsergw.executor.session-queue-capacity:600}")
+    private int sessionQueueCapacity;
+    
+    @Value("${browsergw.executor.input-threads:8}")
+    private int inputThreads;
+    
+    @Value("${browsergw.executor.transcode-threads:0}")
+    private int transcodeThreads;
+    
+    @Value("${browsergw.executor.transcode-queue-capacity:1024}")
+    private int transcodeQueueCapacity;
+    
+    @Value("${browsergw.executor.create-stage-threads:32}")
+    private int createStageThreads;
+    
+    @Value("${browsergw.executor.create-stage-queue-capacity:64}")
+    private int createStageQueueCapacity;
+    
+    @Value("${browsergw.executor.userdata-upload-threads:4}")
+    private int userDataUploadThreads;
+    
+    @Value("${browsergw.executor.userdata-upload-queue-capacity:1000}")
+    private int userDataUploadQueueCapacity;
+    
+    @Value("${browsergw.executor.record-threads:2}")
+    private int recordThreads;
+    
+    @Value("${browsergw.executor.record-queue-capacity:4096}")
+    private int recordQueueCapacity;
+    
+    @Value("${browsergw.executor.record-upload-threads:1}")
+    private int recordUploadThreads;
+    
+    /**
+     * 会话建立执行器
+     * 有界线程池 + 有界队列，按userId串行执行，同一用户的登录/登出保持顺序
+     */
+    @Bean(destroyMethod = "shutdown")
+    public KeyedSerialExecutor sessionExecutor() {
+        AtomicInteger index = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(sessionThreads, sessionThreads,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(sessionQueueCapacity),
+                r -> new Thread(r, "session-setup-" + index.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return new KeyedSerialExecutor(pool);
+    }
+    
+    /**
+     * 浏览器实例创建阶段执行器
+     * 会话建立线程在其上并行执行创建流程中相互独立的阶段（用户数据下载、驱动创建）并等待结果，
+     * 与会话建立执行器分开，避免等待方占满线程后阶段无线程可用
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService createStageExecutor() {
+        AtomicInteger index = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(createStageThreads, createStageThreads,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(createStageQueueCapacity),
+                r -> new Thread(r, "create-stage-" + index.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+    
+    /**
+     * 用户数据上传执行器
+     * 销毁浏览器实例后的脱敏压缩和上传在此执行，按userId串行；队列满时由提交方同步上传
+     */
+    @Bean(destroyMethod = "shutdown")
+    public KeyedSerialExecutor userDataUploadExecutor() {
+        AtomicInteger index = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(userDataUploadThreads, userDataUploadThreads,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(userDataUploadQueueCapacity),
+                r -> new Thread(r, "userdata-upload-" + index.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return new KeyedSerialExecutor(pool);
+    }
+    
+    /**
+     * 用户数据上传重试调度器
+     * 只负责在重试间隔到期后把上传重新提交到userDataUploadExecutor，等待期间不占用上传线程
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ScheduledExecutorService userDataRetryScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "userdata-upload-retry"));
+    }
+    
+    /**
+     * 输入事件执行器
+     * 每个有待处理事件的用户最多占用一个任务，队列长度受在线用户数约束
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService inputExecutor() {
+        AtomicInteger index = new AtomicInteger();
+        return Executors.newFixedThreadPool(inputThreads,
+                r -> new Thread(r, "input-dispatch-" + index.incrementAndGet()));
+    }
+    
+    /**
+     * 视频转码执行器
+     * 转码为CPU密集型任务，线程数默认等于CPU核数；按userId串行保证帧序
+     */
+    @Bean(destroyMethod = "shutdown")
+    public KeyedSerialExecutor transcodeExecutor() {
+        int threads = transcodeThreads > 0 ? transcodeThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger index = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(transcodeQueueCapacity),
+                r -> new Thread(r, "transcode-" + index.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return new KeyedSerialExecutor(pool);
+    }
+    
+    /**
+     * 媒体录制写盘执行器
+     * 按userId串行保证分段内的帧序，磁盘IO不占用Netty IO线程
+     */
+    @Bean(destroyMethod = "shutdown")
+    public KeyedSerialExecutor recordExecutor() {
+        AtomicInteger index = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(recordThreads, recordThreads,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(recordQueueCapacity),
+                r -> new Thread(r, "media-record-" + index.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return new KeyedSerialExecutor(pool);
+    }
+    
+    /**
+     * 录制分段上传执行器
+     * 待上传的分段数受录制磁盘配额约束
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService recordUploadExecutor() {
+        AtomicInteger index = new AtomicInteger();
+        return Executors.newFixedThreadPool(recordUploadThreads,
+                r -> new Thread(r, "record-upload-" + index.incrementAndGet()));
+    }
+}
@@ -1,9 +1,12 @@
 package com.huawei.browsergateway.config;
 
+import com.huawei.browsergateway.tcpserver.common.TlvCodec;
 import lombok.Data;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
+import javax.annotation.PostConstruct;
+
 /**
  * TCP协议配置类
  * 对应存量代码中的TcpConfig类
@@ -32,4 +35,105 @@ public class TcpConfig {
 
     @Value("${browsergw.tcp.enable-http}")
     private boolean enableHttp;
+
+    /**
+     * 传输层实现：nio | epoll | io_uring（不可用时自动回退）
+     */
+    @Value("${browsergw.tcp.transport:nio}")
+    private String transport;
+
+    /**
+     * 是否启用SO_REUSEPORT（仅epoll/io_uring支持）
+     */
+    @Value("${browsergw.tcp.reuse-port:false}")
+    private boolean reusePort;
+
+    /**
+     * 监听线程数，启用SO_REUSEPORT时每个线程独立监听同一端口
+     */
+    @Value("${browsergw.tcp.acceptor-threads:1}")
+    private int acceptorThreads;
+
+    /**
+     * IO工作线程数，0表示使用Netty默认值（CPU核数*2）
+     */
+    @Value("${browsergw.tcp.worker-threads:0}")
+    private int workerThreads;
+
+    /**
+     * 监听队列长度
+     */
+    @Value("${browsergw.tcp.backlog:128}")
+    private int backlog;
+
+    /**
+     * 是否禁用Nagle算法，交互消息和视频帧立即发送
+     */
+    @Value("${browsergw.tcp.tcp-no-delay:true}")
+    private boolean tcpNoDelay;
+
+    /**
+     * 是否使用池化ByteBuf分配器
+     */
+    @Value("${browsergw.tcp.pooled-allocator:true}")
+    private boolean pooledAllocator;
+
+    /**
+     * 写缓冲低水位（字节），出站缓冲回落到此值以下时恢复读取
+     */
+    @Value("${browsergw.tcp.write-buffer-low-water-mark:262144}")
+    private int writeBufferLowWaterMark;
+
+    /**
+     * 写缓冲高水位（字节），出站缓冲超过此值时暂停读取
+     */
+    @Value("${browsergw.tcp.write-buffer-high-water-mark:1048576}")
+    private int writeBufferHighWaterMark;
+
+    /**
+     * 接收缓冲自适应分配：最小值（字节）
+     */
+    @Value("${browsergw.tcp.recv-buffer-min:1024}")
+    private int recvBufferMin;
+
+    /**
+     * 接收缓冲自适应分配：初始值（字节）
+     */
+    @Value("${browsergw.tcp.recv-buffer-initial:16384}")
+    private int recvBufferInitial;
+
+    /**
+     * 接收缓冲自适应分配：最大值（字节）
+     */
+    @Value("${browsergw.tcp.recv-buffer-max:262144}")
+    private int recvBufferMax;
+
+    /**
+     * TLS实现：auto（OpenSSL可用时优先）| openssl | jdk
+     */
+    @Value("${browsergw.tcp.ssl-provider:auto}")
+    private String sslProvider;
+
+    /**
+     * TLS会话缓存条目数，用于断线重连时的会话恢复
+     */
+    @Value("${browsergw.tcp.ssl-session-cache-size:20480}")
+    private long sslSessionCacheSize;
+
+    /**
+     * TLS会话缓存/票据有效期（秒）
+     */
+    @Value("${browsergw.tcp.ssl-session-timeout:3600}")
+    private long sslSessionTimeout;
+
+    /**
+     * TLV消息体格式：json | binary
+     */
+    @Value("${browsergw.tlv.format:json}")
+    private String tlvFormat;
+
+    @PostConstruct
+    public void applyTlvFormat() {
+        TlvCodec.setFormat(TlvCodec.TlvFormat.valueOf(tlvFormat.trim().toUpperCase()));
+    }
 }
@@ -27,4 +27,10 @@ public class WebsocketConfig {
 
     @Value("${browsergw.websocket.heartbeat-ttl}")
     private Long heartbeatTtl;
+
+    /**
+     * 单条WebSocket消息最大字节数（分片合并后），上行媒体关键帧需在此范围内
+     */
+    @Value("${browsergw.websocket.max-frame-size:4194304}")
+    private Integer maxFrameSize = 4 * 1024 * 1024;
 }
@@ -0,0 +1,24 @@
+package com.huawei.browsergateway.entity.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/**
+ * 媒体配置（MEDIA_CONFIG消息体）
+ * 编码端上报当前编码参数；网关按观看端网络状况下发调整后的码率和帧率，未设置的字段保持不变
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MediaConfigRequest {
+    /**
+     * 视频码率 kbps
+     */
+    private Integer videoBitRate;
+    
+    /**
+     * 帧率 FPS
+     */
+    private Integer frameRate;
+}
@@ -0,0 +1,43 @@
+package com.huawei.browsergateway.scheduled;
+
+import com.huawei.browsergateway.websocket.media.AdaptiveBitrateController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 自适应码率调整任务
+ * 按观看会话的发送队列遥测调整编码端码率和帧率，并周期输出调整统计
+ */
+@Component
+public class BitrateControlTask {
+    
+    private static final Logger log = LoggerFactory.getLogger(BitrateControlTask.class);
+    
+    @Autowired
+    private AdaptiveBitrateController bitrateController;
+    
+    /**
+     * 执行一个码率调整周期
+     * 默认每1秒执行一次
+     */
+    @Scheduled(fixedDelayString = "${browsergw.scheduled.bitrate-control-period:1000}")
+    public void adjustBitrate() {
+        try {
+            bitrateController.adjust();
+        } catch (Exception e) {
+            log.error("码率调整任务执行异常", e);
+        }
+    }
+    
+    /**
+     * 输出码率调整统计（用户数、降码率用户数、升/降次数、MEDIA_CONFIG下发数），输出后清零
+     * 默认每1分钟执行一次
+     */
+    @Scheduled(fixedDelayString = "${browsergw.scheduled.media-metrics-period:60000}")
+    public void logMetrics() {
+        log.info("自适应码率统计 - {}", bitrateController.metricsAndReset());
+    }
+}
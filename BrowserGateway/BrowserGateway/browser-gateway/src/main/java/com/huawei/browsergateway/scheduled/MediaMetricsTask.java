@@ -0,0 +1,54 @@
+package com.huawei.browsergateway.scheduled;
+
+import com.huawei.browsergateway.websocket.media.MediaRecorder;
+import com.huawei.browsergateway.websocket.media.transcode.TranscodeEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 媒体处理统计任务
+ * 输出媒体转码、录制等处理环节的周期统计
+ */
+@Component
+public class MediaMetricsTask {
+    
+    private static final Logger log = LoggerFactory.getLogger(MediaMetricsTask.class);
+    
+    @Autowired
+    private TranscodeEngine transcodeEngine;
+    
+    @Autowired
+    private MediaRecorder mediaRecorder;
+    
+    /**
+     * 输出FFmpeg转码统计（转码器创建/复用数、输入/输出/丢弃帧数、单帧转码耗时），输出后清零
+     * 默认每1分钟执行一次
+     */
+    @Scheduled(fixedDelayString = "${browsergw.scheduled.media-metrics-period:60000}")
+    public void transcodeMetrics() {
+        try {
+            log.info("视频转码统计 - {}", transcodeEngine.metricsAndReset());
+        } catch (Exception e) {
+            log.error("视频转码统计任务执行异常", e);
+        }
+    }
+    
+    /**
+     * 输出媒体录制统计（写盘帧数/字节数、丢帧数、分段上传/淘汰数、本地磁盘占用），输出后清零
+     * 默认每1分钟执行一次，未启用录制时不输出
+     */
+    @Scheduled(fixedDelayString = "${browsergw.scheduled.media-metrics-period:60000}")
+    public void recordMetrics() {
+        if (!mediaRecorder.isEnabled()) {
+            return;
+        }
+        try {
+            log.info("媒体录制统计 - {}", mediaRecorder.metricsAndReset());
+        } catch (Exception e) {
+            log.error("媒体录制统计任务执行异常", e);
+        }
+    }
+}
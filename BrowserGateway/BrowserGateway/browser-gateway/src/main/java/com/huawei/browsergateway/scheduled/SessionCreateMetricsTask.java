@@ -0,0 +1,34 @@
+package com.huawei.browsergateway.scheduled;
+
+import com.huawei.browsergateway.service.IChromeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 浏览器实例创建统计任务
+ * 输出用户数据下载、驱动创建、创建总耗时的分布，以及合并的并发创建数和准入统计
+ */
+@Component
+public class SessionCreateMetricsTask {
+    
+    private static final Logger log = LoggerFactory.getLogger(SessionCreateMetricsTask.class);
+    
+    @Autowired
+    private IChromeSet chromeSet;
+    
+    /**
+     * 输出创建耗时统计，输出后清零
+     * 默认每1分钟执行一次
+     */
+    @Scheduled(fixedDelayString = "${browsergw.scheduled.session-create-metrics-period:60000}")
+    public void logMetrics() {
+        try {
+            log.info("浏览器实例创建耗时统计 - {}", chromeSet.createMetricsAndReset());
+        } catch (Exception e) {
+            log.error("浏览器实例创建统计任务执行异常", e);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.huawei.browsergateway.scheduled;
 
 import com.huawei.browsergateway.tcpserver.control.ControlClientSet;
+import com.huawei.browsergateway.tcpserver.control.InputEventDispatcher;
 import com.huawei.browsergateway.tcpserver.media.MediaClientSet;
+import com.huawei.browsergateway.websocket.media.MediaRelay;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,7 +13,8 @@ import org.springframework.stereotype.Component;
 
 /**
  * TCP连接监控任务
- * 监控TCP连接的心跳状态，清理超时连接，统计流量
+ * 统计TCP连接数和心跳超时关闭的连接数
+ * 超时连接由各连接pipeline中的IdleStateHandler关闭，此处不再全量扫描
  */
 @Component
 public class TcpChannelMonitor {
@@ -24,16 +27,18 @@ public class TcpChannelMonitor {
     @Autowired
     private MediaClientSet mediaClientSet;
     
-    // TCP心跳超时时间（纳秒），默认100小时
-    @Value("${browsergw.tcp.heartbeat-ttl:360000000000}")
-    private long heartbeatTtl;
+    @Autowired
+    private InputEventDispatcher inputEventDispatcher;
+    
+    @Autowired
+    private MediaRelay mediaRelay;
     
     // TCP监控任务执行周期（默认10分钟）
     @Value("${browsergw.scheduled.tcp-heartbeat-period:600000}")
     private long tcpHeartbeatPeriod;
     
     /**
-     * 监控TCP连接并清理超时连接
+     * 统计TCP连接数和本周期超时关闭的连接数
      * 默认每10分钟执行一次
      */
     @Scheduled(fixedDelayString = "${browsergw.scheduled.tcp-heartbeat-period:600000}")
@@ -41,11 +46,9 @@ public class TcpChannelMonitor {
         log.debug("开始执行TCP连接监控任务");
         
         try {
-            // 清理控制流超时连接
-            int controlClosedCount = controlClientSet.cleanExpiredClients(heartbeatTtl);
-            
-            // 清理媒体流超时连接
-            int mediaClosedCount = mediaClientSet.cleanExpiredClients(heartbeatTtl);
+            // 本周期心跳超时关闭的连接数
+            int controlClosedCount = controlClientSet.drainExpiredCount();
+            int mediaClosedCount = mediaClientSet.drainExpiredCount();
             
             // 统计连接数
             int controlClientCount = controlClientSet.getClientCount();
@@ -58,4 +61,22 @@ public class TcpChannelMonitor {
             log.error("TCP连接监控任务执行异常", e);
         }
     }
+    
+    /**
+     * 输出输入事件队列指标（排队深度、合并/丢弃数、入队到分发的延迟）
+     * 默认每1分钟执行一次，输出后清零
+     */
+    @Scheduled(fixedDelayString = "${browsergw.scheduled.input-metrics-period:60000}")
+    public void inputEventMetrics() {
+        log.info("输入事件队列统计 - {}", inputEventDispatcher.metricsAndReset());
+    }
+
+    /**
+     * 输出媒体帧中继指标（转发帧数/字节数、丢帧数、接收到发送完成的延迟）
+     * 默认每1分钟执行一次，输出后清零
+     */
+    @Scheduled(fixedDelayString = "${browsergw.scheduled.media-metrics-period:60000}")
+    public void mediaRelayMetrics() {
+        log.info("媒体帧中继统计 - {}", mediaRelay.metricsAndReset());
+    }
 }
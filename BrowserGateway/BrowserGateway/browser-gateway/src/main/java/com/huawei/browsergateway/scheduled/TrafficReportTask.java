@@ -0,0 +1,49 @@
+package com.huawei.browsergateway.scheduled;
+
+import com.huawei.browsergateway.service.impl.DataSizeTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * 流量统计上报任务
+ * 每个周期将全部用户的媒体流、控制流流量各汇总为一次上报，停止服务时上报最后一个周期
+ */
+@Component
+public class TrafficReportTask {
+    
+    private static final Logger log = LoggerFactory.getLogger(TrafficReportTask.class);
+    
+    @Autowired
+    @Qualifier("mediaDataSizeTracker")
+    private DataSizeTracker mediaTracker;
+    
+    @Autowired
+    @Qualifier("controlDataSizeTracker")
+    private DataSizeTracker controlTracker;
+    
+    /**
+     * 上报流量统计
+     * 默认每1分钟执行一次
+     */
+    @Scheduled(fixedDelayString = "${browsergw.scheduled.traffic-report-period:60000}")
+    public void reportTraffic() {
+        try {
+            int mediaUsers = mediaTracker.report();
+            int controlUsers = controlTracker.report();
+            log.debug("流量统计上报完成: mediaUsers={}, controlUsers={}", mediaUsers, controlUsers);
+        } catch (Exception e) {
+            log.error("流量统计上报任务执行异常", e);
+        }
+    }
+    
+    @PreDestroy
+    public void flush() {
+        reportTraffic();
+    }
+}
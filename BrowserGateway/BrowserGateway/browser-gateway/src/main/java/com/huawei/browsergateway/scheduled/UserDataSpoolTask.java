@@ -0,0 +1,35 @@
+package com.huawei.browsergateway.scheduled;
+
+import com.huawei.browsergateway.service.impl.UserDataUploadQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 用户数据暂存重传任务
+ * 重新提交暂存目录中重试次数用尽的用户数据上传，并输出上传统计
+ */
+@Component
+public class UserDataSpoolTask {
+    
+    private static final Logger log = LoggerFactory.getLogger(UserDataSpoolTask.class);
+    
+    @Autowired
+    private UserDataUploadQueue uploadQueue;
+    
+    /**
+     * 重新提交未上传的用户数据
+     * 默认每5分钟执行一次
+     */
+    @Scheduled(fixedDelayString = "${browsergw.scheduled.userdata-spool-period:300000}")
+    public void resubmit() {
+        try {
+            int resubmitted = uploadQueue.resubmitSpooled();
+            log.info("用户数据上传统计 - {}, resubmitted={}", uploadQueue.metricsAndReset(), resubmitted);
+        } catch (Exception e) {
+            log.error("用户数据暂存重传任务执行异常", e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.huawei.browsergateway.scheduled;
+
+import com.huawei.browsergateway.service.IChromeSet;
+import com.huawei.browsergateway.service.impl.BrowserWarmPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 浏览器预热池补充任务
+ * 按已使用的实例数补充或收缩预热池，每个周期创建的实例数受refill-batch限制
+ */
+@Component
+public class WarmPoolRefillTask {
+    
+    private static final Logger log = LoggerFactory.getLogger(WarmPoolRefillTask.class);
+    
+    @Autowired
+    private BrowserWarmPool warmPool;
+    
+    @Autowired
+    private IChromeSet chromeSet;
+    
+    /**
+     * 补充预热池
+     * 默认每1秒执行一次
+     */
+    @Scheduled(fixedDelayString = "${browsergw.scheduled.warm-pool-refill-period:1000}")
+    public void refill() {
+        if (!warmPool.isEnabled()) {
+            return;
+        }
+        try {
+            warmPool.refill(chromeSet.getAllUser().size());
+        } catch (Exception e) {
+            log.error("预热池补充任务执行异常", e);
+        }
+    }
+    
+    /**
+     * 输出预热池领取统计
+     * 默认每1分钟执行一次
+     */
+    @Scheduled(fixedDelayString = "${browsergw.scheduled.warm-pool-metrics-period:60000}")
+    public void logMetrics() {
+        if (warmPool.isEnabled()) {
+            log.info("浏览器预热池统计 - {}", warmPool.metricsAndReset());
+        }
+    }
+}
@@ -58,4 +58,9 @@ public interface IChromeSet {
      * @return 上报是否成功
      */
     boolean reportChainEndpoints();
+    
+    /**
+     * 创建流程各阶段耗时统计并清零
+     */
+    String createMetricsAndReset();
 }
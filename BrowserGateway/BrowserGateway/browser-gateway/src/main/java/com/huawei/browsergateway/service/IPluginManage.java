@@ -3,6 +3,7 @@ package com.huawei.browsergateway.service;
 import com.huawei.browsergateway.entity.plugin.ExtensionFilePaths;
 import com.huawei.browsergateway.entity.plugin.PluginActive;
 import com.huawei.browsergateway.entity.request.LoadExtensionRequest;
+import com.huawei.browsergateway.sdk.muen.HWCallback;
 import com.huawei.browsergateway.sdk.muen.MuenDriver;
 
 /**
@@ -27,6 +28,23 @@ public interface IPluginManage {
      */
     MuenDriver createDriver(String userId);
     
+    /**
+     * 使用指定回调创建驱动实例，不按用户缓存
+     * 用于预热池预先创建与用户无关的驱动实例，领取时再绑定用户回调
+     * 
+     * @param callback 回调实例
+     * @return MuenDriver 驱动实例，插件未加载或失败返回null
+     */
+    MuenDriver createDriver(HWCallback callback);
+    
+    /**
+     * 释放不再使用的驱动实例
+     * 移除按用户缓存的引用；驱动实现了AutoCloseable时关闭，释放插件侧的资源和回调
+     * 
+     * @param driver 驱动实例，为null时忽略
+     */
+    void releaseDriver(MuenDriver driver);
+    
     /**
      * 更新插件活跃状态
      * 
@@ -4,6 +4,7 @@ import com.huawei.browsergateway.entity.event.EventInfo;
 import com.huawei.browsergateway.entity.request.InitBrowserRequest;
 import com.huawei.browsergateway.entity.remote.UserBind;
 
+import java.util.List;
 import java.util.function.Consumer;
 
 /**
@@ -52,6 +53,14 @@ public interface IRemote {
      */
     void handleEvent(byte[] receivedControlPackets, String userId);
     
+    /**
+     * 按顺序批量处理浏览器事件，整批共用一次实例查找和HWContext
+     * 
+     * @param receivedControlPackets 控制数据包列表
+     * @param userId 用户ID
+     */
+    void handleEvents(List<byte[]> receivedControlPackets, String userId);
+    
     /**
      * 回退页面
      * 
@@ -0,0 +1,243 @@
+package com.huawei.browsergateway.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 浏览器实例准入控制
+ * 按服务容量（browsergw.report.cap）发放名额：创建实例前预占名额，创建失败或实例删除时归还，
+ * 并发创建不会超过容量
+ * 
+ * 容量已满时请求进入有界等待队列，超时或队列已满时拒绝；最近释放过名额的用户（断线重连）优先于新用户获得名额
+ */
+@Component
+public class AdmissionController {
+    
+    private static final Logger log = LoggerFactory.getLogger(AdmissionController.class);
+    
+    /**
+     * 准入优先级，按声明顺序从高到低
+     */
+    public enum Priority {
+        RECONNECT,
+        NEW
+    }
+    
+    @Value("${browsergw.report.cap:300}")
+    private int capacity = 300;
+    
+    // 等待名额的最大请求数，超出时立即拒绝
+    @Value("${browsergw.admission.queue-capacity:32}")
+    private int queueCapacity = 32;
+    
+    // 单个请求等待名额的最长时间（毫秒）
+    @Value("${browsergw.admission.wait-timeout:5000}")
+    private long waitTimeoutMillis = 5000L;
+    
+    // 是否启用优先级，关闭时所有请求按新用户处理
+    @Value("${browsergw.admission.priority-enabled:true}")
+    private boolean priorityEnabled = true;
+    
+    // 释放名额后多长时间内再次创建视为重连（毫秒）
+    @Value("${browsergw.admission.reconnect-window:60000}")
+    private long reconnectWindowMillis = 60000L;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    
+    // 按优先级等待名额的条件和等待数，只在持有lock时访问
+    private final Condition[] available = new Condition[Priority.values().length];
+    private final int[] waiting = new int[Priority.values().length];
+    private int used;
+    
+    // 用户ID -> 最近一次释放名额的时间
+    private final ConcurrentMap<String, Long> recentlyReleased = new ConcurrentHashMap<>();
+    
+    private final LongAdder admitted = new LongAdder();
+    
+    private final LongAdder queued = new LongAdder();
+    
+    private final LongAdder rejected = new LongAdder();
+    
+    public AdmissionController() {
+        for (Priority priority : Priority.values()) {
+            available[priority.ordinal()] = lock.newCondition();
+        }
+    }
+    
+    /**
+     * 用户的准入优先级
+     * 
+     * @param userId 用户ID
+     * @return 重连窗口内释放过名额的用户为RECONNECT，否则为NEW
+     */
+    public Priority priorityOf(String userId) {
+        if (!priorityEnabled || userId == null) {
+            return Priority.NEW;
+        }
+        Long releasedAt = recentlyReleased.get(userId);
+        if (releasedAt != null && System.currentTimeMillis() - releasedAt <= reconnectWindowMillis) {
+            return Priority.RECONNECT;
+        }
+        return Priority.NEW;
+    }
+    
+    /**
+     * 预占一个名额，容量已满时最多等待wait-timeout
+     * 
+     * @param userId 用户ID
+     * @return 是否获得名额；等待队列已满、等待超时或被中断时返回false
+     */
+    public boolean acquire(String userId) {
+        Priority priority = priorityOf(userId);
+        int index = priority.ordinal();
+        lock.lock();
+        try {
+            // 不越过同级及更高优先级的等待者
+            if (used < capacity && !hasWaiters(index)) {
+                used++;
+                admitted.increment();
+                return true;
+            }
+            if (totalWaiting() >= queueCapacity) {
+                rejected.increment();
+                log.warn("准入等待队列已满: userId={}, used={}, cap={}, waiting={}", userId, used, capacity,
+                    totalWaiting());
+                return false;
+            }
+            queued.increment();
+            waiting[index]++;
+            try {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(waitTimeoutMillis);
+                // 被唤醒后只让位于更高优先级的等待者
+                while (used >= capacity || hasWaiters(index - 1)) {
+                    if (remaining <= 0L) {
+                        rejected.increment();
+                        log.warn("等待准入名额超时: userId={}, priority={}, used={}, cap={}", userId, priority, used,
+                            capacity);
+                        return false;
+                    }
+                    remaining = available[index].awaitNanos(remaining);
+                }
+                used++;
+                admitted.increment();
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.increment();
+                return false;
+            } finally {
+                waiting[index]--;
+                signalNext();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 归还一个名额，并记录用户以便重连时优先准入
+     * 
+     * @param userId 用户ID
+     */
+    public void release(String userId) {
+        lock.lock();
+        try {
+            if (used <= 0) {
+                log.warn("归还名额时没有已占用的名额: userId={}", userId);
+                return;
+            }
+            used--;
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+        if (userId != null) {
+            recentlyReleased.put(userId, System.currentTimeMillis());
+            if (recentlyReleased.size() > capacity) {
+                long expiredBefore = System.currentTimeMillis() - reconnectWindowMillis;
+                recentlyReleased.values().removeIf(releasedAt -> releasedAt < expiredBefore);
+            }
+        }
+    }
+    
+    /**
+     * 有空闲名额时唤醒优先级最高的一个等待者
+     */
+    private void signalNext() {
+        if (used >= capacity) {
+            return;
+        }
+        for (Priority priority : Priority.values()) {
+            if (waiting[priority.ordinal()] > 0) {
+                available[priority.ordinal()].signal();
+                return;
+            }
+        }
+    }
+    
+    /**
+     * 优先级不低于index的等待者是否存在
+     */
+    private boolean hasWaiters(int index) {
+        for (int i = 0; i <= index; i++) {
+            if (waiting[i] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private int totalWaiting() {
+        int total = 0;
+        for (int count : waiting) {
+            total += count;
+        }
+        return total;
+    }
+    
+    /**
+     * 已占用的名额数
+     */
+    public int getUsed() {
+        lock.lock();
+        try {
+            return used;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 等待名额的请求数
+     */
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return totalWaiting();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 准入统计并清零
+     */
+    public String metricsAndReset() {
+        lock.lock();
+        try {
+            return String.format("used=%d, cap=%d, waiting=%d, admitted=%d, queued=%d, rejected=%d", used, capacity,
+                totalWaiting(), admitted.sumThenReset(), queued.sumThenReset(), rejected.sumThenReset());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
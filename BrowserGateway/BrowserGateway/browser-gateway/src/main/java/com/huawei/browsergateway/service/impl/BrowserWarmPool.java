@@ -0,0 +1,316 @@
+package com.huawei.browsergateway.service.impl;
+
+import com.huawei.browsergateway.entity.plugin.PluginActive;
+import com.huawei.browsergateway.sdk.muen.HWCallback;
+import com.huawei.browsergateway.sdk.muen.MuenDriver;
+import com.huawei.browsergateway.service.IPluginManage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 浏览器预热池
+ * 预先创建与用户无关的MuenDriver实例（插件类加载器实例化驱动），登录时领取一个并只绑定用户回调，
+ * 省去登录路径上的驱动创建；领取不到时由调用方按原流程创建
+ * 
+ * 池大小按服务容量（browsergw.report.cap）的比例计算，且不超过剩余容量；
+ * 由定时任务单线程补充，每个周期最多创建refill-batch个，插件未加载或创建失败时等待下个周期
+ * 
+ * 失效、收缩丢弃以及关闭时剩余的实例通过IPluginManage.releaseDriver释放
+ */
+@Component
+public class BrowserWarmPool {
+    
+    private static final Logger log = LoggerFactory.getLogger(BrowserWarmPool.class);
+    
+    @Autowired
+    private IPluginManage pluginManage;
+    
+    @Value("${browsergw.warm-pool.enabled:false}")
+    private boolean enabled = false;
+    
+    @Value("${browsergw.report.cap:300}")
+    private int cap = 300;
+    
+    // 池大小占服务容量的比例
+    @Value("${browsergw.warm-pool.size-ratio:0.05}")
+    private double sizeRatio = 0.05;
+    
+    @Value("${browsergw.warm-pool.max-size:16}")
+    private int maxSize = 16;
+    
+    // 每个补充周期最多创建的实例数
+    @Value("${browsergw.warm-pool.refill-batch:2}")
+    private int refillBatch = 2;
+    
+    // 空闲超过该时长（毫秒）的实例被丢弃后重新创建
+    @Value("${browsergw.warm-pool.max-idle:600000}")
+    private long maxIdleMillis = 600000L;
+    
+    // 空闲实例，先创建的先领取
+    private final Deque<WarmContext> idle = new ConcurrentLinkedDeque<>();
+    
+    private final AtomicLong sequence = new AtomicLong();
+    
+    private final LongAdder hits = new LongAdder();
+    
+    private final LongAdder misses = new LongAdder();
+    
+    /**
+     * 领取一个预热实例
+     * 插件已更新或空闲超时的实例被丢弃，继续领取下一个
+     * 
+     * @return 预热实例，未启用或池为空返回null
+     */
+    public WarmContext claim() {
+        if (!enabled) {
+            return null;
+        }
+        String pluginKey = currentPluginKey();
+        long now = System.currentTimeMillis();
+        WarmContext context;
+        while ((context = idle.pollFirst()) != null) {
+            if (isUsable(context, pluginKey, now)) {
+                hits.increment();
+                log.debug("领取预热实例: id={}, idle={}", context.getId(), idle.size());
+                return context;
+            }
+            log.debug("丢弃失效的预热实例: id={}", context.getId());
+            release(context);
+        }
+        misses.increment();
+        return null;
+    }
+    
+    /**
+     * 按当前已使用数量补充或收缩空闲实例
+     * 只由补充任务调用
+     * 
+     * @param used 已创建的浏览器实例数
+     * @return 本周期创建的实例数
+     */
+    public synchronized int refill(int used) {
+        if (!enabled) {
+            return 0;
+        }
+        evictUnusable();
+        int target = getTargetSize(used);
+        // 剩余容量不足时释放最新创建的实例
+        while (idle.size() > target) {
+            WarmContext context = idle.pollLast();
+            if (context != null) {
+                release(context);
+            }
+        }
+        int created = 0;
+        while (idle.size() < target && created < refillBatch) {
+            WarmContext context = createContext();
+            if (context == null) {
+                break;
+            }
+            idle.offerLast(context);
+            created++;
+        }
+        if (created > 0) {
+            log.debug("补充预热实例: created={}, idle={}, target={}", created, idle.size(), target);
+        }
+        return created;
+    }
+    
+    /**
+     * 目标空闲实例数：容量乘以比例（向上取整），不超过最大值和剩余容量
+     * 
+     * @param used 已创建的浏览器实例数
+     */
+    int getTargetSize(int used) {
+        int bySize = Math.min(maxSize, (int) Math.ceil(cap * sizeRatio));
+        return Math.max(0, Math.min(bySize, cap - used));
+    }
+    
+    private WarmContext createContext() {
+        WarmCallback callback = new WarmCallback();
+        MuenDriver driver = pluginManage.createDriver(callback);
+        if (driver == null) {
+            return null;
+        }
+        return new WarmContext("warm-" + sequence.incrementAndGet(), driver, callback, currentPluginKey());
+    }
+    
+    private void evictUnusable() {
+        String pluginKey = currentPluginKey();
+        long now = System.currentTimeMillis();
+        Iterator<WarmContext> iterator = idle.iterator();
+        while (iterator.hasNext()) {
+            WarmContext context = iterator.next();
+            if (!isUsable(context, pluginKey, now)) {
+                iterator.remove();
+                log.debug("丢弃失效的预热实例: id={}", context.getId());
+                release(context);
+            }
+        }
+    }
+    
+    /**
+     * 释放不再使用的预热实例，包括已领取但创建流程被取消的实例
+     * 解除用户回调绑定后由插件管理释放驱动
+     * 
+     * @param context 预热实例
+     */
+    public void release(WarmContext context) {
+        context.callback.bind(null);
+        pluginManage.releaseDriver(context.muenDriver);
+    }
+    
+    private boolean isUsable(WarmContext context, String pluginKey, long now) {
+        return context.getPluginKey().equals(pluginKey) && now - context.getCreatedAt() < maxIdleMillis;
+    }
+    
+    /**
+     * 插件标识，插件重新加载或版本变化后之前创建的驱动实例不再使用
+     */
+    private String currentPluginKey() {
+        PluginActive active = pluginManage.getPluginActive();
+        if (active == null) {
+            return "";
+        }
+        return active.getName() + ":" + active.getVersion() + ":" + active.getLoadTime();
+    }
+    
+    /**
+     * 当前空闲实例数
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+    
+    /**
+     * 领取统计并清零
+     */
+    public String metricsAndReset() {
+        return String.format("idle=%d, hits=%d, misses=%d", idle.size(), hits.sumThenReset(),
+                misses.sumThenReset());
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        int size = 0;
+        WarmContext context;
+        while ((context = idle.pollFirst()) != null) {
+            release(context);
+            size++;
+        }
+        log.info("预热池已关闭，释放空闲实例: {}", size);
+    }
+    
+    /**
+     * 预热实例
+     */
+    public static final class WarmContext {
+        private final String id;
+        private final MuenDriver muenDriver;
+        private final WarmCallback callback;
+        private final String pluginKey;
+        private final long createdAt = System.currentTimeMillis();
+        
+        WarmContext(String id, MuenDriver muenDriver, WarmCallback callback, String pluginKey) {
+            this.id = id;
+            this.muenDriver = muenDriver;
+            this.callback = callback;
+            this.pluginKey = pluginKey;
+        }
+        
+        /**
+         * 绑定用户回调，之后驱动的所有回调转发给该用户
+         * 
+         * @param userCallback 用户回调
+         * @return 驱动实例
+         */
+        public MuenDriver bind(HWCallback userCallback) {
+            callback.bind(userCallback);
+            return muenDriver;
+        }
+        
+        public String getId() {
+            return id;
+        }
+        
+        String getPluginKey() {
+            return pluginKey;
+        }
+        
+        long getCreatedAt() {
+            return createdAt;
+        }
+    }
+    
+    /**
+     * 可延迟绑定用户的回调
+     * 绑定前驱动不应产生回调，如有则按失败处理
+     */
+    static final class WarmCallback implements HWCallback {
+        private volatile HWCallback target;
+        
+        void bind(HWCallback userCallback) {
+            this.target = userCallback;
+        }
+        
+        @Override
+        public String getConfig(String configUrl) {
+            HWCallback current = target;
+            return current != null ? current.getConfig(configUrl) : "{}";
+        }
+        
+        @Override
+        public boolean send(byte[] data) {
+            HWCallback current = target;
+            return current != null && current.send(data);
+        }
+        
+        @Override
+        public String address() {
+            HWCallback current = target;
+            return current != null ? current.address() : null;
+        }
+        
+        @Override
+        public void log(String eventType, Object eventData) {
+            HWCallback current = target;
+            if (current != null) {
+                current.log(eventType, eventData);
+            } else {
+                log.debug("预热实例未绑定用户，忽略事件: eventType={}", eventType);
+            }
+        }
+        
+        @Override
+        public boolean sendMessageToWebscoket(String message) {
+            HWCallback current = target;
+            return current != null && current.sendMessageToWebscoket(message);
+        }
+        
+        @Override
+        public boolean getFile(String remotePath, String localPath) {
+            HWCallback current = target;
+            return current != null && current.getFile(remotePath, localPath);
+        }
+        
+        @Override
+        public boolean uploadFile(String localPath, String remotePath) {
+            HWCallback current = target;
+            return current != null && current.uploadFile(localPath, remotePath);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.huawei.browsergateway.service.impl;
 
 import com.huawei.browsergateway.common.enums.ErrorCodeEnum;
+import com.huawei.browsergateway.common.utils.KeyedLock;
+import com.huawei.browsergateway.common.utils.LatencyHistogram;
 import com.huawei.browsergateway.common.utils.UserIdUtil;
 import com.huawei.browsergateway.entity.browser.BrowserStateMachine;
 import com.huawei.browsergateway.entity.browser.UserChrome.BrowserStatus;
@@ -17,6 +19,7 @@ import com.huawei.browsergateway.sdk.muen.MuenDriver;
 import com.huawei.browsergateway.driver.ChromeDriverProxy;
 import com.huawei.browsergateway.tcpserver.control.ControlClientSet;
 import com.huawei.browsergateway.tcpserver.media.MediaClientSet;
+import com.huawei.browsergateway.websocket.media.KeyframeCache;
 import com.huawei.browsergateway.adapter.interfaces.ServiceManagementAdapter;
 import com.huawei.browsergateway.entity.report.ServiceReport;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -25,13 +28,27 @@ import java.nio.file.Paths;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * 浏览器管理服务实现类
@@ -59,12 +76,25 @@ public class ChromeSetImpl implements IChromeSet {
     @Autowired(required = false)
     private MediaClientSet mediaClientSet;
     
+    @Autowired(required = false)
+    private KeyframeCache keyframeCache;
+    
     @Autowired(required = false)
     private UserDataManager userDataManager;
     
     @Autowired(required = false)
     private ServiceManagementAdapter serviceManagementAdapter;
     
+    @Autowired(required = false)
+    private BrowserWarmPool warmPool;
+    
+    @Autowired(required = false)
+    private UserDataUploadQueue userDataUploadQueue;
+    
+    // 容量准入控制，未注入时按映射表大小检查容量
+    @Autowired(required = false)
+    private AdmissionController admissionController;
+    
     @org.springframework.beans.factory.annotation.Value("${browsergw.server.address:127.0.0.1}")
     private String serverAddress;
     
@@ -93,6 +123,29 @@ public class ChromeSetImpl implements IChromeSet {
     @org.springframework.beans.factory.annotation.Value("${browsergw.report.ttl:120}")
     private Integer reportTtl;
     
+    // 创建流程单次等待全部阶段完成的超时时间（毫秒）
+    @org.springframework.beans.factory.annotation.Value("${browsergw.session.create-timeout:60000}")
+    private long createTimeoutMillis = 60000L;
+    
+    // 创建流程并行阶段执行器，未注入时各阶段在调用线程依次执行
+    @Autowired(required = false)
+    @Qualifier("createStageExecutor")
+    private ExecutorService createStageExecutor;
+    
+    // 创建流程各阶段耗时
+    private final LatencyHistogram userDataLatency = new LatencyHistogram();
+    private final LatencyHistogram driverLatency = new LatencyHistogram();
+    private final LatencyHistogram createLatency = new LatencyHistogram();
+    
+    // 按用户互斥创建和删除，不同用户互不竞争
+    private final KeyedLock sessionLocks = new KeyedLock();
+    
+    // 用户ID -> 进行中的创建，同一用户的并发创建等待同一结果
+    private final ConcurrentMap<String, CompletableFuture<UserChrome>> inFlightCreates = new ConcurrentHashMap<>();
+    
+    // 合并到进行中创建的次数
+    private final LongAdder coalescedCreates = new LongAdder();
+    
     // JSON序列化工具
     private static final ObjectMapper objectMapper = new ObjectMapper();
     
@@ -103,21 +156,90 @@ public class ChromeSetImpl implements IChromeSet {
     @Override
     public UserChrome create(InitBrowserRequest request) {
         log.info("创建浏览器实例: imei={}, imsi={}", request.getImei(), request.getImsi());
+        long createStart = System.nanoTime();
+        
+        // 1. 生成用户ID
+        String userId = UserIdUtil.generateUserId(request.getImei(), request.getImsi());
         
-        // 1. 容量检查（cap检查）
+        // 2. 同一用户的并发创建（如预打开与TCP登录同时到达）合并为一次，其余请求等待其结果
+        CompletableFuture<UserChrome> flight = new CompletableFuture<>();
+        CompletableFuture<UserChrome> inFlight = inFlightCreates.putIfAbsent(userId, flight);
+        if (inFlight != null) {
+            coalescedCreates.increment();
+            log.info("用户浏览器实例正在创建，等待其完成: userId={}", userId);
+            return awaitInFlight(userId, inFlight);
+        }
+        try {
+            UserChrome userChrome = sessionLocks.withLock(userId, () -> doCreate(userId, request, createStart));
+            flight.complete(userChrome);
+            return userChrome;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightCreates.remove(userId, flight);
+        }
+    }
+    
+    /**
+     * 等待同一用户进行中的创建完成
+     */
+    private UserChrome awaitInFlight(String userId, CompletableFuture<UserChrome> inFlight) {
+        try {
+            return inFlight.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new BusinessException(ErrorCodeEnum.BROWSER_CREATE_FAILED,
+                String.format("创建浏览器实例失败: %s", e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCodeEnum.BROWSER_CREATE_FAILED,
+                String.format("等待创建浏览器实例被中断: userId=%s", userId));
+        }
+    }
+    
+    /**
+     * 为新用户预占容量名额，容量已满时在有界队列中等待
+     * 
+     * @throws RuntimeException 容量不足
+     */
+    private void admit(String userId) {
+        if (admissionController != null) {
+            if (!admissionController.acquire(userId)) {
+                log.error("容量不足，无法创建新实例: userId={}, used={}, waiting={}", userId,
+                    admissionController.getUsed(), admissionController.getWaiting());
+                throw new RuntimeException("cap is not enough!");
+            }
+            return;
+        }
         if (reportCap != null && userChromeMap.size() >= reportCap) {
             log.error("容量不足，无法创建新实例: cap={}, current size={}", reportCap, userChromeMap.size());
             throw new RuntimeException("cap is not enough!");
         }
-        
-        // 2. 生成用户ID
-        String userId = UserIdUtil.generateUserId(request.getImei(), request.getImsi());
-        
-        // 3. 检查现有实例
+    }
+    
+    /**
+     * 归还用户占用的容量名额
+     */
+    private void releaseSlot(String userId) {
+        if (admissionController != null) {
+            admissionController.release(userId);
+        }
+    }
+    
+    /**
+     * 持有用户锁创建浏览器实例
+     */
+    private UserChrome doCreate(String userId, InitBrowserRequest request, long createStart) {
+        // 3. 检查现有实例：已存在时先删除并沿用其容量名额，否则预占名额（cap检查）
         UserChrome existingChrome = userChromeMap.get(userId);
         if (existingChrome != null) {
             log.warn("用户浏览器实例已存在，先删除: userId={}", userId);
-            delete(userId);
+            doDelete(userId, false);
+        } else {
+            admit(userId);
         }
         
         // 4. 创建UserChrome对象（初始状态为INITIALIZING）
@@ -129,44 +251,23 @@ public class ChromeSetImpl implements IChromeSet {
             BrowserStateMachine.transition(userChrome, BrowserStatus.CREATING, "开始创建浏览器实例");
         } catch (IllegalStateException e) {
             log.error("状态转换失败: userId={}, error={}", userId, e.getMessage(), e);
+            releaseSlot(userId);
             throw new BusinessException(ErrorCodeEnum.BROWSER_CREATE_FAILED, 
                 String.format("创建浏览器实例失败: 状态转换失败 - %s", e.getMessage()));
         }
         
         try {
-            // 6. 下载用户数据（如果存在）
-            String userDataPath = Paths.get(workspace, userId).toString();
-            if (userDataManager != null) {
-                try {
-                    log.info("开始下载用户数据: userId={}, targetPath={}", userId, userDataPath);
-                    String downloadedPath = userDataManager.downloadUserData(userId, userDataPath, serverAddress);
-                    if (downloadedPath != null) {
-                        log.info("用户数据下载成功: userId={}, path={}", userId, downloadedPath);
-                    } else {
-                        log.info("远程用户数据不存在，使用新数据: userId={}", userId);
-                    }
-                } catch (Exception e) {
-                    log.warn("下载用户数据失败，继续创建流程: userId={}", userId, e);
-                    // 下载失败不影响创建流程，继续执行
-                }
-            } else {
-                log.warn("UserDataManager未注入，跳过用户数据下载: userId={}", userId);
-            }
-            
-            // 7. 检查插件状态并加载插件（如果需要）
-            MuenDriver muenDriver = null;
-            // 使用接口方法创建驱动实例（内部会自动创建callback）
-            muenDriver = pluginManage.createDriver(userId);
-            if (muenDriver == null) {
-                log.warn("MuenDriver创建失败，继续创建浏览器实例: userId={}", userId);
-            } else {
-                log.info("MuenDriver创建成功: userId={}", userId);
-            }
-            
-            // 8. 创建浏览器驱动实例（ChromeDriverProxy）
-            // 根据Moon SDK架构，ChromeDriver可能由MuenDriver内部管理
-            // 这里创建ChromeDriverProxy作为代理，提供统一的访问接口
-            ChromeDriverProxy chromeDriver = createChromeDriverProxy(userId, muenDriver, request);
+            // 6~8. 相互独立的阶段并行执行：下载用户数据；创建MuenDriver和浏览器驱动代理
+            // 任一阶段失败或超时时取消其余阶段
+            CompletableFuture<Void> userDataStage = runStage(userDataLatency, () -> {
+                downloadUserData(userId);
+                return null;
+            }, null);
+            CompletableFuture<CreatedDrivers> driverStage = runStage(driverLatency,
+                () -> createDrivers(userId, request), this::releaseDrivers);
+            CreatedDrivers drivers = awaitStages(userId, driverStage, userDataStage);
+            MuenDriver muenDriver = drivers.muenDriver;
+            ChromeDriverProxy chromeDriver = drivers.chromeDriver;
             if (chromeDriver != null) {
                 userChrome.setChromeDriver(chromeDriver);
                 log.info("浏览器驱动创建成功: userId={}", userId);
@@ -191,6 +292,7 @@ public class ChromeSetImpl implements IChromeSet {
             // 13. 创建后立即上报使用数量
             reportUsed();
             
+            createLatency.record(System.nanoTime() - createStart);
             log.info("浏览器实例创建成功: userId={}, status={}", userId, userChrome.getStatus());
             return userChrome;
             
@@ -207,8 +309,9 @@ public class ChromeSetImpl implements IChromeSet {
                 log.warn("状态转换到错误状态失败: userId={}, error={}", userId, stateException.getMessage());
             }
             
-            // 从映射表中移除（如果已添加）
+            // 从映射表中移除（如果已添加）并归还名额
             userChromeMap.remove(userId);
+            releaseSlot(userId);
             
             throw e;
         } catch (Exception e) {
@@ -222,8 +325,9 @@ public class ChromeSetImpl implements IChromeSet {
                 log.warn("状态转换到错误状态失败: userId={}, error={}", userId, stateException.getMessage());
             }
             
-            // 从映射表中移除（如果已添加）
+            // 从映射表中移除（如果已添加）并归还名额
             userChromeMap.remove(userId);
+            releaseSlot(userId);
             
             throw new BusinessException(ErrorCodeEnum.BROWSER_CREATE_FAILED, 
                 String.format("创建浏览器实例失败: %s", e.getMessage()));
@@ -237,6 +341,21 @@ public class ChromeSetImpl implements IChromeSet {
     
     @Override
     public void delete(String userId) {
+        sessionLocks.lock(userId);
+        try {
+            doDelete(userId, true);
+        } finally {
+            sessionLocks.unlock(userId);
+        }
+    }
+    
+    /**
+     * 持有用户锁删除浏览器实例
+     * 
+     * @param userId 用户ID
+     * @param releaseSlot 是否归还容量名额，同一用户重新创建时沿用名额不归还
+     */
+    private void doDelete(String userId, boolean releaseSlot) {
         log.info("删除浏览器实例: userId={}", userId);
         
         UserChrome userChrome = userChromeMap.get(userId);
@@ -260,25 +379,22 @@ public class ChromeSetImpl implements IChromeSet {
             if (mediaClientSet != null) {
                 mediaClientSet.removeClient(userId);
             }
-            
-            // 4. 上传用户数据（在关闭实例前）
-            String userDataPath = Paths.get(workspace, userId).toString();
-            if (userDataManager != null) {
-                try {
-                    log.info("开始上传用户数据: userId={}, path={}", userId, userDataPath);
-                    userDataManager.uploadUserData(userId, userDataPath, serverAddress);
-                    log.info("用户数据上传成功: userId={}", userId);
-                } catch (Exception e) {
-                    log.error("上传用户数据失败，继续删除流程: userId={}", userId, e);
-                    // 上传失败不影响删除流程，继续执行
-                }
-            } else {
-                log.warn("UserDataManager未注入，跳过用户数据上传: userId={}", userId);
+            if (keyframeCache != null) {
+                keyframeCache.remove(userId);
             }
             
-            // 5. 关闭浏览器实例（会关闭浏览器驱动、插件驱动等）
+            // 3. 关闭浏览器实例（会关闭浏览器驱动、插件驱动等），之后用户数据不再变化
             userChrome.closeInstance();
             
+            // 4. 从映射表中移除并立即上报使用数量，不等待用户数据上传即释放容量
+            if (userChromeMap.remove(userId, userChrome) && releaseSlot) {
+                releaseSlot(userId);
+            }
+            reportUsed();
+            
+            // 5. 上传用户数据
+            uploadUserData(userId);
+            
             // 6. 清理临时文件
             try {
                 java.nio.file.Path tempUserPath = Paths.get(workspace, userId);
@@ -297,18 +413,14 @@ public class ChromeSetImpl implements IChromeSet {
                 log.warn("状态转换到CLOSED失败: userId={}, error={}", userId, e.getMessage());
             }
             
-            // 8. 从映射表中移除
-            userChromeMap.remove(userId);
-            
-            // 9. 删除后立即上报使用数量
-            reportUsed();
-            
             log.info("浏览器实例删除完成: userId={}", userId);
             
         } catch (Exception e) {
             log.error("删除浏览器实例失败: userId={}, error={}", userId, e.getMessage(), e);
             // 即使失败也要从映射表中移除，避免内存泄漏
-            userChromeMap.remove(userId);
+            if (userChromeMap.remove(userId) != null && releaseSlot) {
+                releaseSlot(userId);
+            }
             // 删除操作失败不抛出异常，只记录日志，避免影响其他操作
             log.warn("删除浏览器实例失败，已从映射表中移除: userId={}", userId);
         }
@@ -383,14 +495,20 @@ public class ChromeSetImpl implements IChromeSet {
     public void deleteForRestart(String userId) {
         log.info("为重启删除实例: userId={}", userId);
         
-        UserChrome userChrome = userChromeMap.remove(userId);
-        if (userChrome != null) {
-            try {
-                // 只关闭连接，不删除用户数据
-                userChrome.closeApp();
-            } catch (Exception e) {
-                log.error("关闭浏览器实例失败: userId={}", userId, e);
+        sessionLocks.lock(userId);
+        try {
+            UserChrome userChrome = userChromeMap.remove(userId);
+            if (userChrome != null) {
+                releaseSlot(userId);
+                try {
+                    // 只关闭连接，不删除用户数据
+                    userChrome.closeApp();
+                } catch (Exception e) {
+                    log.error("关闭浏览器实例失败: userId={}", userId, e);
+                }
             }
+        } finally {
+            sessionLocks.unlock(userId);
         }
     }
     
@@ -439,6 +557,229 @@ public class ChromeSetImpl implements IChromeSet {
         }
     }
     
+    /**
+     * 下载用户数据（如果存在）
+     * 有待上传的本地数据时使用本地数据；下载失败不影响创建流程
+     */
+    private void downloadUserData(String userId) {
+        String userDataPath = Paths.get(workspace, userId).toString();
+        if (userDataManager == null) {
+            log.warn("UserDataManager未注入，跳过用户数据下载: userId={}", userId);
+            return;
+        }
+        try {
+            // 之前的实例销毁后仍在上传的数据比远程数据新，直接使用
+            if (userDataUploadQueue != null && userDataUploadQueue.restorePending(userId, userDataPath) != null) {
+                return;
+            }
+            log.info("开始下载用户数据: userId={}, targetPath={}", userId, userDataPath);
+            String downloadedPath = userDataManager.downloadUserData(userId, userDataPath, serverAddress);
+            if (downloadedPath != null) {
+                log.info("用户数据下载成功: userId={}, path={}", userId, downloadedPath);
+            } else {
+                log.info("远程用户数据不存在，使用新数据: userId={}", userId);
+            }
+        } catch (Exception e) {
+            log.warn("下载用户数据失败，继续创建流程: userId={}", userId, e);
+        }
+    }
+    
+    /**
+     * 上传用户数据
+     * 提交到异步上传队列后立即返回；未注入上传队列时同步上传。上传失败不影响删除流程
+     */
+    private void uploadUserData(String userId) {
+        String userDataPath = Paths.get(workspace, userId).toString();
+        if (userDataManager == null) {
+            log.warn("UserDataManager未注入，跳过用户数据上传: userId={}", userId);
+            return;
+        }
+        try {
+            if (userDataUploadQueue != null) {
+                userDataUploadQueue.submit(userId, userDataPath);
+                log.info("已提交用户数据上传: userId={}, path={}", userId, userDataPath);
+            } else {
+                log.info("开始上传用户数据: userId={}, path={}", userId, userDataPath);
+                userDataManager.uploadUserData(userId, userDataPath, serverAddress);
+                log.info("用户数据上传成功: userId={}", userId);
+            }
+        } catch (Exception e) {
+            log.error("上传用户数据失败，继续删除流程: userId={}", userId, e);
+        }
+    }
+    
+    /**
+     * 创建MuenDriver和浏览器驱动代理
+     * 优先领取预热的驱动实例，只绑定用户回调
+     */
+    private CreatedDrivers createDrivers(String userId, InitBrowserRequest request) {
+        MuenDriver muenDriver;
+        BrowserWarmPool.WarmContext warmContext = warmPool != null ? warmPool.claim() : null;
+        if (warmContext != null) {
+            muenDriver = warmContext.bind(createHWCallback(userId));
+            log.info("使用预热的MuenDriver: userId={}, warmId={}", userId, warmContext.getId());
+        } else {
+            // 使用接口方法创建驱动实例（内部会自动创建callback）
+            muenDriver = pluginManage.createDriver(userId);
+        }
+        if (muenDriver == null) {
+            log.warn("MuenDriver创建失败，继续创建浏览器实例: userId={}", userId);
+        } else {
+            log.info("MuenDriver创建成功: userId={}", userId);
+        }
+        
+        // 根据Moon SDK架构，ChromeDriver可能由MuenDriver内部管理
+        // 这里创建ChromeDriverProxy作为代理，提供统一的访问接口
+        ChromeDriverProxy chromeDriver = createChromeDriverProxy(userId, muenDriver, request);
+        return new CreatedDrivers(muenDriver, chromeDriver, warmContext);
+    }
+    
+    /**
+     * 关闭被取消的创建流程已创建的浏览器驱动，并释放其MuenDriver（领取的预热实例交还预热池释放）
+     */
+    private void releaseDrivers(CreatedDrivers drivers) {
+        if (drivers == null) {
+            return;
+        }
+        if (drivers.chromeDriver != null) {
+            drivers.chromeDriver.quit();
+        }
+        if (drivers.warmContext != null) {
+            warmPool.release(drivers.warmContext);
+        } else if (drivers.muenDriver != null) {
+            pluginManage.releaseDriver(drivers.muenDriver);
+        }
+    }
+    
+    /**
+     * 在阶段执行器上执行创建流程的一个阶段并记录耗时
+     * 阶段被取消时中断执行线程；取消后才完成的结果交给discard释放
+     * 
+     * @param latency 阶段耗时直方图
+     * @param task 阶段任务
+     * @param discard 释放被丢弃的结果，可为null
+     * @return 阶段结果
+     */
+    private <T> CompletableFuture<T> runStage(LatencyHistogram latency, Callable<T> task, Consumer<T> discard) {
+        CompletableFuture<T> stage = new CompletableFuture<>();
+        Runnable runner = () -> {
+            if (stage.isDone()) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                T result = task.call();
+                if (!stage.complete(result) && discard != null) {
+                    discard.accept(result);
+                }
+            } catch (Exception e) {
+                stage.completeExceptionally(e);
+            } finally {
+                latency.record(System.nanoTime() - start);
+            }
+        };
+        if (createStageExecutor == null) {
+            runner.run();
+            return stage;
+        }
+        try {
+            Future<?> future = createStageExecutor.submit(runner);
+            stage.whenComplete((result, e) -> {
+                if (stage.isCancelled()) {
+                    future.cancel(true);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            stage.completeExceptionally(e);
+        }
+        return stage;
+    }
+    
+    /**
+     * 等待驱动阶段和其他阶段全部完成
+     * 任一阶段失败时不再等待，与超时、中断一样取消全部阶段
+     * 
+     * @param userId 用户ID
+     * @param driverStage 驱动阶段
+     * @param others 其他阶段
+     * @return 驱动阶段的结果
+     */
+    private CreatedDrivers awaitStages(String userId, CompletableFuture<CreatedDrivers> driverStage,
+            CompletableFuture<?>... others) {
+        List<CompletableFuture<?>> stages = new ArrayList<>();
+        stages.add(driverStage);
+        Collections.addAll(stages, others);
+        CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+        for (CompletableFuture<?> stage : stages) {
+            stage.whenComplete((result, e) -> {
+                if (e != null) {
+                    firstFailure.completeExceptionally(e);
+                }
+            });
+        }
+        CompletableFuture<Void> all = CompletableFuture.allOf(stages.toArray(new CompletableFuture<?>[0]));
+        try {
+            CompletableFuture.anyOf(all, firstFailure).get(createTimeoutMillis, TimeUnit.MILLISECONDS);
+            return driverStage.join();
+        } catch (TimeoutException e) {
+            cancelStages(userId, stages, driverStage);
+            throw new BusinessException(ErrorCodeEnum.BROWSER_CREATE_FAILED,
+                String.format("创建浏览器实例超时: %dms", createTimeoutMillis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelStages(userId, stages, driverStage);
+            throw new BusinessException(ErrorCodeEnum.BROWSER_CREATE_FAILED, "创建浏览器实例被中断");
+        } catch (ExecutionException e) {
+            cancelStages(userId, stages, driverStage);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new BusinessException(ErrorCodeEnum.BROWSER_CREATE_FAILED,
+                String.format("创建浏览器实例失败: %s", cause.getMessage()));
+        }
+    }
+    
+    private void cancelStages(String userId, List<CompletableFuture<?>> stages,
+            CompletableFuture<CreatedDrivers> driverStage) {
+        log.warn("取消浏览器实例创建流程: userId={}", userId);
+        for (CompletableFuture<?> stage : stages) {
+            stage.cancel(true);
+        }
+        // 已完成的驱动阶段不会被取消，关闭其创建的驱动
+        driverStage.thenAccept(this::releaseDrivers);
+    }
+    
+    /**
+     * 创建流程各阶段耗时统计并清零
+     */
+    @Override
+    public String createMetricsAndReset() {
+        String metrics = String.format("userData[%s], driver[%s], total[%s], coalesced=%d",
+            userDataLatency.snapshotAndReset(), driverLatency.snapshotAndReset(), createLatency.snapshotAndReset(),
+            coalescedCreates.sumThenReset());
+        if (admissionController != null) {
+            metrics += String.format(", admission[%s]", admissionController.metricsAndReset());
+        }
+        return metrics;
+    }
+    
+    /**
+     * 驱动阶段的结果
+     */
+    private static final class CreatedDrivers {
+        private final MuenDriver muenDriver;
+        private final ChromeDriverProxy chromeDriver;
+        // 领取的预热实例，未使用预热池时为null
+        private final BrowserWarmPool.WarmContext warmContext;
+        
+        CreatedDrivers(MuenDriver muenDriver, ChromeDriverProxy chromeDriver, BrowserWarmPool.WarmContext warmContext) {
+            this.muenDriver = muenDriver;
+            this.chromeDriver = chromeDriver;
+            this.warmContext = warmContext;
+        }
+    }
+    
     /**
      * 上报已使用数量
      * 上报当前使用的浏览器实例数量到CSE
@@ -1,21 +1,47 @@
 package com.huawei.browsergateway.service.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huawei.browsergateway.common.Constants;
 import com.huawei.browsergateway.service.IRemote;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * 数据大小追踪器
  * 用于追踪和上报媒体流和控制流的数据大小
  * 对应存量代码中的DataSizeTracker类
+ * 
+ * 按用户、按方向（上行：终端/编码端到网关，下行：网关到终端）统计字节数和帧数，
+ * 计数使用LongAdder，IO线程并发记录时不争用同一缓存行；report()每个周期汇总全部用户后一次性上报
  */
 public class DataSizeTracker {
     
     private static final Logger log = LoggerFactory.getLogger(DataSizeTracker.class);
     
+    // 连续空闲该周期数后移除用户计数器
+    private static final int IDLE_PERIODS_BEFORE_EVICT = 2;
+    
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    
     private final IRemote remote;
     private final String type; // "media" 或 "control"
-    private long totalSize = 0;
+    private final LongAdder totalSize = new LongAdder();
+    
+    // 用户ID -> 流量计数器
+    private final ConcurrentMap<String, UserTraffic> users = new ConcurrentHashMap<>();
+    
+    // 上个周期移除的计数器，记录方可能在移除前已取得引用，下个周期再汇总一次后丢弃；只由上报线程访问
+    private List<UserTraffic> retired = new ArrayList<>();
+    
+    private long lastReportMillis = System.currentTimeMillis();
     
     public DataSizeTracker(IRemote remote, String type) {
         this.remote = remote;
@@ -29,9 +55,124 @@ public class DataSizeTracker {
      */
     public void track(long size) {
         if (size > 0) {
-            totalSize += size;
-            log.debug("追踪{}数据: size={}, total={}", type, size, totalSize);
+            totalSize.add(size);
+        }
+    }
+    
+    /**
+     * 记录用户上行的一帧数据
+     * 
+     * @param userId 用户ID
+     * @param size 数据大小（字节）
+     */
+    public void trackInbound(String userId, long size) {
+        if (userId == null || size < 0) {
+            return;
+        }
+        UserTraffic traffic = users.computeIfAbsent(userId, UserTraffic::new);
+        traffic.inBytes.add(size);
+        traffic.inFrames.increment();
+        totalSize.add(size);
+    }
+    
+    /**
+     * 记录用户下行的一帧数据
+     * 
+     * @param userId 用户ID
+     * @param size 数据大小（字节）
+     */
+    public void trackOutbound(String userId, long size) {
+        if (userId == null || size < 0) {
+            return;
+        }
+        UserTraffic traffic = users.computeIfAbsent(userId, UserTraffic::new);
+        traffic.outBytes.add(size);
+        traffic.outFrames.increment();
+        totalSize.add(size);
+    }
+    
+    /**
+     * 汇总本周期全部用户的流量并清零，通过IRemote一次性上报
+     * 只由上报任务单线程调用；无流量的用户不上报，连续空闲的用户计数器被移除，
+     * 移除后迟到的计数在下个周期合并回该用户
+     * 
+     * @return 本周期有流量的用户数
+     */
+    public synchronized int report() {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> records = new ArrayList<>();
+        foldRetired();
+        List<UserTraffic> evicted = new ArrayList<>();
+        users.forEach((userId, traffic) -> {
+            long inBytes = traffic.inBytes.sumThenReset();
+            long inFrames = traffic.inFrames.sumThenReset();
+            long outBytes = traffic.outBytes.sumThenReset();
+            long outFrames = traffic.outFrames.sumThenReset();
+            if (inFrames == 0 && outFrames == 0) {
+                // 连续空闲后移除，移除前已取得引用的记录方仍可能计数，由下个周期的foldRetired()合并
+                if (++traffic.idlePeriods >= IDLE_PERIODS_BEFORE_EVICT && users.remove(userId, traffic)) {
+                    evicted.add(traffic);
+                }
+                return;
+            }
+            traffic.idlePeriods = 0;
+            Map<String, Object> record = new LinkedHashMap<>();
+            record.put("userId", userId);
+            record.put("inBytes", inBytes);
+            record.put("inFrames", inFrames);
+            record.put("outBytes", outBytes);
+            record.put("outFrames", outFrames);
+            records.add(record);
+        });
+        retired = evicted;
+        long periodMillis = now - lastReportMillis;
+        lastReportMillis = now;
+        if (records.isEmpty()) {
+            return 0;
+        }
+        
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("type", type);
+        data.put("periodMillis", periodMillis);
+        data.put("userCount", records.size());
+        data.put("users", records);
+        if (remote == null) {
+            log.debug("IRemote未注入，跳过{}流量上报: users={}", type, records.size());
+            return records.size();
         }
+        try {
+            String dataJson = objectMapper.writeValueAsString(data);
+            if (Constants.TCP_MEDIA.equals(type)) {
+                remote.sendTrafficMedia(dataJson);
+            } else {
+                remote.sendTrafficControl(dataJson);
+            }
+            log.debug("上报{}流量统计: users={}", type, records.size());
+        } catch (Exception e) {
+            log.error("上报{}流量统计失败: users={}", type, records.size(), e);
+        }
+        return records.size();
+    }
+    
+    /**
+     * 将上个周期移除的计数器上迟到的计数合并回当前用户计数器，随本周期上报
+     */
+    private void foldRetired() {
+        for (UserTraffic late : retired) {
+            long inBytes = late.inBytes.sumThenReset();
+            long inFrames = late.inFrames.sumThenReset();
+            long outBytes = late.outBytes.sumThenReset();
+            long outFrames = late.outFrames.sumThenReset();
+            if (inFrames == 0 && outFrames == 0) {
+                continue;
+            }
+            UserTraffic traffic = users.computeIfAbsent(late.userId, UserTraffic::new);
+            traffic.inBytes.add(inBytes);
+            traffic.inFrames.add(inFrames);
+            traffic.outBytes.add(outBytes);
+            traffic.outFrames.add(outFrames);
+        }
+        retired = new ArrayList<>();
     }
     
     /**
@@ -40,14 +181,23 @@ public class DataSizeTracker {
      * @return 总数据大小（字节）
      */
     public long getTotalSize() {
-        return totalSize;
+        return totalSize.sum();
+    }
+    
+    /**
+     * 当前有计数器的用户数
+     */
+    public int getUserCount() {
+        return users.size();
     }
     
     /**
      * 重置计数器
      */
-    public void reset() {
-        totalSize = 0;
+    public synchronized void reset() {
+        totalSize.reset();
+        users.clear();
+        retired = new ArrayList<>();
     }
     
     /**
@@ -58,4 +208,21 @@ public class DataSizeTracker {
     public String getType() {
         return type;
     }
+    
+    /**
+     * 单个用户的流量计数
+     */
+    private static final class UserTraffic {
+        final String userId;
+        final LongAdder inBytes = new LongAdder();
+        final LongAdder inFrames = new LongAdder();
+        final LongAdder outBytes = new LongAdder();
+        final LongAdder outFrames = new LongAdder();
+        // 连续无流量的上报周期数，只由上报线程访问
+        int idlePeriods;
+        
+        UserTraffic(String userId) {
+            this.userId = userId;
+        }
+    }
 }
@@ -275,6 +275,37 @@ public class PluginManageImpl implements IPluginManage {
         }
     }
     
+    @Override
+    public MuenDriver createDriver(HWCallback callback) {
+        MuenPluginClassLoader classLoader = muenPluginClassLoader;
+        if (classLoader == null) {
+            log.debug("插件未加载，无法创建驱动实例");
+            return null;
+        }
+        try {
+            return classLoader.createDriverInstance(callback);
+        } catch (Exception e) {
+            log.error("创建驱动实例异常", e);
+            return null;
+        }
+    }
+    
+    @Override
+    public void releaseDriver(MuenDriver driver) {
+        if (driver == null) {
+            return;
+        }
+        driverCache.values().remove(driver);
+        if (driver instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) driver).close();
+            } catch (Exception e) {
+                log.warn("关闭驱动实例失败", e);
+            }
+        }
+        log.debug("驱动实例已释放: {}", driver.getClass().getName());
+    }
+    
     /**
      * 为用户创建回调实例
      * 
@@ -17,6 +17,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -196,6 +197,36 @@ public class RemoteImpl implements IRemote {
         }
     }
     
+    @Override
+    public void handleEvents(List<byte[]> receivedControlPackets, String userId) {
+        if (receivedControlPackets == null || receivedControlPackets.isEmpty()) {
+            return;
+        }
+        log.debug("批量处理浏览器事件: userId={}, count={}", userId, receivedControlPackets.size());
+        
+        UserChrome userChrome = chromeSet.get(userId);
+        if (userChrome == null) {
+            log.warn("浏览器实例不存在: userId={}", userId);
+            return;
+        }
+        MuenDriver muenDriver = userChrome.getMuenDriver();
+        if (muenDriver == null) {
+            log.warn("MuenDriver不存在，无法处理事件: userId={}", userId);
+            return;
+        }
+        
+        com.huawei.browsergateway.sdk.muen.HWContext hwContext = new com.huawei.browsergateway.sdk.muen.HWContext();
+        hwContext.setChromeDriver(userChrome.getChromeDriver());
+        for (byte[] packets : receivedControlPackets) {
+            // 单个事件失败不影响同批后续事件
+            try {
+                muenDriver.handle(hwContext, packets);
+            } catch (Exception e) {
+                log.error("处理浏览器事件失败: userId={}", userId, e);
+            }
+        }
+    }
+    
     @Override
     public void fallback(String sessionID) {
         log.info("回退页面: sessionID={}", sessionID);
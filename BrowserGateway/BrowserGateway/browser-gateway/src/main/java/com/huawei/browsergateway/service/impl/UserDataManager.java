@@ -72,61 +72,22 @@ public class UserDataManager {
         }
         
         try {
-            // 查找用户数据JSON文件
-            File userDataJsonFile = findUserDataJsonFile(userDataDir.toFile());
-            if (userDataJsonFile == null) {
-                log.warn("未找到用户数据JSON文件，尝试处理整个目录: {}", userDataPath);
-                // 如果找不到JSON文件，对整个目录进行脱敏处理
-                UserdataSlimmer.slimDirectory(userDataDir.toFile());
-            } else {
-                // 对JSON文件进行脱敏处理
-                log.info("对用户数据进行脱敏处理: {}", userDataJsonFile.getAbsolutePath());
-                UserdataSlimmer.slimInplace(userDataJsonFile);
-                
-                // 验证脱敏是否成功
-                if (!UserdataSlimmer.isSlimmed(userDataJsonFile)) {
-                    log.warn("用户数据脱敏验证失败，但继续上传: {}", userDataJsonFile.getAbsolutePath());
-                }
-            }
-            
             // 创建临时目录
             Path tempDir = Paths.get(tempPath, "upload", userId);
             Files.createDirectories(tempDir);
             
-            // 压缩用户数据
-            String compressedPath = tempDir.resolve(userId + USER_DATA_COMPRESSED_SUFFIX).toString();
-            
-            if (userDataJsonFile != null) {
-                // 压缩JSON文件
-                ZstdUtil.compressJson(userDataJsonFile.getAbsolutePath(), compressedPath);
-            } else {
-                // 压缩整个目录
-                // 先打包为tar，然后压缩（这里简化处理，直接压缩目录）
-                ZstdUtil.compress(userDataPath, compressedPath);
-            }
-            
-            // 构建远程路径
-            String remotePath = Constants.USER_DATA_PATH_PREFIX + userId + USER_DATA_COMPRESSED_SUFFIX;
-            
-            // 删除远程旧文件（如果存在）
-            if (fileStorageService.exist(remotePath)) {
-                log.info("删除远程旧文件: {}", remotePath);
-                fileStorageService.deleteFile(remotePath);
-            }
+            // 脱敏并压缩用户数据
+            Path compressedPath = tempDir.resolve(userId + USER_DATA_COMPRESSED_SUFFIX);
+            compressUserData(userId, userDataPath, compressedPath);
             
             // 上传压缩文件
-            String uploadedPath = fileStorageService.uploadFile(compressedPath, remotePath);
-            if (uploadedPath == null) {
-                throw new IOException("上传用户数据失败");
-            }
+            uploadCompressed(userId, compressedPath.toFile());
             
             // 清理临时文件
-            File compressedFile = new File(compressedPath);
+            File compressedFile = compressedPath.toFile();
             if (compressedFile.exists()) {
                 compressedFile.delete();
             }
-            
-            log.info("用户数据上传成功: userId={}, remotePath={}", userId, remotePath);
             return true;
             
         } catch (Exception e) {
@@ -135,6 +96,88 @@ public class UserDataManager {
         }
     }
     
+    /**
+     * 对用户数据脱敏后压缩到指定文件
+     * 调用方需保证用户数据目录存在
+     * 
+     * @param userId 用户ID
+     * @param userDataPath 用户数据目录路径
+     * @param compressedPath 压缩文件路径
+     * @throws IOException 压缩失败
+     */
+    public void compressUserData(String userId, String userDataPath, Path compressedPath) throws IOException {
+        Path userDataDir = Paths.get(userDataPath);
+        
+        // 查找用户数据JSON文件
+        File userDataJsonFile = findUserDataJsonFile(userDataDir.toFile());
+        if (userDataJsonFile == null) {
+            log.warn("未找到用户数据JSON文件，尝试处理整个目录: {}", userDataPath);
+            // 如果找不到JSON文件，对整个目录进行脱敏处理
+            UserdataSlimmer.slimDirectory(userDataDir.toFile());
+        } else {
+            // 对JSON文件进行脱敏处理
+            log.info("对用户数据进行脱敏处理: {}", userDataJsonFile.getAbsolutePath());
+            UserdataSlimmer.slimInplace(userDataJsonFile);
+            
+            // 验证脱敏是否成功
+            if (!UserdataSlimmer.isSlimmed(userDataJsonFile)) {
+                log.warn("用户数据脱敏验证失败，但继续上传: {}", userDataJsonFile.getAbsolutePath());
+            }
+        }
+        
+        if (userDataJsonFile != null) {
+            // 压缩JSON文件
+            ZstdUtil.compressJson(userDataJsonFile.getAbsolutePath(), compressedPath.toString());
+        } else {
+            // 压缩整个目录
+            // 先打包为tar，然后压缩（这里简化处理，直接压缩目录）
+            ZstdUtil.compress(userDataPath, compressedPath.toString());
+        }
+    }
+    
+    /**
+     * 上传已压缩的用户数据，覆盖远程旧文件
+     * 
+     * @param userId 用户ID
+     * @param compressedFile 压缩文件
+     * @throws IOException 上传失败
+     */
+    public void uploadCompressed(String userId, File compressedFile) throws IOException {
+        // 构建远程路径
+        String remotePath = Constants.USER_DATA_PATH_PREFIX + userId + USER_DATA_COMPRESSED_SUFFIX;
+        
+        // 删除远程旧文件（如果存在）
+        if (fileStorageService.exist(remotePath)) {
+            log.info("删除远程旧文件: {}", remotePath);
+            fileStorageService.deleteFile(remotePath);
+        }
+        
+        // 上传压缩文件
+        String uploadedPath = fileStorageService.uploadFile(compressedFile.getAbsolutePath(), remotePath);
+        if (uploadedPath == null) {
+            throw new IOException("上传用户数据失败");
+        }
+        log.info("用户数据上传成功: userId={}, remotePath={}", userId, remotePath);
+    }
+    
+    /**
+     * 将本地已压缩的用户数据解压到目标目录，代替从远程下载
+     * 
+     * @param userId 用户ID
+     * @param compressedFile 压缩文件
+     * @param targetPath 目标目录路径
+     * @return 本地用户数据路径
+     * @throws IOException 解压失败
+     */
+    public String restoreCompressed(String userId, File compressedFile, String targetPath) throws IOException {
+        Path targetDir = Paths.get(targetPath);
+        Files.createDirectories(targetDir);
+        String jsonFilePath = targetDir.resolve("userdata" + USER_DATA_JSON_SUFFIX).toString();
+        ZstdUtil.decompressJson(compressedFile.getAbsolutePath(), jsonFilePath);
+        log.info("使用本地待上传的用户数据: userId={}, localPath={}", userId, jsonFilePath);
+        return jsonFilePath;
+    }
+    
     /**
      * 下载用户数据
      * 流程：下载压缩文件 -> 解压 -> 返回本地路径
@@ -0,0 +1,296 @@
+package com.huawei.browsergateway.service.impl;
+
+import com.huawei.browsergateway.common.utils.KeyedSerialExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户数据异步上传队列
+ * 销毁浏览器实例时不在调用线程上传用户数据：脱敏压缩后写入本地暂存目录，再由后台线程上传，失败时重试
+ * 
+ * 暂存目录中的 {userId}.json.zst 即待上传记录，上传成功后删除；失败时由重试调度器延迟后重新提交到上传执行器，
+ * 服务重启或重试次数用尽后由定时任务重新提交。
+ * 同一用户的快照和上传按userId串行执行；同一用户再次创建实例时使用最新的本地快照，不从远程下载可能过期的数据
+ */
+@Component
+public class UserDataUploadQueue {
+    
+    private static final Logger log = LoggerFactory.getLogger(UserDataUploadQueue.class);
+    
+    private static final String SPOOL_SUFFIX = ".json.zst";
+    
+    private static final String TMP_SUFFIX = ".tmp";
+    
+    @Autowired
+    private UserDataManager userDataManager;
+    
+    @Autowired
+    @Qualifier("userDataUploadExecutor")
+    private KeyedSerialExecutor uploadExecutor;
+    
+    @Autowired
+    @Qualifier("userDataRetryScheduler")
+    private ScheduledExecutorService retryScheduler;
+    
+    @Value("${browsergw.userdata.spool-dir:/tmp/browsergateway/userdata/spool}")
+    private String spoolDir = "/tmp/browsergateway/userdata/spool";
+    
+    // 单次提交的最大上传次数
+    @Value("${browsergw.userdata.upload-max-attempts:3}")
+    private int maxAttempts = 3;
+    
+    // 首次重试的间隔（毫秒），之后每次翻倍
+    @Value("${browsergw.userdata.upload-retry-delay:1000}")
+    private long retryDelayMillis = 1000L;
+    
+    // 创建实例时等待待上传快照完成的最长时间（毫秒）
+    @Value("${browsergw.userdata.pending-wait-timeout:30000}")
+    private long pendingWaitMillis = 30000L;
+    
+    // 用户ID -> 最近一次提交的上传
+    private final ConcurrentMap<String, PendingUpload> pending = new ConcurrentHashMap<>();
+    
+    private final LongAdder uploaded = new LongAdder();
+    
+    private final LongAdder failed = new LongAdder();
+    
+    private final LongAdder reused = new LongAdder();
+    
+    @PostConstruct
+    public void init() {
+        try {
+            Files.createDirectories(Paths.get(spoolDir));
+        } catch (IOException e) {
+            log.error("创建用户数据暂存目录失败: {}", spoolDir, e);
+            return;
+        }
+        int resubmitted = resubmitSpooled();
+        if (resubmitted > 0) {
+            log.info("重新提交上次未完成的用户数据上传: {}", resubmitted);
+        }
+    }
+    
+    /**
+     * 提交用户数据上传，立即返回
+     * 用户ID不能作为文件名或队列已满时在调用线程同步上传
+     * 
+     * @param userId 用户ID
+     * @param userDataPath 用户数据目录路径
+     */
+    public void submit(String userId, String userDataPath) {
+        if (!isSpoolable(userId)) {
+            log.warn("用户ID不能作为暂存文件名，同步上传用户数据: userId={}", userId);
+            userDataManager.uploadUserData(userId, userDataPath, null);
+            return;
+        }
+        PendingUpload upload = new PendingUpload();
+        pending.put(userId, upload);
+        Runnable task = () -> snapshotAndUpload(userId, userDataPath, upload);
+        try {
+            uploadExecutor.execute(userId, task);
+        } catch (RejectedExecutionException e) {
+            log.warn("用户数据上传队列已满，同步上传: userId={}", userId);
+            task.run();
+        }
+    }
+    
+    /**
+     * 将用户待上传的最新数据恢复到目标目录
+     * 有已提交的上传时等待其快照完成；没有时使用上传失败后留在暂存目录的数据
+     * 
+     * @param userId 用户ID
+     * @param targetPath 目标目录路径
+     * @return 本地用户数据路径；没有待上传的数据或恢复失败返回null，调用方从远程下载
+     */
+    public String restorePending(String userId, String targetPath) {
+        if (!isSpoolable(userId)) {
+            return null;
+        }
+        PendingUpload upload = pending.get(userId);
+        Path spoolFile = spoolFile(userId);
+        if (upload != null) {
+            try {
+                spoolFile = upload.snapshot.get(pendingWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                log.warn("等待待上传的用户数据快照超时，从远程下载: userId={}", userId);
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        if (spoolFile == null || !Files.exists(spoolFile)) {
+            return null;
+        }
+        try {
+            String restored = userDataManager.restoreCompressed(userId, spoolFile.toFile(), targetPath);
+            reused.increment();
+            return restored;
+        } catch (IOException e) {
+            // 恢复期间上传完成并删除了暂存文件，远程已是最新数据
+            log.warn("恢复待上传的用户数据失败，从远程下载: userId={}", userId, e);
+            return null;
+        }
+    }
+    
+    /**
+     * 重新提交暂存目录中没有进行中上传的文件
+     * 
+     * @return 提交的文件数
+     */
+    public int resubmitSpooled() {
+        File[] files = new File(spoolDir).listFiles((dir, name) -> name.endsWith(SPOOL_SUFFIX));
+        if (files == null) {
+            return 0;
+        }
+        int count = 0;
+        for (File file : files) {
+            String userId = file.getName().substring(0, file.getName().length() - SPOOL_SUFFIX.length());
+            PendingUpload upload = new PendingUpload();
+            upload.snapshot.complete(file.toPath());
+            if (pending.putIfAbsent(userId, upload) != null) {
+                continue;
+            }
+            try {
+                uploadExecutor.execute(userId, () -> upload(userId, file.toPath(), upload, 1, retryDelayMillis));
+                count++;
+            } catch (RejectedExecutionException e) {
+                pending.remove(userId, upload);
+                log.warn("用户数据上传队列已满，等待下次重新提交: userId={}", userId);
+                break;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * 脱敏压缩到暂存目录后上传
+     */
+    private void snapshotAndUpload(String userId, String userDataPath, PendingUpload upload) {
+        Path spoolFile = spoolFile(userId);
+        try {
+            if (!Files.isDirectory(Paths.get(userDataPath))) {
+                log.info("用户数据目录不存在，跳过上传: userId={}, path={}", userId, userDataPath);
+                upload.snapshot.complete(null);
+                pending.remove(userId, upload);
+                return;
+            }
+            // 先写临时文件再改名，暂存目录中不会出现不完整的文件
+            Path tmpFile = Paths.get(spoolDir, userId + SPOOL_SUFFIX + TMP_SUFFIX);
+            Files.createDirectories(tmpFile.getParent());
+            userDataManager.compressUserData(userId, userDataPath, tmpFile);
+            Files.move(tmpFile, spoolFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            upload.snapshot.complete(spoolFile);
+        } catch (Exception e) {
+            log.error("用户数据快照失败: userId={}, path={}", userId, userDataPath, e);
+            failed.increment();
+            upload.snapshot.complete(null);
+            pending.remove(userId, upload);
+            return;
+        }
+        upload(userId, spoolFile, upload, 1, retryDelayMillis);
+    }
+    
+    /**
+     * 上传暂存文件，失败时按间隔翻倍延迟重试；重试次数用尽后保留暂存文件等待重新提交
+     * 
+     * @param attempt 本次是第几次上传
+     * @param delay 本次失败后的重试间隔（毫秒）
+     */
+    private void upload(String userId, Path spoolFile, PendingUpload upload, int attempt, long delay) {
+        // 同一用户之后的快照会覆盖暂存文件，只有最后一次提交需要上传
+        if (pending.get(userId) != upload) {
+            return;
+        }
+        try {
+            userDataManager.uploadCompressed(userId, spoolFile.toFile());
+            Files.deleteIfExists(spoolFile);
+            uploaded.increment();
+            pending.remove(userId, upload);
+            return;
+        } catch (Exception e) {
+            log.warn("上传用户数据失败: userId={}, attempt={}/{}", userId, attempt, maxAttempts, e);
+        }
+        if (attempt < maxAttempts
+                && scheduleRetry(userId, upload, () -> upload(userId, spoolFile, upload, attempt + 1, delay * 2), delay)) {
+            return;
+        }
+        failed.increment();
+        log.error("上传用户数据重试次数用尽，保留暂存文件等待重新提交: userId={}, file={}", userId, spoolFile);
+        pending.remove(userId, upload);
+    }
+    
+    /**
+     * 重试间隔到期后将上传重新提交到上传执行器，等待期间不占用上传线程
+     * 
+     * @return 是否已安排重试；调度器已关闭时返回false
+     */
+    private boolean scheduleRetry(String userId, PendingUpload upload, Runnable retry, long delay) {
+        try {
+            retryScheduler.schedule(() -> {
+                try {
+                    uploadExecutor.execute(userId, retry);
+                } catch (RejectedExecutionException e) {
+                    log.warn("用户数据上传队列已满，保留暂存文件等待重新提交: userId={}", userId);
+                    failed.increment();
+                    pending.remove(userId, upload);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+    
+    private Path spoolFile(String userId) {
+        return Paths.get(spoolDir, userId + SPOOL_SUFFIX);
+    }
+    
+    private static boolean isSpoolable(String userId) {
+        return userId != null && userId.matches("[A-Za-z0-9_-]+");
+    }
+    
+    /**
+     * 是否有进行中的上传
+     */
+    public boolean isPending(String userId) {
+        return pending.containsKey(userId);
+    }
+    
+    /**
+     * 上传统计并清零
+     */
+    public String metricsAndReset() {
+        return String.format("pending=%d, uploaded=%d, failed=%d, reused=%d", pending.size(),
+                uploaded.sumThenReset(), failed.sumThenReset(), reused.sumThenReset());
+    }
+    
+    /**
+     * 一次提交的上传，snapshot在暂存文件写入后完成（目录不存在或快照失败时为null）
+     */
+    private static final class PendingUpload {
+        private final CompletableFuture<Path> snapshot = new CompletableFuture<>();
+    }
+}
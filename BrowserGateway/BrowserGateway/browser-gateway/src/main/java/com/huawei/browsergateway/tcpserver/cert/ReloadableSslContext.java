@@ -0,0 +1,131 @@
+package com.huawei.browsergateway.tcpserver.cert;
+
+import com.huawei.browsergateway.config.TcpConfig;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.OpenSslSessionContext;
+import io.netty.handler.ssl.OpenSslSessionTicketKey;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSessionContext;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+
+/**
+ * 可热更新的TLS上下文
+ * 控制流和媒体流服务器共用，每个新连接建立时取当前上下文创建SslHandler；
+ * 证书更新后重新构建上下文，新握手使用新证书，已建立的会话不受影响，无需重启服务器
+ * 
+ * OpenSSL（netty-tcnative/BoringSSL）可用时优先使用，握手CPU开销明显低于JDK实现；
+ * 会话缓存和会话票据用于终端批量重连时的会话恢复，票据密钥在进程内固定，证书轮换后旧票据仍可恢复
+ */
+@Component
+public class ReloadableSslContext {
+    private static final Logger log = LoggerFactory.getLogger(ReloadableSslContext.class);
+    
+    @Autowired
+    private TcpConfig tcpConfig;
+    
+    private volatile SslContext current;
+    
+    // 会话票据密钥（名称、HMAC密钥、AES密钥各16字节），进程启动时随机生成
+    private OpenSslSessionTicketKey ticketKey;
+    
+    /**
+     * 获取当前TLS上下文
+     * 
+     * @return 当前上下文，证书未就绪时返回null
+     */
+    public SslContext current() {
+        return current;
+    }
+    
+    /**
+     * 从CertInfo重新构建TLS上下文
+     * 构建失败时保留旧上下文，已有服务继续可用
+     * 
+     * @return 是否更新成功
+     */
+    public synchronized boolean reload() {
+        CertInfo certInfo = CertInfo.getInstance();
+        if (!certInfo.isReady()) {
+            log.warn("证书未就绪，无法启用TLS");
+            return false;
+        }
+        
+        String caCert = certInfo.getCaContent();
+        String deviceCert = certInfo.getDeviceContent();
+        String privateKey = certInfo.getPrivateKey();
+        if (privateKey == null || privateKey.isEmpty()) {
+            log.warn("证书信息不完整，无法启用TLS");
+            return false;
+        }
+        
+        SslProvider provider = resolveProvider(tcpConfig.getSslProvider());
+        try {
+            SslContext context = SslContextBuilder.forServer(
+                    new ByteArrayInputStream(deviceCert.getBytes(StandardCharsets.UTF_8)),
+                    new ByteArrayInputStream(privateKey.getBytes(StandardCharsets.UTF_8))
+            ).trustManager(new ByteArrayInputStream(caCert.getBytes(StandardCharsets.UTF_8)))
+             .sslProvider(provider)
+             .sessionCacheSize(tcpConfig.getSslSessionCacheSize())
+             .sessionTimeout(tcpConfig.getSslSessionTimeout())
+             .build();
+            enableSessionTickets(context);
+            
+            current = context;
+            log.info("TLS上下文已更新: provider={}, 证书更新时间={}", provider, certInfo.getLastUpdateTime());
+            return true;
+        } catch (SSLException | IllegalArgumentException e) {
+            log.error("TLS上下文构建失败，继续使用旧证书", e);
+            return false;
+        }
+    }
+    
+    /**
+     * 根据配置选择TLS实现：auto（OpenSSL可用时优先）| openssl | jdk
+     */
+    static SslProvider resolveProvider(String configured) {
+        String value = configured == null ? "auto" : configured.trim().toLowerCase();
+        if ("jdk".equals(value)) {
+            return SslProvider.JDK;
+        }
+        if (OpenSsl.isAvailable()) {
+            return SslProvider.OPENSSL;
+        }
+        if ("openssl".equals(value)) {
+            log.warn("OpenSSL不可用，回退到JDK实现: cause={}", String.valueOf(OpenSsl.unavailabilityCause()));
+        }
+        return SslProvider.JDK;
+    }
+    
+    /**
+     * OpenSSL实现下启用会话票据（JDK 13+的JDK实现默认启用无状态会话恢复）
+     */
+    private void enableSessionTickets(SslContext context) {
+        SSLSessionContext sessionContext = context.sessionContext();
+        if (!(sessionContext instanceof OpenSslSessionContext)) {
+            return;
+        }
+        if (ticketKey == null) {
+            SecureRandom random = new SecureRandom();
+            byte[] name = new byte[OpenSslSessionTicketKey.NAME_SIZE];
+            byte[] hmacKey = new byte[OpenSslSessionTicketKey.HMAC_KEY_SIZE];
+            byte[] aesKey = new byte[OpenSslSessionTicketKey.AES_KEY_SIZE];
+            random.nextBytes(name);
+            random.nextBytes(hmacKey);
+            random.nextBytes(aesKey);
+            ticketKey = new OpenSslSessionTicketKey(name, hmacKey, aesKey);
+        }
+        OpenSslSessionContext openSslContext = (OpenSslSessionContext) sessionContext;
+        openSslContext.setTicketKeys(ticketKey);
+        openSslContext.setSessionCacheEnabled(true);
+    }
+}
@@ -17,7 +17,7 @@ import java.util.List;
 
 /**
  * 证书订阅组件
- * 负责订阅证书更新，并在证书更新时触发TCP服务器重启
+ * 负责订阅证书更新，并在证书更新时热更新TCP服务器的TLS上下文（不重启服务器，不断开已有连接）
  */
 @Component
 public class SubscribeCert {
@@ -33,6 +33,9 @@ public class SubscribeCert {
     @Autowired
     private MediaTcpServer mediaTcpServer;
     
+    @Autowired
+    private ReloadableSslContext sslContext;
+    
     @Value("${browsergw.cert.service-name:browsergw}")
     private String serviceName;
     
@@ -120,8 +123,8 @@ public class SubscribeCert {
                         deviceContent != null ? deviceContent.length() : 0,
                         privateKey != null ? privateKey.length() : 0);
                     
-                    // 重启TCP服务器以应用新证书
-                    restartTcpServers();
+                    // 热更新TLS上下文，新握手使用新证书
+                    reloadTls();
                     
                 } catch (Exception e) {
                     log.error("处理证书更新回调时发生异常", e);
@@ -143,49 +146,27 @@ public class SubscribeCert {
             certInfo.updateAll(caContent, deviceContent, privateKey);
             
             log.info("CertInfo初始化完成，证书就绪状态: {}", certInfo.isReady());
+            if (certInfo.isReady()) {
+                sslContext.reload();
+            }
         } catch (Exception e) {
             log.error("初始化CertInfo失败", e);
         }
     }
     
     /**
-     * 重启TCP服务器以应用新证书
+     * 热更新TLS上下文以应用新证书
+     * 已建立的连接继续使用原会话，新连接使用新证书握手；构建失败时保留旧证书
      */
-    private void restartTcpServers() {
-        log.info("开始重启TCP服务器以应用新证书，使用TLS: {}", useTls);
+    private void reloadTls() {
+        log.info("开始热更新TLS证书，使用TLS: {}", useTls);
         
-        try {
-            // 停止服务器
-            log.info("停止控制流TCP服务器");
-            controlTcpServer.stopServer();
-            
-            log.info("停止媒体流TCP服务器");
-            mediaTcpServer.stopServer();
-            
-            // 等待一段时间确保资源释放
-            Thread.sleep(1000);
-            
-            // 重新启动服务器
-            log.info("重启控制流TCP服务器");
-            controlTcpServer.startServer(useTls);
-            
-            log.info("重启媒体流TCP服务器");
-            mediaTcpServer.startServer(useTls);
-            
-            log.info("TCP服务器重启完成");
-            
-        } catch (InterruptedException e) {
-            log.error("重启TCP服务器时被中断", e);
-            Thread.currentThread().interrupt();
-        } catch (Exception e) {
-            log.error("重启TCP服务器失败", e);
-            // 即使重启失败，也尝试启动服务器（可能使用旧证书）
-            try {
-                controlTcpServer.startServer(useTls);
-                mediaTcpServer.startServer(useTls);
-            } catch (Exception ex) {
-                log.error("尝试启动TCP服务器失败", ex);
-            }
+        if (!sslContext.reload()) {
+            log.error("TLS证书热更新失败，继续使用旧证书");
+            return;
         }
+        controlTcpServer.setTlsEnabled(useTls);
+        mediaTcpServer.setTlsEnabled(useTls);
+        log.info("TLS证书热更新完成");
     }
 }
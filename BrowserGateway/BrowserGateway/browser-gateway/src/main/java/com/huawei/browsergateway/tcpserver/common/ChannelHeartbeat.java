@@ -0,0 +1,55 @@
+package com.huawei.browsergateway.tcpserver.common;
+
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+/**
+ * 连接心跳时间
+ * 以原始long保存在Channel属性上，更新心跳不再产生装箱对象和Map写入
+ * 
+ * 超时判定由pipeline中的IdleStateHandler按连接定时完成，无需定时全量扫描
+ */
+public final class ChannelHeartbeat {
+    
+    /**
+     * 连接上的心跳时间
+     */
+    public static final AttributeKey<ChannelHeartbeat> CHANNEL_HEARTBEAT = AttributeKey.valueOf("channelHeartbeat");
+    
+    // 最后心跳时间（纳秒）
+    private volatile long lastNanos;
+    
+    private ChannelHeartbeat(long lastNanos) {
+        this.lastNanos = lastNanos;
+    }
+    
+    /**
+     * 更新连接的心跳时间
+     * 
+     * @param channel 连接
+     */
+    public static void touch(Channel channel) {
+        long now = System.nanoTime();
+        Attribute<ChannelHeartbeat> attr = channel.attr(CHANNEL_HEARTBEAT);
+        ChannelHeartbeat heartbeat = attr.get();
+        if (heartbeat == null) {
+            heartbeat = attr.setIfAbsent(new ChannelHeartbeat(now));
+            if (heartbeat == null) {
+                return;
+            }
+        }
+        heartbeat.lastNanos = now;
+    }
+    
+    /**
+     * 获取连接的最后心跳时间
+     * 
+     * @param channel 连接
+     * @return 最后心跳时间（纳秒），从未更新过返回null
+     */
+    public static Long lastHeartbeat(Channel channel) {
+        ChannelHeartbeat heartbeat = channel.attr(CHANNEL_HEARTBEAT).get();
+        return heartbeat != null ? heartbeat.lastNanos : null;
+    }
+}
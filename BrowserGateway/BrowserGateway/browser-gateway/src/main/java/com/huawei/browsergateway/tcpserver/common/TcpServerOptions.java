@@ -0,0 +1,41 @@
+package com.huawei.browsergateway.tcpserver.common;
+
+import com.huawei.browsergateway.config.TcpConfig;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.WriteBufferWaterMark;
+
+/**
+ * TLV服务器通用Socket选项
+ * 控制流和媒体流服务器共用，取值来自TcpConfig
+ */
+public final class TcpServerOptions {
+    
+    private TcpServerOptions() {
+    }
+    
+    /**
+     * 将TcpConfig中的调优参数应用到ServerBootstrap
+     * 
+     * @param bootstrap 服务端启动器
+     * @param tcpConfig TCP配置
+     */
+    public static void apply(ServerBootstrap bootstrap, TcpConfig tcpConfig) {
+        ByteBufAllocator allocator = tcpConfig.isPooledAllocator()
+                ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT;
+        
+        bootstrap.option(ChannelOption.SO_BACKLOG, tcpConfig.getBacklog())
+                .option(ChannelOption.ALLOCATOR, allocator)
+                .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .childOption(ChannelOption.TCP_NODELAY, tcpConfig.isTcpNoDelay())
+                .childOption(ChannelOption.ALLOCATOR, allocator)
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                        tcpConfig.getWriteBufferLowWaterMark(), tcpConfig.getWriteBufferHighWaterMark()))
+                .childOption(ChannelOption.RCVBUF_ALLOCATOR, new AdaptiveRecvByteBufAllocator(
+                        tcpConfig.getRecvBufferMin(), tcpConfig.getRecvBufferInitial(), tcpConfig.getRecvBufferMax()));
+    }
+}
@@ -0,0 +1,219 @@
+package com.huawei.browsergateway.tcpserver.common;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TCP服务器传输层实现
+ * 对应配置项 browsergw.tcp.transport：nio | epoll | io_uring
+ * 
+ * - NIO：JDK Selector，所有平台可用
+ * - EPOLL：Linux原生epoll，支持SO_REUSEPORT
+ * - IO_URING：Linux原生io_uring（netty incubator），通过反射加载，未引入或内核不支持时不可用
+ * 
+ * 所选传输不可用时按 IO_URING -> EPOLL -> NIO 顺序自动回退
+ */
+public enum TcpTransport {
+    NIO {
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+        
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads) {
+            return new NioEventLoopGroup(threads);
+        }
+        
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+        
+        @Override
+        public boolean supportsReusePort() {
+            return false;
+        }
+        
+        @Override
+        public void enableReusePort(ServerBootstrap bootstrap) {
+            log.warn("NIO传输忽略SO_REUSEPORT，按单个监听Channel绑定");
+        }
+    },
+    
+    EPOLL {
+        @Override
+        public boolean isAvailable() {
+            return Epoll.isAvailable();
+        }
+        
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads) {
+            return new EpollEventLoopGroup(threads);
+        }
+        
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+        
+        @Override
+        public boolean supportsReusePort() {
+            return true;
+        }
+        
+        @Override
+        public void enableReusePort(ServerBootstrap bootstrap) {
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+    },
+    
+    IO_URING {
+        private static final String PACKAGE = "io.netty.incubator.channel.uring.";
+        
+        @Override
+        public boolean isAvailable() {
+            try {
+                return (Boolean) Class.forName(PACKAGE + "IOUring").getMethod("isAvailable").invoke(null);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return false;
+            }
+        }
+        
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads) {
+            try {
+                return (EventLoopGroup) Class.forName(PACKAGE + "IOUringEventLoopGroup")
+                        .getConstructor(int.class).newInstance(threads);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("创建io_uring EventLoopGroup失败", e);
+            }
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public Class<? extends ServerChannel> serverChannelClass() {
+            try {
+                return (Class<? extends ServerChannel>) Class.forName(PACKAGE + "IOUringServerSocketChannel");
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("加载io_uring ServerSocketChannel失败", e);
+            }
+        }
+        
+        @Override
+        public boolean supportsReusePort() {
+            return true;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public void enableReusePort(ServerBootstrap bootstrap) {
+            try {
+                ChannelOption<Boolean> option = (ChannelOption<Boolean>) Class.forName(PACKAGE + "IOUringChannelOption")
+                        .getField("SO_REUSEPORT").get(null);
+                bootstrap.option(option, true);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("设置io_uring SO_REUSEPORT失败", e);
+            }
+        }
+    };
+    
+    private static final Logger log = LoggerFactory.getLogger(TcpTransport.class);
+    
+    /**
+     * 当前平台是否可用
+     */
+    public abstract boolean isAvailable();
+    
+    /**
+     * 创建事件循环组
+     * 
+     * @param threads 线程数，0表示使用Netty默认值（CPU核数*2）
+     */
+    public abstract EventLoopGroup newEventLoopGroup(int threads);
+    
+    /**
+     * 服务端Channel类型
+     */
+    public abstract Class<? extends ServerChannel> serverChannelClass();
+    
+    /**
+     * 是否支持SO_REUSEPORT
+     */
+    public abstract boolean supportsReusePort();
+    
+    /**
+     * 在ServerBootstrap上启用SO_REUSEPORT，不支持的传输只记录告警
+     */
+    public abstract void enableReusePort(ServerBootstrap bootstrap);
+    
+    /**
+     * 按配置解析传输层实现，不可用时自动回退
+     * 
+     * @param name 配置值：nio、epoll或io_uring
+     * @return 当前平台可用的传输层实现
+     */
+    public static TcpTransport resolve(String name) {
+        TcpTransport requested;
+        try {
+            requested = name == null || name.trim().isEmpty()
+                    ? NIO : valueOf(name.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            log.warn("未知的TCP传输类型: {}，使用NIO", name);
+            return NIO;
+        }
+        
+        for (int i = requested.ordinal(); i >= 0; i--) {
+            TcpTransport candidate = values()[i];
+            if (candidate.isAvailable()) {
+                if (candidate != requested) {
+                    log.warn("TCP传输{}不可用，回退到{}", requested, candidate);
+                }
+                return candidate;
+            }
+        }
+        return NIO;
+    }
+    
+    /**
+     * 绑定服务端口
+     * 启用SO_REUSEPORT时对同一端口绑定多次，每个监听Channel由boss组中不同的线程负责accept，
+     * 由内核在多个监听套接字之间分发新连接
+     * 
+     * @param bootstrap 已配置好的ServerBootstrap
+     * @param address 监听地址
+     * @param port 监听端口
+     * @param acceptors 监听Channel数量（仅在启用SO_REUSEPORT时大于1有效）
+     * @return 已绑定的监听Channel列表
+     */
+    public List<Channel> bind(ServerBootstrap bootstrap, String address, int port, int acceptors)
+            throws InterruptedException {
+        int count = supportsReusePort() ? Math.max(1, acceptors) : 1;
+        List<Channel> channels = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                channels.add(bootstrap.bind(address, port).sync().channel());
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            for (Channel channel : channels) {
+                channel.close();
+            }
+            throw e;
+        }
+        return channels;
+    }
+}
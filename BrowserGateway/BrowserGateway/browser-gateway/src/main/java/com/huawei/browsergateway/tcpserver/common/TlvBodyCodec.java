@@ -0,0 +1,249 @@
+package com.huawei.browsergateway.tcpserver.common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * TLV消息体二进制编解码器（BINARY格式）
+ * 消息体由若干嵌套字段TLV组成：Tag(1字节) + Length(2字节，大端序) + Value(N字节)
+ * 
+ * 字段按Schema定义：
+ * - 字符串字段：UTF-8编码
+ * - 整数字段：4字节大端序整数
+ * - 登录扩展字段（factory、platType等InitBrowserRequest字段）保存在Message的扩展字段中，键与JSON属性名相同
+ * 
+ * 解码直接从ByteBuf读取到Message对象，不经过中间Map；未知Tag跳过，便于后续扩展字段
+ */
+final class TlvBodyCodec {
+    private static final Logger log = LoggerFactory.getLogger(TlvBodyCodec.class);
+    
+    // 字段头长度：Tag(1字节) + Length(2字节)
+    private static final int FIELD_HEADER_LENGTH = 3;
+    
+    // 单个字段最大长度
+    private static final int MAX_FIELD_LENGTH = 0xFFFF;
+    
+    // 整数字段长度
+    private static final int INT_LENGTH = 4;
+    
+    /**
+     * 消息体字段Schema
+     */
+    enum Field {
+        IMEI(0x01, false, Message::getImei, (m, v) -> m.setImei((String) v)),
+        IMSI(0x02, false, Message::getImsi, (m, v) -> m.setImsi((String) v)),
+        LCD_WIDTH(0x03, true, Message::getLcdWidth, (m, v) -> m.setLcdWidth((Integer) v)),
+        LCD_HEIGHT(0x04, true, Message::getLcdHeight, (m, v) -> m.setLcdHeight((Integer) v)),
+        APP_TYPE(0x05, false, Message::getAppType, (m, v) -> m.setAppType((String) v)),
+        AUD_TYPE(0x06, false, Message::getAudType, (m, v) -> m.setAudType((String) v)),
+        TOKEN(0x07, false, Message::getToken, (m, v) -> m.setToken((String) v)),
+        SESSION_ID(0x08, false, Message::getSessionID, (m, v) -> m.setSessionID((String) v)),
+        FACTORY(0x09, false, "factory"),
+        DEV_TYPE(0x0A, false, "devType"),
+        EXT_TYPE(0x0B, false, "extType"),
+        PLAT_TYPE(0x0C, true, "platType"),
+        APPID(0x0D, true, "appid"),
+        DEVICE_TYPE(0x0E, true, "deviceType"),
+        CLIENT_LANGUAGE(0x0F, false, "clientLanguage"),
+        PLAY_MODE(0x10, true, "playMode"),
+        INNER_MEDIA_ENDPOINT(0x11, false, "innerMediaEndpoint");
+        
+        private static final Field[] BY_TAG = new Field[256];
+        
+        static {
+            for (Field field : values()) {
+                BY_TAG[field.tag] = field;
+            }
+        }
+        
+        final int tag;
+        final boolean integer;
+        final Function<Message, Object> getter;
+        final BiConsumer<Message, Object> setter;
+        // 扩展字段的键，标准字段为null
+        final String extension;
+        
+        Field(int tag, boolean integer, Function<Message, Object> getter, BiConsumer<Message, Object> setter) {
+            this(tag, integer, getter, setter, null);
+        }
+        
+        Field(int tag, boolean integer, String extension) {
+            this(tag, integer, extensionGetter(extension, integer), extensionSetter(extension), extension);
+        }
+        
+        Field(int tag, boolean integer, Function<Message, Object> getter, BiConsumer<Message, Object> setter,
+                String extension) {
+            this.tag = tag;
+            this.integer = integer;
+            this.getter = getter;
+            this.setter = setter;
+            this.extension = extension;
+        }
+        
+        static Field of(int tag) {
+            return BY_TAG[tag & 0xFF];
+        }
+        
+        /**
+         * 扩展字段的键是否由Schema定义
+         */
+        static boolean isExtension(String key) {
+            for (Field field : values()) {
+                if (key.equals(field.extension)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    private TlvBodyCodec() {
+    }
+    
+    /**
+     * 读取扩展字段，整数字段转换为Integer，字符串字段转换为String
+     */
+    private static Function<Message, Object> extensionGetter(String key, boolean integer) {
+        return message -> {
+            Object value = message.getFields() != null ? message.getFields().get(key) : null;
+            if (value == null) {
+                return null;
+            }
+            if (!integer) {
+                return value.toString();
+            }
+            return value instanceof Number ? ((Number) value).intValue() : Integer.valueOf(value.toString());
+        };
+    }
+    
+    /**
+     * 写入扩展字段
+     */
+    private static BiConsumer<Message, Object> extensionSetter(String key) {
+        return (message, value) -> {
+            if (message.getFields() == null) {
+                message.setFields(new HashMap<>());
+            }
+            message.getFields().put(key, value);
+        };
+    }
+    
+    /**
+     * 编码消息体为字节数组
+     * 先计算精确长度，一次分配，不产生中间对象
+     * 
+     * @param message 消息对象
+     * @return 消息体字节数组
+     */
+    static byte[] encode(Message message) {
+        byte[] body = new byte[encodedLength(message)];
+        ByteBuf out = Unpooled.wrappedBuffer(body);
+        out.writerIndex(0);
+        encode(message, out);
+        return body;
+    }
+    
+    /**
+     * 编码消息体到指定缓冲区
+     * 
+     * @param message 消息对象
+     * @param out 输出缓冲区
+     */
+    static void encode(Message message, ByteBuf out) {
+        for (Field field : Field.values()) {
+            Object value = field.getter.apply(message);
+            if (value == null) {
+                continue;
+            }
+            out.writeByte(field.tag);
+            if (field.integer) {
+                out.writeShort(INT_LENGTH);
+                out.writeInt((Integer) value);
+            } else {
+                String text = (String) value;
+                int valueLength = ByteBufUtil.utf8Bytes(text);
+                out.writeShort(valueLength);
+                ByteBufUtil.reserveAndWriteUtf8(out, text, valueLength);
+            }
+        }
+        
+        if (message.getFields() != null && log.isDebugEnabled()) {
+            for (String key : message.getFields().keySet()) {
+                if (!Field.isExtension(key)) {
+                    log.debug("BINARY格式不编码Schema未定义的扩展字段: {}", key);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 计算消息体编码后的长度
+     * 
+     * @param message 消息对象
+     * @return 编码长度
+     */
+    static int encodedLength(Message message) {
+        int length = 0;
+        for (Field field : Field.values()) {
+            Object value = field.getter.apply(message);
+            if (value == null) {
+                continue;
+            }
+            int valueLength = field.integer ? INT_LENGTH : ByteBufUtil.utf8Bytes((String) value);
+            if (valueLength > MAX_FIELD_LENGTH) {
+                throw new IllegalArgumentException("字段过长: " + field + ", length=" + valueLength);
+            }
+            length += FIELD_HEADER_LENGTH + valueLength;
+        }
+        return length;
+    }
+    
+    /**
+     * 从ByteBuf解码消息体到Message对象
+     * 不修改body的读索引
+     * 
+     * @param type 消息类型
+     * @param body 消息体
+     * @return 消息对象
+     */
+    static Message decode(short type, ByteBuf body) {
+        Message message = new Message();
+        message.setType(type);
+        
+        int index = body.readerIndex();
+        int end = body.writerIndex();
+        while (index < end) {
+            if (end - index < FIELD_HEADER_LENGTH) {
+                throw new IllegalArgumentException("消息体字段头不完整: offset=" + (index - body.readerIndex()));
+            }
+            int tag = body.getUnsignedByte(index);
+            int length = body.getUnsignedShort(index + 1);
+            index += FIELD_HEADER_LENGTH;
+            if (end - index < length) {
+                throw new IllegalArgumentException("消息体字段长度越界: tag=" + tag + ", length=" + length);
+            }
+            
+            Field field = Field.of(tag);
+            if (field == null) {
+                log.debug("跳过未知字段: tag={}, length={}", tag, length);
+            } else if (field.integer) {
+                if (length != INT_LENGTH) {
+                    throw new IllegalArgumentException("整数字段长度错误: " + field + ", length=" + length);
+                }
+                field.setter.accept(message, body.getInt(index));
+            } else {
+                field.setter.accept(message, body.toString(index, length, StandardCharsets.UTF_8));
+            }
+            index += length;
+        }
+        return message;
+    }
+}
@@ -0,0 +1,135 @@
+package com.huawei.browsergateway.tcpserver.common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AttributeKey;
+
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * TLV校验和算法
+ * 校验范围为 Type + Length + Value，结果写入4字节Checksum尾部
+ * 
+ * - CRC32：存量终端使用的算法，默认值，保证向后兼容
+ * - CRC32C：JDK对其有硬件指令加速（SSE4.2/ARMv8 CRC），媒体端口大流量场景CPU开销更低
+ * 
+ * 算法按连接协商：服务端配置为auto时，由连接上第一帧能通过校验的算法决定，
+ * 并记录在Channel属性中，编码器回包时使用同一算法
+ */
+public enum TlvChecksum {
+    CRC32(CRC32::new),
+    CRC32C(CRC32C::new);
+    
+    /**
+     * 连接上协商确定的校验和算法
+     */
+    public static final AttributeKey<TlvChecksum> CHANNEL_ALGORITHM = AttributeKey.valueOf("tlvChecksumAlgorithm");
+    
+    /**
+     * 配置值：按连接自动协商
+     */
+    public static final String AUTO = "auto";
+    
+    // 消息头临时数组，每个线程复用
+    private static final ThreadLocal<byte[]> HEADER = ThreadLocal.withInitial(() -> new byte[6]);
+    
+    // 每个线程复用一个校验器实例，避免每帧创建对象
+    private final ThreadLocal<Checksum> checksums;
+    
+    TlvChecksum(Supplier<Checksum> factory) {
+        this.checksums = ThreadLocal.withInitial(factory);
+    }
+    
+    /**
+     * 对ByteBuf中的一段连续区域计算校验和（单次遍历，不复制）
+     * 
+     * @param buf 数据缓冲区
+     * @param index 起始位置（绝对索引）
+     * @param length 区域长度
+     * @return 校验和值
+     */
+    public int compute(ByteBuf buf, int index, int length) {
+        Checksum checksum = checksums.get();
+        checksum.reset();
+        update(checksum, buf, index, length);
+        return (int) checksum.getValue();
+    }
+    
+    /**
+     * 对消息头和字节数组形式的Value计算校验和
+     * 
+     * @param type 消息类型
+     * @param length 消息内容长度
+     * @param value 消息内容
+     * @return 校验和值
+     */
+    public int compute(short type, int length, byte[] value) {
+        Checksum checksum = checksums.get();
+        checksum.reset();
+        updateHeader(checksum, type, length);
+        if (value != null && value.length > 0) {
+            checksum.update(value, 0, value.length);
+        }
+        return (int) checksum.getValue();
+    }
+    
+    /**
+     * 对消息头和ByteBuf形式的Value计算校验和
+     * 
+     * @param type 消息类型
+     * @param length 消息内容长度
+     * @param content 消息内容
+     * @return 校验和值
+     */
+    public int compute(short type, int length, ByteBuf content) {
+        Checksum checksum = checksums.get();
+        checksum.reset();
+        updateHeader(checksum, type, length);
+        if (content != null && content.isReadable()) {
+            update(checksum, content, content.readerIndex(), content.readableBytes());
+        }
+        return (int) checksum.getValue();
+    }
+    
+    /**
+     * 解析配置的校验和算法
+     * 
+     * @param name 配置值：crc32、crc32c或auto
+     * @return 对应算法；auto返回null，表示按连接协商
+     */
+    public static TlvChecksum fromConfig(String name) {
+        if (name == null || name.isEmpty() || AUTO.equalsIgnoreCase(name)) {
+            return null;
+        }
+        return valueOf(name.trim().toUpperCase());
+    }
+    
+    private static void updateHeader(Checksum checksum, short type, int length) {
+        // 头部6字节一次性写入，避免逐字节更新
+        byte[] header = HEADER.get();
+        header[0] = (byte) (type >> 8);
+        header[1] = (byte) type;
+        header[2] = (byte) (length >> 24);
+        header[3] = (byte) (length >> 16);
+        header[4] = (byte) (length >> 8);
+        header[5] = (byte) length;
+        checksum.update(header, 0, header.length);
+    }
+    
+    private static void update(Checksum checksum, ByteBuf buf, int index, int length) {
+        if (buf.hasArray()) {
+            checksum.update(buf.array(), buf.arrayOffset() + index, length);
+            return;
+        }
+        if (buf.nioBufferCount() == 1) {
+            checksum.update(buf.internalNioBuffer(index, length));
+            return;
+        }
+        for (ByteBuffer buffer : buf.nioBuffers(index, length)) {
+            checksum.update(buffer);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.huawei.browsergateway.tcpserver.common;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huawei.browsergateway.entity.request.InitBrowserRequest;
+import com.huawei.browsergateway.entity.request.MediaConfigRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,6 +22,7 @@ import java.util.Map;
  * - 存量代码可能使用二进制TLV格式
  * - 可通过配置项 browsergw.tlv.format 选择格式（json|binary）
  * - 默认使用JSON格式，如需与存量代码兼容，请切换到binary格式
+ * - BINARY格式由TlvBodyCodec按字段Schema编解码，直接解码到Message，不经过Map和ObjectMapper
  */
 public class TlvCodec {
     
@@ -102,6 +107,12 @@ public class TlvCodec {
         }
         
         try {
+            if (currentFormat == TlvFormat.BINARY) {
+                Message message = TlvBodyCodec.decode(tlvMessage.getType(), bodyOf(tlvMessage));
+                log.debug("解码TLV消息: type={}, length={}", tlvMessage.getType(), tlvMessage.getLength());
+                return message;
+            }
+            
             Message message = new Message();
             message.setType(tlvMessage.getType());
             
@@ -148,6 +159,62 @@ public class TlvCodec {
         }
     }
     
+    /**
+     * 解析登录请求
+     * 根据当前格式从LOGIN消息体构建InitBrowserRequest：
+     * JSON格式直接反序列化，BINARY格式按字段Schema解码
+     * 
+     * @param value 登录消息体
+     * @return 登录请求
+     */
+    public static InitBrowserRequest parseLoginRequest(byte[] value) throws IOException {
+        if (currentFormat != TlvFormat.BINARY) {
+            return objectMapper.readValue(value, InitBrowserRequest.class);
+        }
+        
+        Message message = TlvBodyCodec.decode(MessageType.LOGIN, Unpooled.wrappedBuffer(value));
+        InitBrowserRequest request = new InitBrowserRequest();
+        request.setImei(message.getImei());
+        request.setImsi(message.getImsi());
+        request.setLcdWidth(message.getLcdWidth());
+        request.setLcdHeight(message.getLcdHeight());
+        request.setAppType(message.getAppType());
+        Map<String, Object> fields = message.getFields();
+        if (fields != null) {
+            request.setFactory((String) fields.get("factory"));
+            request.setDevType((String) fields.get("devType"));
+            request.setExtType((String) fields.get("extType"));
+            request.setPlatType((Integer) fields.get("platType"));
+            request.setAppid((Integer) fields.get("appid"));
+            request.setDeviceType((Integer) fields.get("deviceType"));
+            request.setClientLanguage((String) fields.get("clientLanguage"));
+            request.setPlayMode((Integer) fields.get("playMode"));
+            request.setInnerMediaEndpoint((String) fields.get("innerMediaEndpoint"));
+        }
+        return request;
+    }
+    
+    /**
+     * 解析媒体配置
+     * MEDIA_CONFIG消息体不区分TLV格式，固定为JSON
+     * 
+     * @param value 媒体配置消息体
+     * @return 媒体配置
+     */
+    public static MediaConfigRequest parseMediaConfig(byte[] value) throws IOException {
+        return objectMapper.readValue(value, MediaConfigRequest.class);
+    }
+    
+    /**
+     * 编组媒体配置（JSON），未设置的字段不输出
+     * 
+     * @param config 媒体配置
+     * @return 媒体配置消息体
+     */
+    public static byte[] marshalMediaConfig(MediaConfigRequest config) throws IOException {
+        return objectMapper.writeValueAsBytes(config);
+    }
+    
     /**
      * 将Message对象编组为字节数组（使用TlvMessage格式）
      * 
@@ -265,43 +332,40 @@ public class TlvCodec {
     
     /**
      * 编组消息体（二进制格式）
-     * 将Message对象的字段序列化为二进制TLV格式
-     * 注意：此方法为二进制格式的占位实现，实际使用时需要根据存量代码的格式规范实现
+     * 将Message对象的标准字段按Schema序列化为嵌套TLV格式
      * 
      * @param message 消息对象
      * @return 消息体字节数组
      */
-    private static byte[] marshalMessageBodyBinary(Message message) throws IOException {
-        // TODO: 实现二进制TLV格式编组
-        // 需要根据存量代码的格式规范实现：
-        // 1. String类型：UTF-8编码 + 长度前缀（4字节）
-        // 2. Integer类型：4字节整数
-        // 3. Long类型：8字节整数
-        // 4. Byte array：直接写入
-        
-        log.warn("二进制TLV格式编组尚未实现，当前回退到JSON格式");
-        // 暂时回退到JSON格式
-        return marshalMessageBodyJson(message);
+    private static byte[] marshalMessageBodyBinary(Message message) {
+        return TlvBodyCodec.encode(message);
     }
     
     /**
-     * 解析消息体
-     * 根据配置的格式（JSON或二进制）解析消息体
+     * 解析消息体（JSON格式）
+     * BINARY格式不经过字段映射，由unmarshal直接解码到Message
      * 
      * @param value 消息体字节数组
      * @return 字段映射
      */
-    @SuppressWarnings("unchecked")
     private static Map<String, Object> parseMessageBody(byte[] value) throws IOException {
         if (value == null || value.length == 0) {
             return new java.util.HashMap<>();
         }
         
-        if (currentFormat == TlvFormat.BINARY) {
-            return parseMessageBodyBinary(value);
-        } else {
-            return parseMessageBodyJson(value);
+        return parseMessageBodyJson(value);
+    }
+    
+    /**
+     * 获取消息体缓冲区
+     * ByteBuf模式直接使用切片，避免复制
+     */
+    private static ByteBuf bodyOf(TlvMessage tlvMessage) {
+        if (tlvMessage.hasContent()) {
+            return tlvMessage.getContent();
         }
+        byte[] value = tlvMessage.getValue();
+        return value != null ? Unpooled.wrappedBuffer(value) : Unpooled.EMPTY_BUFFER;
     }
     
     /**
@@ -317,27 +381,6 @@ public class TlvCodec {
         return objectMapper.readValue(value, Map.class);
     }
     
-    /**
-     * 解析消息体（二进制格式）
-     * 将二进制TLV格式的字节数组解析为字段映射
-     * 注意：此方法为二进制格式的占位实现，实际使用时需要根据存量代码的格式规范实现
-     * 
-     * @param value 消息体字节数组
-     * @return 字段映射
-     */
-    private static Map<String, Object> parseMessageBodyBinary(byte[] value) throws IOException {
-        // TODO: 实现二进制TLV格式解析
-        // 需要根据存量代码的格式规范实现：
-        // 1. 读取字段类型
-        // 2. 读取字段长度
-        // 3. 读取字段值
-        // 4. 根据类型解析值（String、Integer、Long等）
-        
-        log.warn("二进制TLV格式解析尚未实现，当前回退到JSON格式");
-        // 暂时回退到JSON格式
-        return parseMessageBodyJson(value);
-    }
-    
     /**
      * 获取整数值
      * 支持Integer、Long、String等类型转换
@@ -11,6 +11,12 @@ import java.util.List;
 /**
  * TLV协议解码器
  * 将字节流解码为TlvMessage对象
+ * 
+ * 零拷贝模式下，Value不再复制到新的byte[]，而是以引用计数切片（readRetainedSlice）交给下游，
+ * 由消息处理器在处理/转发完成后释放（SimpleChannelInboundHandler默认自动释放）
+ * 
+ * 校验和直接在入站ByteBuf的 Type + Length + Value 区域上一次计算完成，不重新编组消息头；
+ * 算法为null时按连接协商（先CRC32后CRC32C），协商结果记录在Channel属性中供编码器使用
  */
 public class TlvDecoder extends ByteToMessageDecoder {
     private static final Logger log = LoggerFactory.getLogger(TlvDecoder.class);
@@ -27,12 +33,37 @@ public class TlvDecoder extends ByteToMessageDecoder {
     // 是否启用校验和验证
     private final boolean checksumEnabled;
     
+    // 是否启用零拷贝模式（Value以ByteBuf切片形式输出）
+    private final boolean zeroCopy;
+    
+    // 校验和算法，null表示按连接自动协商
+    private final TlvChecksum checksumAlgorithm;
+    
     public TlvDecoder() {
         this(true); // 默认启用校验和
     }
     
     public TlvDecoder(boolean checksumEnabled) {
+        this(checksumEnabled, false);
+    }
+    
+    public TlvDecoder(boolean checksumEnabled, boolean zeroCopy) {
+        this(checksumEnabled, zeroCopy, TlvChecksum.CRC32);
+    }
+    
+    /**
+     * @param checksumEnabled 是否启用校验和验证
+     * @param zeroCopy 是否启用零拷贝模式
+     * @param checksumAlgorithm 校验和算法，为null时按连接自动协商
+     */
+    public TlvDecoder(boolean checksumEnabled, boolean zeroCopy, TlvChecksum checksumAlgorithm) {
         this.checksumEnabled = checksumEnabled;
+        this.zeroCopy = zeroCopy;
+        this.checksumAlgorithm = checksumAlgorithm;
+        if (zeroCopy) {
+            // 切片会持有累积缓冲区的引用，使用组合累积器避免大帧在累积时被整体复制
+            setCumulator(COMPOSITE_CUMULATOR);
+        }
     }
     
     @Override
@@ -44,6 +75,7 @@ public class TlvDecoder extends ByteToMessageDecoder {
         
         // 标记读取位置
         in.markReaderIndex();
+        int frameIndex = in.readerIndex();
         
         // 读取Type（2字节，大端序）
         short type = in.readShort();
@@ -69,29 +101,69 @@ public class TlvDecoder extends ByteToMessageDecoder {
             return;
         }
         
+        // 在入站缓冲区上直接校验（Type + Length + Value），失败时不产生任何消息对象
+        TlvChecksum algorithm = null;
+        int checksum = 0;
+        if (checksumEnabled) {
+            checksum = in.getInt(frameIndex + HEADER_LENGTH + length);
+            algorithm = verifyChecksum(ctx, in, frameIndex, HEADER_LENGTH + length, checksum);
+            if (algorithm == null) {
+                log.error("TLV消息校验和验证失败: type={}, length={}, 关闭连接", type, length);
+                in.skipBytes(totalBytesNeeded);
+                ctx.close();
+                return;
+            }
+        }
+        
         // 读取Value
-        byte[] value = new byte[length];
-        in.readBytes(value);
+        TlvMessage message;
+        if (zeroCopy) {
+            message = new TlvMessage(type, in.readRetainedSlice(length));
+        } else {
+            byte[] value = new byte[length];
+            in.readBytes(value);
+            message = new TlvMessage(type, value);
+        }
         
-        // 读取校验和（如果启用）
-        int checksum = 0;
+        // 跳过校验和（如果启用）
         if (checksumEnabled) {
-            checksum = in.readInt(); // 读取4字节校验和（大端序）
+            in.skipBytes(CHECKSUM_LENGTH);
+            message.setChecksumAlgorithm(algorithm);
         }
         
-        // 创建TlvMessage对象
-        TlvMessage message = new TlvMessage(type, value);
         message.setChecksum(checksum);
         message.setChecksumEnabled(checksumEnabled);
         
-        // 验证校验和
-        if (checksumEnabled && !message.verifyChecksum()) {
-            log.error("TLV消息校验和验证失败: type={}, length={}, 关闭连接", type, length);
-            ctx.close();
-            return;
-        }
-        
         out.add(message);
         log.debug("解码TLV消息: type={}, length={}, checksum={}", type, length, checksum);
     }
+    
+    /**
+     * 校验一帧数据
+     * 
+     * @return 通过校验的算法；校验失败返回null
+     */
+    private TlvChecksum verifyChecksum(ChannelHandlerContext ctx, ByteBuf in, int index, int length, int expected) {
+        TlvChecksum pinned = ctx.channel().attr(TlvChecksum.CHANNEL_ALGORITHM).get();
+        if (pinned == null) {
+            pinned = checksumAlgorithm;
+        }
+        if (pinned != null) {
+            if (pinned.compute(in, index, length) != expected) {
+                return null;
+            }
+            ctx.channel().attr(TlvChecksum.CHANNEL_ALGORITHM).setIfAbsent(pinned);
+            return pinned;
+        }
+
+        // 自动协商：连接第一帧依次尝试各算法，命中后固定
+        for (TlvChecksum candidate : TlvChecksum.values()) {
+            if (candidate.compute(in, index, length) == expected) {
+                ctx.channel().attr(TlvChecksum.CHANNEL_ALGORITHM).setIfAbsent(candidate);
+                log.info("TLV校验和算法协商完成: channel={}, algorithm={}", ctx.channel().id(), candidate);
+                return candidate;
+            }
+        }
+        return null;
+    }
 }
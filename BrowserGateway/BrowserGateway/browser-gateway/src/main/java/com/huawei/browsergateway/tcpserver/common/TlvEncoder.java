@@ -1,27 +1,123 @@
 package com.huawei.browsergateway.tcpserver.common;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 /**
  * TLV协议编码器
  * 将TlvMessage对象编码为字节流
+ * 校验和算法与该连接上协商确定的算法保持一致
+ * 
+ * 不再经过TlvMessage.toBytes()生成中间数组：
+ * - 小消息：Type、Length、Value、Checksum直接写入一块池化的出站缓冲区
+ * - 大消息：头部和校验和各占一小块缓冲区，Value以包装/引用的方式组合进CompositeByteBuf，不复制
  */
-public class TlvEncoder extends MessageToByteEncoder<TlvMessage> {
+public class TlvEncoder extends MessageToMessageEncoder<TlvMessage> {
     private static final Logger log = LoggerFactory.getLogger(TlvEncoder.class);
     
+    // TLV消息头部长度：Type(2字节) + Length(4字节) = 6字节
+    private static final int HEADER_LENGTH = 6;
+    
+    // 校验和长度（4字节，可选）
+    private static final int CHECKSUM_LENGTH = 4;
+    
+    // Value超过该长度时使用组合缓冲区，避免复制
+    private static final int COMPOSITE_THRESHOLD = 8 * 1024;
+    
     @Override
-    protected void encode(ChannelHandlerContext ctx, TlvMessage msg, ByteBuf out) throws Exception {
+    protected void encode(ChannelHandlerContext ctx, TlvMessage msg, List<Object> out) throws Exception {
         if (msg == null) {
             return;
         }
         
-        byte[] bytes = msg.toBytes();
-        out.writeBytes(bytes);
+        TlvChecksum algorithm = ctx.channel().attr(TlvChecksum.CHANNEL_ALGORITHM).get();
+        if (algorithm != null) {
+            msg.setChecksumAlgorithm(algorithm);
+        } else if (msg.getChecksumAlgorithm() == null) {
+            msg.setChecksumAlgorithm(TlvChecksum.CRC32);
+        }
         
-        log.debug("编码TLV消息: type={}, length={}", msg.getType(), msg.getLength());
+        ByteBuf payload = payloadOf(msg);
+        int length = payload.readableBytes();
+        msg.setLength(length);
+        
+        if (length >= COMPOSITE_THRESHOLD) {
+            out.add(encodeComposite(ctx, msg, payload));
+        } else {
+            out.add(encodeDirect(ctx, msg, payload));
+        }
+        
+        log.debug("编码TLV消息: type={}, length={}", msg.getType(), length);
+    }
+    
+    /**
+     * 小消息：整帧写入一块池化缓冲区，校验和在写好的区域上一次计算
+     */
+    private ByteBuf encodeDirect(ChannelHandlerContext ctx, TlvMessage msg, ByteBuf payload) {
+        int length = payload.readableBytes();
+        int checksumSize = msg.isChecksumEnabled() ? CHECKSUM_LENGTH : 0;
+        ByteBuf buf = ctx.alloc().ioBuffer(HEADER_LENGTH + length + checksumSize);
+        try {
+            int frameIndex = buf.writerIndex();
+            buf.writeShort(msg.getType());
+            buf.writeInt(length);
+            buf.writeBytes(payload, payload.readerIndex(), length);
+            
+            if (msg.isChecksumEnabled()) {
+                int checksum = msg.getChecksumAlgorithm().compute(buf, frameIndex, HEADER_LENGTH + length);
+                msg.setChecksum(checksum);
+                buf.writeInt(checksum);
+            }
+            return buf;
+        } catch (RuntimeException e) {
+            buf.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 大消息：头部 + Value(引用) + 校验和 组合输出，Value不复制
+     */
+    private ByteBuf encodeComposite(ChannelHandlerContext ctx, TlvMessage msg, ByteBuf payload) {
+        int length = payload.readableBytes();
+        CompositeByteBuf composite = ctx.alloc().compositeBuffer(3);
+        try {
+            ByteBuf header = ctx.alloc().ioBuffer(HEADER_LENGTH);
+            header.writeShort(msg.getType());
+            header.writeInt(length);
+            composite.addComponent(true, header);
+            
+            // ByteBuf模式的消息编码完成后会被释放，这里为组合缓冲区单独保留一份引用；
+            // byte[]模式的包装缓冲区由组合缓冲区直接接管
+            composite.addComponent(true, msg.hasContent() ? payload.retainedSlice() : payload);
+            
+            if (msg.isChecksumEnabled()) {
+                int checksum = msg.calculateChecksum();
+                msg.setChecksum(checksum);
+                ByteBuf trailer = ctx.alloc().ioBuffer(CHECKSUM_LENGTH);
+                trailer.writeInt(checksum);
+                composite.addComponent(true, trailer);
+            }
+            return composite;
+        } catch (RuntimeException e) {
+            composite.release();
+            throw e;
+        }
+    }
+    
+    private static ByteBuf payloadOf(TlvMessage msg) {
+        // ByteBuf模式直接使用切片，不触发getValue()的按需复制
+        if (msg.hasContent()) {
+            return msg.getContent();
+        }
+        byte[] value = msg.getValue();
+        return value != null ? Unpooled.wrappedBuffer(value) : Unpooled.EMPTY_BUFFER;
     }
 }
@@ -1,14 +1,21 @@
 package com.huawei.browsergateway.tcpserver.common;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.ReferenceCounted;
 import lombok.Data;
-import java.util.zip.CRC32;
 
 /**
  * TLV消息封装类
  * TLV格式: Type(2字节) + Length(4字节) + Value(N字节) + Checksum(4字节，可选)
+ * 
+ * 消息内容有两种承载方式：
+ * - byte[]模式：value持有独立的字节数组（编组、响应消息使用）
+ * - ByteBuf模式：content持有解码器切出的引用计数切片，不复制帧数据（零拷贝解码使用）
+ * ByteBuf模式下消息本身是ReferenceCounted，SimpleChannelInboundHandler处理完成后会自动释放
  */
 @Data
-public class TlvMessage {
+public class TlvMessage implements ReferenceCounted {
     /**
      * 消息类型（2字节）
      */
@@ -24,6 +31,11 @@ public class TlvMessage {
      */
     private byte[] value;
     
+    /**
+     * 消息内容（ByteBuf模式，引用计数切片）
+     */
+    private ByteBuf content;
+    
     /**
      * 校验和（4字节，可选）
      */
@@ -34,6 +46,11 @@ public class TlvMessage {
      */
     private boolean checksumEnabled = true;
     
+    /**
+     * 校验和算法（默认CRC32，与存量终端兼容）
+     */
+    private TlvChecksum checksumAlgorithm = TlvChecksum.CRC32;
+    
     public TlvMessage() {
     }
     
@@ -43,16 +60,49 @@ public class TlvMessage {
         this.length = value != null ? value.length : 0;
     }
     
+    /**
+     * 创建ByteBuf模式的TLV消息
+     * 消息接管content的一个引用，由release()释放
+     * 
+     * @param type 消息类型
+     * @param content 消息内容切片
+     */
+    public TlvMessage(short type, ByteBuf content) {
+        this.type = type;
+        this.content = content;
+        this.length = content != null ? content.readableBytes() : 0;
+    }
+    
+    /**
+     * 是否为ByteBuf模式
+     */
+    public boolean hasContent() {
+        return content != null;
+    }
+    
+    /**
+     * 获取消息内容字节数组
+     * ByteBuf模式下按需复制一次并缓存，仅供必须使用byte[]的调用方（如SDK接口、JSON解析）
+     */
+    public byte[] getValue() {
+        if (value == null && content != null) {
+            value = ByteBufUtil.getBytes(content);
+        }
+        return value;
+    }
+    
     /**
      * 获取完整的TLV消息字节数组
      * 如果启用校验和，格式为: Type(2字节) + Length(4字节) + Value(N字节) + Checksum(4字节)
      * 如果未启用校验和，格式为: Type(2字节) + Length(4字节) + Value(N字节)
      */
     public byte[] toBytes() {
-        if (value == null) {
-            value = new byte[0];
+        byte[] bytes = getValue();
+        if (bytes == null) {
+            bytes = new byte[0];
+            value = bytes;
         }
-        length = value.length;
+        length = bytes.length;
         
         // 计算校验和
         if (checksumEnabled) {
@@ -76,7 +126,7 @@ public class TlvMessage {
         result[offset++] = (byte) (length & 0xFF);
         
         // 写入Value
-        System.arraycopy(value, 0, result, offset, length);
+        System.arraycopy(bytes, 0, result, offset, length);
         offset += length;
         
         // 写入Checksum（如果启用）
@@ -92,29 +142,16 @@ public class TlvMessage {
     
     /**
      * 计算TLV消息的校验和
-     * 使用CRC32算法计算Type + Length + Value的校验和
+     * 使用checksumAlgorithm计算Type + Length + Value的校验和
      * 
      * @return 校验和值
      */
     public int calculateChecksum() {
-        CRC32 crc32 = new CRC32();
-        
-        // 计算Type的CRC32
-        crc32.update((byte) ((type >> 8) & 0xFF));
-        crc32.update((byte) (type & 0xFF));
-        
-        // 计算Length的CRC32
-        crc32.update((byte) ((length >> 24) & 0xFF));
-        crc32.update((byte) ((length >> 16) & 0xFF));
-        crc32.update((byte) ((length >> 8) & 0xFF));
-        crc32.update((byte) (length & 0xFF));
-        
-        // 计算Value的CRC32
-        if (value != null && value.length > 0) {
-            crc32.update(value);
+        TlvChecksum algorithm = checksumAlgorithm != null ? checksumAlgorithm : TlvChecksum.CRC32;
+        if (value == null && content != null) {
+            return algorithm.compute(type, length, content);
         }
-        
-        return (int) crc32.getValue();
+        return algorithm.compute(type, length, value);
     }
     
     /**
@@ -130,4 +167,51 @@ public class TlvMessage {
         int calculatedChecksum = calculateChecksum();
         return calculatedChecksum == checksum;
     }
+    
+    @Override
+    public int refCnt() {
+        return content != null ? content.refCnt() : 1;
+    }
+
+    @Override
+    public TlvMessage retain() {
+        if (content != null) {
+            content.retain();
+        }
+        return this;
+    }
+    
+    @Override
+    public TlvMessage retain(int increment) {
+        if (content != null) {
+            content.retain(increment);
+        }
+        return this;
+    }
+    
+    @Override
+    public TlvMessage touch() {
+        if (content != null) {
+            content.touch();
+        }
+        return this;
+    }
+    
+    @Override
+    public TlvMessage touch(Object hint) {
+        if (content != null) {
+            content.touch(hint);
+        }
+        return this;
+    }
+    
+    @Override
+    public boolean release() {
+        return content != null && content.release();
+    }
+    
+    @Override
+    public boolean release(int decrement) {
+        return content != null && content.release(decrement);
+    }
 }
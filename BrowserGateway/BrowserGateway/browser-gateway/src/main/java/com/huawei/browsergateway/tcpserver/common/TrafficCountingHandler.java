@@ -0,0 +1,84 @@
+package com.huawei.browsergateway.tcpserver.common;
+
+import com.huawei.browsergateway.service.impl.DataSizeTracker;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.AttributeKey;
+
+/**
+ * 流量统计处理器
+ * 位于TLV编解码器与消息处理器之间，按连接绑定的用户记录每条TLV消息的上行/下行字节数和帧数
+ * 字节数按 Type(2字节) + Length(4字节) + Value 计算，不含TLS开销和可选的校验和
+ * 
+ * 登录成功后由消息处理器调用bind()绑定用户；登录消息本身在处理器返回后按已绑定的用户计入
+ * 无状态，同一服务器的所有连接共享同一实例
+ */
+@ChannelHandler.Sharable
+public class TrafficCountingHandler extends ChannelDuplexHandler {
+    
+    public static final AttributeKey<String> TRAFFIC_USER = AttributeKey.valueOf("trafficUser");
+    
+    // TLV消息头部长度：Type(2字节) + Length(4字节) = 6字节
+    private static final int HEADER_LENGTH = 6;
+    
+    private final DataSizeTracker tracker;
+    
+    public TrafficCountingHandler(DataSizeTracker tracker) {
+        this.tracker = tracker;
+    }
+    
+    /**
+     * 将连接的流量计入用户
+     * 
+     * @param channel 连接
+     * @param userId 用户ID
+     */
+    public static void bind(Channel channel, String userId) {
+        channel.attr(TRAFFIC_USER).set(userId);
+    }
+    
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        // 消息处理完成后可能已被释放，先取大小
+        long size = sizeOf(msg);
+        ctx.fireChannelRead(msg);
+        String userId = ctx.channel().attr(TRAFFIC_USER).get();
+        if (userId != null && size >= 0) {
+            tracker.trackInbound(userId, size);
+        }
+    }
+    
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        String userId = ctx.channel().attr(TRAFFIC_USER).get();
+        if (userId != null) {
+            long size = sizeOf(msg);
+            if (size >= 0) {
+                tracker.trackOutbound(userId, size);
+            }
+        }
+        ctx.write(msg, promise);
+    }
+    
+    /**
+     * 消息的字节数，无法识别的消息返回-1
+     */
+    static long sizeOf(Object msg) {
+        if (msg instanceof TlvMessage) {
+            TlvMessage message = (TlvMessage) msg;
+            if (message.hasContent()) {
+                return HEADER_LENGTH + message.getContent().readableBytes();
+            }
+            byte[] value = message.getValue();
+            return HEADER_LENGTH + (value != null ? value.length : 0);
+        }
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,39 @@
+package com.huawei.browsergateway.tcpserver.common;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 写缓冲背压处理器
+ * 出站缓冲超过高水位（Channel不可写）时暂停读取该连接，降到低水位以下后恢复读取，
+ * 避免慢终端导致出站缓冲无限增长
+ * 
+ * 无状态，所有连接共享同一实例
+ */
+@ChannelHandler.Sharable
+public class WriteBackpressureHandler extends ChannelInboundHandlerAdapter {
+    private static final Logger log = LoggerFactory.getLogger(WriteBackpressureHandler.class);
+    
+    public static final WriteBackpressureHandler INSTANCE = new WriteBackpressureHandler();
+    
+    private WriteBackpressureHandler() {
+    }
+    
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        Channel channel = ctx.channel();
+        boolean writable = channel.isWritable();
+        channel.config().setAutoRead(writable);
+        if (writable) {
+            log.debug("出站缓冲已回落，恢复读取: channel={}", channel.id());
+        } else {
+            log.debug("出站缓冲超过高水位，暂停读取: channel={}, bytesBeforeWritable={}",
+                    channel.id(), channel.bytesBeforeWritable());
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+}
@@ -1,15 +1,20 @@
 package com.huawei.browsergateway.tcpserver.control;
 
+import com.huawei.browsergateway.tcpserver.common.ChannelHeartbeat;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 控制流客户端管理
  * 管理所有TCP控制流连接
+ * 
+ * 心跳时间保存在Channel属性上（见ChannelHeartbeat），超时由pipeline中的IdleStateHandler触发expireClient
  */
 public class ControlClientSet {
     private static final Logger log = LoggerFactory.getLogger(ControlClientSet.class);
@@ -20,9 +25,6 @@ public class ControlClientSet {
     // Channel -> 用户ID映射
     private final ConcurrentMap<Channel, String> channelUsers = new ConcurrentHashMap<>();
     
-    // 用户ID -> 最后心跳时间（纳秒）
-    private final ConcurrentMap<String, Long> lastHeartbeatMap = new ConcurrentHashMap<>();
-    
     // 用户ID -> 连接状态
     private final ConcurrentMap<String, ConnectionState> connectionStates = new ConcurrentHashMap<>();
     
@@ -32,8 +34,8 @@ public class ControlClientSet {
     // 用户ID -> 重连次数
     private final ConcurrentMap<String, AtomicInteger> reconnectCounts = new ConcurrentHashMap<>();
     
-    // 心跳监控任务
-    private ScheduledExecutorService heartbeatExecutor;
+    // 心跳超时关闭的连接数（监控任务读取后清零）
+    private final LongAdder expiredCount = new LongAdder();
     
     // 重连调度器
     private ScheduledExecutorService reconnectExecutor;
@@ -51,10 +53,6 @@ public class ControlClientSet {
      * 初始化连接管理
      */
     public void initialize() {
-        if (heartbeatExecutor == null) {
-            heartbeatExecutor = Executors.newScheduledThreadPool(1, 
-                r -> new Thread(r, "ControlClientSet-Heartbeat"));
-        }
         if (reconnectExecutor == null) {
             reconnectExecutor = Executors.newScheduledThreadPool(2,
                 r -> new Thread(r, "ControlClientSet-Reconnect"));
@@ -66,9 +64,6 @@ public class ControlClientSet {
      * 关闭连接管理
      */
     public void shutdown() {
-        if (heartbeatExecutor != null) {
-            heartbeatExecutor.shutdown();
-        }
         if (reconnectExecutor != null) {
             reconnectExecutor.shutdown();
         }
@@ -111,7 +106,7 @@ public class ControlClientSet {
         clientChannels.put(userId, channel);
         channelUsers.put(channel, userId);
         connectionStates.put(userId, ConnectionState.AUTHENTICATED);
-        updateHeartbeat(userId);
+        updateHeartbeat(channel);
         
         // 重置重连次数
         reconnectCounts.remove(userId);
@@ -131,7 +126,6 @@ public class ControlClientSet {
         String userId = channelUsers.remove(channel);
         if (userId != null) {
             clientChannels.remove(userId);
-            lastHeartbeatMap.remove(userId);
             connectionStates.put(userId, ConnectionState.DISCONNECTED);
             log.info("移除控制流客户端: userId={}, channel={}", userId, channel.id());
         }
@@ -148,7 +142,6 @@ public class ControlClientSet {
         Channel channel = clientChannels.remove(userId);
         if (channel != null) {
             channelUsers.remove(channel);
-            lastHeartbeatMap.remove(userId);
             connectionStates.put(userId, ConnectionState.DISCONNECTED);
             log.info("移除控制流客户端: userId={}", userId);
         }
@@ -173,47 +166,51 @@ public class ControlClientSet {
      */
     public void updateHeartbeat(String userId) {
         if (userId != null) {
-            lastHeartbeatMap.put(userId, System.nanoTime());
+            Channel channel = clientChannels.get(userId);
+            if (channel != null) {
+                ChannelHeartbeat.touch(channel);
+            }
         }
     }
     
+    /**
+     * 更新心跳时间（IO线程中已持有Channel时使用，无需查表）
+     */
+    public void updateHeartbeat(Channel channel) {
+        ChannelHeartbeat.touch(channel);
+    }
+    
     /**
      * 获取最后心跳时间
      */
     public Long getLastHeartbeat(String userId) {
-        return lastHeartbeatMap.get(userId);
+        Channel channel = clientChannels.get(userId);
+        return channel != null ? ChannelHeartbeat.lastHeartbeat(channel) : null;
     }
     
     /**
-     * 清理超时的客户端连接
+     * 关闭心跳超时的连接
+     * 由IdleStateHandler在该连接读空闲超时后触发，连接关闭后在channelInactive中移除
      * 
-     * @param heartbeatTtl 心跳超时时间（纳秒）
-     * @return 清理的连接数
+     * @param channel 超时的连接
      */
-    public int cleanExpiredClients(long heartbeatTtl) {
-        long now = System.nanoTime();
-        int cleanedCount = 0;
-        
-        for (ConcurrentMap.Entry<String, Long> entry : lastHeartbeatMap.entrySet()) {
-            String userId = entry.getKey();
-            Long lastHeartbeat = entry.getValue();
-            
-            if (lastHeartbeat != null && (now - lastHeartbeat > heartbeatTtl)) {
-                log.info("清理超时控制流客户端: userId={}, 超时时间={}ns", userId, now - lastHeartbeat);
-                Channel channel = clientChannels.get(userId);
-                if (channel != null && channel.isActive()) {
-                    channel.close();
-                }
-                removeClient(userId);
-                cleanedCount++;
-            }
-        }
-        
-        if (cleanedCount > 0) {
-            log.info("清理超时控制流客户端完成: 清理数量={}", cleanedCount);
+    public void expireClient(Channel channel) {
+        String userId = channelUsers.get(channel);
+        Long lastHeartbeat = ChannelHeartbeat.lastHeartbeat(channel);
+        log.info("清理超时控制流客户端: userId={}, channel={}, 超时时间={}ns", userId, channel.id(),
+                lastHeartbeat != null ? System.nanoTime() - lastHeartbeat : null);
+        if (userId != null) {
+            connectionStates.put(userId, ConnectionState.DISCONNECTED);
         }
-        
-        return cleanedCount;
+        expiredCount.increment();
+        channel.close();
+    }
+    
+    /**
+     * 获取上次调用以来心跳超时关闭的连接数，并清零
+     */
+    public int drainExpiredCount() {
+        return (int) expiredCount.sumThenReset();
     }
     
     /**
@@ -251,7 +248,8 @@ public class ControlClientSet {
         }
         
         try {
-            channel.writeAndFlush(data);
+            // 包装为ByteBuf直接写出（不复制），原始byte[]无法通过出站编码器
+            channel.writeAndFlush(Unpooled.wrappedBuffer(data));
             log.debug("数据发送成功: userId={}, size={}", userId, data.length);
             return true;
         } catch (Exception e) {
@@ -280,75 +278,6 @@ public class ControlClientSet {
         return ConnectionAuthenticator.validateConnection(userId, token, remoteAddress);
     }
     
-    /**
-     * 启动心跳监控
-     * 
-     * @param heartbeatInterval 心跳检查间隔（毫秒）
-     * @param heartbeatTimeout 心跳超时时间（纳秒）
-     */
-    public void startHeartbeatMonitoring(long heartbeatInterval, long heartbeatTimeout) {
-        if (heartbeatExecutor == null) {
-            initialize();
-        }
-        
-        heartbeatExecutor.scheduleAtFixedRate(() -> {
-            try {
-                monitorHeartbeats(heartbeatTimeout);
-            } catch (Exception e) {
-                log.error("心跳监控异常", e);
-            }
-        }, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
-        
-        log.info("心跳监控已启动: interval={}ms, timeout={}ns", heartbeatInterval, heartbeatTimeout);
-    }
-    
-    /**
-     * 停止心跳监控
-     */
-    public void stopHeartbeatMonitoring() {
-        if (heartbeatExecutor != null) {
-            heartbeatExecutor.shutdown();
-            heartbeatExecutor = null;
-        }
-        log.info("心跳监控已停止");
-    }
-    
-    /**
-     * 监控心跳
-     * 
-     * @param heartbeatTimeout 心跳超时时间（纳秒）
-     */
-    private void monitorHeartbeats(long heartbeatTimeout) {
-        long now = System.nanoTime();
-        int expiredCount = 0;
-        
-        for (ConcurrentMap.Entry<String, Long> entry : lastHeartbeatMap.entrySet()) {
-            String userId = entry.getKey();
-            Long lastHeartbeat = entry.getValue();
-            
-            if (lastHeartbeat != null && (now - lastHeartbeat > heartbeatTimeout)) {
-                log.warn("心跳超时: userId={}, 超时时间={}ns", userId, now - lastHeartbeat);
-                expiredCount++;
-                
-                // 关闭超时连接
-                Channel channel = clientChannels.get(userId);
-                if (channel != null && channel.isActive()) {
-                    channel.close();
-                }
-                
-                // 更新连接状态
-                connectionStates.put(userId, ConnectionState.DISCONNECTED);
-                
-                // 触发重连（如果需要）
-                // scheduleReconnect(userId);
-            }
-        }
-        
-        if (expiredCount > 0) {
-            log.info("心跳监控完成: 超时连接数={}", expiredCount);
-        }
-    }
-    
     /**
      * 安排重连任务（指数退避策略）
      * 
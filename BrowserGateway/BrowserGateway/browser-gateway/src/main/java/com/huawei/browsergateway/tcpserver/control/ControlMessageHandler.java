@@ -1,20 +1,24 @@
 package com.huawei.browsergateway.tcpserver.control;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huawei.browsergateway.common.utils.KeyedSerialExecutor;
 import com.huawei.browsergateway.common.utils.UserIdUtil;
 import com.huawei.browsergateway.entity.request.InitBrowserRequest;
 import com.huawei.browsergateway.service.IChromeSet;
 import com.huawei.browsergateway.service.IRemote;
 import com.huawei.browsergateway.tcpserver.common.MessageType;
+import com.huawei.browsergateway.tcpserver.common.TlvCodec;
 import com.huawei.browsergateway.tcpserver.common.TlvMessage;
+import com.huawei.browsergateway.tcpserver.common.TrafficCountingHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.timeout.IdleStateEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 
 /**
@@ -34,18 +38,23 @@ public class ControlMessageHandler extends SimpleChannelInboundHandler<TlvMessag
     @Autowired
     private ControlClientSet clientSet;
     
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private KeyedSerialExecutor sessionExecutor;
+    
+    @Autowired
+    private InputEventDispatcher inputDispatcher;
     
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, TlvMessage msg) throws Exception {
         short type = msg.getType();
-        byte[] value = msg.getValue();
         
         log.debug("收到控制流消息: type={}, length={}", MessageType.getTypeName(type), msg.getLength());
         
+        // 零拷贝解码时Value为ByteBuf切片，只有需要byte[]的消息（SDK接口、JSON解析）才按需复制，
+        // 心跳等消息不再产生额外分配；切片在channelRead0返回后由父类自动释放
         switch (type) {
             case MessageType.LOGIN:
-                handleLogin(ctx, value);
+                handleLogin(ctx, msg.getValue());
                 break;
             case MessageType.HEARTBEATS:
                 handleHeartbeat(ctx);
@@ -56,7 +65,7 @@ public class ControlMessageHandler extends SimpleChannelInboundHandler<TlvMessag
             case MessageType.DRAG_EVENT:
             case MessageType.TEXT_INPUT:
             case MessageType.CLIPBOARD:
-                handleBusinessMessage(ctx, type, value);
+                handleBusinessMessage(ctx, type, msg.getValue());
                 break;
             case MessageType.LOGOUT:
                 handleLogout(ctx);
@@ -72,11 +81,10 @@ public class ControlMessageHandler extends SimpleChannelInboundHandler<TlvMessag
      */
     private void handleLogin(ChannelHandlerContext ctx, byte[] value) {
         try {
-            String json = new String(value, StandardCharsets.UTF_8);
-            log.info("收到登录请求: {}", json);
+            log.info("收到登录请求: format={}, length={}", TlvCodec.getFormat(), value.length);
             
-            // 解析登录参数
-            InitBrowserRequest request = objectMapper.readValue(json, InitBrowserRequest.class);
+            // 解析登录参数（按当前TLV格式：JSON或BINARY）
+            InitBrowserRequest request = TlvCodec.parseLoginRequest(value);
             
             // 验证必要参数
             if (request.getImei() == null || request.getImsi() == null) {
@@ -90,33 +98,55 @@ public class ControlMessageHandler extends SimpleChannelInboundHandler<TlvMessag
             
             // 添加到客户端集合
             clientSet.addClient(userId, ctx.channel());
+            TrafficCountingHandler.bind(ctx.channel(), userId);
             
-            // 创建浏览器实例
-            Consumer<Object> consumer = result -> {
-                if (result != null) {
-                    log.info("浏览器实例创建成功: userId={}", userId);
-                    sendSuccessResponse(ctx, "登录成功");
-                } else {
-                    log.error("浏览器实例创建失败: userId={}", userId);
-                    sendErrorResponse(ctx, "浏览器实例创建失败");
-                }
-            };
-            
-            remoteService.createChrome(value, request, consumer);
-            
+            // 浏览器创建涉及S3下载、解压、插件加载和HTTP调用，在会话线程池中按用户串行执行，
+            // 完成后异步写回登录响应，不阻塞IO线程上的其他连接
+            sessionExecutor.execute(userId, () -> createChrome(ctx, userId, value, request));
+        
+        } catch (RejectedExecutionException e) {
+            log.warn("会话线程池已满，拒绝登录请求: channel={}", ctx.channel().id());
+            sendErrorResponse(ctx, "登录失败: 服务繁忙");
         } catch (Exception e) {
             log.error("处理登录消息失败", e);
             sendErrorResponse(ctx, "登录失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 创建浏览器实例（在会话线程池中执行）
+     */
+    private void createChrome(ChannelHandlerContext ctx, String userId, byte[] value, InitBrowserRequest request) {
+        if (!ctx.channel().isActive()) {
+            log.info("连接已断开，取消浏览器创建: userId={}", userId);
+            return;
+        }
+        
+        Consumer<Object> consumer = result -> {
+            if (result != null) {
+                log.info("浏览器实例创建成功: userId={}", userId);
+                sendSuccessResponse(ctx, "登录成功");
+            } else {
+                log.error("浏览器实例创建失败: userId={}", userId);
+                sendErrorResponse(ctx, "浏览器实例创建失败");
+            }
+        };
+        
+        try {
+            remoteService.createChrome(value, request, consumer);
+        } catch (Exception e) {
+            log.error("处理登录消息失败: userId={}", userId, e);
+            sendErrorResponse(ctx, "登录失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 处理心跳消息
      */
     private void handleHeartbeat(ChannelHandlerContext ctx) {
         String userId = clientSet.getUserId(ctx.channel());
         if (userId != null) {
-            clientSet.updateHeartbeat(userId);
+            clientSet.updateHeartbeat(ctx.channel());
             chromeSet.updateHeartbeats(userId, System.nanoTime());
             log.debug("收到心跳: userId={}", userId);
         }
@@ -135,11 +165,11 @@ public class ControlMessageHandler extends SimpleChannelInboundHandler<TlvMessag
         
         try {
             // 更新心跳
-            clientSet.updateHeartbeat(userId);
+            clientSet.updateHeartbeat(ctx.channel());
             chromeSet.updateHeartbeats(userId, System.nanoTime());
             
-            // 转发给远程服务处理
-            remoteService.handleEvent(value, userId);
+            // 按用户排队，在输入线程池中分批转发给远程服务处理
+            inputDispatcher.submit(userId, type, value);
             
             log.debug("处理业务消息: userId={}, type={}", userId, MessageType.getTypeName(type));
             
@@ -157,7 +187,13 @@ public class ControlMessageHandler extends SimpleChannelInboundHandler<TlvMessag
         if (userId != null) {
             log.info("用户登出: userId={}", userId);
             clientSet.removeClient(ctx.channel());
-            chromeSet.delete(userId);
+            inputDispatcher.remove(userId);
+            // 销毁浏览器需要上传用户数据，与该用户的登录任务串行执行
+            try {
+                sessionExecutor.execute(userId, () -> chromeSet.delete(userId));
+            } catch (RejectedExecutionException e) {
+                log.warn("会话线程池已满，浏览器将由超时清理任务回收: userId={}", userId);
+            }
         }
         ctx.close();
     }
@@ -199,10 +235,24 @@ public class ControlMessageHandler extends SimpleChannelInboundHandler<TlvMessag
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         log.info("控制流客户端断开: channel={}", ctx.channel().id());
+        String userId = clientSet.getUserId(ctx.channel());
         clientSet.removeClient(ctx.channel());
+        if (userId != null) {
+            inputDispatcher.remove(userId);
+        }
         super.channelInactive(ctx);
     }
     
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        // 读空闲超过心跳超时时间（期间未收到心跳或任何消息），关闭连接
+        if (evt instanceof IdleStateEvent) {
+            clientSet.expireClient(ctx.channel());
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+    
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         log.error("控制流消息处理异常: channel={}", ctx.channel().id(), cause);
@@ -1,30 +1,38 @@
 package com.huawei.browsergateway.tcpserver.control;
 
-import com.huawei.browsergateway.tcpserver.cert.CertInfo;
+import com.huawei.browsergateway.config.TcpConfig;
+import com.huawei.browsergateway.service.impl.DataSizeTracker;
+import com.huawei.browsergateway.tcpserver.cert.ReloadableSslContext;
+import com.huawei.browsergateway.tcpserver.common.TlvChecksum;
+import com.huawei.browsergateway.tcpserver.common.TcpServerOptions;
+import com.huawei.browsergateway.tcpserver.common.TcpTransport;
 import com.huawei.browsergateway.tcpserver.common.TlvDecoder;
 import com.huawei.browsergateway.tcpserver.common.TlvEncoder;
+import com.huawei.browsergateway.tcpserver.common.TrafficCountingHandler;
+import com.huawei.browsergateway.tcpserver.common.WriteBackpressureHandler;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.ssl.SslContext;
-import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.timeout.IdleStateHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
-import javax.net.ssl.SSLException;
-import java.io.ByteArrayInputStream;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * TCP控制流服务器
  * 使用Netty实现，支持TLS加密
+ * 传输层（nio/epoll/io_uring）和SO_REUSEPORT多监听由TcpConfig配置
+ * 线程数、分配器、写缓冲水位等调优参数见TcpServerOptions，出站缓冲超过高水位时暂停读取
  */
 @Component
 public class ControlTcpServer {
@@ -36,13 +44,30 @@ public class ControlTcpServer {
     @Value("${server.address:0.0.0.0}")
     private String serverAddress;
     
+    // 校验和算法：crc32、crc32c或auto（按连接协商）
+    @Value("${browsergw.tcp.checksum:auto}")
+    private String checksumMode;
+    
+    @Autowired
+    private TcpConfig tcpConfig;
+    
     @Autowired
     private ControlMessageHandler messageHandler;
     
+    // 按用户统计流量，未注入时不统计
+    @Autowired(required = false)
+    @Qualifier("controlDataSizeTracker")
+    private DataSizeTracker trafficTracker;
+    
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
-    private Channel serverChannel;
-    private SslContext sslContext;
+    private final List<Channel> serverChannels = new ArrayList<>();
+    
+    @Autowired
+    private ReloadableSslContext sslContext;
+    
+    // 是否对新连接启用TLS，证书更新时可切换，无需重启
+    private volatile boolean tlsEnabled;
     
     @PostConstruct
     public void startServer() {
@@ -55,52 +80,77 @@ public class ControlTcpServer {
      * @param useTls 是否使用TLS加密
      */
     public void startServer(boolean useTls) {
-        if (serverChannel != null && serverChannel.isActive()) {
+        if (!serverChannels.isEmpty() && serverChannels.get(0).isActive()) {
             log.warn("控制流TCP服务器已在运行");
             return;
         }
         
         try {
             // 初始化SSL上下文（如果需要）
-            if (useTls) {
-                initSslContext();
+            tlsEnabled = useTls;
+            if (useTls && sslContext.current() == null) {
+                sslContext.reload();
             }
             
+            TlvChecksum checksumAlgorithm = TlvChecksum.fromConfig(checksumMode);
+            
+            // 选择传输层实现，启用SO_REUSEPORT时每个监听线程独立绑定同一端口
+            TcpTransport transport = TcpTransport.resolve(tcpConfig.getTransport());
+            boolean reusePort = tcpConfig.isReusePort() && transport.supportsReusePort();
+            int acceptors = reusePort ? Math.max(1, tcpConfig.getAcceptorThreads()) : 1;
+            
             // 创建EventLoopGroup
-            bossGroup = new NioEventLoopGroup(1);
-            workerGroup = new NioEventLoopGroup();
+            bossGroup = transport.newEventLoopGroup(acceptors);
+            workerGroup = transport.newEventLoopGroup(tcpConfig.getWorkerThreads());
             
             // 创建ServerBootstrap
             ServerBootstrap bootstrap = new ServerBootstrap();
+            if (reusePort) {
+                transport.enableReusePort(bootstrap);
+            }
+            TrafficCountingHandler trafficHandler = trafficTracker != null
+                    ? new TrafficCountingHandler(trafficTracker) : null;
             bootstrap.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .option(ChannelOption.SO_BACKLOG, 128)
-                    .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    .channel(transport.serverChannelClass())
                     .childHandler(new ChannelInitializer<SocketChannel>() {
                         @Override
                         protected void initChannel(SocketChannel ch) throws Exception {
                             ChannelPipeline pipeline = ch.pipeline();
                             
-                            // 添加SSL处理器（如果需要）
-                            if (useTls && sslContext != null) {
-                                pipeline.addLast("ssl", sslContext.newHandler(ch.alloc()));
+                            // 添加SSL处理器（如果需要），每个连接取当前证书，证书更新后新连接立即生效
+                            SslContext ssl = tlsEnabled ? sslContext.current() : null;
+                            if (ssl != null) {
+                                pipeline.addLast("ssl", ssl.newHandler(ch.alloc()));
                             }
                             
-                            // 添加TLV编解码器
-                            pipeline.addLast("decoder", new TlvDecoder());
+                            // 写缓冲背压：慢终端不可写时暂停读取
+                            pipeline.addLast("backpressure", WriteBackpressureHandler.INSTANCE);
+                            
+                            // 心跳超时检测：按连接定时，读空闲超时后由消息处理器关闭连接
+                            pipeline.addLast("idle", new IdleStateHandler(
+                                    tcpConfig.getHeartbeatTtl(), 0, 0, TimeUnit.NANOSECONDS));
+                            
+                            // 添加TLV编解码器（零拷贝解码，Value以引用计数切片交给处理器）
+                            pipeline.addLast("decoder", new TlvDecoder(true, true, checksumAlgorithm));
                             pipeline.addLast("encoder", new TlvEncoder());
                             
+                            // 按登录用户统计上行/下行流量
+                            if (trafficHandler != null) {
+                                pipeline.addLast("traffic", trafficHandler);
+                            }
+                            
                             // 添加消息处理器
                             pipeline.addLast("handler", messageHandler);
                         }
                     });
             
+            TcpServerOptions.apply(bootstrap, tcpConfig);
+            
             // 绑定端口并启动服务器
-            ChannelFuture future = bootstrap.bind(serverAddress, controlPort).sync();
-            serverChannel = future.channel();
+            serverChannels.addAll(transport.bind(bootstrap, serverAddress, controlPort, acceptors));
             
-            log.info("控制流TCP服务器启动成功: address={}, port={}, tls={}", 
-                    serverAddress, controlPort, useTls);
+            log.info("控制流TCP服务器启动成功: address={}, port={}, tls={}, transport={}, acceptors={}", 
+                    serverAddress, controlPort, useTls, transport, acceptors);
             
         } catch (Exception e) {
             log.error("控制流TCP服务器启动失败", e);
@@ -109,41 +159,13 @@ public class ControlTcpServer {
     }
     
     /**
-     * 初始化SSL上下文
-     * 从CertInfo单例获取证书信息，支持证书热更新
+     * 切换新连接是否启用TLS（证书更新后调用），已建立的连接不受影响
+     * 
+     * @param useTls 是否使用TLS加密
      */
-    private void initSslContext() {
-        try {
-            CertInfo certInfo = CertInfo.getInstance();
-            if (!certInfo.isReady()) {
-                log.warn("证书未就绪，无法启用TLS");
-                return;
-            }
-            
-            String caCert = certInfo.getCaContent();
-            String deviceCert = certInfo.getDeviceContent();
-            String privateKey = certInfo.getPrivateKey();
-            
-            if (caCert == null || caCert.isEmpty() || 
-                deviceCert == null || deviceCert.isEmpty() || 
-                privateKey == null || privateKey.isEmpty()) {
-                log.warn("证书信息不完整，无法启用TLS");
-                return;
-            }
-            
-            // 构建SSL上下文
-            sslContext = SslContextBuilder.forServer(
-                    new ByteArrayInputStream(deviceCert.getBytes(StandardCharsets.UTF_8)),
-                    new ByteArrayInputStream(privateKey.getBytes(StandardCharsets.UTF_8))
-            ).trustManager(new ByteArrayInputStream(caCert.getBytes(StandardCharsets.UTF_8)))
-             .build();
-            
-            log.info("控制流SSL上下文初始化成功，证书更新时间: {}", certInfo.getLastUpdateTime());
-            
-        } catch (SSLException e) {
-            log.error("控制流SSL上下文初始化失败", e);
-            throw new RuntimeException("控制流SSL上下文初始化失败", e);
-        }
+    public void setTlsEnabled(boolean useTls) {
+        this.tlsEnabled = useTls;
+        log.info("控制流TCP服务器新连接TLS状态: tls={}", useTls);
     }
     
     /**
@@ -151,15 +173,17 @@ public class ControlTcpServer {
      */
     @PreDestroy
     public void stopServer() {
-        if (serverChannel != null) {
+        if (!serverChannels.isEmpty()) {
             try {
-                serverChannel.close().sync();
+                for (Channel serverChannel : serverChannels) {
+                    serverChannel.close().sync();
+                }
                 log.info("控制流TCP服务器已关闭");
             } catch (InterruptedException e) {
                 log.error("关闭控制流TCP服务器失败", e);
                 Thread.currentThread().interrupt();
             } finally {
-                serverChannel = null;
+                serverChannels.clear();
             }
         }
         
@@ -173,17 +197,19 @@ public class ControlTcpServer {
             bossGroup = null;
         }
         
-        // 清空SSL上下文，以便在重启时重新初始化
-        sslContext = null;
         log.debug("控制流TCP服务器资源已清理");
     }
     
     /**
-     * 重启服务器（用于证书更新后）
+     * 重启服务器
+     * 证书更新无需重启，由ReloadableSslContext热更新
      */
     public void restartServer(boolean useTls) {
         log.info("重启控制流TCP服务器");
         stopServer();
+        if (useTls) {
+            sslContext.reload();
+        }
         try {
             Thread.sleep(1000); // 等待1秒
         } catch (InterruptedException e) {
@@ -0,0 +1,274 @@
+package com.huawei.browsergateway.tcpserver.control;
+
+import com.huawei.browsergateway.common.utils.LatencyHistogram;
+import com.huawei.browsergateway.service.IRemote;
+import com.huawei.browsergateway.tcpserver.common.MessageType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 输入事件分发器
+ * 按用户排队KEY/TOUCH/MOUSE/DRAG等输入事件，在输入线程池中按用户串行、分批交给远程服务处理，
+ * 事件处理（浏览器驱动调用）不再占用Netty IO线程
+ * 
+ * 队尾与新事件同为MOUSE_EVENT/TOUCH_EVENT的MOVE动作时只保留最新坐标，
+ * DOWN/UP及其他类型事件从不合并，同一用户的事件顺序严格保持
+ */
+@Component
+public class InputEventDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(InputEventDispatcher.class);
+    
+    private static final byte[] ACTION_KEY = "\"action\"".getBytes(StandardCharsets.US_ASCII);
+    
+    private static final byte[] MOVE_VALUE = "\"MOVE\"".getBytes(StandardCharsets.US_ASCII);
+    
+    @Autowired
+    private IRemote remoteService;
+    
+    @Autowired
+    @Qualifier("inputExecutor")
+    private ExecutorService inputExecutor;
+    
+    // 单用户最大排队事件数，超出时丢弃新事件
+    @Value("${browsergw.input.max-queue-depth:1024}")
+    private int maxQueueDepth = 1024;
+    
+    // 单批最大事件数
+    @Value("${browsergw.input.max-batch:32}")
+    private int maxBatch = 32;
+    
+    // userId -> 事件队列
+    private final ConcurrentMap<String, UserQueue> queues = new ConcurrentHashMap<>();
+    
+    // 监控指标
+    private final AtomicInteger queuedEvents = new AtomicInteger();
+    private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder dispatched = new LongAdder();
+    private final LatencyHistogram dispatchLatency = new LatencyHistogram();
+    
+    /**
+     * 提交输入事件（在IO线程调用，不阻塞）
+     * 
+     * @param userId 用户ID
+     * @param type 消息类型
+     * @param value 事件数据
+     * @return 是否已入队，队列已满或线程池拒绝时返回false
+     */
+    public boolean submit(String userId, short type, byte[] value) {
+        InputEvent event = new InputEvent(type, value, System.nanoTime(), isMove(type, value));
+        UserQueue queue;
+        boolean schedule;
+        while (true) {
+            queue = queues.computeIfAbsent(userId, UserQueue::new);
+            synchronized (queue) {
+                if (queue.removed) {
+                    // 获取后队列已从表中移除，重新获取
+                    continue;
+                }
+                // 移除后仍在处理的队列直接复用，同一用户始终只有一个线程在处理
+                queue.closed = false;
+                InputEvent tail = queue.events.peekLast();
+                if (event.move && tail != null && tail.move && tail.type == type) {
+                    // 连续移动只保留最新坐标，等待时间按最早的那条计算
+                    tail.payload = value;
+                    coalesced.increment();
+                    return true;
+                }
+                if (queue.events.size() >= maxQueueDepth) {
+                    dropped.increment();
+                    log.warn("输入事件队列已满，丢弃事件: userId={}, type={}", userId, MessageType.getTypeName(type));
+                    return false;
+                }
+                queue.events.addLast(event);
+                maxDepth.accumulate(queue.events.size());
+                schedule = !queue.scheduled;
+                queue.scheduled = true;
+            }
+            break;
+        }
+        queuedEvents.incrementAndGet();
+        
+        if (schedule) {
+            try {
+                inputExecutor.execute(queue);
+            } catch (RejectedExecutionException e) {
+                log.warn("输入线程池拒绝任务，丢弃排队事件: userId={}", userId);
+                int discarded;
+                synchronized (queue) {
+                    discarded = queue.events.size();
+                    queue.events.clear();
+                    queue.scheduled = false;
+                }
+                queuedEvents.addAndGet(-discarded);
+                dropped.add(discarded);
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 移除用户的事件队列（登出或断连时调用），未处理的事件随之丢弃
+     * 正在处理批次的队列只标记关闭，处理线程退出时从表中移除，避免重新登录后同一用户出现两个处理线程
+     * 
+     * @param userId 用户ID
+     */
+    public void remove(String userId) {
+        UserQueue queue = queues.get(userId);
+        if (queue == null) {
+            return;
+        }
+        int discarded;
+        synchronized (queue) {
+            discarded = queue.events.size();
+            queue.events.clear();
+            queue.closed = true;
+            if (!queue.scheduled) {
+                queue.removed = true;
+                queues.remove(userId, queue);
+            }
+        }
+        queuedEvents.addAndGet(-discarded);
+    }
+    
+    /**
+     * 当前所有用户排队中的事件总数
+     */
+    public int getQueuedEvents() {
+        return queuedEvents.get();
+    }
+    
+    /**
+     * 输出本周期指标并清零
+     */
+    public String metricsAndReset() {
+        return "users=" + queues.size()
+                + ", queued=" + queuedEvents.get()
+                + ", maxDepth=" + maxDepth.getThenReset()
+                + ", dispatched=" + dispatched.sumThenReset()
+                + ", batches=" + batches.sumThenReset()
+                + ", coalesced=" + coalesced.sumThenReset()
+                + ", dropped=" + dropped.sumThenReset()
+                + ", latency[" + dispatchLatency.snapshotAndReset() + "]";
+    }
+    
+    /**
+     * 判断是否为可合并的移动事件：MOUSE_EVENT/TOUCH_EVENT且action为MOVE
+     * 直接扫描字节，避免为每个事件做JSON解析
+     */
+    static boolean isMove(short type, byte[] value) {
+        if (type != MessageType.MOUSE_EVENT && type != MessageType.TOUCH_EVENT) {
+            return false;
+        }
+        if (value == null) {
+            return false;
+        }
+        int action = indexOf(value, ACTION_KEY, 0);
+        if (action < 0) {
+            return false;
+        }
+        int i = action + ACTION_KEY.length;
+        while (i < value.length && (value[i] == ' ' || value[i] == ':')) {
+            i++;
+        }
+        return indexOf(value, MOVE_VALUE, i) == i;
+    }
+    
+    private static int indexOf(byte[] source, byte[] target, int from) {
+        outer:
+        for (int i = from; i <= source.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (source[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+    
+    /**
+     * 排队中的输入事件
+     */
+    private static final class InputEvent {
+        private final short type;
+        private byte[] payload;
+        private final long enqueueNanos;
+        private final boolean move;
+        
+        private InputEvent(short type, byte[] payload, long enqueueNanos, boolean move) {
+            this.type = type;
+            this.payload = payload;
+            this.enqueueNanos = enqueueNanos;
+            this.move = move;
+        }
+    }
+    
+    /**
+     * 单个用户的事件队列，同一时刻最多一个线程在处理
+     */
+    private final class UserQueue implements Runnable {
+        private final String userId;
+        private final ArrayDeque<InputEvent> events = new ArrayDeque<>();
+        private boolean scheduled;
+        // 已移除用户，处理线程退出时从表中移除
+        private boolean closed;
+        // 已从表中移除，不再接收事件
+        private boolean removed;
+        
+        private UserQueue(String userId) {
+            this.userId = userId;
+        }
+        
+        @Override
+        public void run() {
+            List<byte[]> batch = new ArrayList<>(maxBatch);
+            while (true) {
+                long now = System.nanoTime();
+                synchronized (this) {
+                    InputEvent event;
+                    while (batch.size() < maxBatch && (event = events.pollFirst()) != null) {
+                        batch.add(event.payload);
+                        dispatchLatency.record(now - event.enqueueNanos);
+                    }
+                    if (batch.isEmpty()) {
+                        scheduled = false;
+                        if (closed) {
+                            removed = true;
+                            queues.remove(userId, this);
+                        }
+                        return;
+                    }
+                }
+                queuedEvents.addAndGet(-batch.size());
+                try {
+                    remoteService.handleEvents(batch, userId);
+                } catch (Throwable e) {
+                    log.error("处理输入事件失败: userId={}", userId, e);
+                }
+                dispatched.add(batch.size());
+                batches.increment();
+                batch.clear();
+            }
+        }
+    }
+}
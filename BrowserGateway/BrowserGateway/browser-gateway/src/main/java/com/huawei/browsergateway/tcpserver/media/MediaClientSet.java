@@ -1,15 +1,19 @@
 package com.huawei.browsergateway.tcpserver.media;
 
+import com.huawei.browsergateway.tcpserver.common.ChannelHeartbeat;
 import io.netty.channel.Channel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 媒体流客户端管理
  * 管理所有TCP媒体流连接
+ * 
+ * 心跳时间保存在Channel属性上（见ChannelHeartbeat），超时由pipeline中的IdleStateHandler触发expireClient
  */
 public class MediaClientSet {
     private static final Logger log = LoggerFactory.getLogger(MediaClientSet.class);
@@ -20,8 +24,8 @@ public class MediaClientSet {
     // Channel -> 用户ID映射
     private final ConcurrentMap<Channel, String> channelUsers = new ConcurrentHashMap<>();
     
-    // 用户ID -> 最后心跳时间（纳秒）
-    private final ConcurrentMap<String, Long> lastHeartbeatMap = new ConcurrentHashMap<>();
+    // 心跳超时关闭的连接数（监控任务读取后清零）
+    private final LongAdder expiredCount = new LongAdder();
     
     /**
      * 添加客户端连接
@@ -41,7 +45,7 @@ public class MediaClientSet {
         
         clientChannels.put(userId, channel);
         channelUsers.put(channel, userId);
-        updateHeartbeat(userId);
+        updateHeartbeat(channel);
         
         log.info("添加媒体流客户端: userId={}, channel={}", userId, channel.id());
     }
@@ -56,8 +60,8 @@ public class MediaClientSet {
         
         String userId = channelUsers.remove(channel);
         if (userId != null) {
-            clientChannels.remove(userId);
-            lastHeartbeatMap.remove(userId);
+            // 重连后用户已映射到新连接时保留新连接
+            clientChannels.remove(userId, channel);
             log.info("移除媒体流客户端: userId={}, channel={}", userId, channel.id());
         }
     }
@@ -73,7 +77,6 @@ public class MediaClientSet {
         Channel channel = clientChannels.remove(userId);
         if (channel != null) {
             channelUsers.remove(channel);
-            lastHeartbeatMap.remove(userId);
             log.info("移除媒体流客户端: userId={}", userId);
         }
     }
@@ -97,47 +100,47 @@ public class MediaClientSet {
      */
     public void updateHeartbeat(String userId) {
         if (userId != null) {
-            lastHeartbeatMap.put(userId, System.nanoTime());
+            Channel channel = clientChannels.get(userId);
+            if (channel != null) {
+                ChannelHeartbeat.touch(channel);
+            }
         }
     }
     
+    /**
+     * 更新心跳时间（IO线程中已持有Channel时使用，无需查表）
+     */
+    public void updateHeartbeat(Channel channel) {
+        ChannelHeartbeat.touch(channel);
+    }
+    
     /**
      * 获取最后心跳时间
      */
     public Long getLastHeartbeat(String userId) {
-        return lastHeartbeatMap.get(userId);
+        Channel channel = clientChannels.get(userId);
+        return channel != null ? ChannelHeartbeat.lastHeartbeat(channel) : null;
     }
     
     /**
-     * 清理超时的客户端连接
+     * 关闭心跳超时的连接
+     * 由IdleStateHandler在该连接读空闲超时后触发，连接关闭后在channelInactive中移除
      * 
-     * @param heartbeatTtl 心跳超时时间（纳秒）
-     * @return 清理的连接数
+     * @param channel 超时的连接
      */
-    public int cleanExpiredClients(long heartbeatTtl) {
-        long now = System.nanoTime();
-        int cleanedCount = 0;
-        
-        for (ConcurrentMap.Entry<String, Long> entry : lastHeartbeatMap.entrySet()) {
-            String userId = entry.getKey();
-            Long lastHeartbeat = entry.getValue();
-            
-            if (lastHeartbeat != null && (now - lastHeartbeat > heartbeatTtl)) {
-                log.info("清理超时媒体流客户端: userId={}, 超时时间={}ns", userId, now - lastHeartbeat);
-                Channel channel = clientChannels.get(userId);
-                if (channel != null && channel.isActive()) {
-                    channel.close();
-                }
-                removeClient(userId);
-                cleanedCount++;
-            }
-        }
-        
-        if (cleanedCount > 0) {
-            log.info("清理超时媒体流客户端完成: 清理数量={}", cleanedCount);
-        }
-        
-        return cleanedCount;
+    public void expireClient(Channel channel) {
+        Long lastHeartbeat = ChannelHeartbeat.lastHeartbeat(channel);
+        log.info("清理超时媒体流客户端: userId={}, channel={}, 超时时间={}ns", channelUsers.get(channel), channel.id(),
+                lastHeartbeat != null ? System.nanoTime() - lastHeartbeat : null);
+        expiredCount.increment();
+        channel.close();
+    }
+    
+    /**
+     * 获取上次调用以来心跳超时关闭的连接数，并清零
+     */
+    public int drainExpiredCount() {
+        return (int) expiredCount.sumThenReset();
     }
     
     /**
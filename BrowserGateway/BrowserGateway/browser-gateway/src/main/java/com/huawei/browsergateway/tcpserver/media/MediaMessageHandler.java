@@ -1,13 +1,21 @@
 package com.huawei.browsergateway.tcpserver.media;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.huawei.browsergateway.common.utils.UserIdUtil;
 import com.huawei.browsergateway.entity.request.InitBrowserRequest;
+import com.huawei.browsergateway.entity.request.MediaConfigRequest;
 import com.huawei.browsergateway.service.IChromeSet;
 import com.huawei.browsergateway.tcpserver.common.MessageType;
+import com.huawei.browsergateway.tcpserver.common.TlvCodec;
 import com.huawei.browsergateway.tcpserver.common.TlvMessage;
+import com.huawei.browsergateway.tcpserver.common.TrafficCountingHandler;
+import com.huawei.browsergateway.websocket.media.AdaptiveBitrateController;
+import com.huawei.browsergateway.websocket.media.MediaRecorder;
+import com.huawei.browsergateway.websocket.media.MediaRelay;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.timeout.IdleStateEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,6 +26,7 @@ import java.nio.charset.StandardCharsets;
 /**
  * TCP媒体流消息处理器
  * 处理登录、心跳、媒体流数据等
+ * 媒体帧以解码器输出的ByteBuf切片直接消费，不复制为byte[]；channelRead0返回后由父类自动释放
  */
 @Component
 public class MediaMessageHandler extends SimpleChannelInboundHandler<TlvMessage> {
@@ -29,28 +38,36 @@ public class MediaMessageHandler extends SimpleChannelInboundHandler<TlvMessage>
     @Autowired
     private MediaClientSet clientSet;
     
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private MediaRelay mediaRelay;
+    
+    // 自适应码率控制器，未注入时只记录编码端上报的配置
+    @Autowired(required = false)
+    private AdaptiveBitrateController bitrateController;
+    
+    // 媒体录制，编码端断开时结束当前分段
+    @Autowired(required = false)
+    private MediaRecorder recorder;
     
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, TlvMessage msg) throws Exception {
         short type = msg.getType();
-        byte[] value = msg.getValue();
         
         log.debug("收到媒体流消息: type={}, length={}", MessageType.getTypeName(type), msg.getLength());
         
         switch (type) {
             case MessageType.LOGIN:
-                handleLogin(ctx, value);
+                handleLogin(ctx, msg.getValue());
                 break;
             case MessageType.HEARTBEATS:
                 handleHeartbeat(ctx);
                 break;
             case MessageType.VIDEO_FRAME:
             case MessageType.AUDIO_FRAME:
-                handleMediaFrame(ctx, type, value);
+                handleMediaFrame(ctx, type, frameContent(msg));
                 break;
             case MessageType.MEDIA_CONFIG:
-                handleMediaConfig(ctx, value);
+                handleMediaConfig(ctx, msg.getValue());
                 break;
             case MessageType.LOGOUT:
                 handleLogout(ctx);
@@ -60,22 +77,34 @@ public class MediaMessageHandler extends SimpleChannelInboundHandler<TlvMessage>
         }
     }
     
+    /**
+     * 获取媒体帧内容
+     * 零拷贝解码时直接返回切片；兼容byte[]模式的消息时包装为ByteBuf（不复制）
+     */
+    private ByteBuf frameContent(TlvMessage msg) {
+        if (msg.hasContent()) {
+            return msg.getContent();
+        }
+        byte[] value = msg.getValue();
+        return value != null ? Unpooled.wrappedBuffer(value) : Unpooled.EMPTY_BUFFER;
+    }
+    
     /**
      * 处理登录消息
      */
     private void handleLogin(ChannelHandlerContext ctx, byte[] value) {
         try {
-            String json = new String(value, StandardCharsets.UTF_8);
-            log.info("收到媒体流登录请求: {}", json);
+            log.info("收到媒体流登录请求: format={}, length={}", TlvCodec.getFormat(), value.length);
             
-            // 解析登录参数
-            InitBrowserRequest request = objectMapper.readValue(json, InitBrowserRequest.class);
+            // 解析登录参数（按当前TLV格式：JSON或BINARY）
+            InitBrowserRequest request = TlvCodec.parseLoginRequest(value);
             
             // 生成用户ID
             String userId = UserIdUtil.generateUserId(request.getImei(), request.getImsi());
             
             // 添加到客户端集合
             clientSet.addClient(userId, ctx.channel());
+            TrafficCountingHandler.bind(ctx.channel(), userId);
             
             // 更新心跳
             chromeSet.updateHeartbeats(userId, System.nanoTime());
@@ -110,7 +139,7 @@ public class MediaMessageHandler extends SimpleChannelInboundHandler<TlvMessage>
     private void handleHeartbeat(ChannelHandlerContext ctx) {
         String userId = clientSet.getUserId(ctx.channel());
         if (userId != null) {
-            clientSet.updateHeartbeat(userId);
+            clientSet.updateHeartbeat(ctx.channel());
             chromeSet.updateHeartbeats(userId, System.nanoTime());
             log.debug("收到媒体流心跳: userId={}", userId);
         }
@@ -119,7 +148,7 @@ public class MediaMessageHandler extends SimpleChannelInboundHandler<TlvMessage>
     /**
      * 处理媒体帧数据
      */
-    private void handleMediaFrame(ChannelHandlerContext ctx, short type, byte[] value) {
+    private void handleMediaFrame(ChannelHandlerContext ctx, short type, ByteBuf frame) {
         String userId = clientSet.getUserId(ctx.channel());
         if (userId == null) {
             log.warn("收到媒体帧但用户未登录: type={}", MessageType.getTypeName(type));
@@ -128,13 +157,14 @@ public class MediaMessageHandler extends SimpleChannelInboundHandler<TlvMessage>
         
         try {
             // 更新心跳
-            clientSet.updateHeartbeat(userId);
+            clientSet.updateHeartbeat(ctx.channel());
             chromeSet.updateHeartbeats(userId, System.nanoTime());
             
-            // 这里可以将媒体帧数据转发到WebSocket或其他处理逻辑
-            // 暂时只记录日志
             log.debug("收到媒体帧: userId={}, type={}, size={}", 
-                    userId, MessageType.getTypeName(type), value.length);
+                    userId, MessageType.getTypeName(type), frame.readableBytes());
+            
+            // 转发到该用户的WebSocket媒体会话（切片引用，不复制）
+            mediaRelay.relay(userId, type, frame);
             
         } catch (Exception e) {
             log.error("处理媒体帧失败: userId={}, type={}", userId, MessageType.getTypeName(type), e);
@@ -143,6 +173,7 @@ public class MediaMessageHandler extends SimpleChannelInboundHandler<TlvMessage>
     
     /**
      * 处理媒体配置消息
+     * 编码端上报当前的视频码率和帧率，作为自适应码率调整的上限
      */
     private void handleMediaConfig(ChannelHandlerContext ctx, byte[] value) {
         String userId = clientSet.getUserId(ctx.channel());
@@ -152,11 +183,13 @@ public class MediaMessageHandler extends SimpleChannelInboundHandler<TlvMessage>
         }
         
         try {
-            String json = new String(value, StandardCharsets.UTF_8);
-            log.info("收到媒体配置: userId={}, config={}", userId, json);
+            MediaConfigRequest config = TlvCodec.parseMediaConfig(value);
+            log.info("收到媒体配置: userId={}, videoBitRate={}, frameRate={}",
+                    userId, config.getVideoBitRate(), config.getFrameRate());
             
-            // 这里可以更新媒体配置
-            // 暂时只记录日志
+            if (bitrateController != null) {
+                bitrateController.onSourceConfig(userId, config);
+            }
             
         } catch (Exception e) {
             log.error("处理媒体配置失败: userId={}", userId, e);
@@ -170,7 +203,9 @@ public class MediaMessageHandler extends SimpleChannelInboundHandler<TlvMessage>
         String userId = clientSet.getUserId(ctx.channel());
         if (userId != null) {
             log.info("媒体流用户登出: userId={}", userId);
+            boolean current = clientSet.getClient(userId) == ctx.channel();
             clientSet.removeClient(ctx.channel());
+            releaseUserMedia(userId, current);
         }
         ctx.close();
     }
@@ -212,10 +247,43 @@ public class MediaMessageHandler extends SimpleChannelInboundHandler<TlvMessage>
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         log.info("媒体流客户端断开: channel={}", ctx.channel().id());
+        String userId = clientSet.getUserId(ctx.channel());
+        // 终端重连时旧连接的断开可能晚于新连接登录，此时用户的媒体状态属于新连接，不能释放
+        boolean current = userId != null && clientSet.getClient(userId) == ctx.channel();
         clientSet.removeClient(ctx.channel());
+        if (userId != null) {
+            releaseUserMedia(userId, current);
+        }
         super.channelInactive(ctx);
     }
     
+    /**
+     * 编码端断开：重新登录时按新上报的配置开始调整码率，当前录制分段完成并上传
+     * 
+     * @param current 断开的是否为用户当前的媒体连接，重连后旧连接断开时码率状态和录制都属于新连接，不释放
+     */
+    private void releaseUserMedia(String userId, boolean current) {
+        if (!current) {
+            return;
+        }
+        if (bitrateController != null) {
+            bitrateController.remove(userId);
+        }
+        if (recorder != null) {
+            recorder.finish(userId);
+        }
+    }
+    
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        // 读空闲超过心跳超时时间（期间未收到心跳或任何消息），关闭连接
+        if (evt instanceof IdleStateEvent) {
+            clientSet.expireClient(ctx.channel());
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+    
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         log.error("媒体流消息处理异常: channel={}", ctx.channel().id(), cause);
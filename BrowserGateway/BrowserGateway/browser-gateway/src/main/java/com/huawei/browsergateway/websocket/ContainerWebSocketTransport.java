@@ -0,0 +1,105 @@
+package com.huawei.browsergateway.websocket;
+
+import io.netty.buffer.ByteBuf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Servlet容器（javax.websocket）会话的发送通道
+ * 二进制帧经getAsyncRemote()异步发送，单段ByteBuf直接暴露为NIO缓冲；
+ * 容器只接受单个NIO缓冲，多段复合帧（帧头+数据切片）在此合并复制一次；文本消息同步发送
+ */
+public class ContainerWebSocketTransport implements WebSocketTransport {
+    private static final Logger log = LoggerFactory.getLogger(ContainerWebSocketTransport.class);
+    
+    private static final String USER_PROPERTY = ContainerWebSocketTransport.class.getName();
+    
+    private final Session session;
+    
+    private volatile Object attachment;
+    
+    public ContainerWebSocketTransport(Session session) {
+        this.session = session;
+    }
+    
+    /**
+     * 获取会话对应的发送通道，同一会话的各回调取到同一实例
+     */
+    public static ContainerWebSocketTransport of(Session session) {
+        return (ContainerWebSocketTransport) session.getUserProperties()
+                .computeIfAbsent(USER_PROPERTY, key -> new ContainerWebSocketTransport(session));
+    }
+    
+    @Override
+    public String getId() {
+        return session.getId();
+    }
+    
+    @Override
+    public boolean isOpen() {
+        return session.isOpen();
+    }
+    
+    @Override
+    public void setSendTimeout(long timeoutMillis) {
+        session.getAsyncRemote().setSendTimeout(timeoutMillis);
+    }
+    
+    @Override
+    public void sendBinary(ByteBuf frame, Consumer<Throwable> callback) {
+        try {
+            session.getAsyncRemote().sendBinary(toNioBuffer(frame),
+                    result -> callback.accept(result.isOK() ? null : result.getException()));
+        } catch (RuntimeException e) {
+            // 会话已关闭等情况下容器直接抛出异常，不会回调
+            callback.accept(e);
+        }
+    }
+    
+    /**
+     * ByteBuf转为单个NIO缓冲，只有一段时不复制
+     */
+    static ByteBuffer toNioBuffer(ByteBuf frame) {
+        if (frame.nioBufferCount() == 1) {
+            return frame.nioBuffer();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(frame.readableBytes());
+        frame.getBytes(frame.readerIndex(), buffer);
+        buffer.flip();
+        return buffer;
+    }
+    
+    @Override
+    public void sendText(String text) {
+        try {
+            session.getBasicRemote().sendText(text);
+        } catch (IOException e) {
+            log.warn("WebSocket文本消息发送失败: sessionId={}, cause={}", session.getId(), String.valueOf(e));
+        }
+    }
+    
+    @Override
+    public void close() {
+        try {
+            session.close();
+        } catch (IOException e) {
+            log.error("关闭WebSocket连接失败", e);
+        }
+    }
+    
+    @Override
+    public Object getAttachment() {
+        return attachment;
+    }
+    
+    @Override
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+}
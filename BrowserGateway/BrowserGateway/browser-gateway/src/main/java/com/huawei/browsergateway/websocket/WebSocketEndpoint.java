@@ -0,0 +1,40 @@
+package com.huawei.browsergateway.websocket;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * WebSocket端点业务逻辑
+ * 由Netty WebSocket服务器（NettyWebSocketServer）或Servlet容器端点适配调用，连接状态保存在WebSocketTransport中
+ */
+public interface WebSocketEndpoint {
+    
+    /**
+     * 握手完成
+     * 
+     * @param transport 连接
+     * @param pathParam 路径参数（imeiAndImsi）
+     */
+    void onOpen(WebSocketTransport transport, String pathParam);
+    
+    /**
+     * 收到文本消息
+     */
+    void onText(WebSocketTransport transport, String message);
+    
+    /**
+     * 收到二进制消息
+     * 
+     * @param data 消息数据，调用方在返回后释放，端点需保留时自行retain
+     */
+    void onBinary(WebSocketTransport transport, ByteBuf data);
+    
+    /**
+     * 连接关闭
+     */
+    void onClose(WebSocketTransport transport);
+    
+    /**
+     * 连接异常，之后连接会被关闭
+     */
+    void onError(WebSocketTransport transport, Throwable error);
+}
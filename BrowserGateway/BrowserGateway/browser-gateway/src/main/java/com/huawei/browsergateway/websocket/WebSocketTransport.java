@@ -0,0 +1,57 @@
+package com.huawei.browsergateway.websocket;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.function.Consumer;
+
+/**
+ * WebSocket连接的发送通道
+ * 屏蔽Netty WebSocket服务器与Servlet容器端点的差异，端点业务逻辑与媒体发送队列只依赖该接口
+ */
+public interface WebSocketTransport {
+    
+    /**
+     * 连接标识，用于日志
+     */
+    String getId();
+    
+    /**
+     * 连接是否打开
+     */
+    boolean isOpen();
+    
+    /**
+     * 设置单帧发送超时，超时视为发送失败并关闭连接
+     * 
+     * @param timeoutMillis 超时时间（毫秒），0表示不超时
+     */
+    void setSendTimeout(long timeoutMillis);
+    
+    /**
+     * 异步发送二进制帧（不阻塞）
+     * 调用方保留frame的引用，需在完成回调之后再释放
+     * 
+     * @param frame 帧数据
+     * @param callback 完成回调，参数为null表示发送成功，否则为失败原因；可能在调用线程内同步回调
+     */
+    void sendBinary(ByteBuf frame, Consumer<Throwable> callback);
+    
+    /**
+     * 发送文本消息
+     * 
+     * @param text 文本
+     */
+    void sendText(String text);
+    
+    /**
+     * 关闭连接
+     */
+    void close();
+    
+    /**
+     * 连接附带的端点状态
+     */
+    Object getAttachment();
+    
+    void setAttachment(Object attachment);
+}
@@ -1,56 +1,87 @@
 package com.huawei.browsergateway.websocket.extension;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huawei.browsergateway.common.utils.KeyedSerialExecutor;
 import com.huawei.browsergateway.common.utils.UserIdUtil;
 import com.huawei.browsergateway.entity.browser.UserChrome;
 import com.huawei.browsergateway.sdk.muen.MuenDriver;
 import com.huawei.browsergateway.service.IChromeSet;
+import com.huawei.browsergateway.service.impl.DataSizeTracker;
+import com.huawei.browsergateway.websocket.ContainerWebSocketTransport;
+import com.huawei.browsergateway.websocket.WebSocketEndpoint;
+import com.huawei.browsergateway.websocket.WebSocketTransport;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import javax.websocket.*;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * WebSocket控制流端点（Muen代理）
  * URL: ws://{server}:{muen-port}/control/websocket/{imeiAndImsi}
  * 作为Muen SDK与浏览器扩展之间的代理WebSocket服务器
+ * 
+ * 由NettyWebSocketServer在muen-port上提供服务；@ServerEndpoint注解的方法是部署到Servlet容器时的适配，
+ * 两种方式共用同一套处理逻辑，连接的用户ID保存在WebSocketTransport中
+ * 
+ * 消息交给MuenDriver处理时会进入插件和浏览器驱动，可能阻塞；该调用在会话线程池中按用户串行执行，
+ * 不占用与媒体流共用的WebSocket IO线程
  */
 @ServerEndpoint("/control/websocket/{imeiAndImsi}") 
 @Component
-public class ExtensionSocketServer {
+public class ExtensionSocketServer implements WebSocketEndpoint {
     private static final Logger log = LoggerFactory.getLogger(ExtensionSocketServer.class);
     
-    // 会话 -> 用户ID映射
-    private static final Map<Session, String> sessionUsers = new ConcurrentHashMap<>();
+    // 用户ID -> 连接（同一用户重复连接时以最新的连接为准）
+    private static final Map<String, WebSocketTransport> userTransports = new ConcurrentHashMap<>();
     
     private static IChromeSet chromeSet;
     private static ObjectMapper objectMapper = new ObjectMapper();
     
+    // 按用户统计控制流量，未注入时不统计
+    private static DataSizeTracker trafficTracker;
+    
+    // 会话线程池，未注入时在调用线程中处理
+    private static KeyedSerialExecutor sessionExecutor;
+    
     @Autowired
     public void setChromeSet(IChromeSet chromeSet) {
         ExtensionSocketServer.chromeSet = chromeSet;
     }
     
+    @Autowired(required = false)
+    public void setTrafficTracker(@Qualifier("controlDataSizeTracker") DataSizeTracker trafficTracker) {
+        ExtensionSocketServer.trafficTracker = trafficTracker;
+    }
+    
+    @Autowired(required = false)
+    public void setSessionExecutor(@Qualifier("sessionExecutor") KeyedSerialExecutor sessionExecutor) {
+        ExtensionSocketServer.sessionExecutor = sessionExecutor;
+    }
+    
     /**
      * 连接建立时调用
      */
-    @OnOpen
-    public void onOpen(Session session, @PathParam("imeiAndImsi") String imeiAndImsi) {
+    @Override
+    public void onOpen(WebSocketTransport transport, String imeiAndImsi) {
         try {
-            log.info("控制流WebSocket连接建立: imeiAndImsi={}, sessionId={}", imeiAndImsi, session.getId());
+            log.info("控制流WebSocket连接建立: imeiAndImsi={}, sessionId={}", imeiAndImsi, transport.getId());
             
             // 解析用户ID（imeiAndImsi格式: imei_imsi）
             String[] parts = imeiAndImsi.split("_");
             if (parts.length != 2) {
                 log.error("无效的用户标识格式: {}", imeiAndImsi);
-                session.close();
+                transport.close();
                 return;
             }
             
@@ -58,7 +89,8 @@ public class ExtensionSocketServer {
             String imsi = parts[1];
             String userId = UserIdUtil.generateUserId(imei, imsi);
             
-            sessionUsers.put(session, userId);
+            transport.setAttachment(userId);
+            userTransports.put(userId, transport);
             
             // 检查浏览器实例是否存在
             if (chromeSet != null) {
@@ -72,25 +104,30 @@ public class ExtensionSocketServer {
             
         } catch (Exception e) {
             log.error("处理WebSocket连接失败: imeiAndImsi={}", imeiAndImsi, e);
-            try {
-                session.close();
-            } catch (IOException ex) {
-                log.error("关闭WebSocket连接失败", ex);
-            }
+            transport.close();
         }
     }
     
     /**
      * 接收文本消息（JSON格式的控制命令）
      */
-    @OnMessage
-    public void onMessage(Session session, String message) {
-        String userId = sessionUsers.get(session);
+    @Override
+    public void onText(WebSocketTransport transport, String message) {
+        String userId = (String) transport.getAttachment();
         if (userId == null) {
-            log.warn("收到消息但用户未登录: sessionId={}", session.getId());
+            log.warn("收到消息但用户未登录: sessionId={}", transport.getId());
             return;
         }
-        
+        if (trafficTracker != null) {
+            trafficTracker.trackInbound(userId, ByteBufUtil.utf8Bytes(message));
+        }
+        dispatch(userId, () -> handleText(userId, message));
+    }
+    
+    /**
+     * 将文本消息转发给MuenDriver（在会话线程池中执行）
+     */
+    private void handleText(String userId, String message) {
         try {
             log.debug("收到控制流消息: userId={}, message={}", userId, message);
             
@@ -130,14 +167,25 @@ public class ExtensionSocketServer {
     /**
      * 接收二进制消息
      */
-    @OnMessage
-    public void onBinaryMessage(Session session, byte[] data) {
-        String userId = sessionUsers.get(session);
+    @Override
+    public void onBinary(WebSocketTransport transport, ByteBuf content) {
+        String userId = (String) transport.getAttachment();
         if (userId == null) {
-            log.warn("收到二进制消息但用户未登录: sessionId={}", session.getId());
+            log.warn("收到二进制消息但用户未登录: sessionId={}", transport.getId());
             return;
         }
-        
+        if (trafficTracker != null) {
+            trafficTracker.trackInbound(userId, content.readableBytes());
+        }
+        // content在回调返回后释放，先复制再交给会话线程池
+        byte[] data = ByteBufUtil.getBytes(content);
+        dispatch(userId, () -> handleBinary(userId, data));
+    }
+    
+    /**
+     * 将二进制消息交给MuenDriver处理（在会话线程池中执行）
+     */
+    private void handleBinary(String userId, byte[] data) {
         try {
             log.debug("收到控制流二进制消息: userId={}, size={}", userId, data.length);
             
@@ -167,27 +215,43 @@ public class ExtensionSocketServer {
         }
     }
     
+    /**
+     * 在会话线程池中按用户串行执行，线程池已满时丢弃消息
+     */
+    private static void dispatch(String userId, Runnable task) {
+        if (sessionExecutor == null) {
+            task.run();
+            return;
+        }
+        try {
+            sessionExecutor.execute(userId, task);
+        } catch (RejectedExecutionException e) {
+            log.warn("会话线程池已满，丢弃控制流消息: userId={}", userId);
+        }
+    }
+    
     /**
      * 连接关闭时调用
      */
-    @OnClose
-    public void onClose(Session session) {
-        String userId = sessionUsers.remove(session);
+    @Override
+    public void onClose(WebSocketTransport transport) {
+        String userId = (String) transport.getAttachment();
         if (userId != null) {
-            log.info("控制流WebSocket连接关闭: userId={}, sessionId={}", userId, session.getId());
+            log.info("控制流WebSocket连接关闭: userId={}, sessionId={}", userId, transport.getId());
+            userTransports.remove(userId, transport);
         }
     }
     
     /**
      * 发生错误时调用
      */
-    @OnError
-    public void onError(Session session, Throwable error) {
-        String userId = sessionUsers.get(session);
-        log.error("控制流WebSocket错误: userId={}, sessionId={}", userId, session.getId(), error);
+    @Override
+    public void onError(WebSocketTransport transport, Throwable error) {
+        String userId = (String) transport.getAttachment();
+        log.error("控制流WebSocket错误: userId={}, sessionId={}", userId, transport.getId(), error);
         
         if (userId != null) {
-            sessionUsers.remove(session);
+            userTransports.remove(userId, transport);
         }
     }
     
@@ -201,32 +265,53 @@ public class ExtensionSocketServer {
             return;
         }
         
-        // 查找用户对应的Session
-        Session targetSession = null;
-        for (Map.Entry<Session, String> entry : sessionUsers.entrySet()) {
-            if (userId.equals(entry.getValue())) {
-                targetSession = entry.getKey();
-                break;
-            }
-        }
-        
-        if (targetSession == null) {
+        // 查找用户对应的连接
+        WebSocketTransport target = userTransports.get(userId);
+        if (target == null) {
             log.warn("未找到用户的WebSocket会话: userId={}", userId);
             return;
         }
         
-        if (!targetSession.isOpen()) {
-            log.warn("WebSocket会话已关闭: userId={}, sessionId={}", userId, targetSession.getId());
-            sessionUsers.remove(targetSession);
+        if (!target.isOpen()) {
+            log.warn("WebSocket会话已关闭: userId={}, sessionId={}", userId, target.getId());
+            userTransports.remove(userId, target);
             return;
         }
         
         try {
             String messageStr = message instanceof String ? (String) message : message.toString();
-            targetSession.getBasicRemote().sendText(messageStr);
+            target.sendText(messageStr);
+            if (trafficTracker != null) {
+                trafficTracker.trackOutbound(userId, ByteBufUtil.utf8Bytes(messageStr));
+            }
             log.debug("WebSocket消息发送成功: userId={}, message={}", userId, messageStr);
         } catch (Exception e) {
             log.error("发送WebSocket消息异常: userId={}", userId, e);
         }
     }
+    
+    @OnOpen
+    public void onOpen(Session session, @PathParam("imeiAndImsi") String imeiAndImsi) {
+        onOpen(ContainerWebSocketTransport.of(session), imeiAndImsi);
+    }
+
+    @OnMessage
+    public void onMessage(Session session, String message) {
+        onText(ContainerWebSocketTransport.of(session), message);
+    }
+    
+    @OnMessage
+    public void onBinaryMessage(Session session, byte[] data) {
+        onBinary(ContainerWebSocketTransport.of(session), Unpooled.wrappedBuffer(data));
+    }
+    
+    @OnClose
+    public void onClose(Session session) {
+        onClose(ContainerWebSocketTransport.of(session));
+    }
+    
+    @OnError
+    public void onError(Session session, Throwable error) {
+        onError(ContainerWebSocketTransport.of(session), error);
+    }
 }
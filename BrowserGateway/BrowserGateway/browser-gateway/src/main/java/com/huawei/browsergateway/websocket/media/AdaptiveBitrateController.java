@@ -0,0 +1,362 @@
+package com.huawei.browsergateway.websocket.media;
+
+import com.huawei.browsergateway.entity.request.MediaConfigRequest;
+import com.huawei.browsergateway.tcpserver.common.MessageType;
+import com.huawei.browsergateway.tcpserver.common.TlvCodec;
+import com.huawei.browsergateway.tcpserver.common.TlvMessage;
+import com.huawei.browsergateway.tcpserver.media.MediaClientSet;
+import io.netty.channel.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 自适应码率控制器
+ * 周期性采集每个用户全部观看会话的发送队列遥测（积压字节数、单帧发送耗时、丢帧数），
+ * 按AIMD调整编码端的视频码率和帧率，经媒体TCP连接下发MEDIA_CONFIG：
+ * 1. 任一会话拥塞（本周期有丢帧、积压折算的排队时延或单帧发送耗时超过阈值）：码率乘以下降系数，
+ *    码率已到下限时按同一系数降低帧率
+ * 2. 全部会话空闲（无丢帧，排队时延和发送耗时均低于阈值的一半）连续stable-periods个周期：
+ *    先逐步恢复帧率，帧率恢复后码率加性增加，不超过编码端上报的码率和帧率
+ * 3. 介于两者之间时保持不变
+ * 
+ * 同一用户的全部会话共用一路编码，按最差的会话调整；编码端未上报时以配置的上限作为当前值
+ */
+@Component
+public class AdaptiveBitrateController {
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveBitrateController.class);
+    
+    // 帧率每次恢复的步长
+    private static final int FRAME_RATE_STEP = 5;
+    
+    @Value("${browsergw.media.abr-enabled:true}")
+    private boolean enabled = true;
+    
+    @Value("${browsergw.media.abr-min-video-bitrate:300}")
+    private int minVideoBitRate = 300;
+    
+    @Value("${browsergw.media.abr-max-video-bitrate:4000}")
+    private int maxVideoBitRate = 4000;
+    
+    @Value("${browsergw.media.abr-min-frame-rate:10}")
+    private int minFrameRate = 10;
+    
+    @Value("${browsergw.media.abr-max-frame-rate:30}")
+    private int maxFrameRate = 30;
+    
+    @Value("${browsergw.media.abr-decrease-factor:0.7}")
+    private double decreaseFactor = 0.7;
+    
+    @Value("${browsergw.media.abr-increase-step:200}")
+    private int increaseStep = 200;
+    
+    @Value("${browsergw.media.abr-stable-periods:3}")
+    private int stablePeriods = 3;
+    
+    @Value("${browsergw.media.abr-queue-delay-threshold:300}")
+    private long queueDelayThreshold = 300;
+    
+    @Value("${browsergw.media.abr-send-latency-threshold:200}")
+    private long sendLatencyThreshold = 200;
+    
+    @Autowired
+    private MediaRelay mediaRelay;
+    
+    @Autowired
+    private MediaClientSet mediaClientSet;
+    
+    // 用户ID -> 码率状态，编码端上报配置（IO线程）与周期调整（调度线程）在状态锁内访问
+    private final ConcurrentMap<String, RateState> states = new ConcurrentHashMap<>();
+    
+    // 监控指标
+    private final LongAdder decreases = new LongAdder();
+    private final LongAdder increases = new LongAdder();
+    private final LongAdder pushed = new LongAdder();
+    private final LongAdder pushFailed = new LongAdder();
+    
+    /**
+     * 编码端上报当前编码参数（MEDIA_CONFIG），作为该用户的码率和帧率上限
+     * 上限不超过配置的最大值；与最近一次下发的配置相同时视为编码端确认，不改变上限
+     * 
+     * @param userId 用户ID
+     * @param config 上报的媒体配置，未设置的字段沿用配置的上限
+     */
+    public void onSourceConfig(String userId, MediaConfigRequest config) {
+        int ceilingBitRate = Math.min(maxVideoBitRate, positive(config.getVideoBitRate(), maxVideoBitRate));
+        int ceilingFrameRate = Math.min(maxFrameRate, positive(config.getFrameRate(), maxFrameRate));
+        RateState state = states.computeIfAbsent(userId, key -> newState());
+        synchronized (state) {
+            if (state.isPushed(config)) {
+                log.debug("编码端确认下发的媒体配置: userId={}, videoBitRate={}, frameRate={}",
+                        userId, config.getVideoBitRate(), config.getFrameRate());
+                return;
+            }
+            state.setCeiling(ceilingBitRate, ceilingFrameRate);
+        }
+        log.info("编码端上报媒体配置: userId={}, videoBitRate={}, frameRate={}",
+                userId, ceilingBitRate, ceilingFrameRate);
+    }
+    
+    /**
+     * 移除用户的码率状态（媒体TCP连接断开时调用）
+     */
+    public void remove(String userId) {
+        states.remove(userId);
+    }
+    
+    /**
+     * 执行一个调整周期：采集遥测、更新码率状态，码率或帧率变化时下发MEDIA_CONFIG
+     */
+    public void adjust() {
+        if (!enabled) {
+            return;
+        }
+        Set<String> active = new HashSet<>();
+        for (MediaHub hub : mediaRelay.getHubs()) {
+            String userId = hub.getUserId();
+            active.add(userId);
+            RateState state = states.computeIfAbsent(userId, key -> newState());
+            int videoBitRate;
+            synchronized (state) {
+                videoBitRate = state.videoBitRate;
+            }
+            Congestion congestion = Congestion.CLEAR;
+            for (MediaSendQueue queue : hub.getSubscribers()) {
+                congestion = congestion.worse(classify(queue.sample(), videoBitRate));
+            }
+            
+            MediaConfigRequest update;
+            synchronized (state) {
+                update = state.update(congestion);
+            }
+            if (update != null) {
+                push(userId, update);
+            }
+        }
+        
+        // 观看会话全部断开的用户恢复到编码端上报的上限；媒体TCP连接也已断开时移除
+        states.forEach((userId, state) -> {
+            if (active.contains(userId)) {
+                return;
+            }
+            if (mediaClientSet.getClient(userId) == null) {
+                states.remove(userId, state);
+                return;
+            }
+            MediaConfigRequest update;
+            synchronized (state) {
+                update = state.reset() ? state.pushConfig() : null;
+            }
+            if (update != null) {
+                push(userId, update);
+            }
+        });
+    }
+    
+    /**
+     * 判定单个会话本周期的拥塞状态
+     * 
+     * @param sample 发送队列遥测
+     * @param videoBitRate 当前视频码率（kbps），用于将积压字节数折算为排队时延
+     */
+    Congestion classify(MediaSendQueue.SendSample sample, int videoBitRate) {
+        // 积压字节数按当前码率折算的排队时延（毫秒）：bytes * 8 / kbps
+        long queueDelay = sample.queuedBytes * 8 / Math.max(1, videoBitRate);
+        long sendLatency = TimeUnit.NANOSECONDS.toMillis(sample.maxSendNanos);
+        if (sample.dropped > 0 || queueDelay > queueDelayThreshold || sendLatency > sendLatencyThreshold) {
+            return Congestion.CONGESTED;
+        }
+        if (queueDelay <= queueDelayThreshold / 2 && sendLatency <= sendLatencyThreshold / 2) {
+            return Congestion.CLEAR;
+        }
+        return Congestion.HOLD;
+    }
+    
+    /**
+     * 经媒体TCP连接向编码端下发MEDIA_CONFIG
+     */
+    private void push(String userId, MediaConfigRequest update) {
+        Channel channel = mediaClientSet.getClient(userId);
+        if (channel == null || !channel.isActive()) {
+            log.debug("媒体TCP连接不存在，跳过码率调整下发: userId={}", userId);
+            return;
+        }
+        try {
+            channel.writeAndFlush(new TlvMessage(MessageType.MEDIA_CONFIG, TlvCodec.marshalMediaConfig(update)));
+            pushed.increment();
+            log.debug("下发媒体配置: userId={}, videoBitRate={}, frameRate={}",
+                    userId, update.getVideoBitRate(), update.getFrameRate());
+        } catch (Exception e) {
+            pushFailed.increment();
+            log.warn("下发媒体配置失败: userId={}, cause={}", userId, String.valueOf(e));
+        }
+    }
+    
+    /**
+     * 当前下发给用户的码率和帧率
+     * 
+     * @return 用户无码率状态时返回null
+     */
+    public MediaConfigRequest getCurrent(String userId) {
+        RateState state = states.get(userId);
+        if (state == null) {
+            return null;
+        }
+        synchronized (state) {
+            return state.toConfig();
+        }
+    }
+    
+    /**
+     * 输出本周期指标并清零
+     */
+    public String metricsAndReset() {
+        int reduced = 0;
+        for (RateState state : states.values()) {
+            synchronized (state) {
+                if (state.videoBitRate < state.ceilingBitRate || state.frameRate < state.ceilingFrameRate) {
+                    reduced++;
+                }
+            }
+        }
+        return "users=" + states.size()
+                + ", reduced=" + reduced
+                + ", decreases=" + decreases.sumThenReset()
+                + ", increases=" + increases.sumThenReset()
+                + ", pushed=" + pushed.sumThenReset()
+                + ", pushFailed=" + pushFailed.sumThenReset();
+    }
+    
+    RateState newState() {
+        RateState state = new RateState();
+        state.setCeiling(maxVideoBitRate, maxFrameRate);
+        return state;
+    }
+    
+    private static int positive(Integer value, int defaultValue) {
+        return value != null && value > 0 ? value : defaultValue;
+    }
+    
+    /**
+     * 单个会话本周期的拥塞状态，按严重程度排列
+     */
+    enum Congestion {
+        CLEAR,
+        HOLD,
+        CONGESTED;
+        
+        Congestion worse(Congestion other) {
+            return other.ordinal() > ordinal() ? other : this;
+        }
+    }
+    
+    /**
+     * 单个用户的码率状态，在自身锁内访问
+     */
+    final class RateState {
+        int ceilingBitRate;
+        int ceilingFrameRate;
+        int videoBitRate;
+        int frameRate;
+        // 连续空闲的周期数
+        int clearPeriods;
+        // 最近一次下发的码率和帧率，未下发时为0
+        int pushedBitRate;
+        int pushedFrameRate;
+        
+        void setCeiling(int ceilingBitRate, int ceilingFrameRate) {
+            this.ceilingBitRate = Math.max(minVideoBitRate, ceilingBitRate);
+            this.ceilingFrameRate = Math.max(minFrameRate, ceilingFrameRate);
+            reset();
+        }
+        
+        /**
+         * 恢复到上限
+         * 
+         * @return 码率或帧率是否变化
+         */
+        boolean reset() {
+            boolean changed = videoBitRate != ceilingBitRate || frameRate != ceilingFrameRate;
+            videoBitRate = ceilingBitRate;
+            frameRate = ceilingFrameRate;
+            clearPeriods = 0;
+            return changed;
+        }
+        
+        /**
+         * 按本周期的拥塞状态调整
+         * 
+         * @param congestion 全部会话中最差的拥塞状态
+         * @return 码率或帧率变化时返回下发的配置，否则返回null
+         */
+        MediaConfigRequest update(Congestion congestion) {
+            int oldBitRate = videoBitRate;
+            int oldFrameRate = frameRate;
+            if (congestion == Congestion.CONGESTED) {
+                clearPeriods = 0;
+                if (videoBitRate > minVideoBitRate) {
+                    videoBitRate = Math.max(minVideoBitRate, (int) Math.round(videoBitRate * decreaseFactor));
+                } else {
+                    frameRate = Math.max(minFrameRate, (int) Math.round(frameRate * decreaseFactor));
+                }
+            } else if (congestion == Congestion.CLEAR) {
+                if (++clearPeriods >= stablePeriods) {
+                    clearPeriods = 0;
+                    if (frameRate < ceilingFrameRate) {
+                        frameRate = Math.min(ceilingFrameRate, frameRate + FRAME_RATE_STEP);
+                    } else {
+                        videoBitRate = Math.min(ceilingBitRate, videoBitRate + increaseStep);
+                    }
+                }
+            } else {
+                clearPeriods = 0;
+            }
+            
+            if (videoBitRate == oldBitRate && frameRate == oldFrameRate) {
+                return null;
+            }
+            if (videoBitRate < oldBitRate || frameRate < oldFrameRate) {
+                decreases.increment();
+            } else {
+                increases.increment();
+            }
+            return pushConfig();
+        }
+        
+        /**
+         * 记录并返回待下发的配置
+         */
+        MediaConfigRequest pushConfig() {
+            pushedBitRate = videoBitRate;
+            pushedFrameRate = frameRate;
+            return toConfig();
+        }
+        
+        /**
+         * 上报的配置是否为最近一次下发的配置（编码端应用后回报），未上报的字段不参与比较
+         */
+        boolean isPushed(MediaConfigRequest config) {
+            if (pushedBitRate == 0 || config.getVideoBitRate() == null) {
+                return false;
+            }
+            return config.getVideoBitRate() == pushedBitRate
+                    && (config.getFrameRate() == null || config.getFrameRate() == pushedFrameRate);
+        }
+        
+        MediaConfigRequest toConfig() {
+            MediaConfigRequest config = new MediaConfigRequest();
+            config.setVideoBitRate(videoBitRate);
+            config.setFrameRate(frameRate);
+            return config;
+        }
+    }
+}
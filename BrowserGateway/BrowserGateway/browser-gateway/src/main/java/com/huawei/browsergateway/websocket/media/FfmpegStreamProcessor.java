@@ -1,54 +1,165 @@
 package com.huawei.browsergateway.websocket.media;
 
+import com.huawei.browsergateway.websocket.media.VideoFrameClassifier.FrameKind;
+import com.huawei.browsergateway.websocket.media.transcode.FfmpegTranscoder;
+import com.huawei.browsergateway.websocket.media.transcode.TranscodeEngine;
+import com.huawei.browsergateway.websocket.media.transcode.TranscodeProfile;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.websocket.Session;
-import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * FFmpeg模式媒体流处理器
- * 使用FFmpeg进行编解码处理
+ * 视频帧在转码线程池中解码、缩放并按客户端参数（分辨率、帧率、码率、GOP）重新编码后下发，
+ * 音频帧直接下发；FFmpeg本地库不可用、输入不是H264（解码器只支持H264）或转码器创建失败时退化为直接转发
  */
 public class FfmpegStreamProcessor implements MediaStreamProcessor {
     private static final Logger log = LoggerFactory.getLogger(FfmpegStreamProcessor.class);
     
+    private final TranscodeEngine transcodeEngine;
+    
     private String userId;
-    private Session session;
+    private volatile MediaFrameSink sink;
     private MediaParam param;
     
+    // 输入视频编码格式，用于识别关键帧
+    private volatile String codecType;
+    
+    // 是否转码（否则直接转发）
+    private volatile boolean transcoding;
+    
+    // 转码器及关闭标记，在transcodeLock内访问
+    private final Object transcodeLock = new Object();
+    private FfmpegTranscoder transcoder;
+    private boolean closed;
+    
+    // 排队等待转码的帧数
+    private final AtomicInteger pendingFrames = new AtomicInteger();
+    
+    // 输入视频帧被丢弃后等待下一个关键帧
+    private volatile boolean needKeyframe;
+    
+    /**
+     * @param transcodeEngine 转码引擎，为null时直接转发
+     */
+    public FfmpegStreamProcessor(TranscodeEngine transcodeEngine) {
+        this.transcodeEngine = transcodeEngine;
+    }
+    
     @Override
-    public void init(String userId, Session session, MediaParam param) {
+    public void init(String userId, MediaFrameSink sink, MediaParam param) {
         this.userId = userId;
-        this.session = session;
+        this.sink = sink;
         this.param = param;
-        log.info("初始化FFmpeg处理器: userId={}, width={}, height={}, frameRate={}, codecType={}", 
+        this.codecType = param.getCodecType();
+        log.info("初始化FFmpeg处理器: userId={}, width={}, height={}, frameRate={}, codecType={}",
                 userId, param.getWidth(), param.getHeight(), param.getFrameRate(), param.getCodecType());
         
-        // 这里可以初始化FFmpeg编解码器
-        // 暂时只记录日志
+        if (transcodeEngine == null || !transcodeEngine.isAvailable()) {
+            log.warn("FFmpeg不可用，媒体流直接转发: userId={}", userId);
+            return;
+        }
+        if (!"H264".equalsIgnoreCase(codecType)) {
+            log.warn("转码只支持H264输入，媒体流直接转发: userId={}, codecType={}", userId, codecType);
+            return;
+        }
+        TranscodeProfile profile = TranscodeProfile.from(param);
+        synchronized (transcodeLock) {
+            transcoder = transcodeEngine.acquire(profile);
+        }
+        transcoding = transcoder != null;
+        log.info("FFmpeg转码已启用: userId={}, profile={}, transcoding={}", userId, profile, transcoding);
     }
     
     @Override
     public void processMediaStream(byte[] data) {
-        if (session == null || !session.isOpen()) {
-            log.warn("WebSocket会话已关闭，无法处理媒体流: userId={}", userId);
-            return;
+        // 数据格式: [4字节: 帧类型][4字节: 时间戳][4字节: 数据长度][N字节: 数据]
+        processMediaFrame(Unpooled.wrappedBuffer(data));
+    }
+    
+    @Override
+    public boolean processMediaFrame(ByteBuf frame) {
+        MediaFrameSink sink = this.sink;
+        if (sink == null) {
+            frame.release();
+            log.debug("处理器已关闭，无法转发媒体帧: userId={}", userId);
+            return false;
+        }
+        
+        // 音频帧和无需转码时直接下发
+        FrameKind kind = VideoFrameClassifier.classify(frame, codecType);
+        if (!transcoding || kind == FrameKind.AUDIO) {
+            return sink.offer(frame);
+        }
+        
+        boolean key = kind == FrameKind.KEY;
+        if (needKeyframe && !key) {
+            return dropInput(frame);
+        }
+        if (pendingFrames.get() >= transcodeEngine.getMaxPendingFrames()) {
+            log.debug("转码积压，丢帧并等待关键帧: userId={}", userId);
+            needKeyframe = true;
+            return dropInput(frame);
         }
+        needKeyframe = false;
         
+        pendingFrames.incrementAndGet();
+        if (!transcodeEngine.execute(userId, () -> transcodeFrame(frame, key))) {
+            pendingFrames.decrementAndGet();
+            log.warn("转码线程池已满，丢帧: userId={}", userId);
+            needKeyframe = true;
+            return dropInput(frame);
+        }
+        return true;
+    }
+    
+    private boolean dropInput(ByteBuf frame) {
+        frame.release();
+        transcodeEngine.recordDropped();
+        return false;
+    }
+    
+    /**
+     * 转码一帧并写入输出（转码线程）
+     */
+    private void transcodeFrame(ByteBuf frame, boolean key) {
+        pendingFrames.decrementAndGet();
         try {
-            // FFmpeg模式：对媒体流进行编解码处理后再转发
-            // 数据格式: [4字节: 帧类型][4字节: 时间戳][4字节: 数据长度][N字节: 数据]
-            
-            // 这里可以添加FFmpeg编解码逻辑
-            // 暂时直接转发原始数据
-            ByteBuffer buffer = ByteBuffer.wrap(data);
-            session.getBasicRemote().sendBinary(buffer);
-            
-            log.debug("转发FFmpeg媒体流: userId={}, size={}", userId, data.length);
-            
-        } catch (Exception e) {
-            log.error("处理FFmpeg媒体流失败: userId={}", userId, e);
+            synchronized (transcodeLock) {
+                MediaFrameSink sink = this.sink;
+                if (closed || transcoder == null || sink == null) {
+                    return;
+                }
+                int index = frame.readerIndex();
+                int timestamp = frame.getInt(index + 4);
+                int length = Math.min(frame.getInt(index + 8), frame.readableBytes() - MediaRelay.WS_HEADER_LENGTH);
+                
+                long start = System.nanoTime();
+                int outputs = transcoder.transcode(frame.nioBuffer(index + MediaRelay.WS_HEADER_LENGTH, length), key,
+                        timestamp, (data, keyFrame, outputTimestamp) -> {
+                            ByteBuf wsFrame = PooledByteBufAllocator.DEFAULT.directBuffer(
+                                    MediaRelay.WS_HEADER_LENGTH + data.remaining());
+                            wsFrame.writeInt(keyFrame ? MediaRelay.WS_FRAME_KEY : MediaRelay.WS_FRAME_DELTA)
+                                    .writeInt(outputTimestamp)
+                                    .writeInt(data.remaining())
+                                    .writeBytes(data);
+                            sink.offer(wsFrame);
+                        });
+                transcodeEngine.recordTranscode(System.nanoTime() - start, outputs);
+            }
+        } catch (RuntimeException e) {
+            log.error("FFmpeg转码失败: userId={}", userId, e);
+            synchronized (transcodeLock) {
+                if (transcoder != null) {
+                    transcoder.resync();
+                }
+            }
+        } finally {
+            frame.release();
         }
     }
     
@@ -56,10 +167,15 @@ public class FfmpegStreamProcessor implements MediaStreamProcessor {
     public void close() {
         log.info("关闭FFmpeg处理器: userId={}", userId);
         
-        // 这里可以清理FFmpeg资源
-        // 暂时只记录日志
-        
-        this.session = null;
+        // 等待进行中的转码完成后归还转码器，排队中的任务在执行时直接丢弃
+        synchronized (transcodeLock) {
+            closed = true;
+            if (transcoder != null) {
+                transcodeEngine.release(transcoder);
+                transcoder = null;
+            }
+        }
+        this.sink = null;
         this.param = null;
     }
 }
@@ -0,0 +1,229 @@
+package com.huawei.browsergateway.websocket.media;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 关键帧缓存
+ * 按用户缓存最近的关键帧及编码参数集（SPS/PPS/VPS），存放在直接内存中；
+ * 与MediaHub的GOP缓存不同，用户的全部WebSocket会话断开、中枢被移除后仍然保留，
+ * 观看端重连时先收到缓存的关键帧，首帧时间为一次网络往返，而不是等待编码端的下一个关键帧
+ * 
+ * 总字节数超出上限时按最近最少使用淘汰，超过有效期的关键帧不再补发
+ */
+@Component
+public class KeyframeCache {
+    private static final Logger log = LoggerFactory.getLogger(KeyframeCache.class);
+    
+    @Value("${browsergw.media.keyframe-cache-max-bytes:33554432}")
+    private long maxBytes = 32 * 1024 * 1024;
+    
+    @Value("${browsergw.media.keyframe-cache-ttl:30000}")
+    private long ttl = 30000;
+    
+    // 用户ID -> 缓存项，按访问顺序排列，均在this锁内访问
+    private final LinkedHashMap<String, UserKeyframe> entries = new LinkedHashMap<>(16, 0.75f, true);
+    
+    private long totalBytes;
+    
+    // 监控指标
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    
+    /**
+     * 更新用户最近的关键帧（在IO线程调用，不复制直接内存中的帧）
+     * 调用方持有的frame引用不变
+     * 
+     * @param userId 用户ID
+     * @param frame WS关键帧
+     * @param codecType 视频编码格式，未知时传null沿用上次的格式
+     */
+    public void update(String userId, ByteBuf frame, String codecType) {
+        int frameBytes = frame.readableBytes();
+        if (frameBytes > maxBytes) {
+            return;
+        }
+        ByteBuf keyframe = frame.isDirect() ? frame.retainedDuplicate() : copyToDirect(frame);
+        long now = System.nanoTime();
+        synchronized (this) {
+            UserKeyframe entry = entries.get(userId);
+            if (entry == null) {
+                entry = new UserKeyframe();
+                entries.put(userId, entry);
+            }
+            if (codecType != null) {
+                entry.codecType = codecType;
+            }
+            ByteBuf config = VideoFrameClassifier.parameterSets(keyframe, entry.codecType,
+                    PooledByteBufAllocator.DEFAULT);
+            entry.keyframeHasConfig = config != null;
+            if (config != null) {
+                replaceConfig(entry, config);
+            }
+            if (entry.keyframe != null) {
+                totalBytes -= entry.keyframe.readableBytes();
+                entry.keyframe.release();
+            }
+            entry.keyframe = keyframe;
+            entry.updatedAt = now;
+            totalBytes += frameBytes;
+            evictOverflow();
+        }
+        updates.increment();
+    }
+    
+    /**
+     * 获取用户缓存的关键帧用于补发
+     * 关键帧本身不含参数集时在数据前插入最近缓存的参数集
+     * 
+     * @param userId 用户ID
+     * @return WS关键帧，调用方接管其引用；无缓存或已过期时返回null
+     */
+    public synchronized ByteBuf replay(String userId) {
+        UserKeyframe entry = entries.get(userId);
+        if (entry == null || entry.keyframe == null
+                || System.nanoTime() - entry.updatedAt > TimeUnit.MILLISECONDS.toNanos(ttl)) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (entry.keyframeHasConfig || entry.config == null) {
+            return entry.keyframe.retainedDuplicate();
+        }
+        
+        ByteBuf keyframe = entry.keyframe;
+        int index = keyframe.readerIndex();
+        int configBytes = entry.config.readableBytes();
+        int dataBytes = keyframe.readableBytes() - MediaRelay.WS_HEADER_LENGTH;
+        ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer(MediaRelay.WS_HEADER_LENGTH + configBytes + dataBytes);
+        frame.writeInt(keyframe.getInt(index))
+                .writeInt(keyframe.getInt(index + 4))
+                .writeInt(configBytes + dataBytes)
+                .writeBytes(entry.config, entry.config.readerIndex(), configBytes)
+                .writeBytes(keyframe, index + MediaRelay.WS_HEADER_LENGTH, dataBytes);
+        return frame;
+    }
+    
+    /**
+     * 移除用户的缓存（用户浏览器实例删除时调用）
+     */
+    public synchronized void remove(String userId) {
+        UserKeyframe entry = entries.remove(userId);
+        if (entry != null) {
+            release(entry);
+        }
+    }
+    
+    /**
+     * 当前缓存的总字节数
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+    
+    /**
+     * 当前缓存的用户数
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    /**
+     * 清除过期的缓存并输出本周期指标
+     */
+    public String metricsAndReset() {
+        int users;
+        long bytes;
+        synchronized (this) {
+            long expireBefore = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(ttl);
+            Iterator<UserKeyframe> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                UserKeyframe entry = iterator.next();
+                if (entry.updatedAt - expireBefore < 0) {
+                    iterator.remove();
+                    release(entry);
+                    evicted.increment();
+                }
+            }
+            users = entries.size();
+            bytes = totalBytes;
+        }
+        return "users=" + users
+                + ", bytes=" + bytes
+                + ", updates=" + updates.sumThenReset()
+                + ", hits=" + hits.sumThenReset()
+                + ", misses=" + misses.sumThenReset()
+                + ", evicted=" + evicted.sumThenReset();
+    }
+    
+    private void replaceConfig(UserKeyframe entry, ByteBuf config) {
+        if (entry.config != null) {
+            totalBytes -= entry.config.readableBytes();
+            entry.config.release();
+        }
+        entry.config = config;
+        totalBytes += config.readableBytes();
+    }
+    
+    /**
+     * 超出字节上限时淘汰最近最少使用的用户
+     */
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, UserKeyframe>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, UserKeyframe> eldest = iterator.next();
+            iterator.remove();
+            release(eldest.getValue());
+            evicted.increment();
+            log.debug("关键帧缓存超出上限，淘汰用户缓存: userId={}, totalBytes={}", eldest.getKey(), totalBytes);
+        }
+    }
+    
+    private void release(UserKeyframe entry) {
+        if (entry.keyframe != null) {
+            totalBytes -= entry.keyframe.readableBytes();
+            entry.keyframe.release();
+            entry.keyframe = null;
+        }
+        if (entry.config != null) {
+            totalBytes -= entry.config.readableBytes();
+            entry.config.release();
+            entry.config = null;
+        }
+    }
+    
+    private static ByteBuf copyToDirect(ByteBuf frame) {
+        ByteBuf copy = PooledByteBufAllocator.DEFAULT.directBuffer(frame.readableBytes());
+        copy.writeBytes(frame, frame.readerIndex(), frame.readableBytes());
+        return copy;
+    }
+    
+    /**
+     * 单个用户的缓存项
+     */
+    private static final class UserKeyframe {
+        ByteBuf keyframe;
+        
+        // 最近一次随关键帧出现的参数集
+        ByteBuf config;
+        
+        // 当前关键帧是否自带参数集
+        boolean keyframeHasConfig;
+        
+        String codecType = "H264";
+        
+        long updatedAt;
+    }
+}
@@ -0,0 +1,19 @@
+package com.huawei.browsergateway.websocket.media;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 媒体帧输出
+ * 处理器将编码（或直接转发）后的WS帧写入输出：单个会话的发送队列，或向多个会话广播的媒体轨道
+ */
+public interface MediaFrameSink {
+    
+    /**
+     * 提交一帧（不阻塞）
+     * 输出接管frame的引用，发送完成或丢弃时释放
+     * 
+     * @param frame WS帧 [4字节: 帧类型][4字节: 时间戳][4字节: 数据长度][N字节: 数据]
+     * @return 是否已被接收
+     */
+    boolean offer(ByteBuf frame);
+}
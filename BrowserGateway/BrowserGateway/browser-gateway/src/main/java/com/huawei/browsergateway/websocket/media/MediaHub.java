@@ -0,0 +1,326 @@
+package com.huawei.browsergateway.websocket.media;
+
+import com.huawei.browsergateway.websocket.media.VideoFrameClassifier.FrameKind;
+import io.netty.buffer.ByteBuf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * 用户媒体中枢
+ * 同一用户的媒体帧只接收一次，按输出规格划分媒体轨道：每个轨道一个处理器，
+ * 编码（或直接转发）一次后广播给订阅该轨道的所有WebSocket会话（观看、监控、录制等），
+ * CPU开销随输出规格数增长，而不随会话数增长
+ * 
+ * 每个轨道缓存当前GOP（最近的关键帧及其后的视频帧），中途加入的会话先收到缓存的GOP，
+ * 无需等待下一个关键帧即可开始解码；GOP超出缓存上限时不缓存，新会话从下一个关键帧开始
+ * 
+ * 新建的轨道可用KeyframeCache中的关键帧预热：处理器先处理该关键帧，之后跳过视频帧直至实时流的下一个关键帧，
+ * 观看端先显示缓存的画面，不会解码参考帧缺失的P帧
+ */
+public class MediaHub {
+    private static final Logger log = LoggerFactory.getLogger(MediaHub.class);
+    
+    /**
+     * 直接转发轨道的键
+     */
+    public static final String PASSTHROUGH = "passthrough";
+    
+    private final String userId;
+    
+    private final int gopCacheMaxFrames;
+    
+    private final long gopCacheMaxBytes;
+    
+    // 最近订阅会话声明的视频编码格式
+    private volatile String codecType;
+    
+    // 轨道键 -> 轨道，增删在this锁内
+    private final ConcurrentMap<Object, Track> tracks = new ConcurrentHashMap<>();
+    
+    // 发送队列 -> 订阅的轨道，增删在this锁内
+    private final Map<MediaSendQueue, Track> subscriptions = new ConcurrentHashMap<>();
+    
+    /**
+     * @param userId 用户ID
+     * @param gopCacheMaxFrames 每个轨道GOP缓存的最大帧数
+     * @param gopCacheMaxBytes 每个轨道GOP缓存的最大字节数
+     */
+    public MediaHub(String userId, int gopCacheMaxFrames, long gopCacheMaxBytes) {
+        this.userId = userId;
+        this.gopCacheMaxFrames = gopCacheMaxFrames;
+        this.gopCacheMaxBytes = gopCacheMaxBytes;
+    }
+    
+    /**
+     * 接收一帧并交给各轨道的处理器（在IO线程调用，不阻塞）
+     * 中枢接管frame的引用
+     * 
+     * @param frame WS帧 [4字节: 帧类型][4字节: 时间戳][4字节: 数据长度][N字节: 数据]
+     * @return 是否至少被一个轨道接收
+     */
+    public boolean ingest(ByteBuf frame) {
+        try {
+            boolean accepted = false;
+            for (Track track : tracks.values()) {
+                if (track.awaitingKeyframe && !track.admitAfterPrime(frame)) {
+                    continue;
+                }
+                accepted |= track.processor.processMediaFrame(frame.retainedDuplicate());
+            }
+            return accepted;
+        } finally {
+            frame.release();
+        }
+    }
+    
+    /**
+     * 订阅媒体轨道，轨道键相同的会话共用一个处理器
+     * 
+     * @param queue 会话的发送队列
+     * @param trackKey 轨道键（输出规格）
+     * @param param 客户端媒体参数，创建轨道时用于初始化处理器
+     * @param processorFactory 轨道不存在时创建处理器
+     * @return 从GOP缓存补发的帧数
+     */
+    public int subscribe(MediaSendQueue queue, Object trackKey, MediaParam param,
+                         Supplier<MediaStreamProcessor> processorFactory) {
+        return subscribe(queue, trackKey, param, processorFactory, null);
+    }
+    
+    /**
+     * 订阅媒体轨道，轨道不存在时创建并用primer预热
+     * 
+     * @param queue 会话的发送队列
+     * @param trackKey 轨道键（输出规格）
+     * @param param 客户端媒体参数，创建轨道时用于初始化处理器
+     * @param processorFactory 轨道不存在时创建处理器
+     * @param primer 预热用的WS关键帧，可为null；中枢接管其引用，轨道已存在时直接释放
+     * @return 从GOP缓存补发的帧数
+     */
+    public synchronized int subscribe(MediaSendQueue queue, Object trackKey, MediaParam param,
+                                      Supplier<MediaStreamProcessor> processorFactory, ByteBuf primer) {
+        codecType = param.getCodecType();
+        Track track = tracks.get(trackKey);
+        if (track == null) {
+            MediaStreamProcessor processor = processorFactory.get();
+            track = new Track(trackKey, param.getCodecType(), processor);
+            processor.init(userId, track, param);
+            // 先于实时帧交给处理器，轨道加入后实时帧才会到达
+            if (primer != null) {
+                processor.processMediaFrame(primer);
+                track.awaitingKeyframe = true;
+                primer = null;
+            }
+            tracks.put(trackKey, track);
+            log.info("创建媒体轨道: userId={}, track={}, primed={}", userId, trackKey, track.awaitingKeyframe);
+        }
+        if (primer != null) {
+            primer.release();
+        }
+        subscriptions.put(queue, track);
+        int replayed = track.addSubscriber(queue);
+        log.info("订阅媒体轨道: userId={}, track={}, subscribers={}, replayedFrames={}",
+                userId, trackKey, track.subscriberCount(), replayed);
+        return replayed;
+    }
+    
+    /**
+     * 取消订阅并关闭发送队列，轨道无订阅者时关闭轨道
+     * 
+     * @param queue 会话的发送队列
+     * @return 中枢是否已无订阅者
+     */
+    public boolean unsubscribe(MediaSendQueue queue) {
+        Track closing = null;
+        synchronized (this) {
+            Track track = subscriptions.remove(queue);
+            if (track != null && track.removeSubscriber(queue) == 0) {
+                tracks.remove(track.key);
+                closing = track;
+            }
+        }
+        queue.close();
+        // 在中枢锁外关闭处理器，FFmpeg处理器需等待进行中的转码完成
+        if (closing != null) {
+            closing.close();
+            log.info("关闭媒体轨道: userId={}, track={}", userId, closing.key);
+        }
+        synchronized (this) {
+            return subscriptions.isEmpty();
+        }
+    }
+    
+    /**
+     * 当前订阅的发送队列
+     */
+    public List<MediaSendQueue> getSubscribers() {
+        return new ArrayList<>(subscriptions.keySet());
+    }
+    
+    /**
+     * 轨道是否存在
+     */
+    public boolean hasTrack(Object trackKey) {
+        return tracks.containsKey(trackKey);
+    }
+    
+    /**
+     * 当前轨道数
+     */
+    public int getTrackCount() {
+        return tracks.size();
+    }
+    
+    public String getUserId() {
+        return userId;
+    }
+    
+    /**
+     * 最近订阅会话声明的视频编码格式
+     */
+    public String getCodecType() {
+        return codecType;
+    }
+    
+    /**
+     * 媒体轨道：处理器的输出广播给全部订阅会话，并缓存当前GOP
+     * 处理器可能在IO线程或转码线程写入，订阅变更与广播在轨道锁内串行，新会话不会漏帧或重复
+     */
+    private final class Track implements MediaFrameSink {
+        final Object key;
+        
+        final String codecType;
+        
+        final MediaStreamProcessor processor;
+        
+        // 以下状态均在this锁内访问
+        private final List<MediaSendQueue> subscribers = new ArrayList<>();
+        
+        private final ArrayDeque<ByteBuf> gop = new ArrayDeque<>();
+        
+        private long gopBytes;
+        
+        // GOP缓存是否从关键帧开始且完整
+        private boolean gopCached;
+        
+        private boolean closed;
+        
+        // 已用缓存的关键帧预热，实时流的下一个关键帧到达前跳过视频帧
+        volatile boolean awaitingKeyframe;
+        
+        Track(Object key, String codecType, MediaStreamProcessor processor) {
+            this.key = key;
+            this.codecType = codecType;
+            this.processor = processor;
+        }
+        
+        @Override
+        public boolean offer(ByteBuf frame) {
+            FrameKind kind = VideoFrameClassifier.classify(frame, codecType);
+            try {
+                synchronized (this) {
+                    if (closed) {
+                        return false;
+                    }
+                    cache(frame, kind);
+                    boolean accepted = false;
+                    for (MediaSendQueue queue : subscribers) {
+                        accepted |= queue.offer(frame.retainedDuplicate());
+                    }
+                    return accepted;
+                }
+            } finally {
+                frame.release();
+            }
+        }
+        
+        /**
+         * 预热后是否接收实时帧：音频帧接收，视频帧从下一个关键帧开始接收
+         */
+        boolean admitAfterPrime(ByteBuf frame) {
+            FrameKind kind = VideoFrameClassifier.classify(frame, codecType);
+            if (kind == FrameKind.KEY) {
+                awaitingKeyframe = false;
+            }
+            return kind == FrameKind.KEY || kind == FrameKind.AUDIO;
+        }
+        
+        private void cache(ByteBuf frame, FrameKind kind) {
+            if (kind == FrameKind.AUDIO) {
+                return;
+            }
+            if (kind == FrameKind.KEY) {
+                clearGop();
+                gopCached = true;
+            } else if (!gopCached) {
+                return;
+            }
+            int bytes = frame.readableBytes();
+            if (gop.size() >= gopCacheMaxFrames || gopBytes + bytes > gopCacheMaxBytes) {
+                // GOP过长，新会话改为等待下一个关键帧
+                clearGop();
+                return;
+            }
+            gop.addLast(frame.retainedDuplicate());
+            gopBytes += bytes;
+        }
+        
+        private void clearGop() {
+            ByteBuf cached;
+            while ((cached = gop.pollFirst()) != null) {
+                cached.release();
+            }
+            gopBytes = 0;
+            gopCached = false;
+        }
+        
+        /**
+         * 添加订阅会话，先补发缓存的GOP
+         * 
+         * @return 补发的帧数
+         */
+        synchronized int addSubscriber(MediaSendQueue queue) {
+            int replayed = 0;
+            if (gopCached) {
+                for (ByteBuf cached : gop) {
+                    queue.offer(cached.retainedDuplicate());
+                    replayed++;
+                }
+            } else {
+                queue.awaitKeyframe();
+            }
+            subscribers.add(queue);
+            return replayed;
+        }
+        
+        /**
+         * @return 剩余订阅会话数
+         */
+        synchronized int removeSubscriber(MediaSendQueue queue) {
+            subscribers.remove(queue);
+            return subscribers.size();
+        }
+        
+        synchronized int subscriberCount() {
+            return subscribers.size();
+        }
+        
+        void close() {
+            synchronized (this) {
+                closed = true;
+                subscribers.clear();
+                clearGop();
+            }
+            // 在轨道锁外关闭，避免与持有转码锁写入轨道的转码线程互相等待
+            processor.close();
+        }
+    }
+}
@@ -37,6 +37,11 @@ public class MediaParam {
      */
     private int bitRate = 128;
     
+    /**
+     * 视频码率 kbps，默认: 0（FFmpeg模式下按分辨率和帧率估算）
+     */
+    private int videoBitRate = 0;
+    
     /**
      * GOP 大小，默认: 29
      */
@@ -0,0 +1,506 @@
+package com.huawei.browsergateway.websocket.media;
+
+import com.huawei.browsergateway.common.Constants;
+import com.huawei.browsergateway.common.utils.KeyedSerialExecutor;
+import com.huawei.browsergateway.service.IFileStorage;
+import io.netty.buffer.ByteBuf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 媒体录制
+ * 将中继的视频帧按用户写入本地分段文件（H264/H265裸码流，Annex-B时可直接用ffmpeg/ffplay播放），
+ * 分段完成后经IFileStorage异步上传，上传成功后删除本地文件
+ * 
+ * 1. IO线程只保留TCP帧数据的引用切片（不复制）并提交到按用户串行的写盘线程，立即返回；
+ *    待写字节数超过上限时丢弃该帧，并跳过后续帧直至下一个关键帧，保证分段可解码
+ * 2. 写盘线程以FileChannel直接写出直接内存中的数据，不经过堆内存中转
+ * 3. 每个分段以关键帧开始，时长或大小达到上限后在下一个关键帧处切换分段
+ * 4. 本地分段（写入中、待上传、上传失败）总字节数超过磁盘配额时，按完成时间从旧到新删除已完成的分段
+ * 
+ * 音频帧不录制
+ */
+@Component
+public class MediaRecorder {
+    private static final Logger log = LoggerFactory.getLogger(MediaRecorder.class);
+    
+    // 写入中的分段文件后缀，完成后去掉
+    private static final String PART_SUFFIX = ".part";
+    
+    // TCP视频帧类型：1-I帧
+    private static final int TCP_VIDEO_KEY = 1;
+    
+    @Value("${browsergw.media.record-enabled:false}")
+    private boolean enabled = false;
+    
+    @Value("${browsergw.media.record-dir:" + Constants.DEFAULT_TMP_PATH + "/record}")
+    private String recordDir = Constants.DEFAULT_TMP_PATH + "/record";
+    
+    @Value("${browsergw.media.record-segment-duration:60000}")
+    private long segmentDuration = 60000;
+    
+    @Value("${browsergw.media.record-segment-max-bytes:67108864}")
+    private long segmentMaxBytes = 64 * 1024 * 1024;
+    
+    @Value("${browsergw.media.record-max-disk-bytes:1073741824}")
+    private long maxDiskBytes = 1024L * 1024 * 1024;
+    
+    @Value("${browsergw.media.record-queue-max-bytes:16777216}")
+    private long queueMaxBytes = 16 * 1024 * 1024;
+    
+    @Value("${browsergw.media.record-remote-prefix:record}")
+    private String remotePrefix = "record";
+    
+    @Autowired
+    @Qualifier("recordExecutor")
+    private KeyedSerialExecutor recordExecutor;
+    
+    @Autowired
+    @Qualifier("recordUploadExecutor")
+    private ExecutorService uploadExecutor;
+    
+    // 文件存储，未注入时分段只保留在本地（受磁盘配额约束）
+    @Autowired(required = false)
+    private IFileStorage fileStorage;
+    
+    // 用户ID -> 录制状态
+    private final ConcurrentMap<String, Recording> recordings = new ConcurrentHashMap<>();
+    
+    // 已提交、尚未写盘的字节数
+    private final AtomicLong pendingBytes = new AtomicLong();
+    
+    // 本地分段占用的磁盘字节数（写入中及已完成未删除）
+    private final AtomicLong diskBytes = new AtomicLong();
+    
+    // 已完成、尚未删除的分段，按完成时间从旧到新排列，均在this锁内访问
+    private final ArrayDeque<Segment> finished = new ArrayDeque<>();
+    
+    // 监控指标
+    private final LongAdder writtenFrames = new LongAdder();
+    private final LongAdder writtenBytes = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder segments = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder uploaded = new LongAdder();
+    private final LongAdder uploadFailed = new LongAdder();
+    
+    /**
+     * 启动时将上次遗留的分段计入磁盘占用并重新上传，写入中断的分段按已完成处理
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        Path root = Paths.get(recordDir);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        List<Path> leftovers = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            // 分段位于 {record-dir}/{userId}/ 下
+            files.filter(file -> Files.isRegularFile(file) && !root.equals(file.getParent())).forEach(leftovers::add);
+        } catch (IOException e) {
+            log.warn("扫描遗留录制分段失败: dir={}, cause={}", recordDir, String.valueOf(e));
+            return;
+        }
+        leftovers.sort((a, b) -> Long.compare(a.toFile().lastModified(), b.toFile().lastModified()));
+        for (Path file : leftovers) {
+            try {
+                if (file.getFileName().toString().endsWith(PART_SUFFIX)) {
+                    file = Files.move(file, completedPath(file), StandardCopyOption.REPLACE_EXISTING);
+                }
+                long bytes = Files.size(file);
+                diskBytes.addAndGet(bytes);
+                onSegmentFinished(new Segment(file, bytes));
+            } catch (IOException e) {
+                log.warn("恢复遗留录制分段失败: file={}, cause={}", file, String.valueOf(e));
+            }
+        }
+        if (!leftovers.isEmpty()) {
+            log.info("恢复遗留录制分段: count={}, diskBytes={}", leftovers.size(), diskBytes.get());
+            enforceQuota();
+        }
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * 录制一个TCP视频帧（在IO线程调用，不阻塞、不复制帧数据）
+     * 调用方持有的frame引用不变
+     * 
+     * @param userId 用户ID
+     * @param frame TCP帧体 [1字节: 帧类型][4字节: 时间戳][4字节: 数据长度][N字节: 数据]
+     * @param codecType 视频编码格式，未知时传null沿用上次的格式
+     */
+    public void record(String userId, ByteBuf frame, String codecType) {
+        int readable = frame.readableBytes();
+        if (readable < MediaRelay.TCP_HEADER_LENGTH) {
+            return;
+        }
+        int index = frame.readerIndex();
+        int dataLength = Math.min(frame.getInt(index + 5), readable - MediaRelay.TCP_HEADER_LENGTH);
+        if (dataLength <= 0) {
+            return;
+        }
+        boolean key = frame.getUnsignedByte(index) == TCP_VIDEO_KEY;
+        
+        Recording recording = recordings.computeIfAbsent(userId, Recording::new);
+        if (codecType != null) {
+            recording.codecType = codecType;
+        }
+        if (key) {
+            recording.skipToKeyframe = false;
+        } else if (recording.skipToKeyframe) {
+            droppedFrames.increment();
+            return;
+        }
+        if (pendingBytes.addAndGet(dataLength) > queueMaxBytes) {
+            pendingBytes.addAndGet(-dataLength);
+            drop(recording);
+            return;
+        }
+        
+        ByteBuf data = frame.retainedSlice(index + MediaRelay.TCP_HEADER_LENGTH, dataLength);
+        try {
+            recordExecutor.execute(userId, () -> write(recording, data, key));
+        } catch (RejectedExecutionException e) {
+            data.release();
+            pendingBytes.addAndGet(-dataLength);
+            drop(recording);
+        }
+    }
+    
+    private void drop(Recording recording) {
+        recording.skipToKeyframe = true;
+        droppedFrames.increment();
+        log.debug("录制写盘积压，跳过至下一个关键帧: userId={}", recording.userId);
+    }
+    
+    /**
+     * 结束用户的录制（编码端断开时调用），当前分段完成后上传
+     * 
+     * @param userId 用户ID
+     */
+    public void finish(String userId) {
+        Recording recording = recordings.remove(userId);
+        if (recording == null) {
+            return;
+        }
+        try {
+            // 与该用户已提交的写盘任务串行，排在其后执行
+            recordExecutor.execute(userId, () -> {
+                recording.closed = true;
+                finishSegment(recording);
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("录制写盘线程池已满，分段保留在本地待下次启动时上传: userId={}", userId);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        for (String userId : new ArrayList<>(recordings.keySet())) {
+            finish(userId);
+        }
+    }
+    
+    /**
+     * 写入一帧（写盘线程，同一用户串行）
+     */
+    private void write(Recording recording, ByteBuf data, boolean key) {
+        int length = data.readableBytes();
+        try {
+            if (recording.closed) {
+                return;
+            }
+            if (recording.channel == null) {
+                // 分段以关键帧开始
+                if (!key) {
+                    return;
+                }
+                openSegment(recording);
+            } else if (key && (System.nanoTime() - recording.segmentStart >= TimeUnit.MILLISECONDS.toNanos(segmentDuration)
+                    || recording.segmentBytes >= segmentMaxBytes)) {
+                finishSegment(recording);
+                openSegment(recording);
+            }
+            
+            long position = recording.segmentBytes;
+            while (data.isReadable()) {
+                position += data.readBytes(recording.channel, position, data.readableBytes());
+            }
+            recording.segmentBytes += length;
+            diskBytes.addAndGet(length);
+            writtenFrames.increment();
+            writtenBytes.add(length);
+        } catch (IOException e) {
+            log.error("写入录制分段失败: userId={}, file={}, cause={}", recording.userId, recording.file, String.valueOf(e));
+            discardSegment(recording);
+        } finally {
+            data.release();
+            pendingBytes.addAndGet(-length);
+        }
+        enforceQuota();
+    }
+    
+    private void openSegment(Recording recording) throws IOException {
+        String extension = "H265".equalsIgnoreCase(recording.codecType) ? ".h265" : ".h264";
+        // 同一毫秒内可能切换多个分段，附加序号保证文件名唯一
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date())
+                + "-" + recording.sequence++ + extension + PART_SUFFIX;
+        Path dir = Paths.get(recordDir, safeName(recording.userId));
+        Files.createDirectories(dir);
+        recording.file = dir.resolve(name);
+        recording.channel = FileChannel.open(recording.file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        recording.segmentStart = System.nanoTime();
+        recording.segmentBytes = 0;
+        segments.increment();
+        log.debug("开始录制分段: userId={}, file={}", recording.userId, recording.file);
+    }
+    
+    /**
+     * 完成当前分段：关闭文件、去掉.part后缀并提交上传
+     */
+    private void finishSegment(Recording recording) {
+        if (recording.channel == null) {
+            return;
+        }
+        Path file = recording.file;
+        long bytes = recording.segmentBytes;
+        try {
+            recording.channel.close();
+            Path completed = Files.move(file, completedPath(file), StandardCopyOption.REPLACE_EXISTING);
+            onSegmentFinished(new Segment(completed, bytes));
+        } catch (IOException e) {
+            log.error("完成录制分段失败: userId={}, file={}, cause={}", recording.userId, file, String.valueOf(e));
+            deleteQuietly(file, bytes);
+        } finally {
+            recording.channel = null;
+            recording.file = null;
+        }
+    }
+    
+    /**
+     * 写入失败时丢弃当前分段，从下一个关键帧开始新的分段
+     */
+    private void discardSegment(Recording recording) {
+        if (recording.channel == null) {
+            return;
+        }
+        try {
+            recording.channel.close();
+        } catch (IOException e) {
+            log.debug("关闭录制分段失败: file={}", recording.file);
+        }
+        deleteQuietly(recording.file, recording.segmentBytes);
+        recording.channel = null;
+        recording.file = null;
+    }
+    
+    private void onSegmentFinished(Segment segment) {
+        synchronized (this) {
+            finished.addLast(segment);
+        }
+        if (fileStorage == null) {
+            return;
+        }
+        try {
+            uploadExecutor.execute(() -> upload(segment));
+        } catch (RejectedExecutionException e) {
+            log.warn("录制上传线程池已关闭，分段保留在本地: file={}", segment.file);
+        }
+    }
+    
+    /**
+     * 上传分段，成功后删除本地文件；失败时保留在本地，由磁盘配额淘汰
+     */
+    private void upload(Segment segment) {
+        synchronized (this) {
+            if (!finished.contains(segment)) {
+                // 已被磁盘配额淘汰
+                return;
+            }
+        }
+        // 远程路径沿用本地的 {userId}/{分段文件名}
+        String remotePath = remotePrefix + "/" + segment.file.getParent().getFileName() + "/" + segment.file.getFileName();
+        String url;
+        try {
+            url = fileStorage.uploadFile(segment.file.toString(), remotePath);
+        } catch (Exception e) {
+            log.warn("上传录制分段异常: file={}, cause={}", segment.file, String.valueOf(e));
+            url = null;
+        }
+        if (url == null) {
+            uploadFailed.increment();
+            log.warn("上传录制分段失败，保留在本地: file={}", segment.file);
+            return;
+        }
+        uploaded.increment();
+        log.debug("录制分段上传完成: file={}, url={}", segment.file, url);
+        remove(segment);
+    }
+    
+    /**
+     * 本地分段总字节数超过磁盘配额时，从最旧的已完成分段开始删除
+     */
+    private void enforceQuota() {
+        while (diskBytes.get() > maxDiskBytes) {
+            Segment oldest;
+            synchronized (this) {
+                oldest = finished.peekFirst();
+            }
+            if (oldest == null || !remove(oldest)) {
+                return;
+            }
+            evicted.increment();
+            log.warn("录制磁盘占用超过配额，删除最旧的分段: file={}, bytes={}", oldest.file, oldest.bytes);
+        }
+    }
+    
+    /**
+     * 删除已完成的分段，与上传、淘汰之间只有一方成功
+     */
+    private boolean remove(Segment segment) {
+        synchronized (this) {
+            if (!finished.remove(segment)) {
+                return false;
+            }
+        }
+        deleteQuietly(segment.file, segment.bytes);
+        return true;
+    }
+    
+    private void deleteQuietly(Path file, long bytes) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除录制分段失败: file={}, cause={}", file, String.valueOf(e));
+        }
+        diskBytes.addAndGet(-bytes);
+    }
+    
+    private static Path completedPath(Path file) {
+        String name = file.getFileName().toString();
+        return file.resolveSibling(name.substring(0, name.length() - PART_SUFFIX.length()));
+    }
+    
+    /**
+     * 用户ID中文件名不允许的字符替换为下划线
+     */
+    private static String safeName(String userId) {
+        return userId.replaceAll("[^A-Za-z0-9_.-]", "_");
+    }
+    
+    /**
+     * 本地分段占用的磁盘字节数
+     */
+    public long getDiskBytes() {
+        return diskBytes.get();
+    }
+    
+    /**
+     * 已完成、尚未上传或删除的分段文件
+     */
+    public synchronized List<File> getFinishedSegments() {
+        List<File> files = new ArrayList<>(finished.size());
+        for (Segment segment : finished) {
+            files.add(segment.file.toFile());
+        }
+        return files;
+    }
+    
+    /**
+     * 输出本周期指标并清零
+     */
+    public String metricsAndReset() {
+        int pendingSegments;
+        synchronized (this) {
+            pendingSegments = finished.size();
+        }
+        return "recordings=" + recordings.size()
+                + ", writtenFrames=" + writtenFrames.sumThenReset()
+                + ", writtenBytes=" + writtenBytes.sumThenReset()
+                + ", dropped=" + droppedFrames.sumThenReset()
+                + ", segments=" + segments.sumThenReset()
+                + ", uploaded=" + uploaded.sumThenReset()
+                + ", uploadFailed=" + uploadFailed.sumThenReset()
+                + ", evicted=" + evicted.sumThenReset()
+                + ", localSegments=" + pendingSegments
+                + ", diskBytes=" + diskBytes.get();
+    }
+    
+    /**
+     * 单个用户的录制状态
+     * skipToKeyframe和codecType由IO线程写入，其余字段只由该用户的写盘任务串行访问
+     */
+    private static final class Recording {
+        final String userId;
+        
+        volatile boolean skipToKeyframe;
+        
+        volatile String codecType;
+        
+        volatile boolean closed;
+        
+        FileChannel channel;
+        
+        Path file;
+        
+        long segmentStart;
+        
+        long segmentBytes;
+        
+        // 分段序号
+        int sequence;
+        
+        Recording(String userId) {
+            this.userId = userId;
+        }
+    }
+    
+    /**
+     * 已完成的分段
+     */
+    private static final class Segment {
+        final Path file;
+        
+        final long bytes;
+        
+        Segment(Path file, long bytes) {
+            this.file = file;
+            this.bytes = bytes;
+        }
+    }
+}
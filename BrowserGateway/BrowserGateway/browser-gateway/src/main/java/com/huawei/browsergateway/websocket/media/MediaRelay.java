@@ -0,0 +1,361 @@
+package com.huawei.browsergateway.websocket.media;
+
+import com.huawei.browsergateway.service.impl.DataSizeTracker;
+import com.huawei.browsergateway.tcpserver.common.MessageType;
+import com.huawei.browsergateway.websocket.WebSocketTransport;
+import com.huawei.browsergateway.websocket.media.transcode.TranscodeEngine;
+import com.huawei.browsergateway.websocket.media.transcode.TranscodeProfile;
+import io.netty.buffer.ByteBuf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 媒体帧中继
+ * 将TCP媒体流连接收到的VIDEO_FRAME/AUDIO_FRAME转发到同一用户的WebSocket媒体会话，
+ * 同时作为userId -> MediaHub的注册表（MediaStreamSocketServer订阅/取消订阅）：
+ * 同一用户的多个会话共用一个中枢，输出规格相同的会话共用一次编码
+ * 
+ * TCP帧体: [1字节: 帧类型/编码][4字节: 时间戳][4字节: 数据长度][N字节: 数据]
+ * WS帧:    [4字节: 帧类型][4字节: 时间戳][4字节: 数据长度][N字节: 数据]
+ * 在IO线程中只重写12字节帧头，数据部分以解码器输出的ByteBuf切片引用拼成复合缓冲，不复制；
+ * 交给会话的异步发送队列后立即返回，同一用户的帧由同一IO线程按序入队
+ * 
+ * 无订阅会话时关键帧仍写入KeyframeCache，观看端重连创建轨道时用缓存的关键帧预热
+ */
+@Component
+public class MediaRelay {
+    private static final Logger log = LoggerFactory.getLogger(MediaRelay.class);
+    
+    /**
+     * TCP帧体头长度
+     */
+    static final int TCP_HEADER_LENGTH = 9;
+    
+    /**
+     * WS帧头长度
+     */
+    static final int WS_HEADER_LENGTH = 12;
+    
+    // WS帧类型：1-I帧, 2-P帧, 3-Audio帧
+    static final int WS_FRAME_KEY = 1;
+    static final int WS_FRAME_DELTA = 2;
+    static final int WS_FRAME_AUDIO = 3;
+    
+    // TCP视频帧类型：1-I帧, 2-P帧, 3-B帧
+    private static final int TCP_VIDEO_KEY = 1;
+    
+    // 指标日志中列出的积压/丢帧用户数
+    private static final int TOP_BACKLOG_USERS = 10;
+    
+    @Value("${browsergw.media.send-queue-max-frames:90}")
+    private int sendQueueMaxFrames = 90;
+    
+    @Value("${browsergw.media.send-queue-max-bytes:8388608}")
+    private long sendQueueMaxBytes = 8 * 1024 * 1024;
+    
+    @Value("${browsergw.media.slow-send-threshold:500}")
+    private long slowSendThreshold = 500;
+    
+    @Value("${browsergw.media.send-timeout:10000}")
+    private long sendTimeout = 10000;
+    
+    @Value("${browsergw.media.gop-cache-max-frames:60}")
+    private int gopCacheMaxFrames = 60;
+    
+    @Value("${browsergw.media.gop-cache-max-bytes:4194304}")
+    private long gopCacheMaxBytes = 4 * 1024 * 1024;
+    
+    // FFmpeg模式转码引擎，未注入或不可用时直接转发
+    @Autowired(required = false)
+    private TranscodeEngine transcodeEngine;
+    
+    // 关键帧缓存，未注入时重连的观看端等待下一个关键帧
+    @Autowired(required = false)
+    private KeyframeCache keyframeCache;
+    
+    // 媒体录制，未注入或未启用时不录制
+    @Autowired(required = false)
+    private MediaRecorder recorder;
+    
+    // 按用户统计观看端下行流量，未注入时不统计
+    @Autowired(required = false)
+    @Qualifier("mediaDataSizeTracker")
+    private DataSizeTracker trafficTracker;
+    
+    // 用户ID -> 媒体中枢
+    private final ConcurrentMap<String, MediaHub> hubs = new ConcurrentHashMap<>();
+    
+    // 监控指标
+    private final LongAdder relayedFrames = new LongAdder();
+    private final LongAdder relayedBytes = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder gopReplayedFrames = new LongAdder();
+    private final MediaSendQueue.Metrics sendMetrics = new MediaSendQueue.Metrics();
+    
+    /**
+     * 为WebSocket连接创建发送队列
+     * 
+     * @param userId 用户ID
+     * @param transport WebSocket连接
+     * @param param 客户端媒体参数（丢帧策略）
+     * @return 发送队列
+     */
+    public MediaSendQueue createSendQueue(String userId, WebSocketTransport transport, MediaParam param) {
+        MediaSendQueue queue = new MediaSendQueue(userId, transport, sendQueueMaxFrames, sendQueueMaxBytes,
+                slowSendThreshold, sendTimeout, param, sendMetrics);
+        queue.setTrafficTracker(trafficTracker);
+        return queue;
+    }
+    
+    /**
+     * WebSocket会话订阅用户的媒体流
+     * WebCodecs模式及FFmpeg不可用时订阅直接转发轨道，FFmpeg模式按转码规格订阅转码轨道
+     * 
+     * @param userId 用户ID
+     * @param queue 会话的发送队列
+     * @param param 客户端媒体参数
+     */
+    public void subscribe(String userId, MediaSendQueue queue, MediaParam param) {
+        boolean transcode = !"webcodecs".equalsIgnoreCase(param.getProcessorType())
+                && transcodeEngine != null && transcodeEngine.isAvailable();
+        Object trackKey = transcode ? TranscodeProfile.from(param) : MediaHub.PASSTHROUGH;
+        hubs.compute(userId, (key, hub) -> {
+            MediaHub target = hub != null ? hub : new MediaHub(key, gopCacheMaxFrames, gopCacheMaxBytes);
+            // 新建轨道时用缓存的关键帧预热
+            ByteBuf primer = keyframeCache != null && !target.hasTrack(trackKey)
+                    ? keyframeCache.replay(key) : null;
+            gopReplayedFrames.add(target.subscribe(queue, trackKey, param,
+                    () -> transcode ? new FfmpegStreamProcessor(transcodeEngine) : new WebCodecsStreamProcessor(),
+                    primer));
+            return target;
+        });
+    }
+    
+    /**
+     * 取消订阅并关闭发送队列，用户无订阅会话时移除中枢
+     * 
+     * @param userId 用户ID
+     * @param queue 会话的发送队列
+     */
+    public void unsubscribe(String userId, MediaSendQueue queue) {
+        MediaHub hub = hubs.computeIfPresent(userId, (key, current) -> current.unsubscribe(queue) ? null : current);
+        if (hub == null) {
+            queue.close();
+        }
+    }
+    
+    /**
+     * 获取用户的媒体中枢
+     * 
+     * @return 中枢，用户无订阅会话时返回null
+     */
+    public MediaHub get(String userId) {
+        return hubs.get(userId);
+    }
+    
+    /**
+     * 当前全部媒体中枢
+     */
+    public Collection<MediaHub> getHubs() {
+        return hubs.values();
+    }
+    
+    /**
+     * 接收WebSocket上行的媒体帧并分发给该用户的订阅会话
+     * 
+     * @param userId 用户ID
+     * @param frame WS帧，中继接管其引用
+     * @return 是否已被接收
+     */
+    public boolean ingest(String userId, ByteBuf frame) {
+        MediaHub hub = hubs.get(userId);
+        cacheKeyframe(userId, hub, frame);
+        if (hub == null) {
+            frame.release();
+            droppedFrames.increment();
+            return false;
+        }
+        return hub.ingest(frame);
+    }
+    
+    /**
+     * 中继一个TCP媒体帧（在IO线程调用，不阻塞）
+     * 调用方持有的frame引用不变
+     * 
+     * @param userId 用户ID
+     * @param type 消息类型（VIDEO_FRAME/AUDIO_FRAME）
+     * @param frame TLV Value（TCP帧体）
+     * @return 是否已进入发送队列
+     */
+    public boolean relay(String userId, short type, ByteBuf frame) {
+        MediaHub hub = hubs.get(userId);
+        // 录制与观看会话无关，只保留帧数据的引用后交给写盘线程
+        if (type == MessageType.VIDEO_FRAME && recorder != null && recorder.isEnabled()) {
+            recorder.record(userId, frame, hub != null ? hub.getCodecType() : null);
+        }
+        int readable = frame.readableBytes();
+        // 无订阅会话时只有关键帧需要写入缓存
+        if (hub == null && (keyframeCache == null || readable < TCP_HEADER_LENGTH
+                || wsFrameType(type, frame.getUnsignedByte(frame.readerIndex())) != WS_FRAME_KEY)) {
+            log.debug("WebSocket媒体会话未建立，丢弃媒体帧: userId={}, type={}", userId, MessageType.getTypeName(type));
+            droppedFrames.increment();
+            return false;
+        }
+        
+        if (readable < TCP_HEADER_LENGTH) {
+            log.warn("媒体帧长度不足: userId={}, length={}", userId, readable);
+            droppedFrames.increment();
+            return false;
+        }
+        int index = frame.readerIndex();
+        int dataLength = Math.min(frame.getInt(index + 5), readable - TCP_HEADER_LENGTH);
+        if (dataLength < 0) {
+            log.warn("媒体帧数据长度非法: userId={}, length={}", userId, dataLength);
+            droppedFrames.increment();
+            return false;
+        }
+        
+        ByteBuf header = frame.alloc().directBuffer(WS_HEADER_LENGTH);
+        header.writeInt(wsFrameType(type, frame.getUnsignedByte(index)))
+                .writeInt(frame.getInt(index + 1))
+                .writeInt(dataLength);
+        ByteBuf wsFrame = frame.alloc().compositeDirectBuffer(2)
+                .addComponents(true, header, frame.retainedSlice(index + TCP_HEADER_LENGTH, dataLength));
+        
+        cacheKeyframe(userId, hub, wsFrame);
+        if (hub == null) {
+            wsFrame.release();
+            droppedFrames.increment();
+            return false;
+        }
+        if (!hub.ingest(wsFrame)) {
+            droppedFrames.increment();
+            return false;
+        }
+        relayedFrames.increment();
+        relayedBytes.add(WS_HEADER_LENGTH + dataLength);
+        return true;
+    }
+    
+    /**
+     * 关键帧写入缓存，调用方持有的frame引用不变
+     */
+    private void cacheKeyframe(String userId, MediaHub hub, ByteBuf frame) {
+        if (keyframeCache != null && frame.readableBytes() >= WS_HEADER_LENGTH
+                && frame.getInt(frame.readerIndex()) == WS_FRAME_KEY) {
+            keyframeCache.update(userId, frame, hub != null ? hub.getCodecType() : null);
+        }
+    }
+    
+    /**
+     * TCP帧类型映射为WS帧类型
+     */
+    static int wsFrameType(short type, int tcpFrameType) {
+        if (type == MessageType.AUDIO_FRAME) {
+            return WS_FRAME_AUDIO;
+        }
+        return tcpFrameType == TCP_VIDEO_KEY ? WS_FRAME_KEY : WS_FRAME_DELTA;
+    }
+    
+    /**
+     * 各用户发送队列积压字节数（排队及发送中，同一用户多个会话求和）
+     */
+    public Map<String, Long> queuedBytesByUser() {
+        Map<String, Long> result = new HashMap<>();
+        hubs.forEach((userId, hub) -> {
+            for (MediaSendQueue queue : hub.getSubscribers()) {
+                result.merge(userId, queue.getQueuedBytes(), Long::sum);
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * 各用户累计丢帧数 [非参考帧, 按GOP丢弃, 队列溢出]（同一用户多个会话求和）
+     */
+    public Map<String, long[]> droppedFramesByUser() {
+        Map<String, long[]> result = new HashMap<>();
+        hubs.forEach((userId, hub) -> {
+            for (MediaSendQueue queue : hub.getSubscribers()) {
+                result.merge(userId, queue.getDroppedFrames(),
+                        (a, b) -> new long[] {a[0] + b[0], a[1] + b[1], a[2] + b[2]});
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * 输出本周期指标并清零
+     * 积压字节数为当前值，另列出积压最多和本周期丢帧最多的用户
+     */
+    public String metricsAndReset() {
+        long totalQueuedBytes = 0;
+        int sessions = 0;
+        int tracks = 0;
+        int lagging = 0;
+        // 取当前值快照后排序，避免排序过程中积压变化
+        List<Map.Entry<String, Long>> backlog = new ArrayList<>();
+        List<Map.Entry<String, Long>> drops = new ArrayList<>();
+        for (MediaHub hub : hubs.values()) {
+            tracks += hub.getTrackCount();
+            long userQueued = 0;
+            long userDropped = 0;
+            for (MediaSendQueue queue : hub.getSubscribers()) {
+                sessions++;
+                userQueued += queue.getQueuedBytes();
+                userDropped += queue.drainPeriodDropped();
+                if (queue.isLagging()) {
+                    lagging++;
+                }
+            }
+            totalQueuedBytes += userQueued;
+            if (userQueued > 0) {
+                backlog.add(new AbstractMap.SimpleImmutableEntry<>(hub.getUserId(), userQueued));
+            }
+            if (userDropped > 0) {
+                drops.add(new AbstractMap.SimpleImmutableEntry<>(hub.getUserId(), userDropped));
+            }
+        }
+        
+        return "users=" + hubs.size()
+                + ", sessions=" + sessions
+                + ", tracks=" + tracks
+                + ", relayed=" + relayedFrames.sumThenReset()
+                + ", relayedBytes=" + relayedBytes.sumThenReset()
+                + ", dropped=" + droppedFrames.sumThenReset()
+                + ", gopReplayed=" + gopReplayedFrames.sumThenReset()
+                + (keyframeCache != null ? ", keyframeCache[" + keyframeCache.metricsAndReset() + "]" : "")
+                + ", queuedBytes=" + totalQueuedBytes
+                + ", lagging=" + lagging
+                + ", send[" + sendMetrics.snapshotAndReset() + "]"
+                + ", topQueuedBytes[" + top(backlog) + "]"
+                + ", topDropped[" + top(drops) + "]";
+    }
+    
+    /**
+     * 按值降序取前TOP_BACKLOG_USERS个用户
+     */
+    private static String top(List<Map.Entry<String, Long>> values) {
+        values.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        StringBuilder top = new StringBuilder();
+        for (int i = 0; i < Math.min(TOP_BACKLOG_USERS, values.size()); i++) {
+            Map.Entry<String, Long> entry = values.get(i);
+            top.append(i == 0 ? "" : ", ").append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return top.toString();
+    }
+}
@@ -0,0 +1,504 @@
+package com.huawei.browsergateway.websocket.media;
+
+import com.huawei.browsergateway.common.utils.LatencyHistogram;
+import com.huawei.browsergateway.service.impl.DataSizeTracker;
+import com.huawei.browsergateway.websocket.media.VideoFrameClassifier.FrameKind;
+import com.huawei.browsergateway.websocket.ContainerWebSocketTransport;
+import com.huawei.browsergateway.websocket.WebSocketTransport;
+import io.netty.buffer.ByteBuf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.websocket.Session;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * WebSocket会话发送队列
+ * 基于WebSocketTransport异步发送（Netty WebSocket连接或Servlet容器会话），同一会话同时只有一帧在发送，其余帧按序排队；
+ * 入队不阻塞调用线程，观看端网络慢只会使其自身队列增长，不会占住容器线程或Netty IO线程
+ * 
+ * 队列按帧数和字节数双重限制，超出时丢弃新帧；
+ * 队列积压超过一半容量或单帧发送超过阈值时判定观看端落后
+ * 
+ * 丢帧按GOP处理，保证观看端解码不花屏、延迟有界：
+ * 1. 丢弃参考帧（包括队列满被迫丢弃）后，跳过后续视频帧直至下一个关键帧
+ * 2. MediaParam.dropFrameMulti > 0时主动丢帧，允许积压的视频帧数 budget = gopSize * (1 - dropFrameMulti)：
+ *    积压达到budget/2时丢弃非参考帧；达到budget时丢弃当前GOP剩余帧；
+ *    新关键帧到达时积压仍超过budget/2，则清除队列中旧GOP的视频帧，直接从新关键帧开始发送
+ * 3. 音频帧不参与丢帧，仅在积压超过2倍字节上限（会话已失效）时丢弃
+ */
+public class MediaSendQueue implements MediaFrameSink {
+    private static final Logger log = LoggerFactory.getLogger(MediaSendQueue.class);
+    
+    private final String userId;
+    
+    private final WebSocketTransport transport;
+    
+    private final int maxFrames;
+    
+    private final long maxBytes;
+    
+    private final long slowSendNanos;
+    
+    private final String codecType;
+    
+    // 主动丢帧时允许积压的视频帧数，0表示不主动丢帧
+    private final int videoBudget;
+    
+    private final Metrics metrics;
+    
+    // 按用户统计下行流量，为null时不统计；在会话开始发送前设置
+    private DataSizeTracker trafficTracker;
+    
+    // 以下状态均在this锁内访问
+    private final ArrayDeque<Entry> pending = new ArrayDeque<>();
+    
+    private Entry inFlight;
+    
+    private long inFlightSince;
+    
+    // 排队及发送中的字节数
+    private long queuedBytes;
+    
+    // 排队中的视频帧数（不含发送中的帧）
+    private int pendingVideo;
+    
+    // 已丢弃参考帧，等待下一个关键帧
+    private boolean skipToKeyframe;
+    
+    // 本会话累计丢帧数
+    private long droppedNonReference;
+    private long droppedGop;
+    private long droppedOverflow;
+    
+    // 本周期丢帧数，由监控取走后清零
+    private long periodDropped;
+    
+    // 本采样周期的拥塞遥测，由码率控制器取走后清零
+    private long sampleDropped;
+    private long sampleMaxSendNanos;
+    
+    private boolean lagging;
+    
+    private boolean closed;
+    
+    // 正在调用sendBinary的线程，用于识别在调用线程内同步回调完成的情况
+    private Thread sendingThread;
+    
+    /**
+     * @param userId 用户ID
+     * @param transport WebSocket连接
+     * @param maxFrames 最大排队帧数
+     * @param maxBytes 最大排队字节数
+     * @param slowSendMillis 单帧发送超过该时长判定观看端落后（毫秒）
+     * @param sendTimeoutMillis 单帧发送超时（毫秒），超时判定发送失败
+     * @param param 媒体参数（编码格式、GOP大小、丢帧倍数）
+     * @param metrics 监控指标（多个会话共用）
+     */
+    public MediaSendQueue(String userId, WebSocketTransport transport, int maxFrames, long maxBytes,
+                          long slowSendMillis, long sendTimeoutMillis, MediaParam param, Metrics metrics) {
+        this.userId = userId;
+        this.transport = transport;
+        this.maxFrames = maxFrames;
+        this.maxBytes = maxBytes;
+        this.slowSendNanos = TimeUnit.MILLISECONDS.toNanos(slowSendMillis);
+        this.codecType = param.getCodecType();
+        this.videoBudget = videoBudget(param.getGopSize(), param.getDropFrameMulti());
+        this.metrics = metrics;
+        transport.setSendTimeout(sendTimeoutMillis);
+    }
+    
+    /**
+     * Servlet容器会话的发送队列
+     */
+    public MediaSendQueue(String userId, Session session, int maxFrames, long maxBytes,
+                          long slowSendMillis, long sendTimeoutMillis, MediaParam param, Metrics metrics) {
+        this(userId, new ContainerWebSocketTransport(session), maxFrames, maxBytes,
+                slowSendMillis, sendTimeoutMillis, param, metrics);
+    }
+    
+    /**
+     * 设置下行流量统计
+     */
+    public void setTrafficTracker(DataSizeTracker trafficTracker) {
+        this.trafficTracker = trafficTracker;
+    }
+    
+    /**
+     * 主动丢帧时允许积压的视频帧数
+     * 
+     * @return dropFrameMulti <= 0时返回0（不主动丢帧），否则至少为1
+     */
+    static int videoBudget(int gopSize, double dropFrameMulti) {
+        if (dropFrameMulti <= 0) {
+            return 0;
+        }
+        double multi = Math.min(1.0, dropFrameMulti);
+        return Math.max(1, (int) Math.round(Math.max(1, gopSize) * (1 - multi)));
+    }
+    
+    /**
+     * 提交一帧（不阻塞）
+     * 队列接管frame的引用，发送完成或丢弃时释放
+     * 
+     * @param frame 完整的WS帧
+     * @return 是否已入队，会话关闭、队列已满或按丢帧策略丢弃时返回false并释放frame
+     */
+    @Override
+    public boolean offer(ByteBuf frame) {
+        int bytes = frame.readableBytes();
+        FrameKind kind = VideoFrameClassifier.classify(frame, codecType);
+        synchronized (this) {
+            if (closed || !transport.isOpen()) {
+                frame.release();
+                return false;
+            }
+            if (kind == FrameKind.AUDIO ? !admitAudio(bytes) : !admitVideo(kind, bytes)) {
+                frame.release();
+                return false;
+            }
+            pending.addLast(new Entry(frame, kind, System.nanoTime()));
+            queuedBytes += bytes;
+            if (kind != FrameKind.AUDIO) {
+                pendingVideo++;
+            }
+            if (pending.size() > maxFrames / 2 || queuedBytes > maxBytes / 2) {
+                markLagging();
+            }
+        }
+        sendNext();
+        return true;
+    }
+    
+    /**
+     * 音频帧只受2倍字节上限约束
+     */
+    private boolean admitAudio(int bytes) {
+        if (queuedBytes + bytes > maxBytes * 2) {
+            dropped(DropReason.OVERFLOW);
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * 视频帧丢帧决策
+     */
+    private boolean admitVideo(FrameKind kind, int bytes) {
+        if (skipToKeyframe) {
+            if (kind != FrameKind.KEY) {
+                dropped(DropReason.SKIP);
+                return false;
+            }
+            skipToKeyframe = false;
+        }
+        
+        // 新关键帧到达时旧GOP积压过多，清除旧GOP的视频帧
+        if (kind == FrameKind.KEY && videoBudget > 0 && pendingVideo > videoBudget / 2) {
+            purgePendingVideo();
+        }
+        
+        if (pending.size() >= maxFrames || queuedBytes + bytes > maxBytes) {
+            markLagging();
+            dropVideo(kind, DropReason.OVERFLOW);
+            return false;
+        }
+        if (videoBudget > 0) {
+            if (pendingVideo >= videoBudget) {
+                dropVideo(kind, DropReason.GOP);
+                return false;
+            }
+            if (kind == FrameKind.NON_REFERENCE && pendingVideo >= videoBudget / 2) {
+                dropped(DropReason.NON_REFERENCE);
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 丢弃视频帧，非参考帧以外的帧丢弃后跳至下一个关键帧
+     */
+    private void dropVideo(FrameKind kind, DropReason reason) {
+        if (kind != FrameKind.NON_REFERENCE) {
+            skipToKeyframe = true;
+        }
+        dropped(reason);
+    }
+    
+    /**
+     * 清除队列中的视频帧（不含发送中的帧），音频帧保留
+     */
+    private void purgePendingVideo() {
+        Iterator<Entry> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.kind != FrameKind.AUDIO) {
+                iterator.remove();
+                pendingVideo--;
+                queuedBytes -= entry.frame.readableBytes();
+                entry.frame.release();
+                dropped(DropReason.GOP);
+            }
+        }
+    }
+    
+    private void dropped(DropReason reason) {
+        periodDropped++;
+        // 跳至关键帧是此前丢帧或中途加入的结果，不重复计入拥塞
+        if (reason != DropReason.SKIP) {
+            sampleDropped++;
+        }
+        metrics.droppedFrames.increment();
+        switch (reason) {
+            case NON_REFERENCE:
+                droppedNonReference++;
+                metrics.droppedNonReference.increment();
+                break;
+            case GOP:
+            case SKIP:
+                droppedGop++;
+                metrics.droppedGop.increment();
+                break;
+            default:
+                droppedOverflow++;
+                break;
+        }
+    }
+    
+    /**
+     * 依次发送队首帧，直到有一帧处于异步发送中或队列为空
+     */
+    private void sendNext() {
+        while (true) {
+            Entry entry;
+            synchronized (this) {
+                if (inFlight != null || closed || pending.isEmpty()) {
+                    return;
+                }
+                entry = pending.pollFirst();
+                if (entry.kind != FrameKind.AUDIO) {
+                    pendingVideo--;
+                }
+                inFlight = entry;
+                inFlightSince = System.nanoTime();
+                sendingThread = Thread.currentThread();
+            }
+            
+            transport.sendBinary(entry.frame, this::onSent);
+            
+            synchronized (this) {
+                sendingThread = null;
+                if (inFlight != null) {
+                    // 仍在发送中，由完成回调继续发送下一帧
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * 发送完成回调（容器线程、Netty IO线程，或sendBinary调用线程内同步回调）
+     * 
+     * @param cause 发送失败原因，成功时为null
+     */
+    private void onSent(Throwable cause) {
+        Entry entry;
+        boolean inline;
+        synchronized (this) {
+            entry = inFlight;
+            if (entry == null) {
+                return;
+            }
+            inFlight = null;
+            queuedBytes -= entry.frame.readableBytes();
+            sampleMaxSendNanos = Math.max(sampleMaxSendNanos, System.nanoTime() - inFlightSince);
+            if (pending.isEmpty()) {
+                lagging = false;
+            }
+            inline = sendingThread == Thread.currentThread();
+        }
+        
+        int bytes = entry.frame.readableBytes();
+        entry.frame.release();
+        if (cause == null) {
+            metrics.sentFrames.increment();
+            metrics.sentBytes.add(bytes);
+            metrics.sendLatency.record(System.nanoTime() - entry.enqueueNanos);
+            if (trafficTracker != null) {
+                trafficTracker.trackOutbound(userId, bytes);
+            }
+        } else {
+            metrics.failedSends.increment();
+            log.warn("WebSocket媒体帧发送失败: userId={}, cause={}", userId, String.valueOf(cause));
+        }
+        
+        // 同步回调时由sendNext的循环继续发送，避免递归
+        if (!inline) {
+            sendNext();
+        }
+    }
+    
+    private void markLagging() {
+        if (!lagging) {
+            lagging = true;
+            metrics.lagEvents.increment();
+            log.warn("观看端接收落后: userId={}, queuedFrames={}, queuedBytes={}", userId, pending.size(), queuedBytes);
+        }
+    }
+    
+    /**
+     * 跳过后续视频帧直至下一个关键帧
+     * 中途加入的观看端没有可用的GOP缓存时调用，避免从参考帧开始解码
+     */
+    public synchronized void awaitKeyframe() {
+        skipToKeyframe = true;
+    }
+    
+    /**
+     * 观看端是否落后：队列积压超过一半容量，或当前帧发送超过阈值仍未完成
+     */
+    public synchronized boolean isLagging() {
+        return lagging || (inFlight != null && System.nanoTime() - inFlightSince > slowSendNanos);
+    }
+    
+    /**
+     * 排队及发送中的字节数
+     */
+    public synchronized long getQueuedBytes() {
+        return queuedBytes;
+    }
+    
+    /**
+     * 排队帧数（不含发送中的帧）
+     */
+    public synchronized int getQueuedFrames() {
+        return pending.size();
+    }
+    
+    public String getUserId() {
+        return userId;
+    }
+    
+    /**
+     * 本会话累计丢帧数 [非参考帧, 按GOP丢弃, 队列溢出]
+     */
+    public synchronized long[] getDroppedFrames() {
+        return new long[] {droppedNonReference, droppedGop, droppedOverflow};
+    }
+    
+    /**
+     * 取本周期丢帧数并清零
+     */
+    public synchronized long drainPeriodDropped() {
+        long dropped = periodDropped;
+        periodDropped = 0;
+        return dropped;
+    }
+    
+    /**
+     * 取本采样周期的拥塞遥测并清零
+     * 发送耗时取周期内完成的最慢一帧，以及仍在发送中的帧已耗时
+     */
+    public synchronized SendSample sample() {
+        long maxSendNanos = sampleMaxSendNanos;
+        if (inFlight != null) {
+            maxSendNanos = Math.max(maxSendNanos, System.nanoTime() - inFlightSince);
+        }
+        SendSample sample = new SendSample(queuedBytes, sampleDropped, maxSendNanos);
+        sampleDropped = 0;
+        sampleMaxSendNanos = 0;
+        return sample;
+    }
+    
+    /**
+     * 关闭队列并释放排队中的帧，发送中的帧在完成回调中释放
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Entry entry;
+            while ((entry = pending.pollFirst()) != null) {
+                queuedBytes -= entry.frame.readableBytes();
+                entry.frame.release();
+            }
+            pendingVideo = 0;
+        }
+    }
+    
+    /**
+     * 丢帧原因：主动丢弃非参考帧 | 按GOP丢弃（含清除旧GOP） | 跳至关键帧 | 队列溢出
+     * 跳至关键帧在指标中计入按GOP丢弃
+     */
+    private enum DropReason {
+        NON_REFERENCE,
+        GOP,
+        SKIP,
+        OVERFLOW
+    }
+    
+    private static final class Entry {
+        final ByteBuf frame;
+        final FrameKind kind;
+        final long enqueueNanos;
+        
+        Entry(ByteBuf frame, FrameKind kind, long enqueueNanos) {
+            this.frame = frame;
+            this.kind = kind;
+            this.enqueueNanos = enqueueNanos;
+        }
+    }
+    
+    /**
+     * 单个会话一个采样周期的拥塞遥测
+     */
+    public static final class SendSample {
+        // 采样时排队及发送中的字节数
+        final long queuedBytes;
+        // 周期内丢帧数（不含跳至关键帧）
+        final long dropped;
+        // 周期内单帧发送最长耗时（sendBinary到完成回调）
+        final long maxSendNanos;
+        
+        SendSample(long queuedBytes, long dropped, long maxSendNanos) {
+            this.queuedBytes = queuedBytes;
+            this.dropped = dropped;
+            this.maxSendNanos = maxSendNanos;
+        }
+    }
+    
+    /**
+     * 发送队列监控指标，所有会话共用
+     */
+    public static class Metrics {
+        final LongAdder sentFrames = new LongAdder();
+        final LongAdder sentBytes = new LongAdder();
+        final LongAdder droppedFrames = new LongAdder();
+        final LongAdder droppedNonReference = new LongAdder();
+        final LongAdder droppedGop = new LongAdder();
+        final LongAdder failedSends = new LongAdder();
+        final LongAdder lagEvents = new LongAdder();
+        // 入队到发送完成的延迟
+        final LatencyHistogram sendLatency = new LatencyHistogram();
+        
+        /**
+         * 输出本周期指标并清零
+         */
+        public String snapshotAndReset() {
+            return "frames=" + sentFrames.sumThenReset()
+                    + ", bytes=" + sentBytes.sumThenReset()
+                    + ", dropped=" + droppedFrames.sumThenReset()
+                    + ", droppedNonRef=" + droppedNonReference.sumThenReset()
+                    + ", droppedGop=" + droppedGop.sumThenReset()
+                    + ", failed=" + failedSends.sumThenReset()
+                    + ", lagEvents=" + lagEvents.sumThenReset()
+                    + ", latency[" + sendLatency.snapshotAndReset() + "]";
+        }
+    }
+}
@@ -1,9 +1,10 @@
 package com.huawei.browsergateway.websocket.media;
 
-import javax.websocket.Session;
+import io.netty.buffer.ByteBuf;
 
 /**
  * 媒体流处理器接口
+ * 每个媒体轨道一个处理器，输出由MediaHub广播给订阅该轨道的所有WebSocket会话
  */
 public interface MediaStreamProcessor {
     
@@ -11,10 +12,10 @@ public interface MediaStreamProcessor {
      * 初始化处理器
      * 
      * @param userId 用户ID
-     * @param session WebSocket会话
+     * @param sink 媒体帧输出
      * @param param 媒体参数
      */
-    void init(String userId, Session session, MediaParam param);
+    void init(String userId, MediaFrameSink sink, MediaParam param);
     
     /**
      * 处理媒体流数据
@@ -24,7 +25,16 @@ public interface MediaStreamProcessor {
     void processMediaStream(byte[] data);
     
     /**
-     * 关闭处理器
+     * 处理中继的媒体帧（由MediaHub在Netty IO线程调用，不得阻塞）
+     * 处理器接管frame的引用，写入输出或丢弃时释放
+     * 
+     * @param frame WS帧 [4字节: 帧类型][4字节: 时间戳][4字节: 数据长度][N字节: 数据]
+     * @return 是否已被接收
+     */
+    boolean processMediaFrame(ByteBuf frame);
+    
+    /**
+     * 关闭处理器，之后的媒体帧直接释放；输出由调用方关闭
      */
     void close();
 }
@@ -3,6 +3,11 @@ package com.huawei.browsergateway.websocket.media;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.huawei.browsergateway.common.utils.UserIdUtil;
 import com.huawei.browsergateway.tcpserver.media.MediaClientSet;
+import com.huawei.browsergateway.websocket.ContainerWebSocketTransport;
+import com.huawei.browsergateway.websocket.WebSocketEndpoint;
+import com.huawei.browsergateway.websocket.WebSocketTransport;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,26 +16,24 @@ import org.springframework.stereotype.Component;
 import javax.websocket.*;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * WebSocket媒体流端点
  * URL: ws://{server}:{media-port}/browser/websocket/{imeiAndImsi}
+ * 同一用户可同时建立多个会话（观看、监控、录制等），共享该用户的媒体中枢
+ * 
+ * 由NettyWebSocketServer在media-port上提供服务；@ServerEndpoint注解的方法是部署到Servlet容器时的适配，
+ * 两种方式共用同一套处理逻辑，连接状态（用户ID、发送队列）保存在WebSocketTransport中
  */
 @ServerEndpoint("/browser/websocket/{imeiAndImsi}")
 @Component
-public class MediaStreamSocketServer {
+public class MediaStreamSocketServer implements WebSocketEndpoint {
     private static final Logger log = LoggerFactory.getLogger(MediaStreamSocketServer.class);
     
-    // 用户ID -> 处理器映射
-    private static final Map<String, MediaStreamProcessor> processors = new ConcurrentHashMap<>();
-    
-    // 会话 -> 用户ID映射
-    private static final Map<Session, String> sessionUsers = new ConcurrentHashMap<>();
-    
     private static MediaClientSet mediaClientSet;
+    
+    // 用户ID -> 媒体中枢注册表，与TCP媒体帧中继共用
+    private static MediaRelay mediaRelay;
     private static ObjectMapper objectMapper = new ObjectMapper();
     
     @Autowired
@@ -38,19 +41,38 @@ public class MediaStreamSocketServer {
         MediaStreamSocketServer.mediaClientSet = mediaClientSet;
     }
     
+    @Autowired
+    public void setMediaRelay(MediaRelay mediaRelay) {
+        MediaStreamSocketServer.mediaRelay = mediaRelay;
+    }
+    
+    /**
+     * 单个连接的状态
+     */
+    private static final class MediaSession {
+        final String userId;
+        
+        // 已订阅媒体流时的发送队列
+        volatile MediaSendQueue queue;
+        
+        MediaSession(String userId) {
+            this.userId = userId;
+        }
+    }
+    
     /**
      * 连接建立时调用
      */
-    @OnOpen
-    public void onOpen(Session session, @PathParam("imeiAndImsi") String imeiAndImsi) {
+    @Override
+    public void onOpen(WebSocketTransport transport, String imeiAndImsi) {
         try {
-            log.info("媒体流WebSocket连接建立: imeiAndImsi={}, sessionId={}", imeiAndImsi, session.getId());
+            log.info("媒体流WebSocket连接建立: imeiAndImsi={}, sessionId={}", imeiAndImsi, transport.getId());
             
             // 解析用户ID（imeiAndImsi格式: imei_imsi）
             String[] parts = imeiAndImsi.split("_");
             if (parts.length != 2) {
                 log.error("无效的用户标识格式: {}", imeiAndImsi);
-                session.close();
+                transport.close();
                 return;
             }
             
@@ -58,31 +80,28 @@ public class MediaStreamSocketServer {
             String imsi = parts[1];
             String userId = UserIdUtil.generateUserId(imei, imsi);
             
-            sessionUsers.put(session, userId);
+            transport.setAttachment(new MediaSession(userId));
             
             // 等待客户端发送初始化参数
             log.info("等待客户端发送初始化参数: userId={}", userId);
             
         } catch (Exception e) {
             log.error("处理WebSocket连接失败: imeiAndImsi={}", imeiAndImsi, e);
-            try {
-                session.close();
-            } catch (IOException ex) {
-                log.error("关闭WebSocket连接失败", ex);
-            }
+            transport.close();
         }
     }
     
     /**
      * 接收文本消息（初始化参数）
      */
-    @OnMessage
-    public void onMessage(Session session, String message) {
-        String userId = sessionUsers.get(session);
-        if (userId == null) {
-            log.warn("收到消息但用户未登录: sessionId={}", session.getId());
+    @Override
+    public void onText(WebSocketTransport transport, String message) {
+        MediaSession mediaSession = (MediaSession) transport.getAttachment();
+        if (mediaSession == null) {
+            log.warn("收到消息但用户未登录: sessionId={}", transport.getId());
             return;
         }
+        String userId = mediaSession.userId;
         
         try {
             log.info("收到初始化参数: userId={}, message={}", userId, message);
@@ -90,17 +109,13 @@ public class MediaStreamSocketServer {
             // 解析初始化参数
             MediaParam param = objectMapper.readValue(message, MediaParam.class);
             
-            // 创建媒体流处理器
-            MediaStreamProcessor processor;
-            if ("webcodecs".equalsIgnoreCase(param.getProcessorType())) {
-                processor = new WebCodecsStreamProcessor();
-            } else {
-                processor = new FfmpegStreamProcessor();
-            }
+            // 重复初始化时先取消旧订阅
+            unsubscribe(mediaSession);
             
-            // 初始化处理器
-            processor.init(userId, session, param);
-            processors.put(userId, processor);
+            // 订阅媒体流，规格相同的会话共用处理器；媒体帧经会话的异步发送队列下发，按客户端参数丢帧
+            MediaSendQueue queue = mediaRelay.createSendQueue(userId, transport, param);
+            mediaSession.queue = queue;
+            mediaRelay.subscribe(userId, queue, param);
             
             // 更新心跳
             if (mediaClientSet != null) {
@@ -112,34 +127,31 @@ public class MediaStreamSocketServer {
             
         } catch (Exception e) {
             log.error("处理初始化参数失败: userId={}", userId, e);
-            try {
-                session.close();
-            } catch (IOException ex) {
-                log.error("关闭WebSocket连接失败", ex);
-            }
+            transport.close();
         }
     }
     
     /**
      * 接收二进制消息（媒体流数据）
      */
-    @OnMessage
-    public void onBinaryMessage(Session session, byte[] data) {
-        String userId = sessionUsers.get(session);
-        if (userId == null) {
-            log.warn("收到二进制消息但用户未登录: sessionId={}", session.getId());
+    @Override
+    public void onBinary(WebSocketTransport transport, ByteBuf data) {
+        MediaSession mediaSession = (MediaSession) transport.getAttachment();
+        if (mediaSession == null) {
+            log.warn("收到二进制消息但用户未登录: sessionId={}", transport.getId());
             return;
         }
+        String userId = mediaSession.userId;
         
-        MediaStreamProcessor processor = processors.get(userId);
-        if (processor == null) {
+        if (mediaRelay.get(userId) == null) {
             log.warn("收到媒体流数据但处理器未初始化: userId={}", userId);
             return;
         }
         
         try {
-            // 处理媒体流数据
-            processor.processMediaStream(data);
+            // 处理媒体流数据，分发给该用户的全部订阅会话
+            // 数据格式: [4字节: 帧类型][4字节: 时间戳][4字节: 数据长度][N字节: 数据]
+            mediaRelay.ingest(userId, data.retain());
             
             // 更新心跳
             if (mediaClientSet != null) {
@@ -154,35 +166,70 @@ public class MediaStreamSocketServer {
     /**
      * 连接关闭时调用
      */
-    @OnClose
-    public void onClose(Session session) {
-        String userId = sessionUsers.remove(session);
-        if (userId != null) {
-            log.info("媒体流WebSocket连接关闭: userId={}, sessionId={}", userId, session.getId());
+    @Override
+    public void onClose(WebSocketTransport transport) {
+        MediaSession mediaSession = (MediaSession) transport.getAttachment();
+        if (mediaSession != null) {
+            log.info("媒体流WebSocket连接关闭: userId={}, sessionId={}", mediaSession.userId, transport.getId());
             
-            // 关闭处理器
-            MediaStreamProcessor processor = processors.remove(userId);
-            if (processor != null) {
-                processor.close();
-            }
+            // 取消订阅，最后一个会话关闭时释放处理器
+            unsubscribe(mediaSession);
         }
     }
     
     /**
      * 发生错误时调用
      */
-    @OnError
-    public void onError(Session session, Throwable error) {
-        String userId = sessionUsers.get(session);
-        log.error("媒体流WebSocket错误: userId={}, sessionId={}", userId, session.getId(), error);
+    @Override
+    public void onError(WebSocketTransport transport, Throwable error) {
+        MediaSession mediaSession = (MediaSession) transport.getAttachment();
+        log.error("媒体流WebSocket错误: userId={}, sessionId={}",
+                mediaSession != null ? mediaSession.userId : null, transport.getId(), error);
         
-        if (userId != null) {
+        if (mediaSession != null) {
             // 清理资源
-            sessionUsers.remove(session);
-            MediaStreamProcessor processor = processors.remove(userId);
-            if (processor != null) {
-                processor.close();
-            }
+            unsubscribe(mediaSession);
+        }
+    }
+
+    private static void unsubscribe(MediaSession mediaSession) {
+        MediaSendQueue queue;
+        synchronized (mediaSession) {
+            queue = mediaSession.queue;
+            mediaSession.queue = null;
         }
+        if (queue != null) {
+            mediaRelay.unsubscribe(mediaSession.userId, queue);
+        }
+    }
+    
+    @OnOpen
+    public void onOpen(Session session, @PathParam("imeiAndImsi") String imeiAndImsi) {
+        onOpen(ContainerWebSocketTransport.of(session), imeiAndImsi);
+    }
+    
+    @OnMessage
+    public void onMessage(Session session, String message) {
+        onText(ContainerWebSocketTransport.of(session), message);
+    }
+    
+    @OnMessage
+    public void onBinaryMessage(Session session, byte[] data) {
+        ByteBuf buf = Unpooled.wrappedBuffer(data);
+        try {
+            onBinary(ContainerWebSocketTransport.of(session), buf);
+        } finally {
+            buf.release();
+        }
+    }
+    
+    @OnClose
+    public void onClose(Session session) {
+        onClose(ContainerWebSocketTransport.of(session));
+    }
+    
+    @OnError
+    public void onError(Session session, Throwable error) {
+        onError(ContainerWebSocketTransport.of(session), error);
     }
 }
@@ -0,0 +1,220 @@
+package com.huawei.browsergateway.websocket.media;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * 媒体帧分类
+ * 根据WS帧头和H264/H265 NAL头判断帧能否丢弃：
+ * 非参考帧丢弃后不影响其他帧解码；参考帧丢弃后需跳过至下一个关键帧，否则后续帧花屏
+ * 
+ * 数据支持Annex-B（起始码）和AVCC（4字节长度前缀）两种封装，跳过SPS/PPS/SEI等非VCL单元，
+ * 以第一个VCL单元判断；无法解析时按WS帧类型保守处理（不作为非参考帧）
+ */
+public final class VideoFrameClassifier {
+    
+    /**
+     * 帧分类
+     */
+    public enum FrameKind {
+        /**
+         * 关键帧（IDR/IRAP），解码可从此处重新开始
+         */
+        KEY,
+        /**
+         * 参考帧，后续帧解码依赖
+         */
+        REFERENCE,
+        /**
+         * 非参考帧，可单独丢弃
+         */
+        NON_REFERENCE,
+        /**
+         * 音频帧，不丢弃
+         */
+        AUDIO
+    }
+    
+    // 查找第一个VCL单元时最多扫描的字节数（SPS/PPS/SEI通常在此范围内）
+    private static final int MAX_SCAN_BYTES = 2048;
+    
+    private static final int H264_NAL_IDR = 5;
+    
+    // H264 SPS/PPS
+    private static final int H264_NAL_SPS = 7;
+    private static final int H264_NAL_PPS = 8;
+    
+    // H265 VPS/SPS/PPS
+    private static final int H265_NAL_VPS = 32;
+    private static final int H265_NAL_PPS = 34;
+    
+    private static final byte[] START_CODE = {0, 0, 0, 1};
+    
+    private VideoFrameClassifier() {
+    }
+    
+    /**
+     * 对WS帧分类
+     * 
+     * @param frame WS帧 [4字节: 帧类型][4字节: 时间戳][4字节: 数据长度][N字节: 数据]，读索引不变
+     * @param codecType 视频编码格式 H264/H265
+     * @return 帧分类
+     */
+    public static FrameKind classify(ByteBuf frame, String codecType) {
+        int index = frame.readerIndex();
+        if (frame.readableBytes() < MediaRelay.WS_HEADER_LENGTH) {
+            return FrameKind.REFERENCE;
+        }
+        int wsType = frame.getInt(index);
+        if (wsType == MediaRelay.WS_FRAME_AUDIO) {
+            return FrameKind.AUDIO;
+        }
+        FrameKind fallback = wsType == MediaRelay.WS_FRAME_KEY ? FrameKind.KEY : FrameKind.REFERENCE;
+        
+        boolean h265 = "H265".equalsIgnoreCase(codecType);
+        int start = index + MediaRelay.WS_HEADER_LENGTH;
+        int end = frame.writerIndex();
+        int header = firstVclHeader(frame, start, end, h265);
+        if (header < 0) {
+            return fallback;
+        }
+        return h265 ? classifyH265(header) : classifyH264(header);
+    }
+    
+    /**
+     * H264 NAL头：forbidden_zero_bit(1) nal_ref_idc(2) nal_unit_type(5)
+     */
+    static FrameKind classifyH264(int header) {
+        if ((header & 0x1f) == H264_NAL_IDR) {
+            return FrameKind.KEY;
+        }
+        return ((header >> 5) & 0x3) == 0 ? FrameKind.NON_REFERENCE : FrameKind.REFERENCE;
+    }
+    
+    /**
+     * H265 NAL头首字节：forbidden_zero_bit(1) nal_unit_type(6) ...
+     * 16-23为IRAP；0-14中的偶数类型（TRAIL_N/TSA_N/STSA_N/RADL_N/RASL_N等）为子层非参考图像
+     */
+    static FrameKind classifyH265(int header) {
+        int type = (header >> 1) & 0x3f;
+        if (type >= 16 && type <= 23) {
+            return FrameKind.KEY;
+        }
+        return type <= 14 && (type & 1) == 0 ? FrameKind.NON_REFERENCE : FrameKind.REFERENCE;
+    }
+    
+    /**
+     * 提取WS帧中第一个VCL单元之前的参数集（H264 SPS/PPS，H265 VPS/SPS/PPS）
+     * 仅支持Annex-B封装，AVCC封装的参数集在带外传递，不在帧内
+     * 
+     * @param frame WS帧，读索引不变
+     * @param codecType 视频编码格式 H264/H265
+     * @param alloc 分配器
+     * @return 以4字节起始码分隔的参数集，帧内没有参数集时返回null
+     */
+    public static ByteBuf parameterSets(ByteBuf frame, String codecType, ByteBufAllocator alloc) {
+        boolean h265 = "H265".equalsIgnoreCase(codecType);
+        int start = frame.readerIndex() + MediaRelay.WS_HEADER_LENGTH;
+        int limit = Math.min(frame.writerIndex(), start + MAX_SCAN_BYTES);
+        ByteBuf sets = null;
+        int nal = nextNal(frame, start, limit);
+        while (nal >= 0) {
+            int header = frame.getUnsignedByte(nal);
+            if (isVcl(header, h265)) {
+                break;
+            }
+            int next = nextNal(frame, nal, limit);
+            if (isParameterSet(header, h265)) {
+                // NAL单元结束于下一个起始码（去掉4字节起始码的前导0）
+                int end = next < 0 ? limit : next - 3;
+                while (end > nal && frame.getByte(end - 1) == 0) {
+                    end--;
+                }
+                if (sets == null) {
+                    sets = alloc.directBuffer();
+                }
+                sets.writeBytes(START_CODE).writeBytes(frame, nal, end - nal);
+            }
+            nal = next;
+        }
+        return sets;
+    }
+    
+    /**
+     * 查找下一个起始码 00 00 01 之后的NAL单元位置
+     * 
+     * @return NAL头位置，未找到返回-1
+     */
+    private static int nextNal(ByteBuf buf, int from, int limit) {
+        for (int i = from; i + 3 < limit; i++) {
+            if (buf.getUnsignedByte(i + 2) > 1) {
+                i += 2;
+            } else if (buf.getUnsignedShort(i) == 0 && buf.getUnsignedByte(i + 2) == 1) {
+                return i + 3;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean isParameterSet(int header, boolean h265) {
+        if (h265) {
+            int type = (header >> 1) & 0x3f;
+            return type >= H265_NAL_VPS && type <= H265_NAL_PPS;
+        }
+        int type = header & 0x1f;
+        return type == H264_NAL_SPS || type == H264_NAL_PPS;
+    }
+    
+    private static boolean isVcl(int header, boolean h265) {
+        if (h265) {
+            return ((header >> 1) & 0x3f) < 32;
+        }
+        int type = header & 0x1f;
+        return type >= 1 && type <= 5;
+    }
+    
+    /**
+     * 查找第一个VCL单元的NAL头首字节
+     * 
+     * @return NAL头首字节，未找到返回-1
+     */
+    private static int firstVclHeader(ByteBuf buf, int start, int end, boolean h265) {
+        int limit = Math.min(end, start + MAX_SCAN_BYTES);
+        if (limit - start < 4) {
+            return -1;
+        }
+        boolean annexB = buf.getUnsignedShort(start) == 0
+                && (buf.getUnsignedByte(start + 2) == 1
+                || (buf.getUnsignedByte(start + 2) == 0 && buf.getUnsignedByte(start + 3) == 1));
+        if (annexB) {
+            // 起始码 00 00 01（4字节起始码的前导0不影响匹配）
+            for (int i = start; i + 3 < limit; i++) {
+                if (buf.getUnsignedByte(i + 2) > 1) {
+                    i += 2;
+                } else if (buf.getUnsignedShort(i) == 0 && buf.getUnsignedByte(i + 2) == 1) {
+                    int header = buf.getUnsignedByte(i + 3);
+                    if (isVcl(header, h265)) {
+                        return header;
+                    }
+                    i += 2;
+                }
+            }
+            return -1;
+        }
+        
+        // AVCC：[4字节长度][NAL单元]...
+        int pos = start;
+        while (pos + 4 < limit) {
+            long length = buf.getUnsignedInt(pos);
+            int header = buf.getUnsignedByte(pos + 4);
+            if (isVcl(header, h265)) {
+                return header;
+            }
+            if (length <= 0 || length > end - pos - 4) {
+                return -1;
+            }
+            pos += 4 + (int) length;
+        }
+        return -1;
+    }
+}
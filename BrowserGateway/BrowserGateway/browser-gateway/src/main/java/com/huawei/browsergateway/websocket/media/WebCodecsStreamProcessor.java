@@ -1,11 +1,10 @@
 package com.huawei.browsergateway.websocket.media;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.websocket.Session;
-import java.nio.ByteBuffer;
-
 /**
  * WebCodecs模式媒体流处理器
  * 使用浏览器原生WebCodecs API处理媒体流
@@ -14,13 +13,13 @@ public class WebCodecsStreamProcessor implements MediaStreamProcessor {
     private static final Logger log = LoggerFactory.getLogger(WebCodecsStreamProcessor.class);
     
     private String userId;
-    private Session session;
+    private volatile MediaFrameSink sink;
     private MediaParam param;
     
     @Override
-    public void init(String userId, Session session, MediaParam param) {
+    public void init(String userId, MediaFrameSink sink, MediaParam param) {
         this.userId = userId;
-        this.session = session;
+        this.sink = sink;
         this.param = param;
         log.info("初始化WebCodecs处理器: userId={}, width={}, height={}, frameRate={}", 
                 userId, param.getWidth(), param.getHeight(), param.getFrameRate());
@@ -28,16 +27,16 @@ public class WebCodecsStreamProcessor implements MediaStreamProcessor {
     
     @Override
     public void processMediaStream(byte[] data) {
-        if (session == null || !session.isOpen()) {
-            log.warn("WebSocket会话已关闭，无法处理媒体流: userId={}", userId);
+        MediaFrameSink sink = this.sink;
+        if (sink == null) {
+            log.warn("处理器已关闭，无法处理媒体流: userId={}", userId);
             return;
         }
         
         try {
             // WebCodecs模式：直接转发原始媒体流数据
             // 数据格式: [4字节: 帧类型][4字节: 时间戳][4字节: 数据长度][N字节: 数据]
-            ByteBuffer buffer = ByteBuffer.wrap(data);
-            session.getBasicRemote().sendBinary(buffer);
+            sink.offer(Unpooled.wrappedBuffer(data));
             
             log.debug("转发WebCodecs媒体流: userId={}, size={}", userId, data.length);
             
@@ -46,10 +45,21 @@ public class WebCodecsStreamProcessor implements MediaStreamProcessor {
         }
     }
     
+    @Override
+    public boolean processMediaFrame(ByteBuf frame) {
+        MediaFrameSink sink = this.sink;
+        if (sink == null) {
+            frame.release();
+            log.debug("处理器已关闭，无法转发媒体帧: userId={}", userId);
+            return false;
+        }
+        return sink.offer(frame);
+    }
+    
     @Override
     public void close() {
         log.info("关闭WebCodecs处理器: userId={}", userId);
-        this.session = null;
+        this.sink = null;
         this.param = null;
     }
 }
@@ -0,0 +1,348 @@
+package com.huawei.browsergateway.websocket.media.transcode;
+
+import org.bytedeco.ffmpeg.avcodec.AVCodec;
+import org.bytedeco.ffmpeg.avcodec.AVCodecContext;
+import org.bytedeco.ffmpeg.avcodec.AVPacket;
+import org.bytedeco.ffmpeg.avutil.AVDictionary;
+import org.bytedeco.ffmpeg.avutil.AVFrame;
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.ffmpeg.global.swscale;
+import org.bytedeco.ffmpeg.swscale.SwsContext;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.DoublePointer;
+import org.bytedeco.javacpp.Loader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.bytedeco.ffmpeg.global.avcodec.*;
+import static org.bytedeco.ffmpeg.global.avutil.*;
+import static org.bytedeco.ffmpeg.global.swscale.*;
+
+/**
+ * FFmpeg转码器
+ * 一个实例包含一套H264解码器、缩放上下文、编码器以及复用的AVFrame/AVPacket，
+ * 将输入视频帧解码后缩放到目标分辨率，再按目标码率、GOP重新编码
+ * 
+ * 非线程安全，同一时刻只能由一个线程使用；由TranscodeEngine按转码规格池化复用，
+ * 归还时reset()清空编解码器内部状态，避免每个会话重新分配上下文和帧缓冲
+ */
+public class FfmpegTranscoder implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(FfmpegTranscoder.class);
+    
+    // 编码输出时间戳环形缓冲（编码器不使用B帧，输出延迟远小于该值）
+    private static final int TIMESTAMP_RING_SIZE = 64;
+    
+    private static volatile Boolean available;
+    
+    /**
+     * 编码输出回调
+     */
+    public interface FrameSink {
+        /**
+         * @param data 编码后的数据（Annex-B），仅在回调期间有效
+         * @param keyFrame 是否关键帧
+         * @param timestamp 对应输入帧的时间戳
+         */
+        void accept(ByteBuffer data, boolean keyFrame, int timestamp);
+    }
+    
+    private final TranscodeProfile profile;
+    
+    private final AVCodec encoderCodec;
+    
+    private AVCodecContext decoder;
+    
+    private AVCodecContext encoder;
+    
+    private SwsContext sws;
+    
+    private AVFrame decoded;
+    
+    private AVFrame scaled;
+    
+    private AVPacket inPacket;
+    
+    private AVPacket outPacket;
+    
+    private final int[] timestamps = new int[TIMESTAMP_RING_SIZE];
+    
+    private long nextPts;
+    
+    // 下一帧强制编码为关键帧（新会话首帧）
+    private boolean forceKeyframe = true;
+    
+    // 解码器缺少参考帧，等待输入关键帧
+    private boolean waitKeyframe = true;
+    
+    /**
+     * 检查FFmpeg本地库是否可用（缺少对应平台的本地库时不可用）
+     */
+    public static boolean isAvailable() {
+        if (available == null) {
+            synchronized (FfmpegTranscoder.class) {
+                if (available == null) {
+                    try {
+                        Loader.load(avutil.class);
+                        Loader.load(avcodec.class);
+                        Loader.load(swscale.class);
+                        av_log_set_level(AV_LOG_ERROR);
+                        available = true;
+                    } catch (Throwable e) {
+                        log.warn("FFmpeg本地库不可用: {}", e.toString());
+                        available = false;
+                    }
+                }
+            }
+        }
+        return available;
+    }
+    
+    /**
+     * 创建转码器
+     * 
+     * @param profile 输出规格
+     * @throws IllegalStateException 编解码器不可用或打开失败
+     */
+    public FfmpegTranscoder(TranscodeProfile profile) {
+        this.profile = profile;
+        try {
+            AVCodec decoderCodec = avcodec_find_decoder(AV_CODEC_ID_H264);
+            if (decoderCodec == null || decoderCodec.isNull()) {
+                throw new IllegalStateException("H264解码器不可用");
+            }
+            decoder = avcodec_alloc_context3(decoderCodec);
+            decoder.thread_count(1);
+            decoder.flags(decoder.flags() | AV_CODEC_FLAG_LOW_DELAY);
+            check(avcodec_open2(decoder, decoderCodec, (AVDictionary) null), "打开解码器");
+            
+            encoderCodec = findEncoder(profile.getCodecType());
+            encoder = openEncoder();
+            
+            decoded = av_frame_alloc();
+            scaled = av_frame_alloc();
+            scaled.format(AV_PIX_FMT_YUV420P);
+            scaled.width(profile.getWidth());
+            scaled.height(profile.getHeight());
+            check(av_frame_get_buffer(scaled, 32), "分配帧缓冲");
+            inPacket = av_packet_alloc();
+            outPacket = av_packet_alloc();
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+    
+    private static AVCodec findEncoder(String codecType) {
+        boolean h265 = "H265".equals(codecType);
+        AVCodec codec = avcodec_find_encoder_by_name(h265 ? "libx265" : "libx264");
+        if (codec == null || codec.isNull()) {
+            codec = avcodec_find_encoder(h265 ? AV_CODEC_ID_HEVC : AV_CODEC_ID_H264);
+        }
+        if (codec == null || codec.isNull()) {
+            throw new IllegalStateException(codecType + "编码器不可用");
+        }
+        return codec;
+    }
+    
+    /**
+     * 按输出规格打开编码器：无B帧、单线程（并行度由转码线程池控制）、低延迟
+     */
+    private AVCodecContext openEncoder() {
+        long bitRate = profile.getVideoBitRate() * 1000L;
+        AVCodecContext context = avcodec_alloc_context3(encoderCodec);
+        context.width(profile.getWidth());
+        context.height(profile.getHeight());
+        context.pix_fmt(AV_PIX_FMT_YUV420P);
+        context.time_base(av_make_q(1, profile.getFrameRate()));
+        context.framerate(av_make_q(profile.getFrameRate(), 1));
+        context.gop_size(profile.getGopSize());
+        context.max_b_frames(0);
+        context.bit_rate(bitRate);
+        context.rc_max_rate(bitRate);
+        context.rc_buffer_size((int) Math.min(bitRate, Integer.MAX_VALUE));
+        context.thread_count(1);
+        
+        AVDictionary options = new AVDictionary(null);
+        if (encoderCodec.name().getString().startsWith("libx26")) {
+            av_dict_set(options, "preset", "veryfast", 0);
+            av_dict_set(options, "tune", "zerolatency", 0);
+            av_dict_set(options, "forced-idr", "1", 0);
+        }
+        try {
+            check(avcodec_open2(context, encoderCodec, options), "打开编码器");
+            return context;
+        } catch (RuntimeException e) {
+            avcodec_free_context(context);
+            throw e;
+        } finally {
+            av_dict_free(options);
+        }
+    }
+    
+    /**
+     * 转码一帧
+     * 
+     * @param data 输入H264数据（Annex-B）
+     * @param keyFrame 输入是否为关键帧
+     * @param timestamp 输入帧时间戳
+     * @param sink 编码输出回调
+     * @return 输出帧数
+     */
+    public int transcode(ByteBuffer data, boolean keyFrame, int timestamp, FrameSink sink) {
+        if (waitKeyframe) {
+            if (!keyFrame) {
+                return 0;
+            }
+            waitKeyframe = false;
+        }
+        
+        int ret;
+        try (BytePointer pointer = data.isDirect() ? new BytePointer(data.slice()) : new BytePointer(toArray(data))) {
+            inPacket.data(pointer);
+            inPacket.size(data.remaining());
+            inPacket.pts(timestamp);
+            inPacket.dts(timestamp);
+            inPacket.flags(keyFrame ? AV_PKT_FLAG_KEY : 0);
+            // 非引用计数包，解码器内部复制数据
+            ret = avcodec_send_packet(decoder, inPacket);
+            inPacket.data(null);
+            inPacket.size(0);
+        }
+        if (ret < 0) {
+            log.debug("解码失败，等待下一个关键帧: profile={}, error={}", profile, errorString(ret));
+            waitKeyframe = true;
+            return 0;
+        }
+        
+        int produced = 0;
+        while (avcodec_receive_frame(decoder, decoded) >= 0) {
+            long pts = decoded.pts() == AV_NOPTS_VALUE ? timestamp : decoded.pts();
+            produced += encode((int) pts, sink);
+            av_frame_unref(decoded);
+        }
+        return produced;
+    }
+    
+    private int encode(int timestamp, FrameSink sink) {
+        sws = sws_getCachedContext(sws, decoded.width(), decoded.height(), decoded.format(),
+                profile.getWidth(), profile.getHeight(), AV_PIX_FMT_YUV420P,
+                SWS_FAST_BILINEAR, null, null, (DoublePointer) null);
+        if (sws == null || sws.isNull()) {
+            throw new IllegalStateException("创建缩放上下文失败: " + decoded.width() + "x" + decoded.height());
+        }
+        // 编码器可能仍引用上一帧缓冲，写入前确保可写
+        check(av_frame_make_writable(scaled), "分配帧缓冲");
+        sws_scale(sws, decoded.data(), decoded.linesize(), 0, decoded.height(), scaled.data(), scaled.linesize());
+        
+        long pts = nextPts++;
+        timestamps[(int) (pts % TIMESTAMP_RING_SIZE)] = timestamp;
+        scaled.pts(pts);
+        scaled.pict_type(forceKeyframe ? AV_PICTURE_TYPE_I : AV_PICTURE_TYPE_NONE);
+        forceKeyframe = false;
+        int ret = avcodec_send_frame(encoder, scaled);
+        if (ret < 0) {
+            log.debug("编码失败: profile={}, error={}", profile, errorString(ret));
+            return 0;
+        }
+        
+        int produced = 0;
+        while (avcodec_receive_packet(encoder, outPacket) >= 0) {
+            try {
+                ByteBuffer out = outPacket.data().capacity(outPacket.size()).asByteBuffer();
+                boolean key = (outPacket.flags() & AV_PKT_FLAG_KEY) != 0;
+                sink.accept(out, key, timestamps[(int) (outPacket.pts() % TIMESTAMP_RING_SIZE)]);
+                produced++;
+            } finally {
+                av_packet_unref(outPacket);
+            }
+        }
+        return produced;
+    }
+    
+    /**
+     * 输入出现缺帧时调用，解码器等待下一个关键帧
+     */
+    public void resync() {
+        waitKeyframe = true;
+    }
+    
+    /**
+     * 清空编解码器状态以便下一个会话复用
+     * 编码器不支持flush时重新打开，帧缓冲、缩放上下文和解码器保留
+     */
+    public void reset() {
+        avcodec_flush_buffers(decoder);
+        if ((encoderCodec.capabilities() & AV_CODEC_CAP_ENCODER_FLUSH) != 0) {
+            avcodec_flush_buffers(encoder);
+        } else {
+            avcodec_free_context(encoder);
+            encoder = null;
+            encoder = openEncoder();
+        }
+        nextPts = 0;
+        forceKeyframe = true;
+        waitKeyframe = true;
+    }
+    
+    public TranscodeProfile getProfile() {
+        return profile;
+    }
+    
+    @Override
+    public void close() {
+        if (decoder != null) {
+            avcodec_free_context(decoder);
+            decoder = null;
+        }
+        if (encoder != null) {
+            avcodec_free_context(encoder);
+            encoder = null;
+        }
+        if (sws != null) {
+            sws_freeContext(sws);
+            sws = null;
+        }
+        if (decoded != null) {
+            av_frame_free(decoded);
+            decoded = null;
+        }
+        if (scaled != null) {
+            av_frame_free(scaled);
+            scaled = null;
+        }
+        if (inPacket != null) {
+            av_packet_free(inPacket);
+            inPacket = null;
+        }
+        if (outPacket != null) {
+            av_packet_free(outPacket);
+            outPacket = null;
+        }
+    }
+    
+    private static byte[] toArray(ByteBuffer data) {
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return bytes;
+    }
+    
+    private static void check(int ret, String action) {
+        if (ret < 0) {
+            throw new IllegalStateException(action + "失败: " + errorString(ret));
+        }
+    }
+    
+    private static String errorString(int ret) {
+        byte[] buffer = new byte[128];
+        av_strerror(ret, buffer, buffer.length);
+        int length = 0;
+        while (length < buffer.length && buffer[length] != 0) {
+            length++;
+        }
+        return new String(buffer, 0, length, StandardCharsets.UTF_8) + "(" + ret + ")";
+    }
+}
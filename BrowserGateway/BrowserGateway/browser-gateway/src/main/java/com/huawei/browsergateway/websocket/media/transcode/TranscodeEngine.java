@@ -0,0 +1,179 @@
+package com.huawei.browsergateway.websocket.media.transcode;
+
+import com.huawei.browsergateway.common.utils.KeyedSerialExecutor;
+import com.huawei.browsergateway.common.utils.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 转码引擎
+ * 按转码规格池化FfmpegTranscoder（解码器/编码器上下文、AVFrame/AVPacket缓冲），
+ * 转码任务在按CPU核数限定的转码线程池中按用户串行执行，不占用WebSocket容器线程和Netty IO线程
+ */
+@Component
+public class TranscodeEngine {
+    private static final Logger log = LoggerFactory.getLogger(TranscodeEngine.class);
+    
+    @Autowired
+    @Qualifier("transcodeExecutor")
+    private KeyedSerialExecutor transcodeExecutor;
+    
+    @Value("${browsergw.ffmpeg.max-idle-per-profile:4}")
+    private int maxIdlePerProfile = 4;
+    
+    @Value("${browsergw.ffmpeg.max-pending-frames:15}")
+    private int maxPendingFrames = 15;
+    
+    // 转码规格 -> 空闲转码器
+    private final ConcurrentMap<TranscodeProfile, Deque<FfmpegTranscoder>> idle = new ConcurrentHashMap<>();
+    
+    // 监控指标
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder inputFrames = new LongAdder();
+    private final LongAdder outputFrames = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LatencyHistogram transcodeLatency = new LatencyHistogram();
+    
+    /**
+     * FFmpeg本地库是否可用
+     */
+    public boolean isAvailable() {
+        return FfmpegTranscoder.isAvailable();
+    }
+    
+    /**
+     * 单个会话允许排队等待转码的帧数，超出时丢帧并等待下一个关键帧
+     */
+    public int getMaxPendingFrames() {
+        return maxPendingFrames;
+    }
+    
+    /**
+     * 获取转码器，优先复用同规格的空闲实例
+     * 
+     * @param profile 转码规格
+     * @return 转码器，FFmpeg不可用或创建失败时返回null
+     */
+    public FfmpegTranscoder acquire(TranscodeProfile profile) {
+        if (!isAvailable()) {
+            return null;
+        }
+        Deque<FfmpegTranscoder> pool = idle.get(profile);
+        FfmpegTranscoder transcoder = pool == null ? null : pool.pollFirst();
+        if (transcoder != null) {
+            reused.increment();
+            active.incrementAndGet();
+            return transcoder;
+        }
+        try {
+            transcoder = new FfmpegTranscoder(profile);
+            created.increment();
+            active.incrementAndGet();
+            log.info("创建转码器: profile={}", profile);
+            return transcoder;
+        } catch (RuntimeException e) {
+            log.error("创建转码器失败: profile={}", profile, e);
+            return null;
+        }
+    }
+    
+    /**
+     * 归还转码器，重置后放回空闲池，空闲数超过上限时释放
+     * 调用方需保证与该转码器的转码任务互斥
+     */
+    public void release(FfmpegTranscoder transcoder) {
+        active.decrementAndGet();
+        try {
+            transcoder.reset();
+        } catch (RuntimeException e) {
+            log.warn("重置转码器失败，直接释放: profile={}", transcoder.getProfile(), e);
+            transcoder.close();
+            return;
+        }
+        Deque<FfmpegTranscoder> pool = idle.computeIfAbsent(transcoder.getProfile(), k -> new ConcurrentLinkedDeque<>());
+        if (pool.size() < maxIdlePerProfile) {
+            pool.offerFirst(transcoder);
+        } else {
+            transcoder.close();
+        }
+    }
+    
+    /**
+     * 提交转码任务，同一用户的任务按提交顺序串行执行
+     * 
+     * @return 是否已提交，线程池已满时返回false
+     */
+    public boolean execute(String userId, Runnable task) {
+        try {
+            transcodeExecutor.execute(userId, task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * 记录一帧转码结果
+     * 
+     * @param nanos 转码耗时
+     * @param outputs 输出帧数
+     */
+    public void recordTranscode(long nanos, int outputs) {
+        inputFrames.increment();
+        outputFrames.add(outputs);
+        transcodeLatency.record(nanos);
+    }
+    
+    /**
+     * 记录因排队过多或线程池已满丢弃的输入帧
+     */
+    public void recordDropped() {
+        droppedFrames.increment();
+    }
+    
+    /**
+     * 输出本周期指标并清零
+     */
+    public String metricsAndReset() {
+        int idleCount = 0;
+        for (Deque<FfmpegTranscoder> pool : idle.values()) {
+            idleCount += pool.size();
+        }
+        return "available=" + isAvailable()
+                + ", active=" + active.get()
+                + ", idle=" + idleCount
+                + ", profiles=" + idle.size()
+                + ", created=" + created.sumThenReset()
+                + ", reused=" + reused.sumThenReset()
+                + ", in=" + inputFrames.sumThenReset()
+                + ", out=" + outputFrames.sumThenReset()
+                + ", dropped=" + droppedFrames.sumThenReset()
+                + ", latency[" + transcodeLatency.snapshotAndReset() + "]";
+    }
+    
+    @PreDestroy
+    public void destroy() {
+        for (Deque<FfmpegTranscoder> pool : idle.values()) {
+            FfmpegTranscoder transcoder;
+            while ((transcoder = pool.pollFirst()) != null) {
+                transcoder.close();
+            }
+        }
+        idle.clear();
+    }
+}
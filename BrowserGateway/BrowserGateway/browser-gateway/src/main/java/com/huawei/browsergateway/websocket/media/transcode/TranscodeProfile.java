@@ -0,0 +1,70 @@
+package com.huawei.browsergateway.websocket.media.transcode;
+
+import com.huawei.browsergateway.websocket.media.MediaParam;
+import lombok.Data;
+
+/**
+ * 转码输出规格
+ * 作为转码器池的键，规格相同的会话复用同一组解码器/编码器上下文和帧缓冲
+ */
+@Data
+public class TranscodeProfile {
+    
+    // 未指定视频码率时按每像素每帧0.07比特估算（1080p30约4.3Mbps）
+    private static final double AUTO_BITS_PER_PIXEL = 0.07;
+    
+    // 估算视频码率下限 kbps
+    private static final int MIN_AUTO_VIDEO_BIT_RATE = 100;
+    
+    /**
+     * 输出宽度（偶数）
+     */
+    private final int width;
+    
+    /**
+     * 输出高度（偶数）
+     */
+    private final int height;
+    
+    /**
+     * 输出帧率
+     */
+    private final int frameRate;
+    
+    /**
+     * 关键帧间隔（帧）
+     */
+    private final int gopSize;
+    
+    /**
+     * 视频码率 kbps
+     */
+    private final int videoBitRate;
+    
+    /**
+     * 输出编码格式 H264/H265
+     */
+    private final String codecType;
+    
+    /**
+     * 由客户端媒体参数生成转码规格
+     * 宽高向下取偶数（YUV420要求），未指定视频码率时按分辨率和帧率估算
+     */
+    public static TranscodeProfile from(MediaParam param) {
+        int width = Math.max(2, param.getWidth() & ~1);
+        int height = Math.max(2, param.getHeight() & ~1);
+        int frameRate = Math.max(1, param.getFrameRate());
+        int gopSize = Math.max(1, param.getGopSize());
+        int videoBitRate = param.getVideoBitRate() > 0
+                ? param.getVideoBitRate()
+                : Math.max(MIN_AUTO_VIDEO_BIT_RATE,
+                        (int) Math.round((double) width * height * frameRate * AUTO_BITS_PER_PIXEL / 1000));
+        String codecType = "H265".equalsIgnoreCase(param.getCodecType()) ? "H265" : "H264";
+        return new TranscodeProfile(width, height, frameRate, gopSize, videoBitRate, codecType);
+    }
+    
+    @Override
+    public String toString() {
+        return width + "x" + height + "@" + frameRate + "/" + codecType + "/" + videoBitRate + "kbps/gop" + gopSize;
+    }
+}
@@ -0,0 +1,159 @@
+package com.huawei.browsergateway.websocket.netty;
+
+import com.huawei.browsergateway.config.TcpConfig;
+import com.huawei.browsergateway.config.WebsocketConfig;
+import com.huawei.browsergateway.tcpserver.common.TcpServerOptions;
+import com.huawei.browsergateway.tcpserver.common.TcpTransport;
+import com.huawei.browsergateway.tcpserver.common.WriteBackpressureHandler;
+import com.huawei.browsergateway.websocket.WebSocketEndpoint;
+import com.huawei.browsergateway.websocket.extension.ExtensionSocketServer;
+import com.huawei.browsergateway.websocket.media.MediaStreamSocketServer;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolConfig;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.handler.timeout.IdleStateHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Netty WebSocket服务器
+ * 媒体流端点 ws://{server}:{media-port}/browser/websocket/{imeiAndImsi}
+ * 控制流端点 ws://{server}:{muen-port}/control/websocket/{imeiAndImsi}
+ * 
+ * 两个端口共用boss/worker线程组；传输层、分配器、写缓冲水位沿用TcpConfig，出站缓冲超过高水位时暂停读取。
+ * 媒体帧以池化直接内存的引用计数副本写出，上行二进制帧以池化缓冲切片交给端点，均不复制为byte[]
+ */
+@Component
+public class NettyWebSocketServer {
+    private static final Logger log = LoggerFactory.getLogger(NettyWebSocketServer.class);
+    
+    public static final String MEDIA_PATH = "/browser/websocket";
+    
+    public static final String MUEN_PATH = "/control/websocket";
+    
+    // HTTP握手请求最大长度
+    private static final int MAX_HANDSHAKE_LENGTH = 65536;
+    
+    @Value("${server.address:0.0.0.0}")
+    private String serverAddress;
+    
+    @Autowired
+    private WebsocketConfig websocketConfig;
+    
+    @Autowired
+    private TcpConfig tcpConfig;
+    
+    @Autowired
+    private MediaStreamSocketServer mediaEndpoint;
+    
+    @Autowired
+    private ExtensionSocketServer muenEndpoint;
+    
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private final List<Channel> serverChannels = new ArrayList<>();
+    
+    @PostConstruct
+    public void startServer() {
+        try {
+            TcpTransport transport = TcpTransport.resolve(tcpConfig.getTransport());
+            bossGroup = transport.newEventLoopGroup(websocketConfig.getBoss());
+            workerGroup = transport.newEventLoopGroup(websocketConfig.getWorker());
+            
+            serverChannels.add(bind(transport, websocketConfig.getMediaPort(), MEDIA_PATH, mediaEndpoint));
+            serverChannels.add(bind(transport, websocketConfig.getMuenPort(), MUEN_PATH, muenEndpoint));
+            
+            log.info("WebSocket服务器启动成功: address={}, mediaPort={}, muenPort={}, transport={}",
+                    serverAddress, websocketConfig.getMediaPort(), websocketConfig.getMuenPort(), transport);
+        } catch (Exception e) {
+            stopServer();
+            log.error("WebSocket服务器启动失败", e);
+            throw new RuntimeException("WebSocket服务器启动失败", e);
+        }
+    }
+    
+    private Channel bind(TcpTransport transport, int port, String path, WebSocketEndpoint endpoint)
+            throws InterruptedException {
+        WebSocketServerProtocolConfig protocolConfig = WebSocketServerProtocolConfig.newBuilder()
+                .websocketPath(path)
+                .checkStartsWith(true)
+                .maxFramePayloadLength(websocketConfig.getMaxFrameSize())
+                .build();
+        WebSocketFrameHandler frameHandler = new WebSocketFrameHandler(path, endpoint);
+        
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(bossGroup, workerGroup)
+                .channel(transport.serverChannelClass())
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ChannelPipeline pipeline = ch.pipeline();
+                        
+                        // 写缓冲背压：慢终端不可写时暂停读取
+                        pipeline.addLast("backpressure", WriteBackpressureHandler.INSTANCE);
+                        
+                        // 心跳超时检测：读空闲超时后由帧处理器关闭连接
+                        pipeline.addLast("idle", new IdleStateHandler(
+                                websocketConfig.getHeartbeatTtl(), 0, 0, TimeUnit.MILLISECONDS));
+                        
+                        // HTTP握手及WebSocket协议（Ping/Pong、Close由协议处理器应答）
+                        pipeline.addLast("http", new HttpServerCodec());
+                        pipeline.addLast("handshake", new HttpObjectAggregator(MAX_HANDSHAKE_LENGTH));
+                        pipeline.addLast("websocket", new WebSocketServerProtocolHandler(protocolConfig));
+                        
+                        // 合并分片帧，业务按完整消息处理
+                        pipeline.addLast("aggregator", new WebSocketFrameAggregator(websocketConfig.getMaxFrameSize()));
+                        pipeline.addLast("handler", frameHandler);
+                    }
+                });
+        
+        TcpServerOptions.apply(bootstrap, tcpConfig);
+        return bootstrap.bind(serverAddress, port).sync().channel();
+    }
+    
+    /**
+     * 停止服务器
+     */
+    @PreDestroy
+    public void stopServer() {
+        try {
+            for (Channel serverChannel : serverChannels) {
+                serverChannel.close().sync();
+            }
+        } catch (InterruptedException e) {
+            log.error("关闭WebSocket服务器失败", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            serverChannels.clear();
+        }
+        
+        if (workerGroup != null) {
+            workerGroup.shutdownGracefully();
+            workerGroup = null;
+        }
+        
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully();
+            bossGroup = null;
+        }
+        
+        log.info("WebSocket服务器已关闭");
+    }
+}
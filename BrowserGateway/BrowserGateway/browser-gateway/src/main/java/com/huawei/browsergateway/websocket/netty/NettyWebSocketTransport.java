@@ -0,0 +1,99 @@
+package com.huawei.browsergateway.websocket.netty;
+
+import com.huawei.browsergateway.websocket.WebSocketTransport;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Netty WebSocket连接的发送通道
+ * 二进制帧以调用方ByteBuf的引用计数副本直接写出（池化直接内存，不复制），写完成后由Netty释放副本
+ */
+public class NettyWebSocketTransport implements WebSocketTransport {
+    
+    static final AttributeKey<NettyWebSocketTransport> KEY = AttributeKey.valueOf("websocketTransport");
+    
+    private final Channel channel;
+    
+    private volatile long sendTimeoutMillis;
+    
+    private volatile Object attachment;
+    
+    NettyWebSocketTransport(Channel channel) {
+        this.channel = channel;
+    }
+    
+    @Override
+    public String getId() {
+        return channel.id().asShortText();
+    }
+    
+    @Override
+    public boolean isOpen() {
+        return channel.isActive();
+    }
+    
+    @Override
+    public void setSendTimeout(long timeoutMillis) {
+        this.sendTimeoutMillis = timeoutMillis;
+    }
+    
+    @Override
+    public void sendBinary(ByteBuf frame, Consumer<Throwable> callback) {
+        BinaryWebSocketFrame message = new BinaryWebSocketFrame(frame.retainedDuplicate());
+        EventLoop eventLoop = channel.eventLoop();
+        if (eventLoop.inEventLoop()) {
+            write(message, callback);
+        } else {
+            // 写入、超时定时器和完成回调合并为一个IO线程任务，减少跨线程唤醒
+            eventLoop.execute(() -> write(message, callback));
+        }
+    }
+    
+    private void write(BinaryWebSocketFrame message, Consumer<Throwable> callback) {
+        ChannelFuture future = channel.writeAndFlush(message);
+        long timeout = sendTimeoutMillis;
+        if (timeout > 0 && !future.isDone()) {
+            // 超时关闭连接，未完成的写入以失败结束
+            ScheduledFuture<?> timer = channel.eventLoop().schedule(() -> {
+                if (!future.isDone()) {
+                    channel.close();
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+            future.addListener(done -> timer.cancel(false));
+        }
+        future.addListener(done -> callback.accept(done.cause()));
+    }
+    
+    @Override
+    public void sendText(String text) {
+        channel.writeAndFlush(new TextWebSocketFrame(text));
+    }
+    
+    @Override
+    public void close() {
+        channel.close();
+    }
+    
+    @Override
+    public Object getAttachment() {
+        return attachment;
+    }
+    
+    @Override
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+    
+    public Channel channel() {
+        return channel;
+    }
+}
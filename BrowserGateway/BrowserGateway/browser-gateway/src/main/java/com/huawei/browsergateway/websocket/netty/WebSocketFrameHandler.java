@@ -0,0 +1,91 @@
+package com.huawei.browsergateway.websocket.netty;
+
+import com.huawei.browsergateway.websocket.WebSocketEndpoint;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.handler.timeout.IdleStateEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * WebSocket帧处理器
+ * 握手完成后从请求路径中解析路径参数，将文本/二进制帧交给端点；
+ * 二进制帧内容为池化缓冲的切片，端点处理期间有效，返回后由父类释放
+ * 
+ * 无状态，同一端点的所有连接共享同一实例
+ */
+@ChannelHandler.Sharable
+public class WebSocketFrameHandler extends SimpleChannelInboundHandler<WebSocketFrame> {
+    private static final Logger log = LoggerFactory.getLogger(WebSocketFrameHandler.class);
+    
+    private final String path;
+    
+    private final WebSocketEndpoint endpoint;
+    
+    /**
+     * @param path 端点路径，其后为"/路径参数"，如 /browser/websocket
+     * @param endpoint 端点
+     */
+    public WebSocketFrameHandler(String path, WebSocketEndpoint endpoint) {
+        this.path = path;
+        this.endpoint = endpoint;
+    }
+    
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete) {
+            String requestPath = new QueryStringDecoder(
+                    ((WebSocketServerProtocolHandler.HandshakeComplete) evt).requestUri()).path();
+            NettyWebSocketTransport transport = new NettyWebSocketTransport(ctx.channel());
+            ctx.channel().attr(NettyWebSocketTransport.KEY).set(transport);
+            endpoint.onOpen(transport, requestPath.substring(Math.min(path.length() + 1, requestPath.length())));
+            return;
+        }
+        // 读空闲超过心跳超时时间，关闭连接
+        if (evt instanceof IdleStateEvent) {
+            log.info("WebSocket连接心跳超时，关闭连接: channel={}", ctx.channel().id());
+            ctx.close();
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+    
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, WebSocketFrame frame) {
+        NettyWebSocketTransport transport = ctx.channel().attr(NettyWebSocketTransport.KEY).get();
+        if (transport == null) {
+            return;
+        }
+        if (frame instanceof BinaryWebSocketFrame) {
+            endpoint.onBinary(transport, frame.content());
+        } else if (frame instanceof TextWebSocketFrame) {
+            endpoint.onText(transport, ((TextWebSocketFrame) frame).text());
+        }
+    }
+    
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        NettyWebSocketTransport transport = ctx.channel().attr(NettyWebSocketTransport.KEY).getAndSet(null);
+        if (transport != null) {
+            endpoint.onClose(transport);
+        }
+        super.channelInactive(ctx);
+    }
+    
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        NettyWebSocketTransport transport = ctx.channel().attr(NettyWebSocketTransport.KEY).get();
+        if (transport != null) {
+            endpoint.onError(transport, cause);
+        } else {
+            log.warn("WebSocket连接异常: channel={}, cause={}", ctx.channel().id(), String.valueOf(cause));
+        }
+        ctx.close();
+    }
+}
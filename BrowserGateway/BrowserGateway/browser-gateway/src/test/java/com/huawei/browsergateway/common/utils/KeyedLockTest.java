@@ -0,0 +1,94 @@
+package com.huawei.browsergateway.common.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * KeyedLock单元测试
+ */
+@DisplayName("KeyedLock测试")
+class KeyedLockTest {
+    
+    private ExecutorService pool;
+    
+    private KeyedLock keyedLock;
+    
+    @BeforeEach
+    void setUp() {
+        pool = Executors.newFixedThreadPool(8);
+        keyedLock = new KeyedLock();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+    
+    @Test
+    @DisplayName("同一key互斥执行，释放后回收锁")
+    void testSameKeyMutualExclusion() throws Exception {
+        int taskCount = 1000;
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(taskCount);
+        
+        for (int i = 0; i < taskCount; i++) {
+            pool.execute(() -> {
+                keyedLock.withLock("user-1", () -> {
+                    maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                    concurrent.decrementAndGet();
+                    return null;
+                });
+                done.countDown();
+            });
+        }
+        
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, maxConcurrent.get());
+        assertEquals(0, keyedLock.activeKeys());
+    }
+    
+    @Test
+    @DisplayName("持有某个key时其他key不受影响，同一线程可重入")
+    void testDifferentKeysDoNotBlock() throws Exception {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holder = pool.submit(() -> keyedLock.withLock("user-1", () -> {
+            keyedLock.withLock("user-1", () -> null);
+            locked.countDown();
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }));
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+        
+        assertEquals("done", pool.submit(() -> keyedLock.withLock("user-2", () -> "done")).get(5, TimeUnit.SECONDS));
+        Future<String> waiting = pool.submit(() -> keyedLock.withLock("user-1", () -> "done"));
+        assertThrows(TimeoutException.class, () -> waiting.get(100, TimeUnit.MILLISECONDS));
+        
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        assertEquals("done", waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(0, keyedLock.activeKeys());
+    }
+    
+    @Test
+    @DisplayName("未持有锁时释放抛出异常")
+    void testUnlockWithoutLock() {
+        assertThrows(IllegalMonitorStateException.class, () -> keyedLock.unlock("user-1"));
+    }
+}
@@ -0,0 +1,132 @@
+package com.huawei.browsergateway.common.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * KeyedSerialExecutor单元测试
+ */
+@DisplayName("KeyedSerialExecutor测试")
+class KeyedSerialExecutorTest {
+    
+    private ExecutorService pool;
+    
+    private KeyedSerialExecutor executor;
+    
+    @BeforeEach
+    void setUp() {
+        pool = Executors.newFixedThreadPool(4);
+        executor = new KeyedSerialExecutor(pool);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+    
+    @Test
+    @DisplayName("同一key的任务按提交顺序串行执行")
+    void testSameKeyOrdering() throws Exception {
+        int taskCount = 1000;
+        List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(taskCount);
+        
+        for (int i = 0; i < taskCount; i++) {
+            int seq = i;
+            executor.execute("user-1", () -> {
+                maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                executed.add(seq);
+                concurrent.decrementAndGet();
+                done.countDown();
+            });
+        }
+        
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, maxConcurrent.get());
+        for (int i = 0; i < taskCount; i++) {
+            assertEquals(i, executed.get(i));
+        }
+        // 最后一个任务返回后队列才会移除
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.pendingKeys() != 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, executor.pendingKeys());
+    }
+    
+    @Test
+    @DisplayName("慢任务不阻塞其他key")
+    void testSlowKeyDoesNotBlockOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherDone = new CountDownLatch(1);
+        
+        executor.execute("slow-user", () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute("other-user", otherDone::countDown);
+        
+        assertTrue(otherDone.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+    
+    @Test
+    @DisplayName("任务异常不影响同一key的后续任务")
+    void testExceptionDoesNotBreakQueue() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        
+        executor.execute("user-1", () -> {
+            throw new IllegalStateException("模拟异常");
+        });
+        executor.execute("user-1", done::countDown);
+        
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    @DisplayName("线程池已满时拒绝提交并清理队列")
+    void testRejected() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor bounded = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1));
+        KeyedSerialExecutor boundedExecutor = new KeyedSerialExecutor(bounded);
+        try {
+            Runnable blocking = () -> {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            boundedExecutor.execute("user-1", blocking);
+            boundedExecutor.execute("user-2", blocking);
+            
+            assertThrows(RejectedExecutionException.class, () -> boundedExecutor.execute("user-3", () -> { }));
+            assertEquals(2, boundedExecutor.pendingKeys());
+        } finally {
+            release.countDown();
+            bounded.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.huawei.browsergateway.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AdmissionController单元测试
+ */
+@DisplayName("AdmissionController测试")
+class AdmissionControllerTest {
+    
+    private AdmissionController admissionController;
+    
+    private ExecutorService pool;
+    
+    @BeforeEach
+    void setUp() {
+        admissionController = new AdmissionController();
+        ReflectionTestUtils.setField(admissionController, "capacity", 2);
+        ReflectionTestUtils.setField(admissionController, "waitTimeoutMillis", 5000L);
+        pool = Executors.newFixedThreadPool(8);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+    
+    @Test
+    @DisplayName("容量已满时等待超时后拒绝，等待队列已满时立即拒绝")
+    void testRejectWhenFull() {
+        ReflectionTestUtils.setField(admissionController, "waitTimeoutMillis", 50L);
+        assertTrue(admissionController.acquire("user-1"));
+        assertTrue(admissionController.acquire("user-2"));
+        
+        long start = System.nanoTime();
+        assertFalse(admissionController.acquire("user-3"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50L);
+        
+        ReflectionTestUtils.setField(admissionController, "queueCapacity", 0);
+        start = System.nanoTime();
+        assertFalse(admissionController.acquire("user-3"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 50L);
+        
+        assertEquals(2, admissionController.getUsed());
+        assertTrue(admissionController.metricsAndReset().contains("rejected=2"));
+    }
+    
+    @Test
+    @DisplayName("等待中的请求在名额归还后获得名额")
+    void testWaiterAdmittedOnRelease() throws Exception {
+        assertTrue(admissionController.acquire("user-1"));
+        assertTrue(admissionController.acquire("user-2"));
+        
+        Future<Boolean> waiting = pool.submit(() -> admissionController.acquire("user-3"));
+        awaitWaiting(1);
+        assertFalse(waiting.isDone());
+        
+        admissionController.release("user-1");
+        assertTrue(waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(2, admissionController.getUsed());
+    }
+    
+    @Test
+    @DisplayName("重连用户优先于先到达的新用户获得名额")
+    void testReconnectBeforeNewUsers() throws Exception {
+        assertTrue(admissionController.acquire("user-1"));
+        assertTrue(admissionController.acquire("user-2"));
+        admissionController.release("user-1");
+        assertTrue(admissionController.acquire("user-3"));
+        assertEquals(AdmissionController.Priority.RECONNECT, admissionController.priorityOf("user-1"));
+        assertEquals(AdmissionController.Priority.NEW, admissionController.priorityOf("user-4"));
+        
+        List<String> admittedOrder = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> results = new ArrayList<>();
+        for (String userId : new String[] {"user-4", "user-5", "user-1"}) {
+            results.add(pool.submit(() -> {
+                assertTrue(admissionController.acquire(userId));
+                admittedOrder.add(userId);
+            }));
+            awaitWaiting(results.size());
+        }
+        
+        for (int i = 0; i < results.size(); i++) {
+            admissionController.release(null);
+            awaitAdmitted(admittedOrder, i + 1);
+        }
+        for (Future<?> result : results) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals("user-1", admittedOrder.get(0));
+    }
+    
+    @Test
+    @DisplayName("关闭优先级后所有请求按新用户处理")
+    void testPriorityDisabled() {
+        ReflectionTestUtils.setField(admissionController, "priorityEnabled", false);
+        assertTrue(admissionController.acquire("user-1"));
+        admissionController.release("user-1");
+        assertEquals(AdmissionController.Priority.NEW, admissionController.priorityOf("user-1"));
+    }
+    
+    @Test
+    @DisplayName("并发获取和归还名额时占用数不超过容量")
+    void testConcurrentNeverExceedsCapacity() throws Exception {
+        int taskCount = 200;
+        AtomicInteger inUse = new AtomicInteger();
+        AtomicInteger maxInUse = new AtomicInteger();
+        ReflectionTestUtils.setField(admissionController, "queueCapacity", taskCount);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < taskCount; i++) {
+            String userId = "user-" + i;
+            results.add(pool.submit(() -> {
+                if (!admissionController.acquire(userId)) {
+                    return false;
+                }
+                maxInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+                Thread.sleep(1);
+                inUse.decrementAndGet();
+                admissionController.release(userId);
+                return true;
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get(10, TimeUnit.SECONDS));
+        }
+        assertTrue(maxInUse.get() <= 2);
+        assertEquals(0, admissionController.getUsed());
+    }
+    
+    private void awaitWaiting(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (admissionController.getWaiting() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+    
+    private static void awaitAdmitted(List<String> admittedOrder, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (admittedOrder.size() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
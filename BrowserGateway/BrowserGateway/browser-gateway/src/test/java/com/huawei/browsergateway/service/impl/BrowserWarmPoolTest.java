@@ -0,0 +1,146 @@
+package com.huawei.browsergateway.service.impl;
+
+import com.huawei.browsergateway.entity.plugin.PluginActive;
+import com.huawei.browsergateway.sdk.muen.HWCallback;
+import com.huawei.browsergateway.sdk.muen.MuenDriver;
+import com.huawei.browsergateway.service.IPluginManage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * BrowserWarmPool单元测试
+ */
+@DisplayName("BrowserWarmPool测试")
+class BrowserWarmPoolTest {
+    
+    private BrowserWarmPool warmPool;
+    
+    private IPluginManage pluginManage;
+    
+    private PluginActive pluginActive;
+    
+    @BeforeEach
+    void setUp() {
+        pluginManage = mock(IPluginManage.class);
+        pluginActive = new PluginActive();
+        pluginActive.setName("MoonSDK");
+        pluginActive.setVersion("1.0");
+        when(pluginManage.getPluginActive()).thenReturn(pluginActive);
+        when(pluginManage.createDriver(any(HWCallback.class))).thenAnswer(invocation -> mock(MuenDriver.class));
+        warmPool = new BrowserWarmPool();
+        ReflectionTestUtils.setField(warmPool, "pluginManage", pluginManage);
+        ReflectionTestUtils.setField(warmPool, "enabled", true);
+    }
+    
+    static Stream<Arguments> targetSizeDecisionTable() {
+        return Stream.of(
+                // cap, sizeRatio, maxSize, used, expected
+                Arguments.of(300, 0.05, 16, 0, 15),
+                Arguments.of(300, 0.1, 16, 0, 16),
+                Arguments.of(10, 0.05, 16, 0, 1),
+                // 不超过剩余容量
+                Arguments.of(300, 0.05, 16, 290, 10),
+                Arguments.of(300, 0.05, 16, 300, 0),
+                Arguments.of(300, 0.0, 16, 0, 0)
+        );
+    }
+    
+    @ParameterizedTest(name = "决策表 #{index}: cap={0}, ratio={1}, max={2}, used={3} -> {4}")
+    @MethodSource("targetSizeDecisionTable")
+    @DisplayName("池大小决策表")
+    void testTargetSize(int cap, double sizeRatio, int maxSize, int used, int expected) {
+        ReflectionTestUtils.setField(warmPool, "cap", cap);
+        ReflectionTestUtils.setField(warmPool, "sizeRatio", sizeRatio);
+        ReflectionTestUtils.setField(warmPool, "maxSize", maxSize);
+        assertEquals(expected, warmPool.getTargetSize(used));
+    }
+    
+    @Test
+    @DisplayName("每个周期最多创建refill-batch个实例，剩余容量减少时收缩")
+    void testRefillRateLimitedAndShrinks() {
+        ReflectionTestUtils.setField(warmPool, "cap", 100);
+        ReflectionTestUtils.setField(warmPool, "sizeRatio", 0.05);
+        
+        assertEquals(2, warmPool.refill(0));
+        assertEquals(2, warmPool.refill(0));
+        assertEquals(1, warmPool.refill(0));
+        assertEquals(0, warmPool.refill(0));
+        assertEquals(5, warmPool.getIdleCount());
+        
+        assertEquals(0, warmPool.refill(97));
+        assertEquals(3, warmPool.getIdleCount());
+        verify(pluginManage, times(2)).releaseDriver(any(MuenDriver.class));
+    }
+    
+    @Test
+    @DisplayName("插件未加载时不创建实例，领取不到时返回null")
+    void testRefillWithoutPlugin() {
+        when(pluginManage.createDriver(any(HWCallback.class))).thenReturn(null);
+        
+        assertEquals(0, warmPool.refill(0));
+        assertNull(warmPool.claim());
+        assertTrue(warmPool.metricsAndReset().contains("misses=1"));
+    }
+    
+    @Test
+    @DisplayName("领取的实例绑定用户回调后，驱动的回调转发给该用户")
+    void testClaimBindsCallback() {
+        warmPool.refill(0);
+        ArgumentCaptor<HWCallback> captor = ArgumentCaptor.forClass(HWCallback.class);
+        verify(pluginManage, atLeastOnce()).createDriver(captor.capture());
+        HWCallback warmCallback = captor.getAllValues().get(0);
+        assertFalse(warmCallback.send(new byte[] {1}));
+        
+        BrowserWarmPool.WarmContext context = warmPool.claim();
+        assertNotNull(context);
+        HWCallback userCallback = mock(HWCallback.class);
+        when(userCallback.send(any())).thenReturn(true);
+        assertNotNull(context.bind(userCallback));
+        
+        assertTrue(warmCallback.send(new byte[] {1}));
+        verify(userCallback).send(any());
+        assertTrue(warmPool.metricsAndReset().contains("hits=1"));
+    }
+    
+    @Test
+    @DisplayName("插件版本变化或空闲超时后丢弃之前创建的实例")
+    void testDiscardStaleContexts() {
+        warmPool.refill(0);
+        assertEquals(2, warmPool.getIdleCount());
+        
+        pluginActive.setVersion("2.0");
+        assertNull(warmPool.claim());
+        assertEquals(0, warmPool.getIdleCount());
+        verify(pluginManage, times(2)).releaseDriver(any(MuenDriver.class));
+        
+        warmPool.refill(0);
+        ReflectionTestUtils.setField(warmPool, "maxIdleMillis", 0L);
+        assertNull(warmPool.claim());
+        verify(pluginManage, times(4)).releaseDriver(any(MuenDriver.class));
+    }
+    
+    @Test
+    @DisplayName("关闭时释放所有空闲实例，释放后驱动回调不再转发")
+    void testShutdownReleasesIdle() {
+        warmPool.refill(0);
+        ArgumentCaptor<HWCallback> captor = ArgumentCaptor.forClass(HWCallback.class);
+        verify(pluginManage, times(2)).createDriver(captor.capture());
+        
+        warmPool.shutdown();
+        assertEquals(0, warmPool.getIdleCount());
+        verify(pluginManage, times(2)).releaseDriver(any(MuenDriver.class));
+        assertFalse(captor.getAllValues().get(0).send(new byte[] {1}));
+    }
+}
@@ -1,6 +1,8 @@
 package com.huawei.browsergateway.service.impl;
 
 import com.huawei.browsergateway.common.enums.ErrorCodeEnum;
+import com.huawei.browsergateway.common.utils.KeyedLock;
+import com.huawei.browsergateway.common.utils.UserIdUtil;
 import com.huawei.browsergateway.entity.browser.BrowserStateMachine;
 import com.huawei.browsergateway.entity.browser.UserChrome;
 import com.huawei.browsergateway.entity.request.InitBrowserRequest;
@@ -23,7 +25,18 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -390,6 +403,270 @@ class ChromeSetImplTest {
         assertTrue(allUsers.contains(userId2));
     }
 
+    /**
+     * 测试创建流程的阶段并行执行
+     */
+    @Test
+    @DisplayName("用户数据下载与驱动创建并行执行")
+    void testCreateStagesRunConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ReflectionTestUtils.setField(chromeSet, "createStageExecutor", executor);
+            ReflectionTestUtils.setField(chromeSet, "userDataManager", userDataManager);
+            CountDownLatch bothStarted = new CountDownLatch(2);
+            when(userDataManager.downloadUserData(anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+                bothStarted.countDown();
+                assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+                return null;
+            });
+            when(pluginManage.createDriver(anyString())).thenAnswer(invocation -> {
+                bothStarted.countDown();
+                assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+                return mock(com.huawei.browsergateway.sdk.muen.MuenDriver.class);
+            });
+            
+            UserChrome result = chromeSet.create(createRequest());
+            
+            assertEquals(UserChrome.BrowserStatus.READY, result.getStatus());
+            assertNotNull(result.getMuenDriver());
+            assertTrue(chromeSet.createMetricsAndReset().contains("count=1"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 测试任一阶段失败时取消其余阶段
+     */
+    @Test
+    @DisplayName("驱动创建失败时中断用户数据下载并创建失败")
+    void testCreateStageFailureCancelsOthers() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ReflectionTestUtils.setField(chromeSet, "createStageExecutor", executor);
+            ReflectionTestUtils.setField(chromeSet, "userDataManager", userDataManager);
+            CountDownLatch downloading = new CountDownLatch(1);
+            CountDownLatch interrupted = new CountDownLatch(1);
+            when(userDataManager.downloadUserData(anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+                downloading.countDown();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return null;
+            });
+            when(pluginManage.createDriver(anyString())).thenAnswer(invocation -> {
+                assertTrue(downloading.await(5, TimeUnit.SECONDS));
+                throw new IllegalStateException("插件异常");
+            });
+            
+            assertThrows(BusinessException.class, () -> chromeSet.create(createRequest()));
+            
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+            assertTrue(chromeSet.getAllUser().isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 测试创建超时取消后释放已创建的驱动
+     */
+    @Test
+    @DisplayName("创建超时被取消时释放已创建的MuenDriver")
+    void testCancelledCreateReleasesDriver() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ReflectionTestUtils.setField(chromeSet, "createStageExecutor", executor);
+            ReflectionTestUtils.setField(chromeSet, "userDataManager", userDataManager);
+            ReflectionTestUtils.setField(chromeSet, "createTimeoutMillis", 200L);
+            when(userDataManager.downloadUserData(anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+                return null;
+            });
+            com.huawei.browsergateway.sdk.muen.MuenDriver muenDriver =
+                    mock(com.huawei.browsergateway.sdk.muen.MuenDriver.class);
+            when(pluginManage.createDriver(anyString())).thenReturn(muenDriver);
+            
+            assertThrows(BusinessException.class, () -> chromeSet.create(createRequest()));
+            
+            verify(pluginManage, timeout(5000)).releaseDriver(muenDriver);
+            assertTrue(chromeSet.getAllUser().isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 测试同一用户的并发创建合并为一次
+     */
+    @Test
+    @DisplayName("同一用户并发创建只执行一次，所有请求得到同一实例")
+    void testConcurrentCreateCoalesced() throws Exception {
+        int callers = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            LongAdder coalesced = (LongAdder) ReflectionTestUtils.getField(chromeSet, "coalescedCreates");
+            AtomicInteger driverCount = new AtomicInteger();
+            when(pluginManage.createDriver(anyString())).thenAnswer(invocation -> {
+                driverCount.incrementAndGet();
+                // 等待其余请求都合并到本次创建
+                long deadline = System.currentTimeMillis() + 5000;
+                while (coalesced.sum() < callers - 1 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(1);
+                }
+                return mock(com.huawei.browsergateway.sdk.muen.MuenDriver.class);
+            });
+            
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<UserChrome>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return chromeSet.create(createRequest());
+                }));
+            }
+            start.countDown();
+            
+            UserChrome first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<UserChrome> result : results) {
+                assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, driverCount.get());
+            assertEquals(1, chromeSet.getAllUser().size());
+            assertTrue(chromeSet.createMetricsAndReset().contains("coalesced=" + (callers - 1)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 测试不同用户的创建互不阻塞
+     */
+    @Test
+    @DisplayName("某个用户创建阻塞时其他用户的创建和删除不受影响")
+    void testDifferentUsersDoNotContend() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            String blockedUserId = UserIdUtil.generateUserId(TEST_IMEI, TEST_IMSI);
+            CountDownLatch blocked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            when(pluginManage.createDriver(anyString())).thenAnswer(invocation -> {
+                if (blockedUserId.equals(invocation.getArgument(0))) {
+                    blocked.countDown();
+                    assertTrue(release.await(10, TimeUnit.SECONDS));
+                }
+                return mock(com.huawei.browsergateway.sdk.muen.MuenDriver.class);
+            });
+            Future<UserChrome> blockedCreate = executor.submit(() -> chromeSet.create(createRequest()));
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+            
+            InitBrowserRequest other = createRequest();
+            other.setImei("987654321098765");
+            UserChrome otherChrome = chromeSet.create(other);
+            assertEquals(UserChrome.BrowserStatus.READY, otherChrome.getStatus());
+            chromeSet.delete(otherChrome.getUserId());
+            assertNull(chromeSet.get(otherChrome.getUserId()));
+            assertFalse(blockedCreate.isDone());
+            
+            release.countDown();
+            assertEquals(UserChrome.BrowserStatus.READY, blockedCreate.get(10, TimeUnit.SECONDS).getStatus());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 并发压力测试：多个用户同时反复创建和删除
+     * 每个用户任意时刻最多一个创建在执行，结束后映射表中的实例与未关闭的驱动一一对应
+     */
+    @Test
+    @DisplayName("并发创建删除压力测试")
+    void testConcurrentCreateDeleteStress() throws Exception {
+        int users = 4;
+        int threads = 16;
+        int operations = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Map<String, AtomicInteger> creating = new ConcurrentHashMap<>();
+            AtomicInteger maxCreating = new AtomicInteger();
+            Set<Object> liveDrivers = ConcurrentHashMap.newKeySet();
+            when(pluginManage.createDriver(anyString())).thenAnswer(invocation -> {
+                AtomicInteger current = creating.computeIfAbsent(invocation.getArgument(0), k -> new AtomicInteger());
+                maxCreating.accumulateAndGet(current.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                    com.huawei.browsergateway.sdk.muen.MuenDriver driver =
+                        mock(com.huawei.browsergateway.sdk.muen.MuenDriver.class);
+                    doAnswer(close -> liveDrivers.remove(driver)).when(driver).onControlTcpDisconnected();
+                    liveDrivers.add(driver);
+                    return driver;
+                } finally {
+                    current.decrementAndGet();
+                }
+            });
+            
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < operations; i++) {
+                int seq = i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    InitBrowserRequest request = createRequest();
+                    request.setImei(TEST_IMEI.substring(1) + (seq % users));
+                    if (seq % 3 == 2) {
+                        chromeSet.delete(UserIdUtil.generateUserId(request.getImei(), request.getImsi()));
+                    } else {
+                        chromeSet.create(request);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+            
+            assertEquals(1, maxCreating.get());
+            assertEquals(chromeSet.getAllUser().size(), liveDrivers.size());
+            for (String userId : chromeSet.getAllUser()) {
+                assertTrue(liveDrivers.contains(chromeSet.get(userId).getMuenDriver()));
+            }
+            KeyedLock sessionLocks = (KeyedLock) ReflectionTestUtils.getField(chromeSet, "sessionLocks");
+            assertEquals(0, sessionLocks.activeKeys());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 测试容量准入：新用户预占名额，同一用户重新创建沿用名额，删除后归还
+     */
+    @Test
+    @DisplayName("容量已满时新用户等待超时被拒绝，删除实例后可以创建")
+    void testAdmissionControl() {
+        AdmissionController admissionController = new AdmissionController();
+        ReflectionTestUtils.setField(admissionController, "capacity", 1);
+        ReflectionTestUtils.setField(admissionController, "waitTimeoutMillis", 50L);
+        ReflectionTestUtils.setField(chromeSet, "admissionController", admissionController);
+        
+        UserChrome first = chromeSet.create(createRequest());
+        UserChrome replaced = chromeSet.create(createRequest());
+        assertNotSame(first, replaced);
+        assertEquals(1, admissionController.getUsed());
+        
+        InitBrowserRequest other = createRequest();
+        other.setImei("987654321098765");
+        RuntimeException e = assertThrows(RuntimeException.class, () -> chromeSet.create(other));
+        assertEquals("cap is not enough!", e.getMessage());
+        
+        chromeSet.delete(replaced.getUserId());
+        assertEquals(0, admissionController.getUsed());
+        assertEquals(UserChrome.BrowserStatus.READY, chromeSet.create(other).getStatus());
+        assertEquals(1, admissionController.getUsed());
+    }
+
     // ========== 辅助方法 ==========
 
     private static InitBrowserRequest createRequest() {
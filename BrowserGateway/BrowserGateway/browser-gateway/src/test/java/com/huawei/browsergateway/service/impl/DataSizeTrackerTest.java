@@ -0,0 +1,141 @@
+package com.huawei.browsergateway.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huawei.browsergateway.common.Constants;
+import com.huawei.browsergateway.service.IRemote;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * DataSizeTracker单元测试
+ */
+@DisplayName("DataSizeTracker测试")
+class DataSizeTrackerTest {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private IRemote remote;
+    
+    @BeforeEach
+    void setUp() {
+        remote = mock(IRemote.class);
+    }
+    
+    @Test
+    @DisplayName("多线程并发记录后一次性上报全部用户的上行/下行字节数和帧数，上报后清零")
+    void testConcurrentTrackAndBatchedReport() throws Exception {
+        DataSizeTracker tracker = new DataSizeTracker(remote, Constants.TCP_MEDIA);
+        int threads = 4;
+        int frames = 10000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int j = 0; j < frames; j++) {
+                    tracker.trackInbound("user-" + (j % 2), 100);
+                    tracker.trackOutbound("user-0", 10);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        
+        assertEquals(2, tracker.report());
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(remote).sendTrafficMedia(captor.capture());
+        verify(remote, never()).sendTrafficControl(anyString());
+        
+        JsonNode data = objectMapper.readTree(captor.getValue());
+        assertEquals(Constants.TCP_MEDIA, data.get("type").asText());
+        assertEquals(2, data.get("userCount").asInt());
+        long total = 0;
+        for (JsonNode user : data.get("users")) {
+            long half = (long) threads * frames / 2;
+            assertEquals(half, user.get("inFrames").asLong());
+            assertEquals(half * 100, user.get("inBytes").asLong());
+            if ("user-0".equals(user.get("userId").asText())) {
+                assertEquals((long) threads * frames, user.get("outFrames").asLong());
+                assertEquals((long) threads * frames * 10, user.get("outBytes").asLong());
+            } else {
+                assertEquals(0, user.get("outFrames").asLong());
+            }
+            total += user.get("inBytes").asLong() + user.get("outBytes").asLong();
+        }
+        assertEquals(tracker.getTotalSize(), total);
+        
+        // 本周期无流量时不上报
+        assertEquals(0, tracker.report());
+        verifyNoMoreInteractions(remote);
+    }
+    
+    @Test
+    @DisplayName("控制流上报走sendTrafficControl，连续两个周期空闲的用户计数器被移除")
+    void testControlReportAndIdleEviction() {
+        DataSizeTracker tracker = new DataSizeTracker(remote, Constants.TCP_CONTROL);
+        tracker.trackInbound("user-1", 64);
+        tracker.trackOutbound("user-2", 32);
+        tracker.trackInbound(null, 64);
+        
+        assertEquals(2, tracker.report());
+        verify(remote).sendTrafficControl(anyString());
+        verify(remote, never()).sendTrafficMedia(anyString());
+        
+        tracker.trackInbound("user-1", 64);
+        assertEquals(1, tracker.report());
+        assertEquals(2, tracker.getUserCount());
+        assertEquals(0, tracker.report());
+        // user-2已连续空闲两个周期
+        assertEquals(1, tracker.getUserCount());
+        assertEquals(0, tracker.report());
+        assertEquals(0, tracker.getUserCount());
+    }
+    
+    @Test
+    @DisplayName("移除前已取得计数器的记录方迟到的计数在下个周期合并上报，不丢失")
+    void testLateTrackAfterEvictionFolded() throws Exception {
+        DataSizeTracker tracker = new DataSizeTracker(remote, Constants.TCP_CONTROL);
+        tracker.trackInbound("user-1", 64);
+        assertEquals(1, tracker.report());
+        assertEquals(0, tracker.report());
+        Map<?, ?> users = (Map<?, ?>) ReflectionTestUtils.getField(tracker, "users");
+        Object evicted = users.get("user-1");
+        assertEquals(0, tracker.report());
+        assertEquals(0, tracker.getUserCount());
+        
+        // 模拟记录方在移除前取得引用、移除后才计数
+        ((LongAdder) ReflectionTestUtils.getField(evicted, "inBytes")).add(50);
+        ((LongAdder) ReflectionTestUtils.getField(evicted, "inFrames")).increment();
+        
+        assertEquals(1, tracker.report());
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(remote, times(2)).sendTrafficControl(captor.capture());
+        JsonNode user = objectMapper.readTree(captor.getValue()).get("users").get(0);
+        assertEquals("user-1", user.get("userId").asText());
+        assertEquals(50, user.get("inBytes").asLong());
+        assertEquals(1, user.get("inFrames").asLong());
+    }
+}
@@ -0,0 +1,165 @@
+package com.huawei.browsergateway.service.impl;
+
+import com.huawei.browsergateway.common.utils.KeyedSerialExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * UserDataUploadQueue单元测试
+ */
+@DisplayName("UserDataUploadQueue测试")
+class UserDataUploadQueueTest {
+    
+    private static final String USER_ID = "0123456789abcdef0123456789abcdef";
+    
+    @TempDir
+    Path tempDir;
+    
+    private UserDataUploadQueue uploadQueue;
+    
+    private UserDataManager userDataManager;
+    
+    private ExecutorService pool;
+    
+    private ScheduledExecutorService retryScheduler;
+    
+    private Path spoolDir;
+    
+    private Path userDataDir;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        spoolDir = tempDir.resolve("spool");
+        userDataDir = Files.createDirectories(tempDir.resolve("host").resolve(USER_ID));
+        userDataManager = mock(UserDataManager.class);
+        doAnswer(invocation -> Files.write(invocation.getArgument(2), new byte[] {1, 2, 3}))
+                .when(userDataManager).compressUserData(anyString(), anyString(), any(Path.class));
+        pool = Executors.newSingleThreadExecutor();
+        retryScheduler = Executors.newSingleThreadScheduledExecutor();
+        uploadQueue = new UserDataUploadQueue();
+        ReflectionTestUtils.setField(uploadQueue, "userDataManager", userDataManager);
+        ReflectionTestUtils.setField(uploadQueue, "uploadExecutor", new KeyedSerialExecutor(pool));
+        ReflectionTestUtils.setField(uploadQueue, "retryScheduler", retryScheduler);
+        ReflectionTestUtils.setField(uploadQueue, "spoolDir", spoolDir.toString());
+        ReflectionTestUtils.setField(uploadQueue, "retryDelayMillis", 1L);
+        uploadQueue.init();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+        retryScheduler.shutdownNow();
+    }
+    
+    @Test
+    @DisplayName("提交后立即返回，后台快照上传成功后删除暂存文件")
+    void testSubmitUploadsInBackground() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            assertTrue(Files.exists(((File) invocation.getArgument(1)).toPath()));
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(userDataManager).uploadCompressed(eq(USER_ID), any(File.class));
+        
+        uploadQueue.submit(USER_ID, userDataDir.toString());
+        assertTrue(uploadQueue.isPending(USER_ID));
+        release.countDown();
+        awaitIdle();
+        
+        verify(userDataManager).uploadCompressed(eq(USER_ID), any(File.class));
+        assertFalse(uploadQueue.isPending(USER_ID));
+        assertEquals(0, Files.list(spoolDir).count());
+        assertTrue(uploadQueue.metricsAndReset().contains("uploaded=1"));
+    }
+    
+    @Test
+    @DisplayName("重试次数用尽后保留暂存文件，重新提交后上传成功")
+    void testRetryThenResubmit() throws Exception {
+        doThrow(new IOException("存储不可用")).when(userDataManager).uploadCompressed(eq(USER_ID), any(File.class));
+        
+        uploadQueue.submit(USER_ID, userDataDir.toString());
+        awaitIdle();
+        
+        verify(userDataManager, times(3)).uploadCompressed(eq(USER_ID), any(File.class));
+        assertTrue(Files.exists(spoolDir.resolve(USER_ID + ".json.zst")));
+        assertFalse(uploadQueue.isPending(USER_ID));
+        
+        doNothing().when(userDataManager).uploadCompressed(eq(USER_ID), any(File.class));
+        assertEquals(1, uploadQueue.resubmitSpooled());
+        awaitIdle();
+        
+        assertFalse(Files.exists(spoolDir.resolve(USER_ID + ".json.zst")));
+    }
+    
+    @Test
+    @DisplayName("重试等待期间不占用上传线程，其他用户的上传不被阻塞")
+    void testRetryDoesNotBlockWorker() throws Exception {
+        String otherUser = "fedcba9876543210fedcba9876543210";
+        Path otherDir = Files.createDirectories(tempDir.resolve("host").resolve(otherUser));
+        ReflectionTestUtils.setField(uploadQueue, "retryDelayMillis", TimeUnit.SECONDS.toMillis(30));
+        doThrow(new IOException("存储不可用")).when(userDataManager).uploadCompressed(eq(USER_ID), any(File.class));
+        
+        uploadQueue.submit(USER_ID, userDataDir.toString());
+        uploadQueue.submit(otherUser, otherDir.toString());
+        pool.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        
+        // 单线程执行器在第一个用户等待重试时仍完成了第二个用户的上传
+        verify(userDataManager).uploadCompressed(eq(otherUser), any(File.class));
+        assertFalse(uploadQueue.isPending(otherUser));
+        assertTrue(uploadQueue.isPending(USER_ID));
+        verify(userDataManager, times(1)).uploadCompressed(eq(USER_ID), any(File.class));
+    }
+    
+    @Test
+    @DisplayName("再次创建实例时使用待上传的本地数据，没有待上传数据时返回null")
+    void testRestorePending() throws Exception {
+        assertNull(uploadQueue.restorePending(USER_ID, userDataDir.toString()));
+        
+        doThrow(new IOException("存储不可用")).when(userDataManager).uploadCompressed(eq(USER_ID), any(File.class));
+        when(userDataManager.restoreCompressed(eq(USER_ID), any(File.class), anyString())).thenReturn("restored");
+        uploadQueue.submit(USER_ID, userDataDir.toString());
+        
+        assertEquals("restored", uploadQueue.restorePending(USER_ID, userDataDir.toString()));
+        verify(userDataManager).restoreCompressed(eq(USER_ID),
+                eq(spoolDir.resolve(USER_ID + ".json.zst").toFile()), eq(userDataDir.toString()));
+    }
+    
+    @Test
+    @DisplayName("用户数据目录不存在时跳过上传")
+    void testSkipMissingDirectory() throws Exception {
+        uploadQueue.submit(USER_ID, tempDir.resolve("missing").toString());
+        awaitIdle();
+        
+        verify(userDataManager, never()).uploadCompressed(anyString(), any(File.class));
+        assertFalse(uploadQueue.isPending(USER_ID));
+    }
+    
+    /**
+     * 等待已提交的任务执行完成
+     */
+    private void awaitIdle() throws Exception {
+        pool.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (uploadQueue.isPending(USER_ID) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
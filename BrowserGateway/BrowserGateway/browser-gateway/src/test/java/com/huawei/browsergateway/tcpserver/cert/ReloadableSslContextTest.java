@@ -0,0 +1,82 @@
+package com.huawei.browsergateway.tcpserver.cert;
+
+import com.huawei.browsergateway.config.TcpConfig;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ReloadableSslContext单元测试
+ */
+@DisplayName("ReloadableSslContext测试")
+class ReloadableSslContextTest {
+    
+    private ReloadableSslContext sslContext;
+    
+    @BeforeEach
+    void setUp() {
+        TcpConfig tcpConfig = new TcpConfig();
+        tcpConfig.setSslProvider("auto");
+        tcpConfig.setSslSessionCacheSize(1024);
+        tcpConfig.setSslSessionTimeout(300);
+        
+        sslContext = new ReloadableSslContext();
+        ReflectionTestUtils.setField(sslContext, "tcpConfig", tcpConfig);
+        CertInfo.getInstance().clear();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        CertInfo.getInstance().clear();
+    }
+    
+    @Test
+    @DisplayName("证书未就绪时不构建上下文")
+    void testReloadWithoutCert() {
+        assertFalse(sslContext.reload());
+        assertNull(sslContext.current());
+    }
+    
+    @Test
+    @DisplayName("证书更新后替换上下文，失败时保留旧上下文")
+    void testReloadReplacesContext() throws Exception {
+        updateCert(new SelfSignedCertificate("gateway-1"));
+        assertTrue(sslContext.reload());
+        SslContext first = sslContext.current();
+        assertNotNull(first);
+        assertTrue(first.isServer());
+        
+        updateCert(new SelfSignedCertificate("gateway-2"));
+        assertTrue(sslContext.reload());
+        SslContext second = sslContext.current();
+        assertNotSame(first, second);
+        
+        CertInfo.getInstance().updateAll("invalid", "invalid", "invalid");
+        assertFalse(sslContext.reload());
+        assertSame(second, sslContext.current());
+    }
+    
+    @Test
+    @DisplayName("配置为jdk时使用JDK实现")
+    void testResolveProvider() {
+        assertEquals(SslProvider.JDK, ReloadableSslContext.resolveProvider("jdk"));
+        assertNotNull(ReloadableSslContext.resolveProvider("openssl"));
+    }
+    
+    private static void updateCert(SelfSignedCertificate cert) throws Exception {
+        String certPem = new String(Files.readAllBytes(cert.certificate().toPath()), StandardCharsets.UTF_8);
+        String keyPem = new String(Files.readAllBytes(cert.privateKey().toPath()), StandardCharsets.UTF_8);
+        CertInfo.getInstance().updateAll(certPem, certPem, keyPem);
+        cert.delete();
+    }
+}
@@ -0,0 +1,99 @@
+package com.huawei.browsergateway.tcpserver.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TlvCodec消息体格式基准测试
+ * 对比JSON与BINARY格式下登录消息编组+解码的耗时和堆分配
+ * 
+ * 运行方式：-Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("TlvCodec消息体格式基准测试")
+class TlvCodecBenchmarkTest {
+    
+    private static final int WARMUP_ROUNDS = 50000;
+    
+    private static final int MEASURE_ROUNDS = 200000;
+    
+    // 防止JIT消除
+    private long sink;
+    
+    @AfterEach
+    void tearDown() {
+        TlvCodec.setFormat(TlvCodec.TlvFormat.JSON);
+    }
+    
+    @Test
+    @DisplayName("BINARY格式登录消息编解码开销低于JSON")
+    void testJsonVsBinary() {
+        Result json = measure(TlvCodec.TlvFormat.JSON);
+        Result binary = measure(TlvCodec.TlvFormat.BINARY);
+        
+        System.out.printf("TlvCodec基准: JSON=%d ns/op, %d B/op; BINARY=%d ns/op, %d B/op%n",
+                json.nanosPerOp, json.bytesPerOp, binary.nanosPerOp, binary.bytesPerOp);
+        
+        assertTrue(binary.bytesPerOp < json.bytesPerOp);
+        assertTrue(binary.nanosPerOp < json.nanosPerOp);
+    }
+    
+    private Result measure(TlvCodec.TlvFormat format) {
+        TlvCodec.setFormat(format);
+        Message message = createLoginMessage();
+        
+        run(message, WARMUP_ROUNDS);
+        
+        long allocatedBefore = currentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        run(message, MEASURE_ROUNDS);
+        long elapsed = System.nanoTime() - start;
+        long allocated = currentThreadAllocatedBytes() - allocatedBefore;
+        
+        return new Result(elapsed / MEASURE_ROUNDS, allocated / MEASURE_ROUNDS);
+    }
+    
+    private void run(Message message, int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            TlvMessage tlvMessage = TlvCodec.marshal(message);
+            Message decoded = TlvCodec.unmarshal(tlvMessage);
+            sink += decoded.getLcdWidth();
+        }
+    }
+    
+    private static Message createLoginMessage() {
+        Message message = new Message();
+        message.setType(MessageType.LOGIN);
+        message.setImei("123456789012345");
+        message.setImsi("460001234567890");
+        message.setLcdWidth(1920);
+        message.setLcdHeight(1080);
+        message.setAppType("mobile");
+        message.setAudType("sms");
+        message.setToken("0123456789abcdef0123456789abcdef");
+        message.setSessionID("session-0001");
+        return message;
+    }
+    
+    private static long currentThreadAllocatedBytes() {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    
+    private static class Result {
+        private final long nanosPerOp;
+        private final long bytesPerOp;
+        
+        Result(long nanosPerOp, long bytesPerOp) {
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.huawei.browsergateway.tcpserver.common;
 
+import com.huawei.browsergateway.entity.request.InitBrowserRequest;
+import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,6 +12,9 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -259,6 +264,136 @@ class TlvCodecTest {
         assertEquals(TlvCodec.TlvFormat.JSON, TlvCodec.getFormat());
     }
 
+    /**
+     * 决策表：BINARY格式编解码往返
+     * 
+     * 条件：
+     * C1: 消息类型
+     * C2: 字段组合（完整 / 空字符串 / 部分缺失 / 多字节字符）
+     * 
+     * 动作：
+     * A1: 编解码后标准字段与原始一致
+     * A2: 不产生扩展字段映射
+     */
+    @ParameterizedTest(name = "BINARY编解码往返决策表 - 规则{0}")
+    @MethodSource("binaryRoundTripDecisionTable")
+    @DisplayName("BINARY编解码往返决策表测试")
+    void testBinaryRoundTripDecisionTable(String ruleId, Message originalMessage) {
+        TlvCodec.setFormat(TlvCodec.TlvFormat.BINARY);
+        
+        TlvMessage tlvMessage = TlvCodec.marshal(originalMessage);
+        Message decodedMessage = TlvCodec.unmarshal(tlvMessage);
+        
+        assertEquals(originalMessage.getType(), decodedMessage.getType());
+        assertEquals(originalMessage.getImei(), decodedMessage.getImei());
+        assertEquals(originalMessage.getImsi(), decodedMessage.getImsi());
+        assertEquals(originalMessage.getLcdWidth(), decodedMessage.getLcdWidth());
+        assertEquals(originalMessage.getLcdHeight(), decodedMessage.getLcdHeight());
+        assertEquals(originalMessage.getAppType(), decodedMessage.getAppType());
+        assertEquals(originalMessage.getAudType(), decodedMessage.getAudType());
+        assertEquals(originalMessage.getToken(), decodedMessage.getToken());
+        assertEquals(originalMessage.getSessionID(), decodedMessage.getSessionID());
+        assertTrue(decodedMessage.getFields().isEmpty());
+    }
+
+    /**
+     * 决策表数据源：BINARY编解码往返
+     */
+    static Stream<Arguments> binaryRoundTripDecisionTable() {
+        Message withSession = createMessage(MessageType.LOGIN, TEST_IMEI, TEST_IMSI);
+        withSession.setSessionID("会话-001");
+        
+        Message partial = new Message();
+        partial.setType(MessageType.LOGIN);
+        partial.setImei(TEST_IMEI);
+        partial.setLcdWidth(-1);
+        
+        return Stream.of(
+            // R1: LOGIN消息，字段完整 -> 往返一致
+            Arguments.of("R1", createMessage(MessageType.LOGIN, TEST_IMEI, TEST_IMSI)),
+            // R2: 预开浏览器消息（audType和token为空字符串） -> 往返一致
+            Arguments.of("R2", createPreOpenMessage()),
+            // R3: 部分字段缺失 -> 缺失字段仍为null
+            Arguments.of("R3", partial),
+            // R4: 含多字节字符的sessionID -> 往返一致
+            Arguments.of("R4", withSession)
+        );
+    }
+
+    @Test
+    @DisplayName("BINARY格式零拷贝消息解码")
+    void testBinaryUnmarshalFromByteBuf() {
+        TlvCodec.setFormat(TlvCodec.TlvFormat.BINARY);
+        Message original = createMessage(MessageType.LOGIN, TEST_IMEI, TEST_IMSI);
+        byte[] body = TlvCodec.marshal(original).getValue();
+        
+        TlvMessage tlvMessage = new TlvMessage(MessageType.LOGIN, Unpooled.wrappedBuffer(body));
+        Message decoded = TlvCodec.unmarshal(tlvMessage);
+        
+        assertEquals(TEST_IMEI, decoded.getImei());
+        assertEquals(1080, decoded.getLcdHeight());
+        // 直接从切片解码，不修改读索引
+        assertEquals(0, tlvMessage.getContent().readerIndex());
+    }
+
+    @Test
+    @DisplayName("BINARY格式登录请求解析")
+    void testParseLoginRequestBinary() throws Exception {
+        TlvCodec.setFormat(TlvCodec.TlvFormat.BINARY);
+        byte[] body = TlvCodec.marshal(createMessage(MessageType.LOGIN, TEST_IMEI, TEST_IMSI)).getValue();
+        
+        InitBrowserRequest request = TlvCodec.parseLoginRequest(body);
+        
+        assertEquals(TEST_IMEI, request.getImei());
+        assertEquals(TEST_IMSI, request.getImsi());
+        assertEquals(1920, request.getLcdWidth());
+        assertEquals("mobile", request.getAppType());
+    }
+
+    @Test
+    @DisplayName("BINARY格式登录请求解析：携带与JSON格式相同的全部登录字段")
+    void testParseLoginRequestBinaryExtensionFields() throws Exception {
+        TlvCodec.setFormat(TlvCodec.TlvFormat.BINARY);
+        Message message = createMessage(MessageType.LOGIN, TEST_IMEI, TEST_IMSI);
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("factory", "huawei");
+        fields.put("devType", "stb");
+        fields.put("extType", "ext");
+        fields.put("platType", 2);
+        fields.put("appid", 1001);
+        fields.put("deviceType", 3);
+        fields.put("clientLanguage", "zh-CN");
+        fields.put("playMode", 1);
+        fields.put("innerMediaEndpoint", "10.0.0.1:30002");
+        message.setFields(fields);
+        byte[] body = TlvCodec.marshal(message).getValue();
+        
+        InitBrowserRequest request = TlvCodec.parseLoginRequest(body);
+        
+        assertEquals(TEST_IMEI, request.getImei());
+        assertEquals("huawei", request.getFactory());
+        assertEquals("stb", request.getDevType());
+        assertEquals("ext", request.getExtType());
+        assertEquals(2, request.getPlatType());
+        assertEquals(1001, request.getAppid());
+        assertEquals(3, request.getDeviceType());
+        assertEquals("zh-CN", request.getClientLanguage());
+        assertEquals(1, request.getPlayMode());
+        assertEquals("10.0.0.1:30002", request.getInnerMediaEndpoint());
+    }
+
+    @Test
+    @DisplayName("BINARY格式异常场景：字段长度越界")
+    void testBinaryTruncatedBody() {
+        TlvCodec.setFormat(TlvCodec.TlvFormat.BINARY);
+        byte[] body = TlvCodec.marshal(createMessage(MessageType.LOGIN, TEST_IMEI, TEST_IMSI)).getValue();
+        byte[] truncated = Arrays.copyOf(body, body.length - 2);
+        
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> TlvCodec.unmarshal(new TlvMessage(MessageType.LOGIN, truncated)));
+        assertTrue(exception.getMessage().contains("解码TLV消息失败"));
+    }
+
     // ========== 辅助方法 ==========
 
     private static Message createMessage(short type, String imei, String imsi) {
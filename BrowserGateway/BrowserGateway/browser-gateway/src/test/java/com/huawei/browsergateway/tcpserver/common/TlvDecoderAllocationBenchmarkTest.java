@@ -0,0 +1,90 @@
+package com.huawei.browsergateway.tcpserver.common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TlvDecoder分配基准测试
+ * 对比byte[]复制模式与零拷贝模式下每帧产生的堆分配字节数
+ * 
+ * 运行方式：-Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("TlvDecoder分配基准测试")
+class TlvDecoderAllocationBenchmarkTest {
+    
+    // 模拟一帧1080p视频的大小
+    private static final int FRAME_SIZE = 64 * 1024;
+    
+    private static final int WARMUP_FRAMES = 2000;
+    
+    private static final int MEASURE_FRAMES = 10000;
+    
+    @Test
+    @DisplayName("零拷贝模式消除每帧Value分配")
+    void testPerFrameAllocation() {
+        byte[] frame = encodeFrame(FRAME_SIZE);
+        
+        long copyBytesPerFrame = measure(false, frame);
+        long zeroCopyBytesPerFrame = measure(true, frame);
+        
+        System.out.printf("TlvDecoder分配基准: frameSize=%d, 复制模式=%d B/帧, 零拷贝模式=%d B/帧%n",
+                FRAME_SIZE, copyBytesPerFrame, zeroCopyBytesPerFrame);
+        
+        // 复制模式每帧至少分配一个完整的Value数组
+        assertTrue(copyBytesPerFrame >= FRAME_SIZE);
+        // 零拷贝模式只剩下消息对象和切片包装，远小于帧大小
+        assertTrue(zeroCopyBytesPerFrame < FRAME_SIZE / 16,
+                "零拷贝模式每帧分配过多: " + zeroCopyBytesPerFrame);
+    }
+    
+    private long measure(boolean zeroCopy, byte[] frame) {
+        EmbeddedChannel channel = new EmbeddedChannel(new TlvDecoder(true, zeroCopy));
+        try {
+            runFrames(channel, frame, WARMUP_FRAMES);
+            
+            long before = currentThreadAllocatedBytes();
+            runFrames(channel, frame, MEASURE_FRAMES);
+            long after = currentThreadAllocatedBytes();
+            return (after - before) / MEASURE_FRAMES;
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+    
+    private void runFrames(EmbeddedChannel channel, byte[] frame, int count) {
+        for (int i = 0; i < count; i++) {
+            ByteBuf in = PooledByteBufAllocator.DEFAULT.directBuffer(frame.length);
+            in.writeBytes(frame);
+            channel.writeInbound(in);
+            
+            Object msg = channel.readInbound();
+            assertNotNull(msg);
+            // 模拟处理器转发后释放
+            ReferenceCountUtil.release(msg);
+        }
+    }
+    
+    private static byte[] encodeFrame(int size) {
+        byte[] value = new byte[size];
+        ThreadLocalRandom.current().nextBytes(value);
+        TlvMessage message = new TlvMessage(MessageType.VIDEO_FRAME, value);
+        return message.toBytes();
+    }
+    
+    private static long currentThreadAllocatedBytes() {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
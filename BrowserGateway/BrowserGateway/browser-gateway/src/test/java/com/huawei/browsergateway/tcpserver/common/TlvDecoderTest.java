@@ -0,0 +1,187 @@
+package com.huawei.browsergateway.tcpserver.common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TlvDecoder单元测试
+ * 基于决策表（DT）方法设计测试用例
+ */
+@DisplayName("TlvDecoder决策表测试")
+class TlvDecoderTest {
+    
+    private static final byte[] PAYLOAD = "{\"action\":\"MOVE\",\"x\":10,\"y\":20}".getBytes(StandardCharsets.UTF_8);
+    
+    /**
+     * 决策表：校验和协商测试
+     * 
+     * 条件：
+     * C1: 服务端配置的算法（CRC32 / CRC32C / auto）
+     * C2: 终端使用的算法（CRC32 / CRC32C）
+     * C3: 是否零拷贝模式
+     * 
+     * 动作：
+     * A1: 是否解码成功
+     * A2: 连接上协商的算法
+     */
+    @ParameterizedTest(name = "校验和协商决策表 - 规则{0}")
+    @MethodSource("checksumDecisionTable")
+    @DisplayName("校验和协商决策表测试")
+    void testChecksumNegotiation(int rule, TlvChecksum serverAlgorithm, TlvChecksum clientAlgorithm,
+                                 boolean zeroCopy, boolean expectDecoded, TlvChecksum expectPinned) {
+        EmbeddedChannel channel = new EmbeddedChannel(new TlvDecoder(true, zeroCopy, serverAlgorithm));
+        try {
+            channel.writeInbound(encode(MessageType.TOUCH_EVENT, PAYLOAD, clientAlgorithm));
+            
+            TlvMessage message = channel.readInbound();
+            if (expectDecoded) {
+                assertNotNull(message, "规则" + rule + ": 应解码成功");
+                assertEquals(MessageType.TOUCH_EVENT, message.getType());
+                assertArrayEquals(PAYLOAD, message.getValue());
+                assertEquals(clientAlgorithm, message.getChecksumAlgorithm());
+                assertTrue(message.verifyChecksum());
+                message.release();
+                assertTrue(channel.isOpen());
+            } else {
+                assertNull(message, "规则" + rule + ": 应校验失败");
+                assertFalse(channel.isOpen());
+            }
+            assertEquals(expectPinned, channel.attr(TlvChecksum.CHANNEL_ALGORITHM).get());
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+    
+    static Stream<Arguments> checksumDecisionTable() {
+        return Stream.of(
+                // 规则1: 固定CRC32，存量终端 -> 成功
+                Arguments.of(1, TlvChecksum.CRC32, TlvChecksum.CRC32, false, true, TlvChecksum.CRC32),
+                // 规则2: 固定CRC32，CRC32C终端 -> 失败关闭
+                Arguments.of(2, TlvChecksum.CRC32, TlvChecksum.CRC32C, false, false, null),
+                // 规则3: 固定CRC32C，CRC32C终端（零拷贝） -> 成功
+                Arguments.of(3, TlvChecksum.CRC32C, TlvChecksum.CRC32C, true, true, TlvChecksum.CRC32C),
+                // 规则4: auto，存量终端 -> 协商为CRC32
+                Arguments.of(4, null, TlvChecksum.CRC32, true, true, TlvChecksum.CRC32),
+                // 规则5: auto，CRC32C终端 -> 协商为CRC32C
+                Arguments.of(5, null, TlvChecksum.CRC32C, false, true, TlvChecksum.CRC32C)
+        );
+    }
+    
+    @Test
+    @DisplayName("协商完成后不再接受其他算法")
+    void testPinnedAlgorithmRejectsSwitch() {
+        EmbeddedChannel channel = new EmbeddedChannel(new TlvDecoder(true, true, null));
+        try {
+            channel.writeInbound(encode(MessageType.HEARTBEATS, new byte[0], TlvChecksum.CRC32C));
+            TlvMessage first = channel.readInbound();
+            assertNotNull(first);
+            first.release();
+            
+            channel.writeInbound(encode(MessageType.HEARTBEATS, new byte[0], TlvChecksum.CRC32));
+            assertNull(channel.readInbound());
+            assertFalse(channel.isOpen());
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+    
+    @Test
+    @DisplayName("分段到达的组合缓冲区校验")
+    void testFragmentedFrame() {
+        EmbeddedChannel channel = new EmbeddedChannel(new TlvDecoder(true, true, TlvChecksum.CRC32C));
+        try {
+            ByteBuf frame = encode(MessageType.TOUCH_EVENT, PAYLOAD, TlvChecksum.CRC32C);
+            int half = frame.readableBytes() / 2;
+            channel.writeInbound(frame.readRetainedSlice(half));
+            assertNull(channel.readInbound());
+            channel.writeInbound(frame);
+            
+            TlvMessage message = channel.readInbound();
+            assertNotNull(message);
+            assertArrayEquals(PAYLOAD, message.getValue());
+            message.release();
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+    
+    /**
+     * 决策表：编码器输出测试
+     * 
+     * 条件：
+     * C1: Value长度（小消息直接写入 / 大消息组合缓冲区）
+     * C2: 消息承载方式（byte[] / ByteBuf）
+     * C3: 连接协商的算法
+     * 
+     * 动作：
+     * A1: 输出与toBytes()逐字节一致
+     * A2: 解码器可还原原消息
+     */
+    @ParameterizedTest(name = "编码器输出决策表 - 规则{0}")
+    @MethodSource("encoderDecisionTable")
+    @DisplayName("编码器输出决策表测试")
+    void testEncoderOutput(int rule, int size, boolean byteBufContent, TlvChecksum algorithm) {
+        byte[] value = new byte[size];
+        for (int i = 0; i < size; i++) {
+            value[i] = (byte) i;
+        }
+        TlvMessage expected = new TlvMessage(MessageType.VIDEO_FRAME, value);
+        expected.setChecksumAlgorithm(algorithm);
+        byte[] expectedBytes = expected.toBytes();
+        
+        EmbeddedChannel channel = new EmbeddedChannel(new TlvEncoder(), new TlvDecoder(true, true, null));
+        try {
+            channel.attr(TlvChecksum.CHANNEL_ALGORITHM).set(algorithm);
+            TlvMessage message = byteBufContent
+                    ? new TlvMessage(MessageType.VIDEO_FRAME, Unpooled.copiedBuffer(value))
+                    : new TlvMessage(MessageType.VIDEO_FRAME, value);
+            assertTrue(channel.writeOutbound(message));
+            
+            ByteBuf encoded = channel.readOutbound();
+            assertEquals(expectedBytes.length, encoded.readableBytes(), "规则" + rule);
+            byte[] actualBytes = new byte[encoded.readableBytes()];
+            encoded.getBytes(encoded.readerIndex(), actualBytes);
+            assertArrayEquals(expectedBytes, actualBytes, "规则" + rule);
+            
+            channel.writeInbound(encoded);
+            TlvMessage decoded = channel.readInbound();
+            assertNotNull(decoded);
+            assertArrayEquals(value, decoded.getValue());
+            decoded.release();
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+    
+    static Stream<Arguments> encoderDecisionTable() {
+        return Stream.of(
+                // 规则1: 小消息，byte[]，CRC32
+                Arguments.of(1, 64, false, TlvChecksum.CRC32),
+                // 规则2: 小消息，ByteBuf，CRC32C
+                Arguments.of(2, 64, true, TlvChecksum.CRC32C),
+                // 规则3: 大消息，byte[]，CRC32
+                Arguments.of(3, 64 * 1024, false, TlvChecksum.CRC32),
+                // 规则4: 大消息，ByteBuf，CRC32C
+                Arguments.of(4, 64 * 1024, true, TlvChecksum.CRC32C),
+                // 规则5: 空消息
+                Arguments.of(5, 0, false, TlvChecksum.CRC32)
+        );
+    }
+    
+    private static ByteBuf encode(short type, byte[] value, TlvChecksum algorithm) {
+        TlvMessage message = new TlvMessage(type, value);
+        message.setChecksumAlgorithm(algorithm);
+        return Unpooled.wrappedBuffer(message.toBytes());
+    }
+}
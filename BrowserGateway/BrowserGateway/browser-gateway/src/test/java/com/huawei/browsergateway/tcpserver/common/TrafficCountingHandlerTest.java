@@ -0,0 +1,49 @@
+package com.huawei.browsergateway.tcpserver.common;
+
+import com.huawei.browsergateway.service.impl.DataSizeTracker;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * TrafficCountingHandler单元测试
+ */
+@DisplayName("TrafficCountingHandler测试")
+class TrafficCountingHandlerTest {
+    
+    @Test
+    @DisplayName("登录时绑定用户，登录消息及之后的上行/下行TLV消息按头部+Value计入用户；未登录连接不计数")
+    void testCountsBoundUser() {
+        DataSizeTracker tracker = mock(DataSizeTracker.class);
+        // 模拟消息处理器：收到LOGIN时绑定用户，随后回写响应
+        SimpleChannelInboundHandler<TlvMessage> handler = new SimpleChannelInboundHandler<TlvMessage>() {
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, TlvMessage msg) {
+                if (msg.getType() == MessageType.LOGIN) {
+                    TrafficCountingHandler.bind(ctx.channel(), "user-1");
+                    ctx.writeAndFlush(new TlvMessage(MessageType.LOGIN, new byte[10]));
+                }
+            }
+        };
+        EmbeddedChannel channel = new EmbeddedChannel(new TrafficCountingHandler(tracker), handler);
+        
+        channel.writeInbound(new TlvMessage(MessageType.HEARTBEATS, new byte[0]));
+        verifyNoInteractions(tracker);
+        
+        channel.writeInbound(new TlvMessage(MessageType.LOGIN, Unpooled.wrappedBuffer(new byte[20])));
+        verify(tracker).trackInbound("user-1", 26);
+        verify(tracker).trackOutbound("user-1", 16);
+        
+        // 不经过编码器的原始数据按字节数计入
+        channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[7]));
+        verify(tracker).trackOutbound("user-1", 7);
+        
+        channel.finishAndReleaseAll();
+    }
+}
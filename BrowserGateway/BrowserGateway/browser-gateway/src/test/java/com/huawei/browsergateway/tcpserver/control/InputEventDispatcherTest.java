@@ -0,0 +1,170 @@
+package com.huawei.browsergateway.tcpserver.control;
+
+import com.huawei.browsergateway.service.IRemote;
+import com.huawei.browsergateway.tcpserver.common.MessageType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * InputEventDispatcher单元测试
+ */
+@DisplayName("InputEventDispatcher测试")
+class InputEventDispatcherTest {
+    
+    private ExecutorService pool;
+    
+    private IRemote remoteService;
+    
+    private InputEventDispatcher dispatcher;
+    
+    // 每次handleEvents收到的批次（按调用顺序）
+    private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+    
+    private final CountDownLatch release = new CountDownLatch(1);
+    
+    @BeforeEach
+    void setUp() {
+        pool = Executors.newFixedThreadPool(2);
+        remoteService = mock(IRemote.class);
+        doAnswer(invocation -> {
+            List<byte[]> batch = invocation.getArgument(0);
+            batches.add(batch.stream().map(b -> new String(b, StandardCharsets.UTF_8)).collect(Collectors.toList()));
+            // 第一批阻塞，让后续事件在队列中积压
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(remoteService).handleEvents(anyList(), anyString());
+        
+        dispatcher = new InputEventDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "remoteService", remoteService);
+        ReflectionTestUtils.setField(dispatcher, "inputExecutor", pool);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        pool.shutdownNow();
+    }
+    
+    static Stream<Arguments> moveDecisionTable() {
+        return Stream.of(
+                Arguments.of(MessageType.MOUSE_EVENT, "{\"action\":\"MOVE\",\"x\":1,\"y\":2}", true),
+                Arguments.of(MessageType.TOUCH_EVENT, "{\"action\": \"MOVE\",\"x\":1}", true),
+                Arguments.of(MessageType.MOUSE_EVENT, "{\"action\":\"DOWN\",\"x\":1,\"y\":2}", false),
+                Arguments.of(MessageType.TOUCH_EVENT, "{\"x\":1,\"note\":\"MOVE\"}", false),
+                Arguments.of(MessageType.DRAG_EVENT, "{\"action\":\"MOVE\",\"x\":1}", false),
+                Arguments.of(MessageType.KEY_EVENT, "{\"action\":\"MOVE\"}", false)
+        );
+    }
+    
+    @ParameterizedTest(name = "决策表 #{index}: type={0}, payload={1} -> move={2}")
+    @MethodSource("moveDecisionTable")
+    @DisplayName("可合并移动事件判定决策表")
+    void testIsMove(short type, String payload, boolean expected) {
+        assertEquals(expected, InputEventDispatcher.isMove(type, payload.getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    @Test
+    @DisplayName("积压期间连续MOVE合并为最新坐标，DOWN/UP保持顺序")
+    void testCoalesceAndOrder() throws Exception {
+        dispatcher.submit("user-1", MessageType.TOUCH_EVENT, event("DOWN", 0));
+        waitFor(() -> batches.size() == 1);
+        
+        for (int x = 1; x <= 5; x++) {
+            dispatcher.submit("user-1", MessageType.TOUCH_EVENT, event("MOVE", x));
+        }
+        dispatcher.submit("user-1", MessageType.TOUCH_EVENT, event("UP", 6));
+        dispatcher.submit("user-1", MessageType.TOUCH_EVENT, event("MOVE", 7));
+        dispatcher.submit("user-1", MessageType.MOUSE_EVENT, event("MOVE", 8));
+        release.countDown();
+        
+        waitFor(() -> dispatcher.getQueuedEvents() == 0 && batches.size() == 2);
+        assertEquals(List.of(text(event("DOWN", 0))), batches.get(0));
+        assertEquals(List.of(text(event("MOVE", 5)), text(event("UP", 6)), text(event("MOVE", 7)),
+                text(event("MOVE", 8))), batches.get(1));
+    }
+    
+    @Test
+    @DisplayName("移除用户后丢弃其排队事件")
+    void testRemove() throws Exception {
+        dispatcher.submit("user-1", MessageType.KEY_EVENT, event("DOWN", 0));
+        waitFor(() -> batches.size() == 1);
+        dispatcher.submit("user-1", MessageType.KEY_EVENT, event("UP", 1));
+        assertEquals(1, dispatcher.getQueuedEvents());
+        
+        dispatcher.remove("user-1");
+        assertEquals(0, dispatcher.getQueuedEvents());
+        release.countDown();
+        
+        Thread.sleep(50);
+        assertEquals(1, batches.size());
+    }
+    
+    @Test
+    @DisplayName("处理中移除用户后立即重新提交，事件仍由同一线程按顺序处理")
+    void testResubmitAfterRemoveWhileDispatching() throws Exception {
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        doAnswer(invocation -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            List<byte[]> batch = invocation.getArgument(0);
+            batches.add(batch.stream().map(b -> new String(b, StandardCharsets.UTF_8)).collect(Collectors.toList()));
+            release.await(5, TimeUnit.SECONDS);
+            concurrent.decrementAndGet();
+            return null;
+        }).when(remoteService).handleEvents(anyList(), anyString());
+        
+        dispatcher.submit("user-1", MessageType.KEY_EVENT, event("DOWN", 0));
+        waitFor(() -> batches.size() == 1);
+        dispatcher.remove("user-1");
+        dispatcher.submit("user-1", MessageType.KEY_EVENT, event("DOWN", 1));
+        dispatcher.submit("user-1", MessageType.KEY_EVENT, event("UP", 2));
+        Thread.sleep(50);
+        assertEquals(1, batches.size());
+        release.countDown();
+        
+        waitFor(() -> dispatcher.getQueuedEvents() == 0 && batches.size() == 2);
+        assertEquals(1, maxConcurrent.get());
+        assertEquals(List.of(text(event("DOWN", 1)), text(event("UP", 2))), batches.get(1));
+        
+        dispatcher.remove("user-1");
+        waitFor(() -> dispatcher.metricsAndReset().startsWith("users=0"));
+    }
+    
+    private static byte[] event(String action, int x) {
+        return ("{\"action\":\"" + action + "\",\"x\":" + x + "}").getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static String text(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+    
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,196 @@
+package com.huawei.browsergateway.websocket.media;
+
+import com.huawei.browsergateway.entity.request.MediaConfigRequest;
+import com.huawei.browsergateway.tcpserver.common.MessageType;
+import com.huawei.browsergateway.tcpserver.common.TlvCodec;
+import com.huawei.browsergateway.tcpserver.common.TlvMessage;
+import com.huawei.browsergateway.tcpserver.media.MediaClientSet;
+import com.huawei.browsergateway.websocket.media.AdaptiveBitrateController.Congestion;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * AdaptiveBitrateController单元测试
+ * 默认配置：码率300~4000kbps，帧率10~30，下降系数0.7，增加步长200kbps，连续3个空闲周期后恢复
+ */
+@DisplayName("AdaptiveBitrateController测试")
+class AdaptiveBitrateControllerTest {
+    
+    private static final String USER_ID = "user-1";
+    
+    private AdaptiveBitrateController controller;
+    
+    private MediaRelay mediaRelay;
+    
+    private MediaClientSet mediaClientSet;
+    
+    @BeforeEach
+    void setUp() {
+        mediaRelay = mock(MediaRelay.class);
+        mediaClientSet = mock(MediaClientSet.class);
+        controller = new AdaptiveBitrateController();
+        ReflectionTestUtils.setField(controller, "mediaRelay", mediaRelay);
+        ReflectionTestUtils.setField(controller, "mediaClientSet", mediaClientSet);
+    }
+    
+    static Stream<Arguments> updateDecisionTable() {
+        return Stream.of(
+                // videoBitRate, frameRate, congestions, expectedBitRate, expectedFrameRate
+                Arguments.of(4000, 30, new Congestion[] {Congestion.CONGESTED}, 2800, 30),
+                Arguments.of(4000, 30, new Congestion[] {Congestion.CONGESTED, Congestion.CONGESTED}, 1960, 30),
+                // 不低于码率下限
+                Arguments.of(400, 30, new Congestion[] {Congestion.CONGESTED}, 300, 30),
+                // 码率已到下限时降低帧率，不低于帧率下限
+                Arguments.of(300, 30, new Congestion[] {Congestion.CONGESTED}, 300, 21),
+                Arguments.of(300, 12, new Congestion[] {Congestion.CONGESTED}, 300, 10),
+                // 空闲不足stable-periods个周期不恢复，中间出现HOLD重新计数
+                Arguments.of(2000, 30, new Congestion[] {Congestion.CLEAR, Congestion.CLEAR}, 2000, 30),
+                Arguments.of(2000, 30,
+                        new Congestion[] {Congestion.CLEAR, Congestion.CLEAR, Congestion.HOLD, Congestion.CLEAR}, 2000, 30),
+                Arguments.of(2000, 30, new Congestion[] {Congestion.CLEAR, Congestion.CLEAR, Congestion.CLEAR}, 2200, 30),
+                // 先恢复帧率，再增加码率
+                Arguments.of(300, 21, new Congestion[] {Congestion.CLEAR, Congestion.CLEAR, Congestion.CLEAR}, 300, 26),
+                // 不超过上限
+                Arguments.of(3900, 30, new Congestion[] {Congestion.CLEAR, Congestion.CLEAR, Congestion.CLEAR}, 4000, 30),
+                Arguments.of(4000, 28, new Congestion[] {Congestion.CLEAR, Congestion.CLEAR, Congestion.CLEAR}, 4000, 30),
+                Arguments.of(4000, 30, new Congestion[] {Congestion.CLEAR, Congestion.CLEAR, Congestion.CLEAR}, 4000, 30),
+                Arguments.of(2000, 30, new Congestion[] {Congestion.HOLD}, 2000, 30)
+        );
+    }
+    
+    @ParameterizedTest(name = "决策表 #{index}: {0}kbps/{1}fps -> {3}kbps/{4}fps")
+    @MethodSource("updateDecisionTable")
+    @DisplayName("码率调整决策表")
+    void testUpdate(int videoBitRate, int frameRate, Congestion[] congestions, int expectedBitRate,
+            int expectedFrameRate) {
+        AdaptiveBitrateController.RateState state = controller.newState();
+        state.videoBitRate = videoBitRate;
+        state.frameRate = frameRate;
+        
+        MediaConfigRequest last = null;
+        for (Congestion congestion : congestions) {
+            MediaConfigRequest update = state.update(congestion);
+            if (update != null) {
+                last = update;
+            }
+        }
+        
+        assertEquals(expectedBitRate, state.videoBitRate);
+        assertEquals(expectedFrameRate, state.frameRate);
+        if (expectedBitRate == videoBitRate && expectedFrameRate == frameRate) {
+            assertNull(last);
+        } else {
+            assertEquals(expectedBitRate, last.getVideoBitRate());
+            assertEquals(expectedFrameRate, last.getFrameRate());
+        }
+    }
+    
+    static Stream<Arguments> classifyDecisionTable() {
+        return Stream.of(
+                // queuedBytes, dropped, sendMillis, expected（当前码率2000kbps，排队时延 = 字节数 * 8 / 2000）
+                Arguments.of(0L, 0L, 0L, Congestion.CLEAR),
+                Arguments.of(37500L, 0L, 100L, Congestion.CLEAR),
+                Arguments.of(50000L, 0L, 0L, Congestion.HOLD),
+                Arguments.of(0L, 0L, 150L, Congestion.HOLD),
+                Arguments.of(100000L, 0L, 0L, Congestion.CONGESTED),
+                Arguments.of(0L, 0L, 250L, Congestion.CONGESTED),
+                Arguments.of(0L, 1L, 0L, Congestion.CONGESTED)
+        );
+    }
+    
+    @ParameterizedTest(name = "决策表 #{index}: queued={0}B, dropped={1}, send={2}ms -> {3}")
+    @MethodSource("classifyDecisionTable")
+    @DisplayName("拥塞判定决策表")
+    void testClassify(long queuedBytes, long dropped, long sendMillis, Congestion expected) {
+        MediaSendQueue.SendSample sample = new MediaSendQueue.SendSample(queuedBytes, dropped,
+                TimeUnit.MILLISECONDS.toNanos(sendMillis));
+        assertEquals(expected, controller.classify(sample, 2000));
+    }
+    
+    @Test
+    @DisplayName("按最差的观看会话降低码率并经媒体TCP连接下发MEDIA_CONFIG，编码端上报的码率作为上限")
+    void testAdjustPushesMediaConfig() throws Exception {
+        MediaSendQueue idle = mock(MediaSendQueue.class);
+        when(idle.sample()).thenReturn(new MediaSendQueue.SendSample(0, 0, 0));
+        MediaSendQueue congested = mock(MediaSendQueue.class);
+        when(congested.sample()).thenReturn(new MediaSendQueue.SendSample(0, 3, 0));
+        MediaHub hub = mock(MediaHub.class);
+        when(hub.getUserId()).thenReturn(USER_ID);
+        when(hub.getSubscribers()).thenReturn(Arrays.asList(idle, congested));
+        when(mediaRelay.getHubs()).thenReturn(Collections.singletonList(hub));
+        EmbeddedChannel channel = new EmbeddedChannel();
+        when(mediaClientSet.getClient(USER_ID)).thenReturn(channel);
+        
+        MediaConfigRequest source = new MediaConfigRequest();
+        source.setVideoBitRate(2000);
+        controller.onSourceConfig(USER_ID, source);
+        controller.adjust();
+        
+        TlvMessage message = channel.readOutbound();
+        assertNotNull(message);
+        assertEquals(MessageType.MEDIA_CONFIG, message.getType());
+        MediaConfigRequest pushed = TlvCodec.parseMediaConfig(message.getValue());
+        assertEquals(1400, pushed.getVideoBitRate());
+        assertEquals(30, pushed.getFrameRate());
+        assertEquals(1400, controller.getCurrent(USER_ID).getVideoBitRate());
+        
+        // 观看会话全部断开后恢复到编码端上报的上限
+        when(mediaRelay.getHubs()).thenReturn(Collections.emptyList());
+        controller.adjust();
+        message = channel.readOutbound();
+        assertNotNull(message);
+        assertEquals(2000, TlvCodec.parseMediaConfig(message.getValue()).getVideoBitRate());
+        
+        // 媒体TCP连接断开后移除码率状态
+        when(mediaClientSet.getClient(USER_ID)).thenReturn(null);
+        controller.adjust();
+        assertNull(controller.getCurrent(USER_ID));
+        channel.finishAndReleaseAll();
+    }
+    
+    @Test
+    @DisplayName("编码端上报的码率不超过配置的上限，回报下发的配置时不降低上限")
+    void testSourceConfigClampedAndEchoIgnored() {
+        MediaSendQueue congested = mock(MediaSendQueue.class);
+        when(congested.sample()).thenReturn(new MediaSendQueue.SendSample(0, 3, 0));
+        MediaHub hub = mock(MediaHub.class);
+        when(hub.getUserId()).thenReturn(USER_ID);
+        when(hub.getSubscribers()).thenReturn(Collections.singletonList(congested));
+        when(mediaRelay.getHubs()).thenReturn(Collections.singletonList(hub));
+        EmbeddedChannel channel = new EmbeddedChannel();
+        when(mediaClientSet.getClient(USER_ID)).thenReturn(channel);
+        
+        MediaConfigRequest source = new MediaConfigRequest();
+        source.setVideoBitRate(8000);
+        source.setFrameRate(60);
+        controller.onSourceConfig(USER_ID, source);
+        assertEquals(4000, controller.getCurrent(USER_ID).getVideoBitRate());
+        assertEquals(30, controller.getCurrent(USER_ID).getFrameRate());
+        
+        controller.adjust();
+        MediaConfigRequest pushed = controller.getCurrent(USER_ID);
+        assertEquals(2800, pushed.getVideoBitRate());
+        
+        // 编码端应用后回报下发的配置，拥塞消除后仍可恢复到原上限
+        controller.onSourceConfig(USER_ID, pushed);
+        assertEquals(2800, controller.getCurrent(USER_ID).getVideoBitRate());
+        when(mediaRelay.getHubs()).thenReturn(Collections.emptyList());
+        controller.adjust();
+        assertEquals(4000, controller.getCurrent(USER_ID).getVideoBitRate());
+        channel.finishAndReleaseAll();
+    }
+}
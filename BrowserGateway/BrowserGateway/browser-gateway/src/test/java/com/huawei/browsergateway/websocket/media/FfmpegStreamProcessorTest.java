@@ -0,0 +1,55 @@
+package com.huawei.browsergateway.websocket.media;
+
+import com.huawei.browsergateway.websocket.media.transcode.TranscodeEngine;
+import com.huawei.browsergateway.websocket.media.transcode.TranscodeProfile;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * FfmpegStreamProcessor单元测试
+ */
+@DisplayName("FfmpegStreamProcessor测试")
+class FfmpegStreamProcessorTest {
+    
+    static Stream<Arguments> codecDecisionTable() {
+        return Stream.of(
+                Arguments.of("H264", true),
+                Arguments.of("h264", true),
+                Arguments.of("H265", false),
+                Arguments.of(null, false)
+        );
+    }
+    
+    @ParameterizedTest(name = "决策表 #{index}: codecType={0} -> 尝试转码={1}")
+    @MethodSource("codecDecisionTable")
+    @DisplayName("只对H264输入创建转码器，其余直接转发")
+    void testTranscodeOnlyH264(String codecType, boolean transcode) {
+        TranscodeEngine engine = mock(TranscodeEngine.class);
+        when(engine.isAvailable()).thenReturn(true);
+        List<ByteBuf> sent = new ArrayList<>();
+        MediaParam param = new MediaParam();
+        param.setCodecType(codecType);
+        
+        FfmpegStreamProcessor processor = new FfmpegStreamProcessor(engine);
+        processor.init("user-1", frame -> sent.add(frame), param);
+        verify(engine, times(transcode ? 1 : 0)).acquire(any(TranscodeProfile.class));
+        
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeInt(MediaRelay.WS_FRAME_KEY).writeInt(0).writeInt(1).writeByte(0x26);
+        assertTrue(processor.processMediaFrame(frame));
+        assertEquals(List.of(frame), sent);
+        frame.release();
+    }
+}
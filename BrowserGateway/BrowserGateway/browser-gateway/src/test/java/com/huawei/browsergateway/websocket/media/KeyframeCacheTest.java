@@ -0,0 +1,97 @@
+package com.huawei.browsergateway.websocket.media;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * KeyframeCache单元测试
+ */
+@DisplayName("KeyframeCache测试")
+class KeyframeCacheTest {
+    
+    // SPS/PPS + IDR
+    private static final int[] IDR_WITH_CONFIG = {0, 0, 0, 1, 0x67, 0x42, 0, 0, 0, 1, 0x68, 0xce, 0, 0, 0, 1, 0x65, 0x88};
+    
+    private static final int[] IDR = {0, 0, 0, 1, 0x65, 0x99};
+    
+    @Test
+    @DisplayName("补发最近的关键帧，不自带参数集时插入缓存的参数集")
+    void testReplayWithConfig() {
+        KeyframeCache cache = new KeyframeCache();
+        assertNull(cache.replay("user-1"));
+        
+        ByteBuf first = key(100, IDR_WITH_CONFIG);
+        cache.update("user-1", first, "H264");
+        assertEquals(2, first.refCnt());
+        first.release();
+        
+        ByteBuf second = key(200, IDR);
+        cache.update("user-1", second, null);
+        second.release();
+        assertEquals(0, first.refCnt());
+        
+        ByteBuf replay = cache.replay("user-1");
+        assertTrue(replay.isDirect());
+        assertEquals(MediaRelay.WS_FRAME_KEY, replay.readInt());
+        assertEquals(200, replay.readInt());
+        assertEquals(replay.readableBytes() - 4, replay.readInt());
+        assertEquals("0000000167420000000168ce0000000165", ByteBufUtil.hexDump(replay, replay.readerIndex(), 17));
+        assertEquals("99", ByteBufUtil.hexDump(replay, replay.readerIndex() + 17, 1));
+        replay.release();
+        
+        cache.remove("user-1");
+        assertEquals(0, cache.getTotalBytes());
+        assertEquals(0, second.refCnt());
+    }
+    
+    @Test
+    @DisplayName("堆内存中的帧复制到直接内存，超出字节上限时淘汰最久未使用的用户")
+    void testEvictLeastRecentlyUsed() {
+        KeyframeCache cache = new KeyframeCache();
+        ReflectionTestUtils.setField(cache, "maxBytes", 100L);
+        ByteBuf heap = Unpooled.buffer().writeInt(MediaRelay.WS_FRAME_KEY).writeInt(0).writeInt(30).writeZero(30);
+        cache.update("user-1", heap, null);
+        assertEquals(1, heap.refCnt());
+        cache.update("user-2", heap, null);
+        
+        // 访问user-1后user-2最久未使用
+        cache.replay("user-1").release();
+        cache.update("user-3", heap, null);
+        assertEquals(2, cache.size());
+        ByteBuf hit = cache.replay("user-1");
+        assertNotNull(hit);
+        hit.release();
+        assertNull(cache.replay("user-2"));
+        assertTrue(cache.getTotalBytes() <= 100);
+    }
+    
+    @Test
+    @DisplayName("超过有效期的关键帧不再补发")
+    void testExpired() {
+        KeyframeCache cache = new KeyframeCache();
+        ReflectionTestUtils.setField(cache, "ttl", -1L);
+        ByteBuf frame = key(0, IDR);
+        cache.update("user-1", frame, null);
+        frame.release();
+        
+        assertNull(cache.replay("user-1"));
+        assertTrue(cache.metricsAndReset().startsWith("users=0, bytes=0"));
+        assertEquals(0, frame.refCnt());
+    }
+    
+    private static ByteBuf key(int timestamp, int... data) {
+        ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer();
+        frame.writeInt(MediaRelay.WS_FRAME_KEY).writeInt(timestamp).writeInt(data.length);
+        for (int b : data) {
+            frame.writeByte(b);
+        }
+        return frame;
+    }
+}
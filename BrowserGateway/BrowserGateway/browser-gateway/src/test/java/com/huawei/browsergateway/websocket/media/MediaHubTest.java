@@ -0,0 +1,162 @@
+package com.huawei.browsergateway.websocket.media;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * MediaHub单元测试
+ */
+@DisplayName("MediaHub测试")
+class MediaHubTest {
+    
+    private final AtomicInteger createdProcessors = new AtomicInteger();
+    
+    private final Supplier<MediaStreamProcessor> factory = () -> {
+        createdProcessors.incrementAndGet();
+        return new WebCodecsStreamProcessor();
+    };
+    
+    @Test
+    @DisplayName("相同规格的会话共用一个处理器，输出广播给全部会话")
+    void testSharedTrack() {
+        MediaHub hub = new MediaHub("user-1", 60, 1024 * 1024);
+        List<Integer> viewer1 = new ArrayList<>();
+        List<Integer> viewer2 = new ArrayList<>();
+        List<Integer> monitor = new ArrayList<>();
+        hub.subscribe(queue(viewer1), MediaHub.PASSTHROUGH, new MediaParam(), factory);
+        hub.subscribe(queue(viewer2), MediaHub.PASSTHROUGH, new MediaParam(), factory);
+        hub.subscribe(queue(monitor), "640x360", new MediaParam(), factory);
+        
+        assertEquals(2, createdProcessors.get());
+        assertEquals(2, hub.getTrackCount());
+        assertEquals(3, hub.getSubscribers().size());
+        
+        ByteBuf frame = key();
+        assertTrue(hub.ingest(frame));
+        // 两个轨道的GOP缓存各持有一个引用
+        assertEquals(2, frame.refCnt());
+        assertEquals(List.of(MediaRelay.WS_FRAME_KEY), viewer1);
+        assertEquals(List.of(MediaRelay.WS_FRAME_KEY), viewer2);
+        assertEquals(List.of(MediaRelay.WS_FRAME_KEY), monitor);
+    }
+    
+    @Test
+    @DisplayName("中途加入的会话先收到缓存的GOP，再接收实时帧")
+    void testLateJoinerReplay() {
+        MediaHub hub = new MediaHub("user-1", 60, 1024 * 1024);
+        List<Integer> first = new ArrayList<>();
+        hub.subscribe(queue(first), MediaHub.PASSTHROUGH, new MediaParam(), factory);
+        hub.ingest(delta());
+        hub.ingest(key());
+        hub.ingest(delta());
+        hub.ingest(audio());
+        
+        List<Integer> late = new ArrayList<>();
+        assertEquals(2, hub.subscribe(queue(late), MediaHub.PASSTHROUGH, new MediaParam(), factory));
+        hub.ingest(delta());
+        
+        // 首个会话在关键帧之前加入，跳过关键帧前的参考帧
+        assertEquals(List.of(MediaRelay.WS_FRAME_KEY, MediaRelay.WS_FRAME_DELTA, MediaRelay.WS_FRAME_AUDIO,
+                MediaRelay.WS_FRAME_DELTA), first);
+        assertEquals(List.of(MediaRelay.WS_FRAME_KEY, MediaRelay.WS_FRAME_DELTA, MediaRelay.WS_FRAME_DELTA), late);
+        assertEquals(1, createdProcessors.get());
+    }
+    
+    @Test
+    @DisplayName("GOP超出缓存上限时不缓存，新会话从下一个关键帧开始")
+    void testGopCacheOverflow() {
+        MediaHub hub = new MediaHub("user-1", 2, 1024 * 1024);
+        hub.subscribe(queue(new ArrayList<>()), MediaHub.PASSTHROUGH, new MediaParam(), factory);
+        hub.ingest(key());
+        hub.ingest(delta());
+        hub.ingest(delta());
+        
+        List<Integer> late = new ArrayList<>();
+        assertEquals(0, hub.subscribe(queue(late), MediaHub.PASSTHROUGH, new MediaParam(), factory));
+        hub.ingest(delta());
+        assertTrue(late.isEmpty());
+        
+        hub.ingest(key());
+        assertEquals(List.of(MediaRelay.WS_FRAME_KEY), late);
+    }
+    
+    @Test
+    @DisplayName("最后一个会话退订时关闭轨道，中枢为空")
+    void testUnsubscribe() {
+        MediaHub hub = new MediaHub("user-1", 60, 1024 * 1024);
+        List<Integer> sent1 = new ArrayList<>();
+        MediaSendQueue queue1 = queue(sent1);
+        MediaSendQueue queue2 = queue(new ArrayList<>());
+        hub.subscribe(queue1, MediaHub.PASSTHROUGH, new MediaParam(), factory);
+        hub.subscribe(queue2, MediaHub.PASSTHROUGH, new MediaParam(), factory);
+        hub.ingest(key());
+        
+        assertFalse(hub.unsubscribe(queue1));
+        assertEquals(1, hub.getTrackCount());
+        ByteBuf afterClose = key();
+        assertTrue(hub.ingest(afterClose));
+        assertEquals(1, sent1.size());
+        
+        assertTrue(hub.unsubscribe(queue2));
+        assertEquals(0, hub.getTrackCount());
+        ByteBuf orphan = key();
+        assertFalse(hub.ingest(orphan));
+        assertEquals(0, orphan.refCnt());
+    }
+    
+    /**
+     * 创建发送队列，模拟会话在调用线程内同步完成发送，记录发送的WS帧类型
+     */
+    private static MediaSendQueue queue(List<Integer> sentTypes) {
+        Session session = mock(Session.class);
+        RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getAsyncRemote()).thenReturn(remote);
+        doAnswer(invocation -> {
+            ByteBuffer buffer = invocation.getArgument(0);
+            SendHandler handler = invocation.getArgument(1);
+            sentTypes.add(buffer.getInt(buffer.position()));
+            handler.onResult(new SendResult());
+            return null;
+        }).when(remote).sendBinary(any(ByteBuffer.class), any(SendHandler.class));
+        return new MediaSendQueue("user-1", session, 90, 8 * 1024 * 1024, 500, 10000,
+                new MediaParam(), new MediaSendQueue.Metrics());
+    }
+    
+    private static ByteBuf wsFrame(int wsType, int... data) {
+        ByteBuf frame = Unpooled.buffer(MediaRelay.WS_HEADER_LENGTH + data.length);
+        frame.writeInt(wsType).writeInt(0).writeInt(data.length);
+        for (int b : data) {
+            frame.writeByte(b);
+        }
+        return frame;
+    }
+    
+    private static ByteBuf key() {
+        return wsFrame(MediaRelay.WS_FRAME_KEY, 0, 0, 0, 1, 0x65, 0x88);
+    }
+    
+    private static ByteBuf delta() {
+        return wsFrame(MediaRelay.WS_FRAME_DELTA, 0, 0, 0, 1, 0x41, 0x9a);
+    }
+    
+    private static ByteBuf audio() {
+        return wsFrame(MediaRelay.WS_FRAME_AUDIO, 0xff, 0xf1);
+    }
+}
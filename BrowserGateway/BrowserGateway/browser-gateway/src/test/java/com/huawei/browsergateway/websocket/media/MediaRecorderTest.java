@@ -0,0 +1,176 @@
+package com.huawei.browsergateway.websocket.media;
+
+import com.huawei.browsergateway.common.utils.KeyedSerialExecutor;
+import com.huawei.browsergateway.service.IFileStorage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * MediaRecorder单元测试
+ */
+@DisplayName("MediaRecorder测试")
+class MediaRecorderTest {
+    
+    private static final String USER_ID = "user-1";
+    
+    @TempDir
+    Path recordDir;
+    
+    private MediaRecorder recorder;
+    
+    private ExecutorService recordPool;
+    
+    private ExecutorService uploadPool;
+    
+    @BeforeEach
+    void setUp() {
+        recordPool = Executors.newSingleThreadExecutor();
+        uploadPool = Executors.newSingleThreadExecutor();
+        recorder = new MediaRecorder();
+        ReflectionTestUtils.setField(recorder, "enabled", true);
+        ReflectionTestUtils.setField(recorder, "recordDir", recordDir.toString());
+        ReflectionTestUtils.setField(recorder, "recordExecutor", new KeyedSerialExecutor(recordPool));
+        ReflectionTestUtils.setField(recorder, "uploadExecutor", uploadPool);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        recordPool.shutdownNow();
+        uploadPool.shutdownNow();
+    }
+    
+    @Test
+    @DisplayName("分段以关键帧开始，超过大小上限后在下一个关键帧处切换；结束录制后全部分段上传并删除本地文件")
+    void testRotateAndUpload() throws Exception {
+        IFileStorage fileStorage = mock(IFileStorage.class);
+        List<String> remotePaths = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        when(fileStorage.uploadFile(anyString(), anyString())).thenAnswer(invocation -> {
+            contents.add(Files.readAllBytes(Paths.get((String) invocation.getArgument(0))));
+            remotePaths.add(invocation.getArgument(1));
+            return "url";
+        });
+        ReflectionTestUtils.setField(recorder, "fileStorage", fileStorage);
+        ReflectionTestUtils.setField(recorder, "segmentMaxBytes", 120L);
+        
+        // 关键帧之前的帧不写入
+        record(2, 30, 0);
+        record(1, 100, 1);
+        record(2, 50, 2);
+        record(1, 100, 3);
+        record(2, 10, 4);
+        recorder.finish(USER_ID);
+        await();
+        
+        assertEquals(2, remotePaths.size());
+        assertTrue(remotePaths.get(0).startsWith("record/" + USER_ID + "/"));
+        assertTrue(remotePaths.get(0).endsWith(".h264"));
+        assertEquals(150, contents.get(0).length);
+        assertEquals(1, contents.get(0)[0]);
+        assertEquals(2, contents.get(0)[100]);
+        assertEquals(110, contents.get(1).length);
+        assertEquals(3, contents.get(1)[0]);
+        assertEquals(0, recorder.getDiskBytes());
+        assertTrue(recorder.getFinishedSegments().isEmpty());
+        assertEquals(0, Files.list(recordDir.resolve(USER_ID)).count());
+    }
+    
+    @Test
+    @DisplayName("本地分段超过磁盘配额时删除最旧的分段")
+    void testQuotaEvictsOldest() throws Exception {
+        ReflectionTestUtils.setField(recorder, "segmentMaxBytes", 100L);
+        ReflectionTestUtils.setField(recorder, "maxDiskBytes", 250L);
+        
+        for (int i = 0; i < 4; i++) {
+            record(1, 100, i);
+        }
+        recorder.finish(USER_ID);
+        await();
+        
+        List<File> segments = recorder.getFinishedSegments();
+        assertEquals(2, segments.size());
+        assertEquals(200, recorder.getDiskBytes());
+        assertEquals(2, Files.readAllBytes(segments.get(0).toPath())[0]);
+        assertEquals(3, Files.readAllBytes(segments.get(1).toPath())[0]);
+        assertEquals(2, Files.list(recordDir.resolve(USER_ID)).count());
+    }
+    
+    @Test
+    @DisplayName("待写盘字节数超过上限时丢帧并跳过后续帧直至下一个关键帧")
+    void testBacklogSkipsToKeyframe() throws Exception {
+        ReflectionTestUtils.setField(recorder, "queueMaxBytes", 150L);
+        KeyedSerialExecutor executor = (KeyedSerialExecutor) ReflectionTestUtils.getField(recorder, "recordExecutor");
+        CountDownLatch blocked = new CountDownLatch(1);
+        executor.execute(USER_ID, () -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        
+        record(1, 100, 1);
+        record(2, 100, 2);
+        record(2, 10, 3);
+        blocked.countDown();
+        // 首个关键帧可能尚未写盘，按100 + 40不超过上限
+        record(1, 40, 4);
+        recorder.finish(USER_ID);
+        await();
+        
+        List<File> segments = recorder.getFinishedSegments();
+        assertEquals(1, segments.size());
+        byte[] content = Files.readAllBytes(segments.get(0).toPath());
+        assertEquals(140, content.length);
+        assertEquals(1, content[0]);
+        assertEquals(4, content[100]);
+        assertTrue(recorder.metricsAndReset().contains("dropped=2"));
+    }
+    
+    /**
+     * 录制一个TCP视频帧，数据以marker填充
+     */
+    private void record(int frameType, int length, int marker) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) marker);
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeByte(frameType).writeInt(marker).writeInt(length).writeBytes(data);
+        try {
+            recorder.record(USER_ID, frame, "H264");
+        } finally {
+            frame.release();
+        }
+    }
+    
+    /**
+     * 等待写盘和上传任务完成
+     */
+    private void await() throws InterruptedException {
+        recordPool.shutdown();
+        assertTrue(recordPool.awaitTermination(5, TimeUnit.SECONDS));
+        uploadPool.shutdown();
+        assertTrue(uploadPool.awaitTermination(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,270 @@
+package com.huawei.browsergateway.websocket.media;
+
+import com.huawei.browsergateway.common.utils.LatencyHistogram;
+import com.huawei.browsergateway.tcpserver.common.MessageType;
+import com.huawei.browsergateway.websocket.ContainerWebSocketTransport;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * MediaRelay端到端基准测试
+ * 模拟browsergw.report.cap=300路1080p30视频流：IO线程收到TCP媒体帧后经中继进入各会话的异步发送队列，
+ * 由模拟容器线程完成发送；其中少量观看端网络极慢，验证其余观看端的帧率和延迟不受影响
+ * 
+ * 运行方式：-Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("MediaRelay端到端基准测试")
+class MediaRelayBenchmarkTest {
+    
+    private static final int STREAMS = 300;
+    
+    // 慢速观看端数量，每帧发送耗时SLOW_SEND_MILLIS
+    private static final int SLOW_STREAMS = 10;
+    
+    private static final long SLOW_SEND_MILLIS = 200;
+    
+    private static final int FPS = 30;
+    
+    // 模拟Netty IO线程数
+    private static final int IO_THREADS = 4;
+    
+    // 模拟容器异步发送线程数
+    private static final int CONTAINER_THREADS = 8;
+    
+    // 1080p30约4Mbps：I帧约120KB，P帧约14KB，GOP 30
+    private static final int KEY_FRAME_SIZE = 120 * 1024;
+    
+    private static final int DELTA_FRAME_SIZE = 14 * 1024;
+    
+    private static final int GOP = 30;
+    
+    private static final long WARMUP_SECONDS = 3;
+    
+    private static final long DURATION_SECONDS = 10;
+    
+    // 模拟socket写缓冲，每个容器线程一份
+    private static final ThreadLocal<byte[]> SOCKET_BUFFER =
+            ThreadLocal.withInitial(() -> new byte[MediaRelay.WS_HEADER_LENGTH + KEY_FRAME_SIZE]);
+    
+    private ExecutorService container;
+    
+    // 慢速观看端的网络延迟
+    private ScheduledExecutorService slowNetwork;
+    
+    private MediaRelay relay;
+    
+    private final List<MediaSendQueue> queues = new ArrayList<>();
+    
+    private final LatencyHistogram latency = new LatencyHistogram();
+    
+    private final LongAdder deliveredFrames = new LongAdder();
+    
+    private final LongAdder deliveredBytes = new LongAdder();
+    
+    private final LongAdder slowDeliveredFrames = new LongAdder();
+    
+    @BeforeEach
+    void setUp() {
+        container = Executors.newFixedThreadPool(CONTAINER_THREADS);
+        slowNetwork = Executors.newSingleThreadScheduledExecutor();
+        relay = new MediaRelay();
+        for (int i = 0; i < STREAMS; i++) {
+            String userId = userId(i);
+            MediaParam param = new MediaParam();
+            param.setProcessorType("webcodecs");
+            MediaSendQueue queue = relay.createSendQueue(userId, new ContainerWebSocketTransport(session(isSlow(i))), param);
+            relay.subscribe(userId, queue, param);
+            queues.add(queue);
+        }
+    }
+    
+    @AfterEach
+    void tearDown() {
+        for (int i = 0; i < STREAMS; i++) {
+            relay.unsubscribe(userId(i), queues.get(i));
+        }
+        container.shutdownNow();
+        slowNetwork.shutdownNow();
+    }
+    
+    @Test
+    @DisplayName("300路1080p30视频流中慢速观看端不影响其余观看端：无丢帧，P99延迟低于一个帧间隔")
+    void testRelayAtReportCap() throws Exception {
+        // 预热：JIT编译、线程池和内存池初始化
+        run(WARMUP_SECONDS);
+        latency.snapshotAndReset();
+        deliveredFrames.reset();
+        deliveredBytes.reset();
+        slowDeliveredFrames.reset();
+        relay.metricsAndReset();
+        
+        long start = System.nanoTime();
+        long[] offeredAndRejected = run(DURATION_SECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long offered = offeredAndRejected[0];
+        long rejected = offeredAndRejected[1];
+        
+        LatencyHistogram.Snapshot snapshot = latency.snapshotAndReset();
+        long delivered = deliveredFrames.sum();
+        System.out.printf("MediaRelay基准: streams=%d, slow=%d, offered=%d, delivered=%d, rejected=%d, "
+                        + "slowDelivered=%d, %.0f fps, %.1f MB/s, %s%n",
+                STREAMS, SLOW_STREAMS, offered, delivered, rejected, slowDeliveredFrames.sum(),
+                delivered / seconds, deliveredBytes.sum() / seconds / (1024 * 1024), snapshot);
+        System.out.println("MediaRelay指标: " + relay.metricsAndReset());
+        
+        // 正常观看端全部送达，慢速观看端只按其自身速度接收
+        assertEquals(0, rejected);
+        assertEquals(offered, delivered);
+        assertTrue(delivered >= (long) ((STREAMS - SLOW_STREAMS) * FPS * DURATION_SECONDS * 0.95));
+        assertTrue(snapshot.getP99() < TimeUnit.SECONDS.toMicros(1) / FPS);
+        assertTrue(slowDeliveredFrames.sum() < (long) SLOW_STREAMS * FPS * DURATION_SECONDS);
+    }
+    
+    /**
+     * 以IO_THREADS个线程按节奏发送指定时长，等待正常观看端的发送队列排空
+     * 
+     * @return [正常观看端提交帧数, 被拒绝帧数]
+     */
+    private long[] run(long durationSeconds) throws InterruptedException {
+        List<Thread> ioThreads = new ArrayList<>();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        LongAdder offeredFrames = new LongAdder();
+        LongAdder rejectedFrames = new LongAdder();
+        long deliveredBefore = deliveredFrames.sum();
+        
+        for (int t = 0; t < IO_THREADS; t++) {
+            int first = t;
+            Thread thread = new Thread(() -> produce(first, start, deadline, offeredFrames, rejectedFrames),
+                    "io-" + t);
+            ioThreads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : ioThreads) {
+            thread.join();
+        }
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (deliveredFrames.sum() - deliveredBefore + rejectedFrames.sum() < offeredFrames.sum()
+                && System.nanoTime() < drainDeadline) {
+            Thread.sleep(5);
+        }
+        return new long[] {offeredFrames.sum(), rejectedFrames.sum()};
+    }
+    
+    /**
+     * 模拟一个IO线程：按30fps节奏为其负责的流生成TCP帧体并交给中继
+     */
+    private void produce(int first, long start, long deadline, LongAdder offered, LongAdder rejected) {
+        long interval = TimeUnit.SECONDS.toNanos(1) / FPS;
+        long next = start;
+        int frameIndex = 0;
+        while (next < deadline) {
+            for (int stream = first; stream < STREAMS; stream += IO_THREADS) {
+                boolean key = (frameIndex + stream) % GOP == 0;
+                ByteBuf frame = newFrame(key, key ? KEY_FRAME_SIZE : DELTA_FRAME_SIZE, frameIndex);
+                try {
+                    boolean accepted = relay.relay(userId(stream), MessageType.VIDEO_FRAME, frame);
+                    if (!isSlow(stream)) {
+                        offered.increment();
+                        if (!accepted) {
+                            rejected.increment();
+                        }
+                    }
+                } finally {
+                    // 与SimpleChannelInboundHandler一致，channelRead0返回后释放
+                    frame.release();
+                }
+            }
+            frameIndex++;
+            next += interval;
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * 模拟WebSocket会话：异步发送在容器线程中读出全部数据（相当于写入socket的一次内存复制）后回调，
+     * 慢速观看端延迟回调
+     */
+    private Session session(boolean slow) {
+        Session session = mock(Session.class, withSettings().stubOnly());
+        RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class, withSettings().stubOnly());
+        when(session.isOpen()).thenReturn(true);
+        when(session.getAsyncRemote()).thenReturn(remote);
+        doAnswer(invocation -> {
+            ByteBuffer buffer = invocation.getArgument(0);
+            SendHandler handler = invocation.getArgument(1);
+            Runnable write = () -> {
+                long sentAt = buffer.getLong(buffer.position() + MediaRelay.WS_HEADER_LENGTH);
+                int bytes = buffer.remaining();
+                buffer.duplicate().get(SOCKET_BUFFER.get(), 0, bytes);
+                if (slow) {
+                    slowDeliveredFrames.increment();
+                } else {
+                    latency.record(System.nanoTime() - sentAt);
+                    deliveredFrames.increment();
+                    deliveredBytes.add(bytes);
+                }
+                handler.onResult(new SendResult());
+            };
+            if (slow) {
+                slowNetwork.schedule(write, SLOW_SEND_MILLIS, TimeUnit.MILLISECONDS);
+            } else {
+                container.execute(write);
+            }
+            return null;
+        }).when(remote).sendBinary(any(ByteBuffer.class), any(SendHandler.class));
+        return session;
+    }
+    
+    /**
+     * TCP帧体：[1字节: 帧类型][4字节: 时间戳][4字节: 数据长度][N字节: 数据]，数据前8字节写入发送时刻
+     */
+    private static ByteBuf newFrame(boolean key, int size, int timestamp) {
+        ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer(MediaRelay.TCP_HEADER_LENGTH + size);
+        frame.writeByte(key ? 1 : 2);
+        frame.writeInt(timestamp);
+        frame.writeInt(size);
+        frame.writeLong(System.nanoTime());
+        frame.writerIndex(frame.writerIndex() + size - Long.BYTES);
+        return frame;
+    }
+    
+    private static boolean isSlow(int stream) {
+        return stream % (STREAMS / SLOW_STREAMS) == 0;
+    }
+    
+    private static String userId(int stream) {
+        return "user-" + stream;
+    }
+}
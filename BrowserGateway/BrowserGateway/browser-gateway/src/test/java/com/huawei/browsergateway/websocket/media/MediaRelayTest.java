@@ -0,0 +1,191 @@
+package com.huawei.browsergateway.websocket.media;
+
+import com.huawei.browsergateway.tcpserver.common.MessageType;
+import com.huawei.browsergateway.websocket.ContainerWebSocketTransport;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * MediaRelay单元测试
+ */
+@DisplayName("MediaRelay测试")
+class MediaRelayTest {
+    
+    private MediaRelay relay;
+    
+    private Session session;
+    
+    // 会话已发送的WS帧（复制）
+    private final List<byte[]> sent = new ArrayList<>();
+    
+    @BeforeEach
+    void setUp() {
+        relay = new MediaRelay();
+        session = mock(Session.class);
+        RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getAsyncRemote()).thenReturn(remote);
+        doAnswer(invocation -> {
+            ByteBuffer buffer = invocation.getArgument(0);
+            SendHandler handler = invocation.getArgument(1);
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            sent.add(bytes);
+            handler.onResult(new SendResult());
+            return null;
+        }).when(remote).sendBinary(any(ByteBuffer.class), any(SendHandler.class));
+    }
+    
+    private MediaSendQueue subscribe(String userId) {
+        MediaParam param = new MediaParam();
+        MediaSendQueue queue = relay.createSendQueue(userId, new ContainerWebSocketTransport(session), param);
+        relay.subscribe(userId, queue, param);
+        return queue;
+    }
+    
+    static Stream<Arguments> frameTypeDecisionTable() {
+        return Stream.of(
+                Arguments.of(MessageType.VIDEO_FRAME, 1, MediaRelay.WS_FRAME_KEY),
+                Arguments.of(MessageType.VIDEO_FRAME, 2, MediaRelay.WS_FRAME_DELTA),
+                Arguments.of(MessageType.VIDEO_FRAME, 3, MediaRelay.WS_FRAME_DELTA),
+                Arguments.of(MessageType.AUDIO_FRAME, 1, MediaRelay.WS_FRAME_AUDIO),
+                Arguments.of(MessageType.AUDIO_FRAME, 2, MediaRelay.WS_FRAME_AUDIO)
+        );
+    }
+    
+    @ParameterizedTest(name = "决策表 #{index}: type={0}, tcpFrameType={1} -> wsFrameType={2}")
+    @MethodSource("frameTypeDecisionTable")
+    @DisplayName("TCP帧类型映射决策表")
+    void testWsFrameType(short type, int tcpFrameType, int expected) {
+        assertEquals(expected, MediaRelay.wsFrameType(type, tcpFrameType));
+    }
+    
+    @Test
+    @DisplayName("重写帧头后发送到订阅会话，数据以TCP接收缓冲的切片引用转发")
+    void testRelayFrame() {
+        MediaSendQueue queue = subscribe("user-1");
+        
+        byte[] data = "h264-frame-data".getBytes(StandardCharsets.UTF_8);
+        ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer();
+        frame.writeByte(1).writeInt(123456).writeInt(data.length).writeBytes(data);
+        
+        try {
+            assertTrue(relay.relay("user-1", MessageType.VIDEO_FRAME, frame));
+            // 关键帧切片由中枢的GOP缓存持有，退订后释放
+            assertEquals(2, frame.refCnt());
+            relay.unsubscribe("user-1", queue);
+            assertEquals(1, frame.refCnt());
+        } finally {
+            frame.release();
+        }
+        
+        assertEquals(1, sent.size());
+        ByteBuf wsFrame = Unpooled.wrappedBuffer(sent.get(0));
+        assertEquals(MediaRelay.WS_HEADER_LENGTH + data.length, wsFrame.readableBytes());
+        assertEquals(MediaRelay.WS_FRAME_KEY, wsFrame.readInt());
+        assertEquals(123456, wsFrame.readInt());
+        assertEquals(data.length, wsFrame.readInt());
+        byte[] payload = new byte[data.length];
+        wsFrame.readBytes(payload);
+        assertArrayEquals(data, payload);
+    }
+    
+    @Test
+    @DisplayName("未订阅WebSocket会话、帧头不完整或发送队列拒绝时丢弃")
+    void testDropFrame() {
+        ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer();
+        frame.writeByte(1).writeInt(0);
+        try {
+            assertFalse(relay.relay("user-1", MessageType.VIDEO_FRAME, frame));
+            MediaSendQueue queue = subscribe("user-1");
+            assertFalse(relay.relay("user-1", MessageType.VIDEO_FRAME, frame));
+            assertEquals(1, frame.refCnt());
+            
+            frame.writeInt(0);
+            when(session.isOpen()).thenReturn(false);
+            assertFalse(relay.relay("user-1", MessageType.VIDEO_FRAME, frame));
+            // 发送队列拒绝后关键帧切片只由GOP缓存持有，退订后释放
+            relay.unsubscribe("user-1", queue);
+            assertEquals(1, frame.refCnt());
+            assertTrue(sent.isEmpty());
+        } finally {
+            frame.release();
+        }
+    }
+    
+    @Test
+    @DisplayName("同一用户多个会话共用中枢，全部退订后移除中枢")
+    void testMultipleSessions() {
+        MediaSendQueue viewer = subscribe("user-1");
+        MediaSendQueue monitor = subscribe("user-1");
+        assertEquals(2, relay.get("user-1").getSubscribers().size());
+        assertEquals(1, relay.get("user-1").getTrackCount());
+        
+        ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer();
+        frame.writeByte(1).writeInt(0).writeInt(1).writeByte(0x65);
+        try {
+            assertTrue(relay.relay("user-1", MessageType.VIDEO_FRAME, frame));
+        } finally {
+            frame.release();
+        }
+        assertEquals(2, sent.size());
+        assertEquals(0L, relay.queuedBytesByUser().get("user-1"));
+        
+        relay.unsubscribe("user-1", viewer);
+        assertNotNull(relay.get("user-1"));
+        relay.unsubscribe("user-1", monitor);
+        assertNull(relay.get("user-1"));
+    }
+    
+    @Test
+    @DisplayName("全部会话断开后重连，先收到缓存的关键帧，实时P帧跳过至下一个关键帧")
+    void testReconnectReplaysKeyframe() {
+        ReflectionTestUtils.setField(relay, "keyframeCache", new KeyframeCache());
+        relay.unsubscribe("user-1", subscribe("user-1"));
+        assertNull(relay.get("user-1"));
+        
+        // 无订阅会话时P帧丢弃，关键帧写入缓存
+        assertTrue(relayFrame(2, 0x41).isEmpty());
+        assertTrue(relayFrame(1, 0x65).isEmpty());
+        sent.clear();
+        
+        subscribe("user-1");
+        assertEquals(1, sent.size());
+        assertEquals(MediaRelay.WS_FRAME_KEY, ByteBuffer.wrap(sent.get(0)).getInt());
+        assertEquals(1, relayFrame(2, 0x41).size());
+        assertEquals(2, relayFrame(1, 0x65).size());
+    }
+    
+    private List<byte[]> relayFrame(int tcpFrameType, int nalHeader) {
+        ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer();
+        frame.writeByte(tcpFrameType).writeInt(0).writeInt(5).writeInt(1).writeByte(nalHeader);
+        try {
+            relay.relay("user-1", MessageType.VIDEO_FRAME, frame);
+        } finally {
+            frame.release();
+        }
+        return sent;
+    }
+}
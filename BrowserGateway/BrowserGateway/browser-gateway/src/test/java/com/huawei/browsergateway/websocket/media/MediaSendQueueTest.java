@@ -0,0 +1,331 @@
+package com.huawei.browsergateway.websocket.media;
+
+import com.huawei.browsergateway.websocket.media.VideoFrameClassifier.FrameKind;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * MediaSendQueue及VideoFrameClassifier单元测试
+ */
+@DisplayName("MediaSendQueue测试")
+class MediaSendQueueTest {
+    
+    private Session session;
+    
+    private RemoteEndpoint.Async remote;
+    
+    // 已提交给容器、尚未完成的发送
+    private final List<ByteBuffer> sentBuffers = new ArrayList<>();
+    
+    private final List<SendHandler> handlers = new ArrayList<>();
+    
+    // 为true时在sendBinary调用线程内同步回调完成
+    private boolean completeInline;
+    
+    @BeforeEach
+    void setUp() {
+        session = mock(Session.class);
+        remote = mock(RemoteEndpoint.Async.class);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getAsyncRemote()).thenReturn(remote);
+        doAnswer(invocation -> {
+            ByteBuffer buffer = invocation.getArgument(0);
+            SendHandler handler = invocation.getArgument(1);
+            sentBuffers.add(buffer);
+            if (completeInline) {
+                handler.onResult(new SendResult());
+            } else {
+                handlers.add(handler);
+            }
+            return null;
+        }).when(remote).sendBinary(any(ByteBuffer.class), any(SendHandler.class));
+    }
+    
+    private MediaSendQueue newQueue(int maxFrames, long maxBytes) {
+        return newQueue(maxFrames, maxBytes, new MediaParam());
+    }
+    
+    private MediaSendQueue newQueue(int maxFrames, long maxBytes, MediaParam param) {
+        return new MediaSendQueue("user-1", session, maxFrames, maxBytes, 500, 10000,
+                param, new MediaSendQueue.Metrics());
+    }
+    
+    static Stream<Arguments> classifyDecisionTable() {
+        return Stream.of(
+                // wsType, codec, data, expected
+                Arguments.of(MediaRelay.WS_FRAME_AUDIO, "H264", new int[] {0, 0, 0, 1, 0x65}, FrameKind.AUDIO),
+                Arguments.of(MediaRelay.WS_FRAME_KEY, "H264", new int[] {0, 0, 0, 1, 0x65, 0x88}, FrameKind.KEY),
+                // SPS/PPS/SEI后的IDR
+                Arguments.of(MediaRelay.WS_FRAME_KEY, "H264",
+                        new int[] {0, 0, 0, 1, 0x67, 0x42, 0, 0, 1, 0x68, 0xce, 0, 0, 1, 0x06, 5, 0, 0, 1, 0x65},
+                        FrameKind.KEY),
+                Arguments.of(MediaRelay.WS_FRAME_DELTA, "H264", new int[] {0, 0, 0, 1, 0x41, 0x9a}, FrameKind.REFERENCE),
+                Arguments.of(MediaRelay.WS_FRAME_DELTA, "H264", new int[] {0, 0, 1, 0x01, 0x9e}, FrameKind.NON_REFERENCE),
+                // AVCC：AUD后接非参考帧
+                Arguments.of(MediaRelay.WS_FRAME_DELTA, "H264", new int[] {0, 0, 0, 2, 0x09, 0xf0, 0, 0, 0, 2, 0x01, 0x9e},
+                        FrameKind.NON_REFERENCE),
+                Arguments.of(MediaRelay.WS_FRAME_KEY, "H265", new int[] {0, 0, 0, 1, 0x40, 0x01, 0, 0, 1, 0x26, 0x01},
+                        FrameKind.KEY),
+                Arguments.of(MediaRelay.WS_FRAME_DELTA, "H265", new int[] {0, 0, 0, 1, 0x02, 0x01}, FrameKind.REFERENCE),
+                Arguments.of(MediaRelay.WS_FRAME_DELTA, "H265", new int[] {0, 0, 0, 1, 0x00, 0x01}, FrameKind.NON_REFERENCE),
+                // 无法解析时按WS帧类型保守处理
+                Arguments.of(MediaRelay.WS_FRAME_KEY, "H264", new int[] {0xff, 0xff}, FrameKind.KEY),
+                Arguments.of(MediaRelay.WS_FRAME_DELTA, "H264", new int[] {0xff, 0xff, 0xff, 0xff, 0xff}, FrameKind.REFERENCE)
+        );
+    }
+    
+    @ParameterizedTest(name = "决策表 #{index}: wsType={0}, codec={1} -> {3}")
+    @MethodSource("classifyDecisionTable")
+    @DisplayName("帧分类决策表")
+    void testClassify(int wsType, String codec, int[] data, FrameKind expected) {
+        ByteBuf frame = wsFrame(wsType, data);
+        assertEquals(expected, VideoFrameClassifier.classify(frame, codec));
+        assertEquals(0, frame.readerIndex());
+    }
+    
+    static Stream<Arguments> videoBudgetDecisionTable() {
+        return Stream.of(
+                // gopSize, dropFrameMulti, expectedBudget
+                Arguments.of(29, 0.0, 0),
+                Arguments.of(29, 0.5, 15),
+                Arguments.of(29, 1.0, 1),
+                Arguments.of(10, 0.95, 1),
+                Arguments.of(0, 0.5, 1)
+        );
+    }
+    
+    @ParameterizedTest(name = "决策表 #{index}: gopSize={0}, dropFrameMulti={1} -> budget={2}")
+    @MethodSource("videoBudgetDecisionTable")
+    @DisplayName("主动丢帧积压帧数决策表")
+    void testVideoBudget(int gopSize, double dropFrameMulti, int expected) {
+        assertEquals(expected, MediaSendQueue.videoBudget(gopSize, dropFrameMulti));
+    }
+    
+    @Test
+    @DisplayName("主动丢帧：先丢非参考帧，超出积压后跳至下一关键帧并清除旧GOP，音频不丢")
+    void testProactiveGopDrop() {
+        MediaParam param = new MediaParam();
+        param.setGopSize(10);
+        param.setDropFrameMulti(0.5);
+        // budget = 5，积压2帧起丢非参考帧
+        MediaSendQueue queue = newQueue(100, 1 << 20, param);
+        
+        assertTrue(queue.offer(key()));
+        assertTrue(queue.offer(delta()));
+        assertTrue(queue.offer(delta()));
+        assertFalse(queue.offer(nonReference()));
+        assertTrue(queue.offer(delta()));
+        assertTrue(queue.offer(delta()));
+        assertTrue(queue.offer(delta()));
+        assertEquals(5, queue.getQueuedFrames());
+        
+        // 积压达到budget，丢弃参考帧后跳过当前GOP剩余帧
+        assertFalse(queue.offer(delta()));
+        assertFalse(queue.offer(delta()));
+        assertFalse(queue.offer(nonReference()));
+        assertTrue(queue.offer(audio()));
+        
+        // 新关键帧清除旧GOP积压，音频保留
+        ByteBuf key = key();
+        assertTrue(queue.offer(key));
+        assertEquals(2, queue.getQueuedFrames());
+        assertArrayEquals(new long[] {1, 2 + 1 + 5, 0}, queue.getDroppedFrames());
+        assertEquals(9, queue.drainPeriodDropped());
+        assertEquals(0, queue.drainPeriodDropped());
+        
+        // 发送顺序：首个关键帧、音频、新关键帧
+        handlers.get(0).onResult(new SendResult());
+        assertEquals(MediaRelay.WS_FRAME_AUDIO, sentBuffers.get(1).getInt(0));
+        handlers.get(1).onResult(new SendResult());
+        assertEquals(MediaRelay.WS_FRAME_KEY, sentBuffers.get(2).getInt(0));
+        handlers.get(2).onResult(new SendResult());
+        assertEquals(0, key.refCnt());
+        assertEquals(0, queue.getQueuedBytes());
+    }
+    
+    @Test
+    @DisplayName("未开启主动丢帧时，队列满丢弃参考帧后跳至下一关键帧，音频不受帧数限制")
+    void testOverflowSkipsToKeyframe() {
+        MediaSendQueue queue = newQueue(3, 1 << 20);
+        assertTrue(queue.offer(key()));
+        assertTrue(queue.offer(delta()));
+        assertTrue(queue.offer(delta()));
+        assertTrue(queue.offer(delta()));
+        
+        assertFalse(queue.offer(delta()));
+        assertFalse(queue.offer(nonReference()));
+        assertTrue(queue.offer(audio()));
+        // 队列仍满，关键帧也被丢弃，继续等待下一个关键帧
+        assertFalse(queue.offer(key()));
+        assertFalse(queue.offer(delta()));
+        assertArrayEquals(new long[] {0, 2, 2}, queue.getDroppedFrames());
+        
+        // 排队的音频帧也占用帧数配额，发送三帧后恢复
+        handlers.get(0).onResult(new SendResult());
+        handlers.get(1).onResult(new SendResult());
+        handlers.get(2).onResult(new SendResult());
+        assertTrue(queue.offer(key()));
+        assertTrue(queue.offer(nonReference()));
+    }
+    
+    static Stream<Arguments> boundDecisionTable() {
+        return Stream.of(
+                // maxFrames, maxBytes, frameSize, offered, expectedAccepted, expectedLagging
+                Arguments.of(4, 1 << 20, 100, 1, 1, false),
+                Arguments.of(4, 1 << 20, 100, 3, 3, false),
+                Arguments.of(4, 1 << 20, 100, 6, 5, true),
+                Arguments.of(100, 1000, 300, 5, 3, true),
+                Arguments.of(100, 1000, 200, 2, 2, false)
+        );
+    }
+    
+    @ParameterizedTest(name = "决策表 #{index}: maxFrames={0}, maxBytes={1}, frameSize={2}, offered={3} -> accepted={4}, lagging={5}")
+    @MethodSource("boundDecisionTable")
+    @DisplayName("队列按帧数和字节数限制决策表")
+    void testQueueBounds(int maxFrames, long maxBytes, int frameSize, int offered,
+                         int expectedAccepted, boolean expectedLagging) {
+        MediaSendQueue queue = newQueue(maxFrames, maxBytes);
+        List<ByteBuf> frames = new ArrayList<>();
+        int accepted = 0;
+        for (int i = 0; i < offered; i++) {
+            ByteBuf frame = Unpooled.buffer(frameSize).writeZero(frameSize);
+            frames.add(frame);
+            if (queue.offer(frame)) {
+                accepted++;
+            }
+        }
+        
+        assertEquals(expectedAccepted, accepted);
+        assertEquals(expectedLagging, queue.isLagging());
+        assertEquals((long) accepted * frameSize, queue.getQueuedBytes());
+        // 被拒绝的帧立即释放
+        for (int i = accepted; i < offered; i++) {
+            assertEquals(0, frames.get(i).refCnt());
+        }
+        
+        // 关闭后释放排队帧，发送中的帧在回调中释放
+        queue.close();
+        handlers.get(0).onResult(new SendResult());
+        for (ByteBuf frame : frames) {
+            assertEquals(0, frame.refCnt());
+        }
+        assertEquals(0, queue.getQueuedBytes());
+        assertFalse(queue.offer(Unpooled.buffer(1).writeZero(1)));
+    }
+    
+    @Test
+    @DisplayName("同时只有一帧在发送，完成后按序发送下一帧")
+    void testSingleInFlightInOrder() {
+        MediaSendQueue queue = newQueue(10, 1 << 20);
+        ByteBuf first = frame(1);
+        ByteBuf second = frame(2);
+        ByteBuf third = frame(3);
+        assertTrue(queue.offer(first));
+        assertTrue(queue.offer(second));
+        assertTrue(queue.offer(third));
+        
+        assertEquals(1, handlers.size());
+        assertEquals(2, queue.getQueuedFrames());
+        assertEquals(1, sentBuffers.get(0).getInt(0));
+        
+        handlers.get(0).onResult(new SendResult());
+        assertEquals(0, first.refCnt());
+        assertEquals(2, handlers.size());
+        assertEquals(2, sentBuffers.get(1).getInt(0));
+        
+        // 发送失败不影响后续帧
+        handlers.get(1).onResult(new SendResult(new IOException("broken pipe")));
+        assertEquals(0, second.refCnt());
+        assertEquals(3, sentBuffers.get(2).getInt(0));
+        
+        handlers.get(2).onResult(new SendResult());
+        assertEquals(0, third.refCnt());
+        assertEquals(0, queue.getQueuedBytes());
+        assertFalse(queue.isLagging());
+    }
+    
+    @Test
+    @DisplayName("容器同步回调完成时循环发送，不递归")
+    void testInlineCompletion() {
+        completeInline = true;
+        MediaSendQueue queue = newQueue(10000, 1 << 30);
+        List<ByteBuf> frames = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            ByteBuf frame = frame(i);
+            frames.add(frame);
+            assertTrue(queue.offer(frame));
+        }
+        
+        assertEquals(5000, sentBuffers.size());
+        assertEquals(0, queue.getQueuedBytes());
+        for (ByteBuf frame : frames) {
+            assertEquals(0, frame.refCnt());
+        }
+    }
+    
+    @Test
+    @DisplayName("会话已关闭或发送抛出异常时释放帧")
+    void testSessionClosed() {
+        MediaSendQueue queue = newQueue(10, 1 << 20);
+        doThrow(new IllegalStateException("closed")).when(remote)
+                .sendBinary(any(ByteBuffer.class), any(SendHandler.class));
+        ByteBuf failed = frame(1);
+        assertTrue(queue.offer(failed));
+        assertEquals(0, failed.refCnt());
+        assertEquals(0, queue.getQueuedBytes());
+        
+        when(session.isOpen()).thenReturn(false);
+        ByteBuf rejected = frame(2);
+        assertFalse(queue.offer(rejected));
+        assertEquals(0, rejected.refCnt());
+    }
+    
+    private static ByteBuf frame(int seq) {
+        return Unpooled.buffer(16).writeInt(seq).writeZero(12);
+    }
+    
+    private static ByteBuf wsFrame(int wsType, int... data) {
+        ByteBuf frame = Unpooled.buffer(MediaRelay.WS_HEADER_LENGTH + data.length);
+        frame.writeInt(wsType).writeInt(0).writeInt(data.length);
+        for (int b : data) {
+            frame.writeByte(b);
+        }
+        return frame;
+    }
+    
+    private static ByteBuf key() {
+        return wsFrame(MediaRelay.WS_FRAME_KEY, 0, 0, 0, 1, 0x65, 0x88);
+    }
+    
+    private static ByteBuf delta() {
+        return wsFrame(MediaRelay.WS_FRAME_DELTA, 0, 0, 0, 1, 0x41, 0x9a);
+    }
+    
+    private static ByteBuf nonReference() {
+        return wsFrame(MediaRelay.WS_FRAME_DELTA, 0, 0, 0, 1, 0x01, 0x9e);
+    }
+    
+    private static ByteBuf audio() {
+        return wsFrame(MediaRelay.WS_FRAME_AUDIO, 0xff, 0xf1);
+    }
+}
@@ -0,0 +1,189 @@
+package com.huawei.browsergateway.websocket.media.transcode;
+
+import com.huawei.browsergateway.websocket.media.MediaParam;
+import org.bytedeco.ffmpeg.avcodec.AVCodec;
+import org.bytedeco.ffmpeg.avcodec.AVCodecContext;
+import org.bytedeco.ffmpeg.avcodec.AVPacket;
+import org.bytedeco.ffmpeg.avutil.AVDictionary;
+import org.bytedeco.ffmpeg.avutil.AVFrame;
+import org.bytedeco.javacpp.BytePointer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.bytedeco.ffmpeg.global.avcodec.*;
+import static org.bytedeco.ffmpeg.global.avutil.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * FfmpegTranscoder基准测试
+ * 以1080p30 H264为输入，测量单线程（单核）转码到各输出分辨率的帧率，
+ * 用于估算browsergw.executor.transcode-threads对应的并发路数（路数 ≈ 核数 × 单核帧率 / 30）
+ * 
+ * 运行方式：-Dbenchmark=true，需要FFmpeg本地库（-Dffmpeg.natives=true打包）
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("FfmpegTranscoder基准测试")
+class FfmpegTranscoderBenchmarkTest {
+    
+    private static final int SOURCE_WIDTH = 1920;
+    
+    private static final int SOURCE_HEIGHT = 1080;
+    
+    private static final int FPS = 30;
+    
+    private static final int GOP = 30;
+    
+    // 输入序列帧数（10秒）
+    private static final int SOURCE_FRAMES = FPS * 10;
+    
+    private static final int WARMUP_ROUNDS = 1;
+    
+    private static final int MEASURE_ROUNDS = 2;
+    
+    private static final int[][] OUTPUTS = {
+            {1920, 1080},
+            {1280, 720},
+            {854, 480},
+            {640, 360}
+    };
+    
+    // 编码后的输入帧（Annex-B）及是否关键帧
+    private static final List<ByteBuffer> sourceFrames = new ArrayList<>();
+    
+    private static final List<Boolean> sourceKeys = new ArrayList<>();
+    
+    @BeforeAll
+    static void encodeSource() {
+        assumeTrue(FfmpegTranscoder.isAvailable(), "FFmpeg本地库不可用");
+        
+        AVCodec codec = avcodec_find_encoder_by_name("libx264");
+        if (codec == null || codec.isNull()) {
+            codec = avcodec_find_encoder(AV_CODEC_ID_H264);
+        }
+        assumeTrue(codec != null && !codec.isNull(), "H264编码器不可用");
+        
+        AVCodecContext encoder = avcodec_alloc_context3(codec);
+        encoder.width(SOURCE_WIDTH);
+        encoder.height(SOURCE_HEIGHT);
+        encoder.pix_fmt(AV_PIX_FMT_YUV420P);
+        encoder.time_base(av_make_q(1, FPS));
+        encoder.framerate(av_make_q(FPS, 1));
+        encoder.gop_size(GOP);
+        encoder.max_b_frames(0);
+        encoder.bit_rate(4_000_000);
+        AVDictionary options = new AVDictionary(null);
+        av_dict_set(options, "preset", "veryfast", 0);
+        av_dict_set(options, "tune", "zerolatency", 0);
+        assertTrue(avcodec_open2(encoder, codec, options) >= 0);
+        av_dict_free(options);
+        
+        AVFrame frame = av_frame_alloc();
+        frame.format(AV_PIX_FMT_YUV420P);
+        frame.width(SOURCE_WIDTH);
+        frame.height(SOURCE_HEIGHT);
+        assertTrue(av_frame_get_buffer(frame, 32) >= 0);
+        AVPacket packet = av_packet_alloc();
+        
+        for (int i = 0; i <= SOURCE_FRAMES; i++) {
+            AVFrame input = null;
+            if (i < SOURCE_FRAMES) {
+                av_frame_make_writable(frame);
+                fillPattern(frame, i);
+                frame.pts(i);
+                input = frame;
+            }
+            // 最后一轮传null冲刷编码器
+            avcodec_send_frame(encoder, input);
+            while (avcodec_receive_packet(encoder, packet) >= 0) {
+                ByteBuffer data = ByteBuffer.allocateDirect(packet.size());
+                data.put(packet.data().capacity(packet.size()).asByteBuffer()).flip();
+                sourceFrames.add(data);
+                sourceKeys.add((packet.flags() & AV_PKT_FLAG_KEY) != 0);
+                av_packet_unref(packet);
+            }
+        }
+        av_packet_free(packet);
+        av_frame_free(frame);
+        avcodec_free_context(encoder);
+        
+        assertFalse(sourceFrames.isEmpty());
+        assertTrue(sourceKeys.get(0));
+    }
+    
+    /**
+     * 生成随帧号移动的渐变图案，保证编码器有真实的运动估计开销
+     */
+    private static void fillPattern(AVFrame frame, int index) {
+        for (int plane = 0; plane < 3; plane++) {
+            int width = plane == 0 ? SOURCE_WIDTH : SOURCE_WIDTH / 2;
+            int height = plane == 0 ? SOURCE_HEIGHT : SOURCE_HEIGHT / 2;
+            int stride = frame.linesize(plane);
+            BytePointer data = frame.data(plane);
+            byte[] row = new byte[width];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    row[x] = (byte) (plane == 0 ? x + y + index * 4 : 128 + ((x ^ y) >> 3) + index);
+                }
+                data.position((long) y * stride).put(row, 0, width);
+            }
+            data.position(0);
+        }
+    }
+    
+    @Test
+    @DisplayName("1080p输入转码到各分辨率的单核帧率")
+    void benchmarkTranscode() {
+        StringBuilder report = new StringBuilder("FfmpegTranscoder基准测试（输入1080p30 H264, 单线程）:\n");
+        for (int[] output : OUTPUTS) {
+            MediaParam param = new MediaParam();
+            param.setWidth(output[0]);
+            param.setHeight(output[1]);
+            param.setFrameRate(FPS);
+            param.setGopSize(GOP);
+            TranscodeProfile profile = TranscodeProfile.from(param);
+            
+            try (FfmpegTranscoder transcoder = new FfmpegTranscoder(profile)) {
+                long[] outputBytes = new long[1];
+                FfmpegTranscoder.FrameSink sink = (data, keyFrame, timestamp) -> outputBytes[0] += data.remaining();
+                
+                for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                    runRound(transcoder, sink);
+                }
+                outputBytes[0] = 0;
+                long start = System.nanoTime();
+                int outputs = 0;
+                for (int i = 0; i < MEASURE_ROUNDS; i++) {
+                    outputs += runRound(transcoder, sink);
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                int inputs = sourceFrames.size() * MEASURE_ROUNDS;
+                double fps = inputs / seconds;
+                
+                assertTrue(outputs > 0, profile + " 无输出");
+                report.append(String.format("  %-36s 单核帧率=%7.1f fps, 单帧耗时=%6.2f ms, 可承载%4.1f路30fps/核, 输出码率=%5d kbps%n",
+                        profile, fps, seconds * 1000 / inputs, fps / FPS,
+                        outputBytes[0] * 8 * FPS / Math.max(1, outputs) / 1000));
+            }
+        }
+        System.out.println(report);
+    }
+    
+    /**
+     * 转码整个输入序列一遍，结束后重置（与归还转码器池时相同）
+     */
+    private static int runRound(FfmpegTranscoder transcoder, FfmpegTranscoder.FrameSink sink) {
+        int outputs = 0;
+        for (int i = 0; i < sourceFrames.size(); i++) {
+            outputs += transcoder.transcode(sourceFrames.get(i).duplicate(), sourceKeys.get(i), i * 1000 / FPS, sink);
+        }
+        transcoder.reset();
+        return outputs;
+    }
+}
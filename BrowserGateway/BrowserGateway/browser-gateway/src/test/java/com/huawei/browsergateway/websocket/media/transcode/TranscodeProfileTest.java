@@ -0,0 +1,68 @@
+package com.huawei.browsergateway.websocket.media.transcode;
+
+import com.huawei.browsergateway.websocket.media.MediaParam;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TranscodeProfile单元测试
+ */
+@DisplayName("TranscodeProfile测试")
+class TranscodeProfileTest {
+    
+    static Stream<Arguments> profileDecisionTable() {
+        return Stream.of(
+                // width, height, frameRate, videoBitRate, codecType, expectedWidth, expectedHeight, expectedBitRate, expectedCodec
+                Arguments.of(1920, 1080, 30, 0, "H264", 1920, 1080, 4355, "H264"),
+                Arguments.of(1280, 720, 30, 2000, "h265", 1280, 720, 2000, "H265"),
+                // 奇数宽高向下取偶数
+                Arguments.of(853, 479, 30, 0, "H264", 852, 478, 855, "H264"),
+                // 未知编码格式按H264处理
+                Arguments.of(640, 360, 15, 0, "VP8", 640, 360, 242, "H264"),
+                Arguments.of(1, 1, 0, 0, null, 2, 2, 100, "H264")
+        );
+    }
+    
+    @ParameterizedTest
+    @MethodSource("profileDecisionTable")
+    @DisplayName("转码规格决策表")
+    void testFrom(int width, int height, int frameRate, int videoBitRate, String codecType,
+                  int expectedWidth, int expectedHeight, int expectedBitRate, String expectedCodec) {
+        MediaParam param = new MediaParam();
+        param.setWidth(width);
+        param.setHeight(height);
+        param.setFrameRate(frameRate);
+        param.setVideoBitRate(videoBitRate);
+        param.setCodecType(codecType);
+        
+        TranscodeProfile profile = TranscodeProfile.from(param);
+        
+        assertEquals(expectedWidth, profile.getWidth());
+        assertEquals(expectedHeight, profile.getHeight());
+        assertEquals(expectedBitRate, profile.getVideoBitRate());
+        assertEquals(expectedCodec, profile.getCodecType());
+        assertTrue(profile.getFrameRate() >= 1);
+    }
+    
+    @Test
+    @DisplayName("相同参数生成的规格可作为转码器池的同一个键")
+    void testPoolKey() {
+        MediaParam a = new MediaParam();
+        MediaParam b = new MediaParam();
+        b.setBitRate(a.getBitRate() * 2);
+        
+        // 音频码率不影响视频转码规格
+        assertEquals(TranscodeProfile.from(a), TranscodeProfile.from(b));
+        assertEquals(TranscodeProfile.from(a).hashCode(), TranscodeProfile.from(b).hashCode());
+        
+        b.setGopSize(a.getGopSize() + 1);
+        assertNotEquals(TranscodeProfile.from(a), TranscodeProfile.from(b));
+    }
+}
@@ -0,0 +1,216 @@
+package com.huawei.browsergateway.websocket.netty;
+
+import com.huawei.browsergateway.common.utils.UserIdUtil;
+import com.huawei.browsergateway.config.TcpConfig;
+import com.huawei.browsergateway.config.WebsocketConfig;
+import com.huawei.browsergateway.tcpserver.common.MessageType;
+import com.huawei.browsergateway.tcpserver.media.MediaClientSet;
+import com.huawei.browsergateway.websocket.WebSocketTransport;
+import com.huawei.browsergateway.websocket.extension.ExtensionSocketServer;
+import com.huawei.browsergateway.websocket.media.MediaRelay;
+import com.huawei.browsergateway.websocket.media.MediaStreamSocketServer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * NettyWebSocketServer测试
+ * 在回环地址的随机端口上启动服务器，以JDK WebSocket客户端验证媒体流和控制流端点
+ */
+@DisplayName("NettyWebSocketServer测试")
+class NettyWebSocketServerTest {
+    
+    private static final String IMEI_AND_IMSI = "111_222";
+    
+    private NettyWebSocketServer server;
+    
+    private MediaRelay relay;
+    
+    private final HttpClient client = HttpClient.newHttpClient();
+    
+    @BeforeEach
+    void setUp() {
+        relay = new MediaRelay();
+        MediaStreamSocketServer mediaEndpoint = new MediaStreamSocketServer();
+        mediaEndpoint.setMediaRelay(relay);
+        mediaEndpoint.setMediaClientSet(mock(MediaClientSet.class));
+        
+        server = new NettyWebSocketServer();
+        ReflectionTestUtils.setField(server, "serverAddress", "127.0.0.1");
+        ReflectionTestUtils.setField(server, "websocketConfig", websocketConfig());
+        ReflectionTestUtils.setField(server, "tcpConfig", tcpConfig());
+        ReflectionTestUtils.setField(server, "mediaEndpoint", mediaEndpoint);
+        ReflectionTestUtils.setField(server, "muenEndpoint", new ExtensionSocketServer());
+        server.startServer();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.stopServer();
+    }
+    
+    @Test
+    @DisplayName("媒体流端点：初始化后中继的TCP帧以WS帧格式下发，连接关闭后释放媒体中枢")
+    void testMediaStream() throws Exception {
+        String userId = UserIdUtil.generateUserId("111", "222");
+        Receiver receiver = new Receiver();
+        WebSocket webSocket = connect(0, NettyWebSocketServer.MEDIA_PATH + "/" + IMEI_AND_IMSI, receiver);
+        webSocket.sendText("{\"processorType\":\"webcodecs\"}", true).join();
+        awaitTrue(() -> relay.get(userId) != null);
+        
+        // TCP帧体：[1字节: 帧类型][4字节: 时间戳][4字节: 数据长度][N字节: 数据]
+        byte[] data = new byte[64 * 1024];
+        data[0] = 0x5A;
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeByte(1).writeInt(1234).writeInt(data.length).writeBytes(data);
+        try {
+            assertTrue(relay.relay(userId, MessageType.VIDEO_FRAME, frame));
+        } finally {
+            frame.release();
+        }
+        
+        // WS帧：[4字节: 帧类型][4字节: 时间戳][4字节: 数据长度][N字节: 数据]
+        ByteBuffer received = (ByteBuffer) receiver.messages.poll(5, TimeUnit.SECONDS);
+        assertNotNull(received);
+        assertEquals(12 + data.length, received.remaining());
+        assertEquals(1, received.getInt());
+        assertEquals(1234, received.getInt());
+        assertEquals(data.length, received.getInt());
+        assertEquals(0x5A, received.get());
+        
+        webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").join();
+        awaitTrue(() -> relay.get(userId) == null);
+    }
+    
+    @Test
+    @DisplayName("媒体流端点：用户标识格式错误时关闭连接")
+    void testMediaStreamInvalidUser() throws Exception {
+        Receiver receiver = new Receiver();
+        connect(0, NettyWebSocketServer.MEDIA_PATH + "/invalid", receiver);
+        
+        assertEquals("closed", receiver.messages.poll(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    @DisplayName("控制流端点：按用户ID向已连接的客户端发送文本消息")
+    void testMuenSendMessage() throws Exception {
+        String userId = UserIdUtil.generateUserId("111", "222");
+        Receiver receiver = new Receiver();
+        WebSocket webSocket = connect(1, NettyWebSocketServer.MUEN_PATH + "/" + IMEI_AND_IMSI, receiver);
+        // 客户端握手完成时服务端的onOpen可能尚未执行
+        @SuppressWarnings("unchecked")
+        Map<String, WebSocketTransport> transports =
+                (Map<String, WebSocketTransport>) ReflectionTestUtils.getField(ExtensionSocketServer.class, "userTransports");
+        awaitTrue(() -> transports.get(userId) != null && transports.get(userId).isOpen());
+        
+        ExtensionSocketServer.sendMessage(userId, "{\"event\":\"test\"}");
+        assertEquals("{\"event\":\"test\"}", receiver.messages.poll(5, TimeUnit.SECONDS));
+        
+        webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").join();
+    }
+    
+    private WebSocket connect(int serverIndex, String path, Receiver receiver) throws Exception {
+        @SuppressWarnings("unchecked")
+        List<Channel> channels = (List<Channel>) ReflectionTestUtils.getField(server, "serverChannels");
+        int port = ((InetSocketAddress) channels.get(serverIndex).localAddress()).getPort();
+        return client.newWebSocketBuilder()
+                .buildAsync(URI.create("ws://127.0.0.1:" + port + path), receiver)
+                .get(5, TimeUnit.SECONDS);
+    }
+    
+    private static void awaitTrue(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+    
+    static WebsocketConfig websocketConfig() {
+        WebsocketConfig websocketConfig = new WebsocketConfig();
+        // 端口0由系统分配
+        websocketConfig.setMediaPort(0);
+        websocketConfig.setMuenPort(0);
+        websocketConfig.setBoss(1);
+        websocketConfig.setWorker(4);
+        websocketConfig.setHeartbeatTtl(60000L);
+        return websocketConfig;
+    }
+    
+    static TcpConfig tcpConfig() {
+        TcpConfig tcpConfig = new TcpConfig();
+        tcpConfig.setTransport("nio");
+        tcpConfig.setBacklog(1024);
+        tcpConfig.setTcpNoDelay(true);
+        tcpConfig.setPooledAllocator(true);
+        tcpConfig.setWriteBufferLowWaterMark(256 * 1024);
+        tcpConfig.setWriteBufferHighWaterMark(1024 * 1024);
+        tcpConfig.setRecvBufferMin(1024);
+        tcpConfig.setRecvBufferInitial(16 * 1024);
+        tcpConfig.setRecvBufferMax(256 * 1024);
+        return tcpConfig;
+    }
+    
+    /**
+     * 收集客户端收到的完整消息：二进制为ByteBuffer，文本为String，连接关闭为"closed"
+     */
+    private static class Receiver implements WebSocket.Listener {
+        
+        final BlockingQueue<Object> messages = new LinkedBlockingQueue<>();
+        
+        private final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        
+        private final StringBuilder text = new StringBuilder();
+        
+        @Override
+        public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            binary.write(bytes, 0, bytes.length);
+            if (last) {
+                messages.add(ByteBuffer.wrap(binary.toByteArray()));
+                binary.reset();
+            }
+            webSocket.request(1);
+            return null;
+        }
+        
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            text.append(data);
+            if (last) {
+                messages.add(text.toString());
+                text.setLength(0);
+            }
+            webSocket.request(1);
+            return null;
+        }
+        
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            messages.add("closed");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.huawei.browsergateway.websocket.netty;
+
+import com.huawei.browsergateway.common.utils.LatencyHistogram;
+import com.huawei.browsergateway.common.utils.UserIdUtil;
+import com.huawei.browsergateway.tcpserver.common.MessageType;
+import com.huawei.browsergateway.websocket.extension.ExtensionSocketServer;
+import com.huawei.browsergateway.websocket.media.MediaRelay;
+import com.huawei.browsergateway.websocket.media.MediaStreamSocketServer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.server.WsSci;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.http.HttpServlet;
+import javax.websocket.server.ServerContainer;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WebSocket媒体服务器对比基准测试
+ * 同一MediaStreamSocketServer端点分别由NettyWebSocketServer和Servlet容器（嵌入式Tomcat，javax.websocket）提供服务，
+ * 以JDK WebSocket客户端建立CLIENTS路1080p30观看连接，IO线程经MediaRelay中继TCP媒体帧，
+ * 比较端到端帧率、吞吐、延迟（中继到客户端收齐整帧）及进程CPU时间
+ * 
+ * 运行方式：-Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("WebSocket媒体服务器对比基准测试")
+class WebSocketServerBenchmarkTest {
+    
+    private static final int CLIENTS = 200;
+    
+    // 客户端HttpClient数量，每个HttpClient一个选择器线程
+    private static final int CLIENT_SELECTORS = 4;
+    
+    private static final int FPS = 30;
+    
+    // 模拟Netty IO线程数
+    private static final int IO_THREADS = 4;
+    
+    // 1080p30约4Mbps：I帧约120KB，P帧约14KB，GOP 30
+    private static final int KEY_FRAME_SIZE = 120 * 1024;
+    
+    private static final int DELTA_FRAME_SIZE = 14 * 1024;
+    
+    private static final int GOP = 30;
+    
+    private static final long WARMUP_SECONDS = 3;
+    
+    private static final long DURATION_SECONDS = 10;
+    
+    private static final String INIT_PARAM = "{\"processorType\":\"webcodecs\"}";
+    
+    private MediaRelay relay;
+    
+    private final List<WebSocket> webSockets = new ArrayList<>();
+    
+    private final LatencyHistogram latency = new LatencyHistogram();
+    
+    private final LongAdder deliveredFrames = new LongAdder();
+    
+    private final LongAdder deliveredBytes = new LongAdder();
+    
+    @BeforeEach
+    void setUp() {
+        relay = new MediaRelay();
+        new MediaStreamSocketServer().setMediaRelay(relay);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        for (WebSocket webSocket : webSockets) {
+            webSocket.abort();
+        }
+        webSockets.clear();
+    }
+    
+    @Test
+    @DisplayName("Netty WebSocket服务器与Servlet容器端点对比：两者均无丢帧，输出帧率、延迟和CPU时间供比较")
+    void testNettyVersusContainer() throws Exception {
+        NettyWebSocketServer nettyServer = new NettyWebSocketServer();
+        ReflectionTestUtils.setField(nettyServer, "serverAddress", "127.0.0.1");
+        ReflectionTestUtils.setField(nettyServer, "websocketConfig", NettyWebSocketServerTest.websocketConfig());
+        ReflectionTestUtils.setField(nettyServer, "tcpConfig", NettyWebSocketServerTest.tcpConfig());
+        ReflectionTestUtils.setField(nettyServer, "mediaEndpoint", new MediaStreamSocketServer());
+        ReflectionTestUtils.setField(nettyServer, "muenEndpoint", new ExtensionSocketServer());
+        nettyServer.startServer();
+        Result netty;
+        try {
+            @SuppressWarnings("unchecked")
+            List<Channel> channels = (List<Channel>) ReflectionTestUtils.getField(nettyServer, "serverChannels");
+            int port = ((InetSocketAddress) channels.get(0).localAddress()).getPort();
+            netty = measure("netty", "ws://127.0.0.1:" + port + NettyWebSocketServer.MEDIA_PATH + "/");
+        } finally {
+            tearDown();
+            nettyServer.stopServer();
+        }
+        
+        Path baseDir = Files.createTempDirectory("tomcat");
+        Tomcat tomcat = startTomcat(baseDir);
+        Result container;
+        try {
+            int port = tomcat.getConnector().getLocalPort();
+            container = measure("container", "ws://127.0.0.1:" + port + NettyWebSocketServer.MEDIA_PATH + "/");
+        } finally {
+            tearDown();
+            tomcat.stop();
+            tomcat.destroy();
+        }
+        
+        System.out.println("WebSocket服务器基准: " + netty);
+        System.out.println("WebSocket服务器基准: " + container);
+        
+        assertEquals(netty.offered, netty.delivered);
+        assertEquals(container.offered, container.delivered);
+    }
+    
+    /**
+     * 嵌入式Tomcat，以javax.websocket注册MediaStreamSocketServer（与部署到Servlet容器时相同）
+     */
+    private static Tomcat startTomcat(Path baseDir) throws Exception {
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.toString());
+        Connector connector = new Connector();
+        connector.setPort(0);
+        connector.setProperty("address", "127.0.0.1");
+        tomcat.setConnector(connector);
+        
+        Context context = tomcat.addContext("", baseDir.toString());
+        context.addServletContainerInitializer(new WsSci(), null);
+        // 升级请求经WsFilter处理，需要有可映射的Servlet
+        Tomcat.addServlet(context, "default", new HttpServlet() {
+        });
+        context.addServletMappingDecoded("/", "default");
+        tomcat.start();
+        
+        ServerContainer serverContainer = (ServerContainer) context.getServletContext()
+                .getAttribute(ServerContainer.class.getName());
+        serverContainer.addEndpoint(MediaStreamSocketServer.class);
+        return tomcat;
+    }
+    
+    /**
+     * 建立CLIENTS路连接并完成初始化，预热后按节奏中继DURATION_SECONDS秒
+     */
+    private Result measure(String name, String baseUri) throws Exception {
+        List<HttpClient> clients = new ArrayList<>();
+        for (int i = 0; i < CLIENT_SELECTORS; i++) {
+            clients.add(HttpClient.newHttpClient());
+        }
+        for (int i = 0; i < CLIENTS; i++) {
+            WebSocket webSocket = clients.get(i % CLIENT_SELECTORS).newWebSocketBuilder()
+                    .buildAsync(URI.create(baseUri + imeiAndImsi(i)), new FrameListener())
+                    .get(10, TimeUnit.SECONDS);
+            webSocket.sendText(INIT_PARAM, true).get(10, TimeUnit.SECONDS);
+            webSockets.add(webSocket);
+        }
+        long subscribeDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (int i = 0; i < CLIENTS; i++) {
+            while (relay.get(userId(i)) == null) {
+                assertTrue(System.nanoTime() < subscribeDeadline, "等待订阅超时");
+                Thread.sleep(5);
+            }
+        }
+        
+        // 预热：JIT编译、线程池和内存池初始化
+        run(WARMUP_SECONDS);
+        latency.snapshotAndReset();
+        deliveredFrames.reset();
+        deliveredBytes.reset();
+        
+        long cpuBefore = processCpuNanos();
+        long start = System.nanoTime();
+        long offered = run(DURATION_SECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long cpu = processCpuNanos() - cpuBefore;
+        return new Result(name, offered, deliveredFrames.sum(), deliveredBytes.sum(), seconds, cpu,
+                latency.snapshotAndReset());
+    }
+    
+    /**
+     * 以IO_THREADS个线程按节奏发送指定时长，等待全部帧送达
+     * 
+     * @return 进入发送队列的帧数
+     */
+    private long run(long durationSeconds) throws InterruptedException {
+        List<Thread> ioThreads = new ArrayList<>();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        LongAdder offeredFrames = new LongAdder();
+        long deliveredBefore = deliveredFrames.sum();
+        
+        for (int t = 0; t < IO_THREADS; t++) {
+            int first = t;
+            Thread thread = new Thread(() -> produce(first, start, deadline, offeredFrames), "io-" + t);
+            ioThreads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : ioThreads) {
+            thread.join();
+        }
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (deliveredFrames.sum() - deliveredBefore < offeredFrames.sum() && System.nanoTime() < drainDeadline) {
+            Thread.sleep(5);
+        }
+        return offeredFrames.sum();
+    }
+    
+    /**
+     * 模拟一个IO线程：按30fps节奏为其负责的流生成TCP帧体并交给中继
+     */
+    private void produce(int first, long start, long deadline, LongAdder offered) {
+        long interval = TimeUnit.SECONDS.toNanos(1) / FPS;
+        long next = start;
+        int frameIndex = 0;
+        while (next < deadline) {
+            for (int stream = first; stream < CLIENTS; stream += IO_THREADS) {
+                boolean key = (frameIndex + stream) % GOP == 0;
+                ByteBuf frame = newFrame(key, key ? KEY_FRAME_SIZE : DELTA_FRAME_SIZE, frameIndex);
+                try {
+                    if (relay.relay(userId(stream), MessageType.VIDEO_FRAME, frame)) {
+                        offered.increment();
+                    }
+                } finally {
+                    frame.release();
+                }
+            }
+            frameIndex++;
+            next += interval;
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * 客户端：收齐一帧后按数据前8字节的发送时刻记录延迟
+     * WS帧：[4字节: 帧类型][4字节: 时间戳][4字节: 数据长度][N字节: 数据]
+     */
+    private class FrameListener implements WebSocket.Listener {
+        
+        private final ByteBuffer header = ByteBuffer.allocate(12 + Long.BYTES);
+        
+        private long bytes;
+        
+        @Override
+        public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+            bytes += data.remaining();
+            while (header.hasRemaining() && data.hasRemaining()) {
+                header.put(data.get());
+            }
+            if (last) {
+                latency.record(System.nanoTime() - header.getLong(12));
+                deliveredFrames.increment();
+                deliveredBytes.add(bytes);
+                header.clear();
+                bytes = 0;
+            }
+            webSocket.request(1);
+            return null;
+        }
+    }
+    
+    /**
+     * TCP帧体：[1字节: 帧类型][4字节: 时间戳][4字节: 数据长度][N字节: 数据]，数据前8字节写入发送时刻
+     */
+    private static ByteBuf newFrame(boolean key, int size, int timestamp) {
+        ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer(9 + size);
+        frame.writeByte(key ? 1 : 2);
+        frame.writeInt(timestamp);
+        frame.writeInt(size);
+        frame.writeLong(System.nanoTime());
+        frame.writerIndex(frame.writerIndex() + size - Long.BYTES);
+        return frame;
+    }
+    
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+    
+    private static String imeiAndImsi(int stream) {
+        return "imei" + stream + "_imsi" + stream;
+    }
+    
+    private static String userId(int stream) {
+        return UserIdUtil.generateUserId("imei" + stream, "imsi" + stream);
+    }
+    
+    private static final class Result {
+        final String name;
+        final long offered;
+        final long delivered;
+        final long bytes;
+        final double seconds;
+        final long cpuNanos;
+        final LatencyHistogram.Snapshot snapshot;
+        
+        Result(String name, long offered, long delivered, long bytes, double seconds, long cpuNanos,
+               LatencyHistogram.Snapshot snapshot) {
+            this.name = name;
+            this.offered = offered;
+            this.delivered = delivered;
+            this.bytes = bytes;
+            this.seconds = seconds;
+            this.cpuNanos = cpuNanos;
+            this.snapshot = snapshot;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%s: clients=%d, offered=%d, delivered=%d, %.0f fps, %.1f MB/s, cpu=%.2f核, %s",
+                    name, CLIENTS, offered, delivered, delivered / seconds, bytes / seconds / (1024 * 1024),
+                    cpuNanos / 1e9 / seconds, snapshot);
+        }
+    }
+}